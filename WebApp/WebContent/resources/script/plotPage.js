@@ -1276,6 +1276,7 @@ function drawDataPlot1Y(index, keepZoom) {
   };
   data_options.zoomCallback = function(xMin, xMax, yRange) {
     syncZoom(index);
+    refinePlot(index);
   };
   data_options.drawCallback = function(g, initial) {
     resizePlot(index);
@@ -1407,6 +1408,7 @@ function drawDataPlot2Y(index, keepZoom) {
   };
   data_options.zoomCallback = function(xMin, xMax, yRange) {
     syncZoom(index);
+    refinePlot(index);
   };
   data_options.drawCallback = function(g, initial) {
     resizePlot(index);
@@ -1677,6 +1679,45 @@ function drawSelectionPlot(index) {
   }
 }
 
+// Fetch more detailed data for the visible X range. This is only needed
+// if the server has downsampled the data, or if we have already fetched
+// data for a smaller range.
+function refinePlot(index) {
+  if (window['plot' + index + 'Resetting']) {
+    return;
+  }
+
+  let downsampled = $('#plot' + index + 'Form\\:plot' + index + 'Downsampled').val() === 'true';
+  let rangeField = $('#plot' + index + 'Form\\:plot' + index + 'ViewRange');
+
+  if (downsampled || rangeField.val().length > 0) {
+    rangeField.val(JSON.stringify(window['dataPlot' + index].xAxisRange()));
+    eval('refinePlot' + index + '()'); // PF remoteCommand
+  }
+}
+
+// Redraw a plot with refined data, keeping the current zoom
+function plotRefined(index) {
+  errorCheck();
+
+  if (hasY2(index)) {
+    drawY2Plot(index, true);
+    drawDataPlot2Y(index, true);
+  } else {
+    drawDataPlot1Y(index, true);
+  }
+
+  drawSelectionPlot(index);
+  resizePlot(index);
+
+  if (window['plot' + index + 'ResetAfterRefine']) {
+    window['plot' + index + 'ResetAfterRefine'] = false;
+    resetZoom(index);
+  } else {
+    syncZoom(index);
+  }
+}
+
 function syncZoom(index) {
 
   let zoomOptions = {
@@ -2059,6 +2100,13 @@ function selectModeMouseUp(event, g, context) {
       maxY = g.toDataYCoord(context.dragStartY);
     }
 
+    // The same rectangle on the second Y axis
+    let y2Range = null;
+    if (hasY2(plotIndex)) {
+      y2Range = [g.toDataYCoord(context.dragStartY, 1), g.toDataYCoord(context.dragEndY, 1)];
+      y2Range.sort(function(a, b) { return a - b; });
+    }
+
     // If we've only moved the mouse by a small amount,
     // interpret it as a click
     let xDragDistance = Math.abs(context.dragEndX - context.dragStartX);
@@ -2069,8 +2117,23 @@ function selectModeMouseUp(event, g, context) {
       let pointId = closestPoint.point['idx'];
       let row = window['dataPlot' + plotIndex + 'Data'][pointId][1];
       scrollToTableRow(row);
+    } else if ($('#plot' + plotIndex + 'Form\\:plot' + plotIndex + 'Downsampled').val() === 'true') {
+      // The plot doesn't contain all the values, so ask the server to find them
+      let rect = [minX, maxX, minY, maxY];
+      if (null != y2Range) {
+        rect = rect.concat(y2Range);
+      }
+      $('#plot' + plotIndex + 'Form\\:plot' + plotIndex + 'SelectRect').val(
+        JSON.stringify(rect));
+      window['plot' + plotIndex + 'SelectVariable'] = plotVar;
+      eval('plot' + plotIndex + 'SelectPointsInRect()'); // PF remoteCommand
     } else {
-      selectPointsInRect(window['dataPlot' + plotIndex + 'Data'], plotVar, minX, maxX, minY, maxY);
+      let pointsToSelect = findPointsInRect(window['dataPlot' + plotIndex + 'Data'], minX, maxX, minY, maxY);
+      if (null != y2Range) {
+        pointsToSelect = pointsToSelect.concat(
+          findPointsInRect(window['y2Plot' + plotIndex + 'Data'], minX, maxX, y2Range[0], y2Range[1]));
+      }
+      applyRectSelection(pointsToSelect, plotVar);
     }
   }
 }
@@ -2098,7 +2161,8 @@ function dragGetY(graph, event) {
   return event.clientY - graph.canvas_.getBoundingClientRect().top;
 }
 
-function selectPointsInRect(data, variableId, minX, maxX, minY, maxY) {
+// Find the IDs of the points in a plot's data that lie within a rectangle
+function findPointsInRect(data, minX, maxX, minY, maxY) {
   let pointsToSelect = [];
 
   for (var i = 0; i < data.length; i++) {
@@ -2115,6 +2179,17 @@ function selectPointsInRect(data, variableId, minX, maxX, minY, maxY) {
     }
   }
 
+  return pointsToSelect;
+}
+
+// Called when the server has found the points in a selection rectangle
+function rectPointsLoaded(index) {
+  applyRectSelection(
+    JSON.parse($('#plot' + index + 'Form\\:plot' + index + 'RectPoints').val()),
+    window['plot' + index + 'SelectVariable']);
+}
+
+function applyRectSelection(pointsToSelect, variableId) {
   newSelectionColumn = getTrueSelectionColumn(variableId);
   if (null == getSelectedColumn() || newSelectionColumn != getSelectedColumn().id) {
     setSelectedRows(pointsToSelect);
@@ -2342,12 +2417,23 @@ function resetZoom(index) {
     window['map' + index].fitBounds([[bounds[1], bounds[0]], [bounds[3], bounds[2]]]);
     window['map' + index + 'Zoomed'] = false;
   } else {
+    // If we only have data for part of the plot, fetch all of it first
+    let rangeField = $('#plot' + index + 'Form\\:plot' + index + 'ViewRange');
+    if (rangeField.val().length > 0) {
+      rangeField.val('');
+      window['plot' + index + 'ResetAfterRefine'] = true;
+      eval('refinePlot' + index + '()'); // PF remoteCommand
+      return;
+    }
+
     window['dataPlot' + index].updateOptions({
       yRangePad: 10,
       xRangePad: 10
     });
 
+    window['plot' + index + 'Resetting'] = true;
     window['dataPlot' + index].resetZoom();
+    window['plot' + index + 'Resetting'] = false;
     let nonDefaultYRange = getYRange(index);
     if (null != nonDefaultYRange) {
       window['dataPlot' + index].updateOptions({
@@ -0,0 +1,126 @@
+package jmh.uk.ac.exeter.QuinCe.BenchmarkBase;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.mockito.Mockito;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.TestResourceManager;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Base class for benchmarks that need the application's
+ * {@link ResourceManager} and database.
+ *
+ * <p>
+ * The benchmarks use the same configuration and database migrations as the
+ * JUnit tests. Each benchmark state gets its own in-memory H2 database, which
+ * is set up with the base migrations plus any test data locations from
+ * {@code WebApp/junit/resources/sql} that the benchmark needs.
+ * </p>
+ *
+ * <p>
+ * The Gradle {@code jmh} task runs the benchmarks from the project root, so
+ * the relative paths in the test configuration can be found.
+ * </p>
+ */
+public abstract class BaseBenchmark {
+
+  /**
+   * The name under which the data source is registered.
+   */
+  private static final String DATABASE_NAME = "test.database";
+
+  /**
+   * The test configuration file.
+   */
+  private static final String CONFIG_PATH = "./WebApp/junit/resources/configuration/quince.properties";
+
+  /**
+   * The location of the base database migrations.
+   */
+  private static final String MIGRATIONS_LOCATION = "resources/db_migrations";
+
+  /**
+   * Counter used to give each benchmark state its own database.
+   */
+  private static final AtomicInteger databaseCounter = new AtomicInteger(0);
+
+  /**
+   * The benchmark's data source.
+   */
+  private DataSource dataSource = null;
+
+  /**
+   * Create a database with the base migrations and the specified test data,
+   * and initialise the {@link ResourceManager} using it.
+   *
+   * @param dataLocations
+   *          The test data migration locations, e.g.
+   *          {@code resources/sql/testbase/instrument}.
+   */
+  protected void initResourceManager(String... dataLocations) {
+    JdbcDataSource h2DataSource = new JdbcDataSource();
+    h2DataSource.setURL("jdbc:h2:mem:benchmark"
+      + databaseCounter.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+    h2DataSource.setUser("user");
+    h2DataSource.setPassword("pass");
+    dataSource = h2DataSource;
+
+    String[] locations = new String[dataLocations.length + 1];
+    locations[0] = MIGRATIONS_LOCATION;
+    System.arraycopy(dataLocations, 0, locations, 1, dataLocations.length);
+
+    Flyway.configure().dataSource(dataSource).locations(locations)
+      .ignoreFutureMigrations(true).load().migrate();
+
+    ServletContext servletContext = Mockito.mock(ServletContext.class);
+    Mockito.doReturn(DATABASE_NAME).when(servletContext)
+      .getInitParameter("database.name");
+    Mockito.doReturn(CONFIG_PATH).when(servletContext)
+      .getInitParameter("configuration.path");
+
+    ServletContextEvent servletContextEvent = Mockito
+      .mock(ServletContextEvent.class);
+    Mockito.doReturn(servletContext).when(servletContextEvent)
+      .getServletContext();
+
+    ResourceManager.destroy();
+    new TestResourceManager(dataSource)
+      .contextInitialized(servletContextEvent);
+  }
+
+  /**
+   * Discard the {@link ResourceManager}.
+   */
+  protected void destroyResourceManager() {
+    ResourceManager.destroy();
+  }
+
+  /**
+   * Get the benchmark's data source.
+   *
+   * @return The data source.
+   */
+  protected DataSource getDataSource() {
+    return dataSource;
+  }
+
+  /**
+   * Get a connection to the benchmark's database.
+   *
+   * @return The connection.
+   * @throws SQLException
+   *           If the connection cannot be created.
+   */
+  protected Connection getConnection() throws SQLException {
+    return dataSource.getConnection();
+  }
+}
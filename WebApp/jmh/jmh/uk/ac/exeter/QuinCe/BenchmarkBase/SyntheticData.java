@@ -0,0 +1,69 @@
+package jmh.uk.ac.exeter.QuinCe.BenchmarkBase;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Utility methods for generating synthetic benchmark data.
+ *
+ * <p>
+ * All random values come from generators with a fixed seed, so every run of a
+ * benchmark sees exactly the same data and results can be compared between
+ * commits.
+ * </p>
+ */
+public class SyntheticData {
+
+  /**
+   * The time of the first record in all generated datasets.
+   */
+  public static final LocalDateTime START_TIME = LocalDateTime.of(2023, 1, 1,
+    0, 0, 0);
+
+  /**
+   * The seed for all random generators.
+   */
+  private static final long SEED = 20230101L;
+
+  /**
+   * Get a new random generator with the standard seed.
+   *
+   * @return The generator.
+   */
+  public static Random random() {
+    return new Random(SEED);
+  }
+
+  /**
+   * Get the time of a record a given number of seconds after the
+   * {@link #START_TIME}.
+   *
+   * @param seconds
+   *          The number of seconds.
+   * @return The record time.
+   */
+  public static LocalDateTime time(long seconds) {
+    return START_TIME.plusSeconds(seconds);
+  }
+
+  /**
+   * Generate a value that varies randomly around a base value.
+   *
+   * <p>
+   * Values are rounded to three decimal places, as they typically are in data
+   * files.
+   * </p>
+   *
+   * @param random
+   *          The random generator.
+   * @param base
+   *          The base value.
+   * @param range
+   *          The maximum difference from the base value.
+   * @return The value.
+   */
+  public static double value(Random random, double base, double range) {
+    double value = base + (random.nextDouble() * 2 - 1) * range;
+    return Math.round(value * 1000) / 1000D;
+  }
+}
@@ -0,0 +1,251 @@
+package jmh.uk.ac.exeter.QuinCe.data.Dataset.DataReduction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.BaseBenchmark;
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Dataset.MeasurementValue;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReducer;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReducerFactory;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionTask;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorsConfiguration;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotPageTableValue;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Benchmark for {@link DataReducer#performDataReduction} for the main pCO₂
+ * reducers.
+ *
+ * <p>
+ * Each invocation reduces {@link #measurements} synthetic measurements. The
+ * sensor values vary randomly around those used in the reducers' unit tests,
+ * and every twentieth value has a questionable flag. The measurements are
+ * split into chunks of 500 and reduced with {@link DataReductionTask}s, as
+ * they are in the {@code DataReductionJob}, either on the benchmark thread or
+ * in parallel according to {@link #threads}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5)
+public class DataReducerBenchmark extends BaseBenchmark {
+
+  /**
+   * The number of measurements in each {@link DataReductionTask}.
+   */
+  private static final int CHUNK_SIZE = 500;
+
+  /**
+   * The reducer.
+   */
+  @Param({ "UnderwayMarinePco2", "UnderwayAtmosphericPco2",
+    "ProOceanusMarineCO2", "ProOceanusAtmosphericCO2" })
+  public String reducerName;
+
+  /**
+   * The number of measurements.
+   */
+  @Param({ "10000" })
+  public int measurements;
+
+  /**
+   * The number of threads. A value of 1 runs the reduction on the benchmark
+   * thread.
+   */
+  @Param({ "1", "4" })
+  public int threads;
+
+  /**
+   * The instrument.
+   */
+  private Instrument instrument;
+
+  /**
+   * The reducer.
+   */
+  private DataReducer reducer;
+
+  /**
+   * The measurements to be reduced, in chunks.
+   */
+  private List<List<Measurement>> chunks;
+
+  /**
+   * The thread pool.
+   */
+  private ForkJoinPool pool = null;
+
+  /**
+   * Create the reducer and the measurements.
+   *
+   * @throws Exception
+   *           If the reducer or measurements cannot be created.
+   */
+  @Setup
+  public void setup() throws Exception {
+    initResourceManager();
+
+    SensorsConfiguration sensorConfig = ResourceManager.getInstance()
+      .getSensorsConfiguration();
+
+    instrument = Mockito.mock(Instrument.class);
+    Mockito.when(instrument.getId()).thenReturn(1L);
+
+    // The sensor values for each reducer, with their base values and ranges
+    Map<String, double[]> inputs = new HashMap<String, double[]>();
+    Map<String, Properties> properties = new HashMap<String, Properties>();
+    String variableName;
+
+    switch (reducerName) {
+    case "UnderwayMarinePco2": {
+      variableName = "Underway Marine pCO₂";
+      inputs.put("Water Temperature", new double[] { 11.912, 2 });
+      inputs.put("Salinity", new double[] { 35.224, 0.5 });
+      inputs.put("Equilibrator Temperature", new double[] { 12.37, 2 });
+      inputs.put("Equilibrator Pressure", new double[] { 999.23, 10 });
+      inputs.put("xCO₂ (with standards)", new double[] { 374.977, 20 });
+      break;
+    }
+    case "UnderwayAtmosphericPco2": {
+      variableName = "Underway Atmospheric pCO₂";
+      inputs.put("Water Temperature", new double[] { 15.453, 2 });
+      inputs.put("Salinity", new double[] { 35.224, 0.5 });
+      inputs.put("Atmospheric Pressure", new double[] { 1020.03, 10 });
+      inputs.put("xCO₂ (with standards)", new double[] { 402.043, 5 });
+
+      Properties variableProperties = new Properties();
+      variableProperties.put("atm_pres_sensor_height", "10");
+      properties.put(variableName, variableProperties);
+      break;
+    }
+    case "ProOceanusMarineCO2": {
+      variableName = "Pro Oceanus CO₂ Water";
+      inputs.put("Water Temperature", new double[] { 10.777, 2 });
+      inputs.put("Cell Gas Pressure", new double[] { 1014.81, 10 });
+      inputs.put("xCO₂ (wet, no standards)", new double[] { 393.722, 20 });
+      break;
+    }
+    case "ProOceanusAtmosphericCO2": {
+      variableName = "Pro Oceanus CO₂ Atmosphere";
+      inputs.put("Air Temperature", new double[] { 14.755, 2 });
+      inputs.put("Cell Gas Pressure", new double[] { 1022.55, 10 });
+      inputs.put("Humidity Pressure", new double[] { 14.67, 1 });
+      inputs.put("xCO₂ (wet, no standards)", new double[] { 398.419, 5 });
+      break;
+    }
+    default: {
+      throw new IllegalArgumentException("Unknown reducer " + reducerName);
+    }
+    }
+
+    Variable variable = sensorConfig.getInstrumentVariable(variableName);
+    reducer = DataReducerFactory.getReducer(variable, properties);
+
+    Map<SensorType, double[]> sensorInputs = new HashMap<SensorType, double[]>();
+    for (Map.Entry<String, double[]> entry : inputs.entrySet()) {
+      sensorInputs.put(sensorConfig.getSensorType(entry.getKey()),
+        entry.getValue());
+    }
+
+    Random random = SyntheticData.random();
+    long sensorValueId = 1L;
+
+    chunks = new ArrayList<List<Measurement>>();
+    List<Measurement> chunk = null;
+
+    for (int i = 0; i < measurements; i++) {
+      HashMap<Long, MeasurementValue> measurementValues = new HashMap<Long, MeasurementValue>();
+
+      for (Map.Entry<SensorType, double[]> entry : sensorInputs.entrySet()) {
+        List<Long> sensorValueIds = new ArrayList<Long>(1);
+        sensorValueIds.add(sensorValueId++);
+
+        Flag flag = i % 20 == 0 ? Flag.QUESTIONABLE : Flag.GOOD;
+
+        measurementValues.put(entry.getKey().getId(),
+          new MeasurementValue(entry.getKey().getId(), sensorValueIds,
+            new ArrayList<Long>(), 1,
+            SyntheticData.value(random, entry.getValue()[0],
+              entry.getValue()[1]),
+            flag, new HashSet<String>(), PlotPageTableValue.MEASURED_TYPE,
+            new Properties()));
+      }
+
+      HashMap<Long, String> runTypes = new HashMap<Long, String>();
+      runTypes.put(variable.getId(), "runtype");
+
+      if (null == chunk || chunk.size() == CHUNK_SIZE) {
+        chunk = new ArrayList<Measurement>(CHUNK_SIZE);
+        chunks.add(chunk);
+      }
+
+      chunk.add(new Measurement(i + 1, 1L, SyntheticData.time(i * 60L),
+        runTypes, measurementValues));
+    }
+
+    if (threads > 1) {
+      pool = new ForkJoinPool(threads);
+    }
+  }
+
+  /**
+   * Shut down the thread pool and discard the application resources.
+   */
+  @TearDown
+  public void tearDown() {
+    if (null != pool) {
+      pool.shutdown();
+    }
+
+    destroyResourceManager();
+  }
+
+  /**
+   * Reduce all the measurements.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   * @throws Exception
+   *           If the data reduction fails.
+   */
+  @Benchmark
+  public void performDataReduction(Blackhole blackhole) throws Exception {
+    List<DataReductionTask> tasks = new ArrayList<DataReductionTask>(
+      chunks.size());
+    for (List<Measurement> chunk : chunks) {
+      tasks.add(new DataReductionTask(reducer, instrument, chunk));
+    }
+
+    blackhole.consume(DataReductionTask.runAll(tasks, pool));
+  }
+}
@@ -0,0 +1,142 @@
+package jmh.uk.ac.exeter.QuinCe.data.Dataset;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetMeasurements;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+
+/**
+ * Benchmark for the run lookups in {@link DatasetMeasurements}, which are used
+ * when calibrating measurements against the surrounding standards runs.
+ *
+ * <p>
+ * The dataset contains {@link #size} measurements, one per minute, for a
+ * single variable. Runs of {@link #runLength} measurements cycle through a
+ * measurement run type and two standards. Each invocation performs
+ * {@link #lookups} lookups for randomly chosen measurements. The run index is
+ * built during setup.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5)
+public class DatasetMeasurementsBenchmark {
+
+  /**
+   * The variable ID.
+   */
+  private static final long VARIABLE_ID = 1L;
+
+  /**
+   * The run types, used in turn.
+   */
+  private static final String[] RUN_TYPES = { "EQU", "STD1", "STD2" };
+
+  /**
+   * The number of measurements.
+   */
+  @Param({ "500000" })
+  public int size;
+
+  /**
+   * The number of measurements in each run.
+   */
+  @Param({ "10", "100" })
+  public int runLength;
+
+  /**
+   * The number of lookups in each invocation.
+   */
+  @Param({ "10000" })
+  public int lookups;
+
+  /**
+   * The measurements.
+   */
+  private DatasetMeasurements datasetMeasurements;
+
+  /**
+   * The measurements to look up.
+   */
+  private List<Measurement> lookupMeasurements;
+
+  /**
+   * Build the measurements and the run index.
+   */
+  @Setup
+  public void setup() {
+    datasetMeasurements = new DatasetMeasurements();
+    List<Measurement> allMeasurements = new ArrayList<Measurement>(size);
+
+    for (int i = 0; i < size; i++) {
+      Map<Long, String> runTypes = new HashMap<Long, String>();
+      runTypes.put(VARIABLE_ID, RUN_TYPES[(i / runLength) % RUN_TYPES.length]);
+
+      Measurement measurement = new Measurement(i + 1, 1L,
+        SyntheticData.time(i * 60L), runTypes, null);
+      datasetMeasurements.addMeasurement(measurement);
+      allMeasurements.add(measurement);
+    }
+
+    Random random = SyntheticData.random();
+    lookupMeasurements = new ArrayList<Measurement>(lookups);
+    for (int i = 0; i < lookups; i++) {
+      lookupMeasurements.add(allMeasurements.get(random.nextInt(size)));
+    }
+
+    // Build the run index
+    datasetMeasurements.getMeasurementsInSameRun(VARIABLE_ID,
+      lookupMeasurements.get(0));
+  }
+
+  /**
+   * Find the run containing each lookup measurement.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   */
+  @Benchmark
+  public void getMeasurementsInSameRun(Blackhole blackhole) {
+    for (Measurement measurement : lookupMeasurements) {
+      blackhole.consume(datasetMeasurements
+        .getMeasurementsInSameRun(VARIABLE_ID, measurement));
+    }
+  }
+
+  /**
+   * Find the standards runs either side of each lookup measurement.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   */
+  @Benchmark
+  public void getRunBeforeAndAfter(Blackhole blackhole) {
+    for (Measurement measurement : lookupMeasurements) {
+      blackhole.consume(datasetMeasurements.getRunBefore(VARIABLE_ID,
+        RUN_TYPES[1], measurement.getTime()));
+      blackhole.consume(datasetMeasurements.getRunAfter(VARIABLE_ID,
+        RUN_TYPES[1], measurement.getTime()));
+    }
+  }
+}
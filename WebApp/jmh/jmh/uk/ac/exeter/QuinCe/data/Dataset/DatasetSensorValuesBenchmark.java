@@ -0,0 +1,212 @@
+package jmh.uk.ac.exeter.QuinCe.data.Dataset;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.BaseBenchmark;
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.RunTypePeriods;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+
+/**
+ * Benchmark for {@link DatasetSensorValues#applyQCCascade}, which is run
+ * whenever diagnostic sensors are flagged.
+ *
+ * <p>
+ * The benchmark uses the instrument from the {@code DataReduction/base} test
+ * data, which has SST, Salinity and CO₂ sensors, plus water flow and gas flow
+ * diagnostic sensors that cascade to SST and CO₂ for some run types. There is
+ * one value per minute for each sensor, and the run type changes every hour.
+ * </p>
+ *
+ * <p>
+ * {@link #sourcePercent} percent of the diagnostic values are flagged as bad,
+ * and their flags are cascaded to the other sensors in a single call.
+ * Applying the same cascade again does the same work, so the data is built
+ * once per trial.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DatasetSensorValuesBenchmark extends BaseBenchmark {
+
+  /**
+   * The instrument in the test data.
+   */
+  private static final long INSTRUMENT_ID = 1L;
+
+  /**
+   * The dataset in the test data.
+   */
+  private static final long DATASET_ID = 1L;
+
+  /**
+   * The Run Type column.
+   */
+  private static final long RUN_TYPE_COLUMN = 1L;
+
+  /**
+   * The measured sensor columns.
+   */
+  private static final long[] SENSOR_COLUMNS = { 2L, 3L, 4L };
+
+  /**
+   * The diagnostic sensor columns.
+   */
+  private static final long[] DIAGNOSTIC_COLUMNS = { 5L, 6L };
+
+  /**
+   * The run types, used in turn.
+   */
+  private static final String[] RUN_TYPES = { "var_1", "var_2", "var_3" };
+
+  /**
+   * The number of minutes between run type changes.
+   */
+  private static final int RUN_LENGTH = 60;
+
+  /**
+   * The number of values for each sensor.
+   */
+  @Param({ "10000", "100000" })
+  public int size;
+
+  /**
+   * The percentage of diagnostic values that are flagged.
+   */
+  @Param({ "1", "10" })
+  public int sourcePercent;
+
+  /**
+   * The sensor values.
+   */
+  private DatasetSensorValues allSensorValues;
+
+  /**
+   * The run type periods.
+   */
+  private RunTypePeriods runTypePeriods;
+
+  /**
+   * The flagged diagnostic values.
+   */
+  private List<SensorValue> sources;
+
+  /**
+   * Build the sensor values and flag the cascade sources.
+   *
+   * @throws Exception
+   *           If the data cannot be built.
+   */
+  @Setup
+  public void setup() throws Exception {
+    initResourceManager("resources/sql/testbase/DataReduction/base");
+
+    Instrument instrument;
+    try (Connection conn = getConnection()) {
+      instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+    }
+
+    allSensorValues = new DatasetSensorValues(instrument);
+    runTypePeriods = new RunTypePeriods();
+    sources = new ArrayList<SensorValue>();
+
+    Random random = SyntheticData.random();
+    long id = 1L;
+    int sourceInterval = 100 / sourcePercent;
+
+    for (int i = 0; i < size; i++) {
+      LocalDateTime time = SyntheticData.time(i * 60L);
+
+      String runType = RUN_TYPES[(i / RUN_LENGTH) % RUN_TYPES.length];
+      allSensorValues.add(makeSensorValue(id++, RUN_TYPE_COLUMN, time,
+        runType));
+      runTypePeriods.add(runType, time);
+
+      for (long column : SENSOR_COLUMNS) {
+        allSensorValues.add(makeSensorValue(id++, column, time,
+          String.valueOf(SyntheticData.value(random, 20, 5))));
+      }
+
+      for (long column : DIAGNOSTIC_COLUMNS) {
+        SensorValue diagnostic = makeSensorValue(id++, column, time,
+          String.valueOf(SyntheticData.value(random, 2, 0.5)));
+        allSensorValues.add(diagnostic);
+
+        if (i % sourceInterval == 0) {
+          diagnostic.setUserQC(Flag.BAD, "Flow");
+          sources.add(diagnostic);
+        }
+      }
+    }
+
+    runTypePeriods.finish();
+  }
+
+  /**
+   * Discard the application resources.
+   */
+  @TearDown
+  public void tearDown() {
+    destroyResourceManager();
+  }
+
+  /**
+   * Make a sensor value.
+   *
+   * @param id
+   *          The value's ID.
+   * @param columnId
+   *          The value's column.
+   * @param time
+   *          The value's time.
+   * @param value
+   *          The value.
+   * @return The sensor value.
+   */
+  private SensorValue makeSensorValue(long id, long columnId,
+    LocalDateTime time, String value) {
+    return new SensorValue(id, DATASET_ID, columnId, time, value,
+      new AutoQCResult(), Flag.ASSUMED_GOOD, null);
+  }
+
+  /**
+   * Apply the cascade from all the flagged values at once.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   * @throws Exception
+   *           If the cascade fails.
+   */
+  @Benchmark
+  public void applyQCCascade(Blackhole blackhole) throws Exception {
+    blackhole.consume(allSensorValues.applyQCCascade(sources, runTypePeriods));
+  }
+}
@@ -0,0 +1,176 @@
+package jmh.uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineFlag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
+
+/**
+ * Benchmark for storing and loading {@link AutoQCResult}s in the compact
+ * encoding and in the older JSON format.
+ *
+ * <p>
+ * Each invocation encodes or decodes {@link #results} results, each with
+ * {@link #flags} routine flags. The routine dictionary is replaced by a map
+ * so the database is not involved.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AutoQCResultBenchmark {
+
+  /**
+   * The routine names used in the flags.
+   */
+  private static final String[] ROUTINE_NAMES = { "SensorValues.RangeCheck",
+    "SensorValues.Outlier", "SensorValues.HighDelta" };
+
+  /**
+   * The number of results.
+   */
+  @Param({ "10000" })
+  public int results;
+
+  /**
+   * The number of flags in each result.
+   */
+  @Param({ "1", "3" })
+  public int flags;
+
+  /**
+   * The routine IDs, keyed by name.
+   */
+  private Map<String, Integer> routineIds;
+
+  /**
+   * The results.
+   */
+  private List<AutoQCResult> qcResults;
+
+  /**
+   * The results in the compact encoding.
+   */
+  private List<String> encoded;
+
+  /**
+   * The results as JSON.
+   */
+  private List<String> json;
+
+  /**
+   * Build the results and their stored forms.
+   */
+  @Setup
+  public void setup() {
+    routineIds = new HashMap<String, Integer>();
+    for (int i = 0; i < ROUTINE_NAMES.length; i++) {
+      routineIds.put(ROUTINE_NAMES[i], i + 1);
+    }
+
+    Random random = SyntheticData.random();
+
+    qcResults = new ArrayList<AutoQCResult>(results);
+    encoded = new ArrayList<String>(results);
+    json = new ArrayList<String>(results);
+
+    for (int i = 0; i < results; i++) {
+      AutoQCResult result = new AutoQCResult();
+      for (int f = 0; f < flags; f++) {
+        result.add(new RoutineFlag(ROUTINE_NAMES[f % ROUTINE_NAMES.length],
+          random.nextBoolean() ? Flag.BAD : Flag.QUESTIONABLE, "-5:40",
+          String.valueOf(SyntheticData.value(random, 45, 5))));
+      }
+
+      qcResults.add(result);
+      encoded.add(result.encode(routineIds::get));
+      json.add(result.toJson());
+    }
+  }
+
+  /**
+   * Get the name of a routine from its ID.
+   *
+   * @param id
+   *          The routine ID.
+   * @return The routine name.
+   */
+  private String getRoutineName(int id) {
+    return ROUTINE_NAMES[id - 1];
+  }
+
+  /**
+   * Encode the results in the compact encoding.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   */
+  @Benchmark
+  public void encode(Blackhole blackhole) {
+    for (AutoQCResult result : qcResults) {
+      blackhole.consume(result.encode(routineIds::get));
+    }
+  }
+
+  /**
+   * Encode the results as JSON.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   */
+  @Benchmark
+  public void encodeJson(Blackhole blackhole) {
+    for (AutoQCResult result : qcResults) {
+      blackhole.consume(result.toJson());
+    }
+  }
+
+  /**
+   * Decode the results from the compact encoding.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   */
+  @Benchmark
+  public void decode(Blackhole blackhole) {
+    for (String result : encoded) {
+      blackhole.consume(AutoQCResult.decode(result, this::getRoutineName));
+    }
+  }
+
+  /**
+   * Decode the results from JSON.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   */
+  @Benchmark
+  public void decodeJson(Blackhole blackhole) {
+    for (String result : json) {
+      blackhole.consume(AutoQCResult.buildFromJson(result));
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package jmh.uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.BaseBenchmark;
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AbstractAutoQCRoutine;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCRoutine;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.QCRoutinesConfiguration;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Benchmark for the {@link AutoQCRoutine}s configured for Water Temperature
+ * in the test QC configuration.
+ *
+ * <p>
+ * Each invocation runs a single routine over a synthetic column of
+ * {@link #size} values. The automatic QC from the previous invocation is
+ * cleared before each invocation, outside the measurement.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AutoQCRoutineBenchmark extends BaseBenchmark {
+
+  /**
+   * The sensor type whose routines are benchmarked.
+   */
+  protected static final String SENSOR_TYPE = "Water Temperature";
+
+  /**
+   * The routine name, as used in the QC routines configuration file.
+   */
+  @Param({ "ConstantValue", "RangeCheck", "Outlier", "HighDelta" })
+  public String routineName;
+
+  /**
+   * The number of values.
+   */
+  @Param({ "10000", "100000" })
+  public int size;
+
+  /**
+   * The routine.
+   */
+  private AutoQCRoutine routine;
+
+  /**
+   * The values.
+   */
+  private List<SensorValue> values;
+
+  /**
+   * Get the routine and build the values.
+   *
+   * @throws Exception
+   *           If the routine cannot be found.
+   */
+  @Setup
+  public void setup() throws Exception {
+    initResourceManager();
+
+    QCRoutinesConfiguration config = ResourceManager.getInstance()
+      .getQCRoutinesConfiguration();
+
+    SensorType sensorType = ResourceManager.getInstance()
+      .getSensorsConfiguration().getSensorType(SENSOR_TYPE);
+
+    for (AbstractAutoQCRoutine candidate : config.getRoutines(sensorType)) {
+      if (config.getRoutineName(candidate.getClass()).equals(routineName)) {
+        routine = (AutoQCRoutine) candidate;
+        break;
+      }
+    }
+
+    if (null == routine) {
+      throw new IllegalArgumentException(
+        "No " + routineName + " routine for " + SENSOR_TYPE);
+    }
+
+    values = makeColumn(1L, 1L, size, 0);
+  }
+
+  /**
+   * Clear the automatic QC set by the previous invocation.
+   *
+   * @throws Exception
+   *           If the QC cannot be cleared.
+   */
+  @Setup(Level.Invocation)
+  public void clearQC() throws Exception {
+    SensorValue.clearAutoQC(values);
+  }
+
+  /**
+   * Discard the application resources.
+   */
+  @TearDown
+  public void tearDown() {
+    destroyResourceManager();
+  }
+
+  /**
+   * Run the routine.
+   *
+   * @throws Exception
+   *           If the routine fails.
+   */
+  @Benchmark
+  public void qc() throws Exception {
+    routine.qc(values, null);
+  }
+
+  /**
+   * Generate a column of synthetic Water Temperature values, one per minute.
+   *
+   * <p>
+   * The values vary slowly, with occasional out of range spikes and periods
+   * where the value does not change. Values are given a variety of user QC
+   * flags. The {@code offset} shifts the spikes and constant periods so that
+   * different columns do not have identical values.
+   * </p>
+   *
+   * @param firstId
+   *          The ID of the first value.
+   * @param columnId
+   *          The column ID.
+   * @param size
+   *          The number of values.
+   * @param offset
+   *          The offset for the value patterns.
+   * @return The values.
+   */
+  protected static List<SensorValue> makeColumn(long firstId, long columnId,
+    int size, int offset) {
+
+    Random random = SyntheticData.random();
+    List<SensorValue> result = new ArrayList<SensorValue>(size);
+
+    double base = 15;
+    String constantValue = null;
+
+    for (int i = 0; i < size; i++) {
+      int pattern = i + offset;
+
+      String value;
+      if (pattern % 997 == 0) {
+        value = "60";
+      } else if (pattern % 503 == 0) {
+        value = "45";
+      } else if (pattern % 1000 < 150) {
+        // Constant value for 150 minutes in every 1000
+        if (null == constantValue) {
+          constantValue = String.valueOf(SyntheticData.value(random, base, 0));
+        }
+        value = constantValue;
+      } else {
+        constantValue = null;
+        base = Math.max(0, Math.min(30, base + (random.nextDouble() - 0.5)));
+        value = String.valueOf(SyntheticData.value(random, base, 0.1));
+      }
+
+      Flag userFlag = pattern % 71 == 0 ? Flag.BAD : Flag.ASSUMED_GOOD;
+
+      result.add(new SensorValue(firstId + i, 1L, columnId,
+        SyntheticData.time(i * 60L), value, new AutoQCResult(), userFlag,
+        null));
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,137 @@
+package jmh.uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.BaseBenchmark;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AbstractAutoQCRoutine;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCTask;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Benchmark for running the automatic QC for a whole dataset with
+ * {@link AutoQCTask}s, on one thread or in parallel.
+ *
+ * <p>
+ * The dataset has {@link #columns} columns of {@link #size} synthetic Water
+ * Temperature values (see {@link AutoQCRoutineBenchmark}), and all the
+ * configured Water Temperature routines are run on each column. The tasks
+ * clear the previous automatic QC themselves, so the clearing is included in
+ * the measurement as it is in the {@code AutoQCJob}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AutoQCTaskBenchmark extends BaseBenchmark {
+
+  /**
+   * The number of threads. A value of 1 runs the tasks on the benchmark
+   * thread.
+   */
+  @Param({ "1", "4" })
+  public int threads;
+
+  /**
+   * The number of columns.
+   */
+  @Param({ "24" })
+  public int columns;
+
+  /**
+   * The number of values in each column.
+   */
+  @Param({ "10000" })
+  public int size;
+
+  /**
+   * The routines.
+   */
+  private List<AbstractAutoQCRoutine> routines;
+
+  /**
+   * The values in each column.
+   */
+  private List<List<SensorValue>> columnValues;
+
+  /**
+   * The thread pool.
+   */
+  private ForkJoinPool pool = null;
+
+  /**
+   * Get the routines, build the values and create the thread pool.
+   *
+   * @throws Exception
+   *           If the routines cannot be found.
+   */
+  @Setup
+  public void setup() throws Exception {
+    initResourceManager();
+
+    SensorType sensorType = ResourceManager.getInstance()
+      .getSensorsConfiguration()
+      .getSensorType(AutoQCRoutineBenchmark.SENSOR_TYPE);
+
+    routines = ResourceManager.getInstance().getQCRoutinesConfiguration()
+      .getRoutines(sensorType);
+
+    columnValues = new ArrayList<List<SensorValue>>(columns);
+    for (int c = 0; c < columns; c++) {
+      columnValues.add(AutoQCRoutineBenchmark
+        .makeColumn((long) c * size + 1, c + 1, size, c * 37));
+    }
+
+    if (threads > 1) {
+      pool = new ForkJoinPool(threads);
+    }
+  }
+
+  /**
+   * Shut down the thread pool and discard the application resources.
+   */
+  @TearDown
+  public void tearDown() {
+    if (null != pool) {
+      pool.shutdown();
+    }
+
+    destroyResourceManager();
+  }
+
+  /**
+   * Run the QC on all the columns.
+   *
+   * @throws Exception
+   *           If the QC fails.
+   */
+  @Benchmark
+  public void runAll() throws Exception {
+    List<AutoQCTask> tasks = new ArrayList<AutoQCTask>(columns);
+    for (List<SensorValue> values : columnValues) {
+      tasks.add(new AutoQCTask(routines, values, null, true));
+    }
+
+    AutoQCTask.runAll(tasks, pool);
+  }
+}
@@ -0,0 +1,197 @@
+package jmh.uk.ac.exeter.QuinCe.data.Dataset;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.BaseBenchmark;
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValuesList;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+
+/**
+ * Benchmark for {@link SensorValuesList#getValue(LocalDateTime, boolean)},
+ * which is used to build the values for every measurement in a dataset.
+ *
+ * <p>
+ * The list holds {@link #size} synthetic Water Temperature values. In
+ * {@code CONTINUOUS} mode there is one value per minute. In {@code PERIODIC}
+ * mode the values are in groups of five, ten seconds apart, with 30 minutes
+ * between groups. Every tenth value has a bad flag.
+ * </p>
+ *
+ * <p>
+ * Each invocation looks up the values for {@link #lookups} random times
+ * across the list, with interpolation allowed. The list's output values are
+ * built during setup, so only the lookups are measured.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SensorValuesListBenchmark extends BaseBenchmark {
+
+  /**
+   * The instrument in the test data.
+   */
+  private static final long INSTRUMENT_ID = 1L;
+
+  /**
+   * The Water Temperature column in the test instrument.
+   */
+  private static final long COLUMN_ID = 1L;
+
+  /**
+   * The number of values in each periodic group.
+   */
+  private static final int PERIODIC_GROUP_SIZE = 5;
+
+  /**
+   * The seconds between values in a periodic group.
+   */
+  private static final int PERIODIC_VALUE_INTERVAL = 10;
+
+  /**
+   * The seconds between periodic groups.
+   */
+  private static final int PERIODIC_GROUP_INTERVAL = 1800;
+
+  /**
+   * The measurement mode.
+   */
+  @Param({ "CONTINUOUS", "PERIODIC" })
+  public String mode;
+
+  /**
+   * The number of values in the list.
+   */
+  @Param({ "10000", "100000" })
+  public int size;
+
+  /**
+   * The number of lookups in each invocation.
+   */
+  @Param({ "10000" })
+  public int lookups;
+
+  /**
+   * The list of values.
+   */
+  private SensorValuesList list;
+
+  /**
+   * The times to look up.
+   */
+  private List<LocalDateTime> lookupTimes;
+
+  /**
+   * Build the list of values and the lookup times.
+   *
+   * @throws Exception
+   *           If the list cannot be built.
+   */
+  @Setup
+  public void setup() throws Exception {
+    initResourceManager("resources/sql/testbase/user",
+      "resources/sql/testbase/instrument");
+
+    DatasetSensorValues allSensorValues;
+    try (Connection conn = getConnection()) {
+      allSensorValues = new DatasetSensorValues(
+        InstrumentDB.getInstrument(conn, INSTRUMENT_ID));
+    }
+
+    Random random = SyntheticData.random();
+    long lastSecond = 0;
+
+    for (int i = 0; i < size; i++) {
+      lastSecond = getSecond(i);
+      Flag flag = i % 10 == 0 ? Flag.BAD : Flag.GOOD;
+
+      allSensorValues.add(new SensorValue(i + 1, 1L, COLUMN_ID,
+        SyntheticData.time(lastSecond),
+        String.valueOf(SyntheticData.value(random, 15, 5)), new AutoQCResult(),
+        flag, null));
+    }
+
+    list = allSensorValues.getColumnValues(COLUMN_ID);
+
+    lookupTimes = new ArrayList<LocalDateTime>(lookups);
+    for (int i = 0; i < lookups; i++) {
+      lookupTimes
+        .add(SyntheticData.time((long) (random.nextDouble() * lastSecond)));
+    }
+
+    // Build the output values
+    list.getValue(lookupTimes.get(0), true);
+  }
+
+  /**
+   * Discard the application resources.
+   */
+  @TearDown
+  public void tearDown() {
+    destroyResourceManager();
+  }
+
+  /**
+   * Get the number of seconds after the start time of the specified value.
+   *
+   * @param index
+   *          The value's index.
+   * @return The value's time in seconds.
+   */
+  private long getSecond(int index) {
+    long result;
+
+    if (mode.equals("CONTINUOUS")) {
+      result = index * 60L;
+    } else {
+      int group = index / PERIODIC_GROUP_SIZE;
+      int position = index % PERIODIC_GROUP_SIZE;
+      result = group * (long) PERIODIC_GROUP_INTERVAL
+        + position * PERIODIC_VALUE_INTERVAL;
+    }
+
+    return result;
+  }
+
+  /**
+   * Look up the values at all the lookup times.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   * @throws Exception
+   *           If a value cannot be retrieved.
+   */
+  @Benchmark
+  public void getValue(Blackhole blackhole) throws Exception {
+    for (LocalDateTime time : lookupTimes) {
+      blackhole.consume(list.getValue(time, true));
+    }
+  }
+}
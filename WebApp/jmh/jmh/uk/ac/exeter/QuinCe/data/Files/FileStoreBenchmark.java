@@ -0,0 +1,358 @@
+package jmh.uk.ac.exeter.QuinCe.data.Files;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.BaseBenchmark;
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Files.DataFile;
+import uk.ac.exeter.QuinCe.data.Files.DataFileDB;
+import uk.ac.exeter.QuinCe.data.Files.FileStore;
+import uk.ac.exeter.QuinCe.data.Files.FileStoreCodec;
+import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.utils.DatabaseUtils;
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Benchmark for storing and reading files in the {@link FileStore} with each
+ * {@link FileStoreCodec}.
+ *
+ * <p>
+ * The file has {@link #lines} synthetic lines of time, temperature and
+ * salinity, one per minute, for file definition 1 in the
+ * {@code DataFileCatalogueTest} data. The file is stored in a temporary file
+ * store during setup and read back by the read benchmarks. The
+ * {@code storeFile} benchmark stores a new copy of the file on each
+ * invocation (see {@link NewFile}).
+ * </p>
+ *
+ * <p>
+ * The disk use is reported alongside each result by the {@link DiskUse}
+ * counters: {@code storedBytes} is the size of the file on disk, and
+ * {@code contentBytes} is the size of its decoded contents.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FileStoreBenchmark extends BaseBenchmark {
+
+  /**
+   * The instrument in the test data.
+   */
+  private static final long INSTRUMENT_ID = 1L;
+
+  /**
+   * The file definition in the test data.
+   */
+  private static final long FILE_DEFINITION_ID = 1L;
+
+  /**
+   * The codec with which files are stored.
+   */
+  @Param({ "NONE", "GZIP" })
+  public String codec;
+
+  /**
+   * The number of lines in the file.
+   */
+  @Param({ "10000", "100000" })
+  public int lines;
+
+  /**
+   * The file store directory.
+   */
+  private File fileStore;
+
+  /**
+   * The application configuration.
+   */
+  private Properties config;
+
+  /**
+   * The file definition.
+   */
+  private FileDefinition fileDefinition;
+
+  /**
+   * The file contents.
+   */
+  private List<String> contents;
+
+  /**
+   * The file that is read by the read benchmarks.
+   */
+  private DataFile storedFile;
+
+  /**
+   * A channel that discards everything written to it.
+   */
+  private WritableByteChannel nullChannel;
+
+  /**
+   * Counters for the disk used by the stored file.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class DiskUse {
+
+    /**
+     * The size of the stored file on disk.
+     */
+    public long storedBytes;
+
+    /**
+     * The size of the file's decoded contents.
+     */
+    public long contentBytes;
+
+    /**
+     * Record the disk use of the benchmark's stored file.
+     *
+     * @param benchmark
+     *          The benchmark state.
+     * @throws IOException
+     *           If the file sizes cannot be read.
+     */
+    @Setup(Level.Iteration)
+    public void setup(FileStoreBenchmark benchmark) throws IOException {
+      storedBytes = benchmark.getStoredBytes();
+      contentBytes = benchmark.storedFile.getBytes().length;
+    }
+  }
+
+  /**
+   * The file to be stored by a {@code storeFile} invocation. A new file is
+   * created before each invocation and deleted afterwards, so the read
+   * benchmarks are not affected.
+   */
+  @State(Scope.Thread)
+  public static class NewFile {
+
+    /**
+     * The file.
+     */
+    private DataFile file;
+
+    /**
+     * Create the file.
+     *
+     * @param benchmark
+     *          The benchmark state.
+     * @throws Exception
+     *           If the file cannot be created.
+     */
+    @Setup(Level.Invocation)
+    public void setup(FileStoreBenchmark benchmark) throws Exception {
+      file = new DataFile(benchmark.fileStore.getAbsolutePath(),
+        benchmark.fileDefinition, "new.csv", benchmark.contents);
+    }
+
+    /**
+     * Delete the file if it was stored.
+     *
+     * @param benchmark
+     *          The benchmark state.
+     * @throws Exception
+     *           If the file cannot be deleted.
+     */
+    @TearDown(Level.Invocation)
+    public void tearDown(FileStoreBenchmark benchmark) throws Exception {
+      if (file.getDatabaseId() != DatabaseUtils.NO_DATABASE_RECORD) {
+        DataFileDB.deleteFile(benchmark.getDataSource(), benchmark.config,
+          file);
+      }
+    }
+  }
+
+  /**
+   * Create the file store and store the file to be read.
+   *
+   * @throws Exception
+   *           If the file cannot be stored.
+   */
+  @Setup
+  public void setup() throws Exception {
+    initResourceManager("resources/sql/testbase/user",
+      "resources/sql/data/Files/DataFileCatalogueTest");
+
+    fileStore = Files.createTempDirectory("FILE_STORE").toFile();
+
+    config = ResourceManager.getInstance().getConfig();
+    config.setProperty("filestore", fileStore.getAbsolutePath());
+    config.setProperty(FileStoreCodec.CODEC_PROPERTY, codec);
+
+    try (Connection conn = getConnection()) {
+      fileDefinition = InstrumentDB.getFileDefinitions(conn, INSTRUMENT_ID)
+        .stream().filter(d -> d.getDatabaseId() == FILE_DEFINITION_ID)
+        .findAny().get();
+    }
+
+    Random random = SyntheticData.random();
+    contents = new ArrayList<String>(lines);
+    for (int i = 0; i < lines; i++) {
+      contents.add(DateTimeUtils.formatDateTime(SyntheticData.time(i * 60L))
+        + "," + SyntheticData.value(random, 15, 5) + ","
+        + SyntheticData.value(random, 35, 1));
+    }
+
+    storedFile = new DataFile(fileStore.getAbsolutePath(), fileDefinition,
+      "stored.csv", contents);
+    DataFileDB.storeFile(getDataSource(), config, storedFile, -1);
+
+    nullChannel = Channels.newChannel(OutputStream.nullOutputStream());
+  }
+
+  /**
+   * Remove the file store and discard the application resources.
+   *
+   * @throws IOException
+   *           If the file store cannot be removed.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    destroyResourceManager();
+
+    try (Stream<File> files = Files.walk(fileStore.toPath())
+      .sorted(Comparator.reverseOrder()).map(Path::toFile)) {
+      files.forEach(File::delete);
+    }
+  }
+
+  /**
+   * Get the total size of the files in the file store.
+   *
+   * @return The size in bytes.
+   * @throws IOException
+   *           If the file sizes cannot be read.
+   */
+  private long getStoredBytes() throws IOException {
+    long result = 0;
+
+    try (Stream<Path> paths = Files.walk(fileStore.toPath())) {
+      for (Path path : (Iterable<Path>) paths::iterator) {
+        if (Files.isRegularFile(path)) {
+          result += Files.size(path);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Store a new copy of the file.
+   *
+   * @param newFile
+   *          The file to be stored.
+   * @param diskUse
+   *          The disk use counters.
+   * @throws Exception
+   *           If the file cannot be stored.
+   */
+  @Benchmark
+  public void storeFile(NewFile newFile, DiskUse diskUse) throws Exception {
+    DataFileDB.storeFile(getDataSource(), config, newFile.file, -1);
+  }
+
+  /**
+   * Read the file a line at a time.
+   *
+   * @param diskUse
+   *          The disk use counters.
+   * @param blackhole
+   *          The blackhole that consumes the lines.
+   * @throws IOException
+   *           If the file cannot be read.
+   */
+  @Benchmark
+  public void readLines(DiskUse diskUse, Blackhole blackhole)
+    throws IOException {
+
+    try (BufferedReader reader = storedFile.getReader()) {
+      String line = reader.readLine();
+      while (null != line) {
+        blackhole.consume(line);
+        line = reader.readLine();
+      }
+    }
+  }
+
+  /**
+   * Read the whole file into memory.
+   *
+   * @param diskUse
+   *          The disk use counters.
+   * @return The file bytes.
+   * @throws IOException
+   *           If the file cannot be read.
+   */
+  @Benchmark
+  public byte[] getBytes(DiskUse diskUse) throws IOException {
+    return storedFile.getBytes();
+  }
+
+  /**
+   * Copy the file to a channel, as when it is exported.
+   *
+   * @param diskUse
+   *          The disk use counters.
+   * @return The number of bytes copied.
+   * @throws IOException
+   *           If the file cannot be copied.
+   */
+  @Benchmark
+  public long transferBytes(DiskUse diskUse) throws IOException {
+    return storedFile.transferBytes(nullChannel);
+  }
+
+  /**
+   * Check whether the file ends with a newline, as when files are
+   * concatenated for export.
+   *
+   * @param diskUse
+   *          The disk use counters.
+   * @return The result of the check.
+   * @throws IOException
+   *           If the file cannot be read.
+   */
+  @Benchmark
+  public boolean endsWithNewline(DiskUse diskUse) throws IOException {
+    return storedFile.endsWithNewline();
+  }
+}
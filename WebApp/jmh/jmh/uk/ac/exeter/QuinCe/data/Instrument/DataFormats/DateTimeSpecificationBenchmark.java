@@ -0,0 +1,141 @@
+package jmh.uk.ac.exeter.QuinCe.data.Instrument.DataFormats;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Instrument.DataFormats.DateTimeSpecification;
+
+/**
+ * Benchmark for {@link DateTimeSpecification#getDateTime(LocalDateTime, List)},
+ * which is called for every line of every uploaded file.
+ *
+ * <p>
+ * Each invocation parses the timestamps of all the lines in a synthetic file.
+ * The lines are one second apart. The {@link #format} parameter selects how
+ * the timestamp is stored:
+ * </p>
+ * <ul>
+ * <li>{@code DATE_TIME}: A single date/time column.</li>
+ * <li>{@code DATE_AND_TIME}: Separate date and time columns.</li>
+ * <li>{@code UNIX}: Seconds since the epoch.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DateTimeSpecificationBenchmark {
+
+  /**
+   * The timestamp format.
+   */
+  @Param({ "DATE_TIME", "DATE_AND_TIME", "UNIX" })
+  public String format;
+
+  /**
+   * The number of lines in the file.
+   */
+  @Param({ "10000" })
+  public int lines;
+
+  /**
+   * The date/time specification.
+   */
+  private DateTimeSpecification specification;
+
+  /**
+   * The fields of each line.
+   */
+  private List<List<String>> fileLines;
+
+  /**
+   * Create the date/time specification and the file contents.
+   *
+   * @throws Exception
+   *           If the specification cannot be created.
+   */
+  @Setup
+  public void setup() throws Exception {
+    specification = new DateTimeSpecification(false);
+    fileLines = new ArrayList<List<String>>(lines);
+
+    switch (format) {
+    case "DATE_TIME": {
+      specification.assign(DateTimeSpecification.DATE_TIME, 0,
+        "yyyy-MM-dd HH:mm:ss");
+
+      DateTimeFormatter formatter = DateTimeFormatter
+        .ofPattern("yyyy-MM-dd HH:mm:ss");
+      for (int i = 0; i < lines; i++) {
+        fileLines.add(
+          Arrays.asList(SyntheticData.time(i).format(formatter), "12.345"));
+      }
+      break;
+    }
+    case "DATE_AND_TIME": {
+      specification.assign(DateTimeSpecification.DATE, 0, "dd/MM/yyyy");
+      specification.assign(DateTimeSpecification.TIME, 1, "HH:mm:ss");
+
+      DateTimeFormatter dateFormatter = DateTimeFormatter
+        .ofPattern("dd/MM/yyyy");
+      DateTimeFormatter timeFormatter = DateTimeFormatter
+        .ofPattern("HH:mm:ss");
+      for (int i = 0; i < lines; i++) {
+        LocalDateTime time = SyntheticData.time(i);
+        fileLines.add(Arrays.asList(time.format(dateFormatter),
+          time.format(timeFormatter), "12.345"));
+      }
+      break;
+    }
+    case "UNIX": {
+      specification.assign(DateTimeSpecification.UNIX, 0, null);
+
+      for (int i = 0; i < lines; i++) {
+        fileLines.add(Arrays.asList(
+          String.valueOf(SyntheticData.time(i).toEpochSecond(ZoneOffset.UTC)),
+          "12.345"));
+      }
+      break;
+    }
+    default: {
+      throw new IllegalArgumentException("Unknown format " + format);
+    }
+    }
+  }
+
+  /**
+   * Parse the timestamps of all the lines in the file.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   * @throws Exception
+   *           If a timestamp cannot be parsed.
+   */
+  @Benchmark
+  public void getDateTime(Blackhole blackhole) throws Exception {
+    for (List<String> line : fileLines) {
+      blackhole.consume(specification.getDateTime(null, line));
+    }
+  }
+}
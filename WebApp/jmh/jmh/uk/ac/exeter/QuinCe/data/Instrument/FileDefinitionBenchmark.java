@@ -0,0 +1,126 @@
+package jmh.uk.ac.exeter.QuinCe.data.Instrument;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
+
+/**
+ * Benchmark for {@link FileDefinition#extractFields(String)}, which splits
+ * every line of every uploaded file.
+ *
+ * <p>
+ * Each invocation splits all the lines of a synthetic data file. The file has
+ * a date/time column followed by numeric columns, with a quoted text column
+ * every ten columns. Space separated files have a variable number of spaces
+ * between fields.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FileDefinitionBenchmark {
+
+  /**
+   * The column separator name (see {@link FileDefinition}).
+   */
+  @Param({ "COMMA", "TAB", "SPACE" })
+  public String separator;
+
+  /**
+   * The number of columns in the file.
+   */
+  @Param({ "20", "100" })
+  public int columns;
+
+  /**
+   * The number of lines in the file.
+   */
+  @Param({ "10000" })
+  public int lines;
+
+  /**
+   * The file definition.
+   */
+  private FileDefinition fileDefinition;
+
+  /**
+   * The file lines.
+   */
+  private List<String> fileLines;
+
+  /**
+   * Create the file definition and the file contents.
+   *
+   * @throws Exception
+   *           If the file definition cannot be created.
+   */
+  @Setup
+  public void setup() throws Exception {
+    fileDefinition = new FileDefinition("Benchmark", null);
+    fileDefinition.setSeparatorName(separator);
+    fileDefinition.setColumnCount(columns);
+
+    boolean space = separator.equals("SPACE");
+    String separatorChar = fileDefinition.getSeparator();
+    DateTimeFormatter formatter = space
+      ? DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss")
+      : DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    Random random = SyntheticData.random();
+    fileLines = new ArrayList<String>(lines);
+
+    for (int i = 0; i < lines; i++) {
+      StringBuilder line = new StringBuilder();
+      line.append(SyntheticData.time(i).format(formatter));
+
+      for (int c = 1; c < columns; c++) {
+        line.append(separatorChar);
+        if (space && random.nextBoolean()) {
+          line.append("   ");
+        }
+
+        if (c % 10 == 0) {
+          line.append("\"RUN_").append(i / 100).append('"');
+        } else {
+          line.append(SyntheticData.value(random, c * 10, c));
+        }
+      }
+
+      fileLines.add(line.toString());
+    }
+  }
+
+  /**
+   * Split all the lines in the file.
+   *
+   * @param blackhole
+   *          The blackhole that consumes the results.
+   */
+  @Benchmark
+  public void extractFields(Blackhole blackhole) {
+    for (String line : fileLines) {
+      blackhole.consume(fileDefinition.extractFields(line));
+    }
+  }
+}
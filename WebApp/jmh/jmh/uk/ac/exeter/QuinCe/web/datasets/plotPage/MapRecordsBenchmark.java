@@ -0,0 +1,127 @@
+package jmh.uk.ac.exeter.QuinCe.web.datasets.plotPage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.javadocmd.simplelatlng.LatLng;
+
+import jmh.uk.ac.exeter.QuinCe.BenchmarkBase.SyntheticData;
+import uk.ac.exeter.QuinCe.data.Dataset.GeoBounds;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.MapRecords;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.TimeMapRecord;
+
+/**
+ * Benchmark for generating the map data with
+ * {@link MapRecords#getDisplayJson}.
+ *
+ * <p>
+ * The records form a synthetic cruise track of {@link #size} positions, one
+ * per minute, heading broadly north-east from the Western Approaches. The map
+ * is either showing the whole world or zoomed to the middle part of the
+ * track. The spatial index is built during setup, as it is when the map is
+ * first displayed.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MapRecordsBenchmark {
+
+  /**
+   * Bounds covering the whole world.
+   */
+  private static final GeoBounds WORLD = new GeoBounds(-180, 180, -90, 90);
+
+  /**
+   * The number of records.
+   */
+  @Param({ "10000", "100000", "1000000" })
+  public int size;
+
+  /**
+   * Indicates whether the map is zoomed in on part of the track.
+   */
+  @Param({ "false", "true" })
+  public boolean zoomed;
+
+  /**
+   * The records.
+   */
+  private MapRecords records;
+
+  /**
+   * The displayed bounds.
+   */
+  private GeoBounds bounds;
+
+  /**
+   * The selected rows. Always empty.
+   */
+  private List<Long> selectedRows;
+
+  /**
+   * Build the records and their spatial index.
+   */
+  @Setup
+  public void setup() {
+    Random random = SyntheticData.random();
+    records = new MapRecords(size);
+
+    double lon = -10;
+    double lat = 45;
+
+    double minLon = Double.MAX_VALUE;
+    double maxLon = -Double.MAX_VALUE;
+    double minLat = Double.MAX_VALUE;
+    double maxLat = -Double.MAX_VALUE;
+
+    for (int i = 0; i < size; i++) {
+      lon += (random.nextDouble() - 0.3) * 0.002;
+      lat += (random.nextDouble() - 0.3) * 0.002;
+
+      // Record the extent of the middle half of the track
+      if (i >= size / 4 && i < size * 3 / 4) {
+        minLon = Math.min(minLon, lon);
+        maxLon = Math.max(maxLon, lon);
+        minLat = Math.min(minLat, lat);
+        maxLat = Math.max(maxLat, lat);
+      }
+
+      records.add(
+        new TimeMapRecord(new LatLng(lat, lon), SyntheticData.time(i * 60L)));
+    }
+
+    bounds = zoomed ? new GeoBounds(minLon, maxLon, minLat, maxLat) : WORLD;
+    selectedRows = new ArrayList<Long>();
+
+    // Build the spatial index
+    records.getDisplayJson(WORLD, selectedRows, true, false);
+  }
+
+  /**
+   * Generate the map data.
+   *
+   * @return The map data.
+   */
+  @Benchmark
+  public String getDisplayJson() {
+    return records.getDisplayJson(bounds, selectedRows, true, false);
+  }
+}
@@ -0,0 +1,290 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset.DataReduction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.CalculationParameter;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ControsPco2Reducer;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReducer;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionException;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionRecord;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionTask;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for running {@link DataReductionTask}s in parallel.
+ *
+ * <p>
+ * The tests use the CONTROS pCO₂ dataset from the {@link ControsPco2Reducer}
+ * tests. The measurements are split into small chunks so there are several
+ * tasks to run at once.
+ * </p>
+ */
+public class DataReductionTaskTest extends BaseTest {
+
+  /**
+   * The database ID of the {@link Instrument} in the FlyWay test data.
+   */
+  private static final long INSTRUMENT_ID = 124L;
+
+  /**
+   * The database ID of the {@link DataSet} in the FlyWay test data.
+   */
+  private static final long DATASET_ID = 2765L;
+
+  /**
+   * The number of measurements in each task.
+   */
+  private static final int CHUNK_SIZE = 3;
+
+  /**
+   * The number of threads in the parallel pool.
+   */
+  private static final int THREADS = 4;
+
+  /**
+   * The thread pool.
+   */
+  private ForkJoinPool pool;
+
+  /**
+   * Initialise the Resource Manager and the thread pool.
+   */
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+    pool = new ForkJoinPool(THREADS);
+  }
+
+  /**
+   * Shut down the thread pool and destroy the Resource Manager.
+   */
+  @AfterEach
+  public void tearDown() {
+    pool.shutdown();
+    ResourceManager.destroy();
+  }
+
+  /**
+   * Get the CONTROS {@link Variable}.
+   *
+   * @return The Variable.
+   * @throws Exception
+   *           If the Variable cannot be retrieved.
+   */
+  private Variable getVariable() throws Exception {
+    List<Variable> variables = InstrumentDB.getAllVariables(getDataSource());
+    return variables.stream().filter(v -> v.getName().equals("CONTROS pCO₂"))
+      .findAny().get();
+  }
+
+  /**
+   * Get the measurements in the test dataset that are reduced for the CONTROS
+   * variable, split into chunks.
+   *
+   * @param instrument
+   *          The instrument.
+   * @param allMeasurements
+   *          All the measurements in the dataset.
+   * @return The chunks of measurements.
+   * @throws Exception
+   *           If the measurements' Run Types cannot be checked.
+   */
+  private List<List<Measurement>> makeChunks(Instrument instrument,
+    List<Measurement> allMeasurements) throws Exception {
+
+    Variable variable = getVariable();
+
+    List<List<Measurement>> chunks = new ArrayList<List<Measurement>>();
+    List<Measurement> chunk = null;
+
+    for (Measurement measurement : allMeasurements) {
+      if (instrument.isRunTypeForVariable(variable,
+        measurement.getRunType(variable))) {
+
+        if (null == chunk || chunk.size() == CHUNK_SIZE) {
+          chunk = new ArrayList<Measurement>(CHUNK_SIZE);
+          chunks.add(chunk);
+        }
+
+        chunk.add(measurement);
+      }
+    }
+
+    return chunks;
+  }
+
+  /**
+   * Make the tasks for a reducer.
+   *
+   * @param reducer
+   *          The reducer.
+   * @param instrument
+   *          The instrument.
+   * @param chunks
+   *          The chunks of measurements.
+   * @return The tasks.
+   */
+  private List<DataReductionTask> makeTasks(DataReducer reducer,
+    Instrument instrument, List<List<Measurement>> chunks) {
+
+    List<DataReductionTask> tasks = new ArrayList<DataReductionTask>(
+      chunks.size());
+    for (List<Measurement> chunk : chunks) {
+      tasks.add(new DataReductionTask(reducer, instrument, chunk));
+    }
+
+    return tasks;
+  }
+
+  /**
+   * Summarise a set of data reduction records so they can be compared.
+   *
+   * @param reducer
+   *          The reducer that created the records.
+   * @param records
+   *          The records.
+   * @return The record summaries.
+   */
+  private List<String> summarise(DataReducer reducer,
+    List<DataReductionRecord> records) {
+
+    List<String> result = new ArrayList<String>(records.size());
+
+    for (DataReductionRecord record : records) {
+      StringBuilder summary = new StringBuilder();
+      summary.append(record.getMeasurementId());
+      for (String parameter : reducer.getCalculationParameterNames()) {
+        summary.append('/');
+        summary.append(record.getCalculationValue(parameter));
+      }
+      summary.append('/');
+      summary.append(record.getQCFlag());
+      summary.append('/');
+      summary.append(record.getQCMessages());
+
+      result.add(summary.toString());
+    }
+
+    return result;
+  }
+
+  /**
+   * Test that reducing the measurements in parallel gives the same records,
+   * in the same order, as reducing them on the calling thread.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/post-calibration" })
+  @Test
+  public void parallelMatchesSerialTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      DataSet dataSet = DataSetDB.getDataSet(conn, DATASET_ID);
+      List<Measurement> allMeasurements = DataSetDataDB
+        .getMeasurementsByRunType(conn, instrument, DATASET_ID)
+        .getTimeOrderedMeasurements();
+
+      ControsPco2Reducer reducer = new ControsPco2Reducer(getVariable(),
+        dataSet.getAllProperties());
+      reducer.preprocess(conn, instrument, dataSet, allMeasurements);
+
+      List<List<Measurement>> chunks = makeChunks(instrument,
+        allMeasurements);
+
+      List<DataReductionRecord> serial = DataReductionTask
+        .runAll(makeTasks(reducer, instrument, chunks), null);
+
+      List<DataReductionRecord> parallel = DataReductionTask
+        .runAll(makeTasks(reducer, instrument, chunks), pool);
+
+      assertEquals(chunks.stream().mapToInt(List::size).sum(), serial.size());
+      assertEquals(summarise(reducer, serial), summarise(reducer, parallel));
+    }
+  }
+
+  /**
+   * Test that a failing task causes the whole reduction to fail, and that
+   * the other tasks have all finished when the failure is reported.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros" })
+  @Test
+  public void failedTaskTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      List<Measurement> allMeasurements = DataSetDataDB
+        .getMeasurementsByRunType(conn, instrument, DATASET_ID)
+        .getTimeOrderedMeasurements();
+
+      List<List<Measurement>> chunks = makeChunks(instrument,
+        allMeasurements);
+
+      // Fail on every measurement in the second chunk
+      List<Measurement> failingChunk = chunks.get(1);
+      AtomicInteger reducedCount = new AtomicInteger(0);
+
+      DataReducer reducer = new DataReducer(getVariable(),
+        Map.of(getVariable().getName(), new Properties())) {
+
+        @Override
+        public void doCalculation(Instrument instrument,
+          Measurement measurement, DataReductionRecord record,
+          Connection conn) throws DataReductionException {
+
+          if (failingChunk.contains(measurement)) {
+            throw new DataReductionException("Test failure");
+          }
+
+          reducedCount.incrementAndGet();
+        }
+
+        @Override
+        public List<CalculationParameter> getCalculationParameters() {
+          return new ArrayList<CalculationParameter>();
+        }
+      };
+
+      assertThrows(DataReductionException.class, () -> {
+        DataReductionTask.runAll(makeTasks(reducer, instrument, chunks),
+          pool);
+      });
+
+      int otherMeasurements = chunks.stream().mapToInt(List::size).sum()
+        - failingChunk.size();
+      assertEquals(otherMeasurements, reducedCount.get());
+    }
+  }
+}
@@ -9,12 +9,14 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.flywaydb.test.annotation.FlywayTest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
 import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
 import uk.ac.exeter.QuinCe.data.Dataset.InvalidSensorValueException;
@@ -346,4 +348,102 @@ public class DataSetDataDBTest extends BaseTest {
         true, false).size(),
       "Values not removed");
   }
+
+  /**
+   * Test that the bulk load stores all values, including those in the
+   * partially filled final chunk.
+   *
+   * @throws Exception
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void bulkStoreSensorValuesTest() throws Exception {
+
+    LocalDateTime startTime = LocalDateTime.of(2021, 1, 1, 0, 0, 0);
+
+    List<SensorValue> values = new ArrayList<SensorValue>();
+    for (int i = 0; i < 2500; i++) {
+      values.add(new SensorValue(DATASET_ID, COLUMN_ID,
+        startTime.plusMinutes(i), String.valueOf(i)));
+    }
+
+    int stored = DataSetDataDB.bulkStoreSensorValues(getConnection(),
+      DataSetDB.getDataSet(getConnection(), DATASET_ID),
+      InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID), values);
+
+    assertEquals(2500, stored);
+    assertFalse(values.get(0).isDirty(), "Dirty flag not cleared");
+
+    SensorValuesList storedValues = DataSetDataDB
+      .getSensorValues(getConnection(),
+        InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID),
+        DATASET_ID, false, false)
+      .getColumnValues(COLUMN_ID);
+
+    assertEquals(2500, storedValues.rawSize());
+    assertEquals("0", storedValues.getRawSensorValue(startTime).getValue());
+    assertEquals("2499", storedValues
+      .getRawSensorValue(startTime.plusMinutes(2499)).getValue());
+    assertEquals(new AutoQCResult(),
+      storedValues.getRawSensorValue(startTime).getAutoQcResult());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void bulkStoreSensorValuesInvalidColumnTest() throws Exception {
+    SensorValue sensorValue = new SensorValue(DATASET_ID, COLUMN_ID,
+      LocalDateTime.of(2021, 1, 1, 0, 0, 0), "20");
+    SensorValue badValue = new SensorValue(DATASET_ID, 7000L,
+      LocalDateTime.of(2021, 1, 1, 0, 1, 0), "20");
+
+    assertThrows(InvalidSensorValueException.class, () -> {
+      DataSetDataDB.bulkStoreSensorValues(getConnection(),
+        DataSetDB.getDataSet(getConnection(), DATASET_ID),
+        InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID),
+        Arrays.asList(sensorValue, badValue));
+    });
+
+    assertEquals(0,
+      DataSetDataDB.getSensorValues(getConnection(),
+        InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID), DATASET_ID,
+        false, false).size(),
+      "Value has been stored; should not have been");
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void bulkStoreSensorValuesWrongDatasetTest() throws Exception {
+    SensorValue sensorValue = new SensorValue(7000L, COLUMN_ID,
+      LocalDateTime.of(2021, 1, 1, 0, 0, 0), "20");
+
+    assertThrows(InvalidSensorValueException.class, () -> {
+      DataSetDataDB.bulkStoreSensorValues(getConnection(),
+        DataSetDB.getDataSet(getConnection(), DATASET_ID),
+        InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID),
+        Arrays.asList(sensorValue));
+    });
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void bulkStoreSensorValuesExistingValueTest() throws Exception {
+    SensorValue sensorValue = new SensorValue(1L, DATASET_ID, COLUMN_ID,
+      LocalDateTime.of(2021, 1, 1, 0, 0, 0), "20", null, Flag.ASSUMED_GOOD,
+      null);
+
+    assertThrows(InvalidSensorValueException.class, () -> {
+      DataSetDataDB.bulkStoreSensorValues(getConnection(),
+        DataSetDB.getDataSet(getConnection(), DATASET_ID),
+        InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID),
+        Arrays.asList(sensorValue));
+    });
+  }
 }
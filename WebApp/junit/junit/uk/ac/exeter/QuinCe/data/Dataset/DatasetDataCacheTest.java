@@ -0,0 +1,112 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetDataCache;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link DatasetDataCache}.
+ */
+public class DatasetDataCacheTest extends BaseTest {
+
+  private static final long INSTRUMENT_ID = 1L;
+
+  private static final long DATASET_ID = 1L;
+
+  @BeforeEach
+  public void setUp() {
+    initResourceManager();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    ResourceManager.destroy();
+  }
+
+  private Instrument getInstrument() throws Exception {
+    return InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID);
+  }
+
+  private DataSet getDataset() throws Exception {
+    return DataSetDB.getDataSet(getConnection(), DATASET_ID);
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void sharedEntryTest() throws Exception {
+    DatasetDataCache cache = DatasetDataCache.getInstance();
+
+    DatasetDataCache.Entry first = cache.get(getConnection(), getInstrument(),
+      getDataset());
+    DatasetDataCache.Entry second = cache.get(getConnection(),
+      getInstrument(), getDataset());
+
+    assertSame(first, second);
+    assertEquals(1, cache.size());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void statusChangedTest() throws Exception {
+    DatasetDataCache cache = DatasetDataCache.getInstance();
+
+    DatasetDataCache.Entry first = cache.get(getConnection(), getInstrument(),
+      getDataset());
+
+    DataSet changed = getDataset();
+    changed.setStatus(DataSet.STATUS_DATA_REDUCTION);
+
+    assertNotSame(first,
+      cache.get(getConnection(), getInstrument(), changed));
+    assertEquals(1, cache.size());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void invalidateTest() throws Exception {
+    DatasetDataCache cache = DatasetDataCache.getInstance();
+
+    DatasetDataCache.Entry first = cache.get(getConnection(), getInstrument(),
+      getDataset());
+
+    cache.invalidate(DATASET_ID);
+    assertEquals(0, cache.size());
+
+    assertNotSame(first,
+      cache.get(getConnection(), getInstrument(), getDataset()));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void entryUnmodifiableTest() throws Exception {
+    DatasetDataCache.Entry entry = DatasetDataCache.getInstance()
+      .get(getConnection(), getInstrument(), getDataset());
+
+    assertThrows(UnsupportedOperationException.class,
+      () -> entry.getMeasurements().clear());
+    assertThrows(UnsupportedOperationException.class,
+      () -> entry.getDataReduction().clear());
+  }
+}
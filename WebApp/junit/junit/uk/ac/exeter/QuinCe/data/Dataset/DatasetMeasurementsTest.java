@@ -0,0 +1,139 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetMeasurements;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Dataset.MeasurementValue;
+
+/**
+ * Tests for the run lookups in {@link DatasetMeasurements}.
+ */
+public class DatasetMeasurementsTest extends BaseTest {
+
+  private static final long VARIABLE_ID = Measurement.RUN_TYPE_DEFINES_VARIABLE;
+
+  private static final LocalDateTime START_TIME = LocalDateTime.of(2023, 1, 1,
+    0, 0, 0);
+
+  /**
+   * The Run Types of the test measurements, one per minute.
+   */
+  private static final String[] RUN_TYPES = { "STD1", "STD1", "STD2", "STD2",
+    "STD2", "MEAS", "MEAS", "MEAS", "MEAS", "STD1", "STD1", "STD2", "STD2",
+    "MEAS", "MEAS" };
+
+  private DatasetMeasurements makeMeasurements() {
+    DatasetMeasurements measurements = new DatasetMeasurements();
+
+    for (int i = 0; i < RUN_TYPES.length; i++) {
+      Map<Long, String> runTypes = new HashMap<Long, String>();
+      runTypes.put(VARIABLE_ID, RUN_TYPES[i]);
+
+      measurements.addMeasurement(new Measurement(i + 1, 1L, minute(i),
+        runTypes, new HashMap<Long, MeasurementValue>()));
+    }
+
+    return measurements;
+  }
+
+  private LocalDateTime minute(int minute) {
+    return START_TIME.plusMinutes(minute);
+  }
+
+  private void checkRun(List<Measurement> run, int firstMinute,
+    int lastMinute) {
+    assertEquals(lastMinute - firstMinute + 1, run.size());
+    for (int i = 0; i < run.size(); i++) {
+      assertEquals(minute(firstMinute + i), run.get(i).getTime());
+    }
+  }
+
+  @Test
+  public void sameRunTest() {
+    DatasetMeasurements measurements = makeMeasurements();
+    List<Measurement> all = measurements.getTimeOrderedMeasurements();
+
+    checkRun(measurements.getMeasurementsInSameRun(VARIABLE_ID, all.get(0)), 0,
+      1);
+    checkRun(measurements.getMeasurementsInSameRun(VARIABLE_ID, all.get(3)), 2,
+      4);
+    checkRun(measurements.getMeasurementsInSameRun(VARIABLE_ID, all.get(8)), 5,
+      8);
+    checkRun(measurements.getMeasurementsInSameRun(VARIABLE_ID, all.get(14)),
+      13, 14);
+  }
+
+  @Test
+  public void runBeforeTest() {
+    DatasetMeasurements measurements = makeMeasurements();
+
+    checkRun(measurements.getRunBefore(VARIABLE_ID, "STD1", minute(7)), 0, 1);
+    checkRun(measurements.getRunBefore(VARIABLE_ID, "STD2", minute(14)), 11,
+      12);
+
+    // The run containing the time is returned if it started before the time
+    checkRun(measurements.getRunBefore(VARIABLE_ID, "STD2", minute(3)), 2, 4);
+
+    assertTrue(
+      measurements.getRunBefore(VARIABLE_ID, "STD1", minute(0)).isEmpty());
+  }
+
+  @Test
+  public void runAfterTest() {
+    DatasetMeasurements measurements = makeMeasurements();
+
+    checkRun(measurements.getRunAfter(VARIABLE_ID, "STD1", minute(7)), 9, 10);
+    checkRun(measurements.getRunAfter(VARIABLE_ID, "STD2", minute(0)), 2, 4);
+
+    // The run containing the time is returned if it ends after the time
+    checkRun(measurements.getRunAfter(VARIABLE_ID, "STD2", minute(11)), 11,
+      12);
+
+    assertTrue(
+      measurements.getRunAfter(VARIABLE_ID, "STD1", minute(10)).isEmpty());
+  }
+
+  @Test
+  public void unknownRunTypeTest() {
+    DatasetMeasurements measurements = makeMeasurements();
+    assertTrue(
+      measurements.getRunBefore(VARIABLE_ID, "STD3", minute(14)).isEmpty());
+    assertTrue(
+      measurements.getRunAfter(VARIABLE_ID, "STD3", minute(0)).isEmpty());
+  }
+
+  @Test
+  public void indexRebuiltAfterAddTest() {
+    DatasetMeasurements measurements = makeMeasurements();
+    checkRun(measurements.getRunAfter(VARIABLE_ID, "MEAS", minute(12)), 13,
+      14);
+
+    Map<Long, String> runTypes = new HashMap<Long, String>();
+    runTypes.put(VARIABLE_ID, "MEAS");
+    measurements.addMeasurement(new Measurement(100L, 1L, minute(15), runTypes,
+      new HashMap<Long, MeasurementValue>()));
+
+    checkRun(measurements.getRunAfter(VARIABLE_ID, "MEAS", minute(12)), 13,
+      15);
+  }
+
+  @Test
+  public void runIsUnmodifiableTest() {
+    DatasetMeasurements measurements = makeMeasurements();
+    List<Measurement> run = measurements.getRunBefore(VARIABLE_ID, "STD1",
+      minute(7));
+
+    assertThrows(UnsupportedOperationException.class, () -> run.remove(0));
+  }
+}
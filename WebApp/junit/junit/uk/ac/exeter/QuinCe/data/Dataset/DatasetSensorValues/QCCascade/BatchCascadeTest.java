@@ -0,0 +1,283 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues.QCCascade;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.RunTypePeriods;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+
+/**
+ * Tests for applying the QC cascade from several sources at once with
+ * {@link DatasetSensorValues#applyQCCascade(java.util.Collection, RunTypePeriods)}.
+ *
+ * <p>
+ * The dataset has values at five times, one minute apart. The diagnostic
+ * sensors affect the other sensors as follows:
+ * </p>
+ * <table>
+ * <caption>Diagnostic sensors and the Run Types they affect.</caption>
+ * <tr>
+ * <th>Diagnostic Sensor</th>
+ * <th>Affects SST with Run Types</th>
+ * <th>Affects CO₂ with Run Types</th>
+ * </tr>
+ * <tr>
+ * <td>Water Flow</td>
+ * <td>var_1, var_2</td>
+ * <td>var_1, var_3</td>
+ * </tr>
+ * <tr>
+ * <td>Air Flow</td>
+ * <td>None</td>
+ * <td>var_2, var_3</td>
+ * </tr>
+ * </table>
+ */
+public class BatchCascadeTest extends BaseTest {
+
+  private static final long RUN_TYPE_COLUMN_ID = 1L;
+
+  private static final long FIRST_SST_ID = 200L;
+
+  private static final long FIRST_CO2_ID = 400L;
+
+  private static final long WATER_MINUTE_0_ID = 500L;
+
+  private static final long WATER_MINUTE_1_ID = 501L;
+
+  private static final long WATER_MINUTE_2_5_ID = 502L;
+
+  private static final long GAS_MINUTE_3_ID = 603L;
+
+  private static final long GAS_MINUTE_4_ID = 604L;
+
+  private static final int VALUE_COUNT = 5;
+
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+  }
+
+  /**
+   * Load the dataset's sensor values.
+   *
+   * @param conn
+   *          A database connection.
+   * @return The sensor values.
+   * @throws Exception
+   *           If the values cannot be loaded.
+   */
+  private DatasetSensorValues loadSensorValues(Connection conn)
+    throws Exception {
+    Instrument instrument = InstrumentDB.getInstrument(conn, 1L);
+    return DataSetDataDB.getSensorValues(conn, instrument, 1L, false, false);
+  }
+
+  /**
+   * Build the Run Type periods from the dataset's Run Type values.
+   *
+   * @param sensorValues
+   *          The sensor values.
+   * @return The Run Type periods.
+   * @throws Exception
+   *           If the periods cannot be built.
+   */
+  private RunTypePeriods makeRunTypePeriods(DatasetSensorValues sensorValues)
+    throws Exception {
+    RunTypePeriods result = new RunTypePeriods();
+    for (SensorValue runType : sensorValues
+      .getColumnValues(RUN_TYPE_COLUMN_ID).getRawValues()) {
+      result.add(runType.getValue(), runType.getTime());
+    }
+
+    result.finish();
+    return result;
+  }
+
+  /**
+   * Set the user QC flags on the diagnostic values and return them as cascade
+   * sources.
+   *
+   * @param sensorValues
+   *          The sensor values.
+   * @return The cascade sources.
+   * @throws Exception
+   *           If the flags cannot be set.
+   */
+  private List<SensorValue> setSourceFlags(DatasetSensorValues sensorValues)
+    throws Exception {
+
+    List<SensorValue> sources = new ArrayList<SensorValue>();
+
+    sources.add(setFlag(sensorValues, WATER_MINUTE_0_ID, Flag.BAD));
+    sources.add(setFlag(sensorValues, WATER_MINUTE_1_ID, Flag.GOOD));
+    sources.add(setFlag(sensorValues, WATER_MINUTE_2_5_ID, Flag.BAD));
+    sources.add(setFlag(sensorValues, GAS_MINUTE_3_ID, Flag.QUESTIONABLE));
+    sources.add(setFlag(sensorValues, GAS_MINUTE_4_ID, Flag.BAD));
+
+    return sources;
+  }
+
+  /**
+   * Set the user QC flag on a value.
+   *
+   * @param sensorValues
+   *          The sensor values.
+   * @param id
+   *          The value's database ID.
+   * @param flag
+   *          The flag.
+   * @return The value.
+   * @throws Exception
+   *           If the flag cannot be set.
+   */
+  private SensorValue setFlag(DatasetSensorValues sensorValues, long id,
+    Flag flag) throws Exception {
+    SensorValue value = sensorValues.getById(id);
+    value.setUserQC(flag, flag.isGood() ? "" : "Diagnostic");
+    return value;
+  }
+
+  /**
+   * Check the user QC of a value.
+   *
+   * @param sensorValues
+   *          The sensor values.
+   * @param id
+   *          The value's database ID.
+   * @param expectedSources
+   *          The IDs of the cascade sources expected in the value's QC
+   *          message, or {@code null} if the value should not have been
+   *          affected by the cascade.
+   */
+  private void checkValue(DatasetSensorValues sensorValues, long id,
+    String expectedSources) {
+
+    SensorValue value = sensorValues.getById(id);
+
+    if (null == expectedSources) {
+      assertEquals(Flag.ASSUMED_GOOD, value.getUserQCFlag(),
+        "Incorrect flag for value " + id);
+    } else {
+      assertEquals(Flag.LOOKUP, value.getUserQCFlag(),
+        "Incorrect flag for value " + id);
+      assertEquals(expectedSources, value.getUserQCMessage(),
+        "Incorrect sources for value " + id);
+    }
+  }
+
+  /**
+   * Test that a batch of sources at different times cascades to the correct
+   * values: exact time matches, the values either side of a source between
+   * two times, and only for the affected Run Types.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = {
+    "resources/sql/testbase/DataReduction/base",
+    "resources/sql/data/DataSet/BatchCascadeTest" })
+  @Test
+  public void batchCascadeTest() throws Exception {
+    try (Connection conn = getConnection()) {
+      DatasetSensorValues sensorValues = loadSensorValues(conn);
+      RunTypePeriods runTypePeriods = makeRunTypePeriods(sensorValues);
+
+      sensorValues.applyQCCascade(setSourceFlags(sensorValues),
+        runTypePeriods);
+
+      // SST: minute 0 from water (var_1), minutes 2 and 3 from the water
+      // value between them (var_2)
+      checkValue(sensorValues, FIRST_SST_ID, "500");
+      checkValue(sensorValues, FIRST_SST_ID + 1, null);
+      checkValue(sensorValues, FIRST_SST_ID + 2, "502");
+      checkValue(sensorValues, FIRST_SST_ID + 3, "502");
+      checkValue(sensorValues, FIRST_SST_ID + 4, null);
+
+      // CO2: minute 0 from water (var_1). Water does not affect var_2 at
+      // minutes 2 and 3, but gas does at minute 3. Minute 4 from gas (var_3).
+      checkValue(sensorValues, FIRST_CO2_ID, "500");
+      checkValue(sensorValues, FIRST_CO2_ID + 1, null);
+      checkValue(sensorValues, FIRST_CO2_ID + 2, null);
+      checkValue(sensorValues, FIRST_CO2_ID + 3, "603");
+      checkValue(sensorValues, FIRST_CO2_ID + 4, "604");
+    }
+  }
+
+  /**
+   * Test that setting a batch of sources back to Good removes their cascade.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = {
+    "resources/sql/testbase/DataReduction/base",
+    "resources/sql/data/DataSet/BatchCascadeTest" })
+  @Test
+  public void batchCascadeRemovedTest() throws Exception {
+    try (Connection conn = getConnection()) {
+      DatasetSensorValues sensorValues = loadSensorValues(conn);
+      RunTypePeriods runTypePeriods = makeRunTypePeriods(sensorValues);
+
+      List<SensorValue> sources = setSourceFlags(sensorValues);
+      sensorValues.applyQCCascade(sources, runTypePeriods);
+
+      for (SensorValue source : sources) {
+        source.setUserQC(Flag.GOOD, "");
+      }
+
+      sensorValues.applyQCCascade(sources, runTypePeriods);
+
+      for (int i = 0; i < VALUE_COUNT; i++) {
+        checkValue(sensorValues, FIRST_SST_ID + i, null);
+        checkValue(sensorValues, FIRST_CO2_ID + i, null);
+      }
+    }
+  }
+
+  /**
+   * Test that applying a batch of sources gives the same result as applying
+   * each source on its own.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = {
+    "resources/sql/testbase/DataReduction/base",
+    "resources/sql/data/DataSet/BatchCascadeTest" })
+  @Test
+  public void batchMatchesSingleCascadeTest() throws Exception {
+    try (Connection conn = getConnection()) {
+      DatasetSensorValues batchValues = loadSensorValues(conn);
+      RunTypePeriods runTypePeriods = makeRunTypePeriods(batchValues);
+      batchValues.applyQCCascade(setSourceFlags(batchValues), runTypePeriods);
+
+      DatasetSensorValues singleValues = loadSensorValues(conn);
+      for (SensorValue source : setSourceFlags(singleValues)) {
+        singleValues.applyQCCascade(source, runTypePeriods);
+      }
+
+      for (SensorValue batchValue : batchValues.getAll()) {
+        SensorValue singleValue = singleValues.getById(batchValue.getId());
+        assertEquals(singleValue.getUserQCFlag(), batchValue.getUserQCFlag(),
+          "Incorrect flag for value " + batchValue.getId());
+        assertEquals(singleValue.getUserQCMessage(),
+          batchValue.getUserQCMessage(),
+          "Incorrect message for value " + batchValue.getId());
+      }
+    }
+  }
+}
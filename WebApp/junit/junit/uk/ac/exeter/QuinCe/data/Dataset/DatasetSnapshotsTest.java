@@ -0,0 +1,209 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSnapshots;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineFlag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.RangeCheckRoutine;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link DatasetSnapshots}.
+ */
+public class DatasetSnapshotsTest extends BaseTest {
+
+  private static final long INSTRUMENT_ID = 1L;
+
+  private static final long DATASET_ID = 1L;
+
+  private static final long COLUMN_ID = 1L;
+
+  private static final LocalDateTime FIRST_TIME = LocalDateTime.of(2021, 1, 1,
+    0, 0, 0);
+
+  private static final LocalDateTime SECOND_TIME = LocalDateTime.of(2021, 1,
+    1, 0, 1, 0);
+
+  @BeforeEach
+  public void setUp() {
+    initResourceManager();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    DatasetSnapshots.getInstance().delete(DATASET_ID);
+    ResourceManager.destroy();
+  }
+
+  private void enableSnapshots() {
+    ResourceManager.getInstance().getConfig()
+      .setProperty(DatasetSnapshots.ENABLED_PROPERTY, "true");
+    ResourceManager.getInstance().getConfig().setProperty("filestore",
+      System.getProperty("java.io.tmpdir") + "/FILE_STORE");
+    DatasetSnapshots.destroy();
+  }
+
+  private Instrument getInstrument() throws Exception {
+    return InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID);
+  }
+
+  private DataSet getDataset() throws Exception {
+    return DataSetDB.getDataSet(getConnection(), DATASET_ID);
+  }
+
+  private void storeValues() throws Exception {
+    SensorValue first = new SensorValue(DATASET_ID, COLUMN_ID, FIRST_TIME,
+      "20");
+    first.addAutoQCFlag(
+      new RoutineFlag(new RangeCheckRoutine(), Flag.BAD, "0:10", "20"));
+    first.setUserQC(Flag.QUESTIONABLE, "Questionable \u00B0C value");
+
+    SensorValue second = new SensorValue(DATASET_ID, COLUMN_ID, SECOND_TIME,
+      null);
+
+    DataSetDataDB.storeSensorValues(getConnection(),
+      Arrays.asList(first, second));
+  }
+
+  private DatasetSensorValues getDatabaseValues() throws Exception {
+    return DataSetDataDB.getSensorValues(getConnection(), getInstrument(),
+      DATASET_ID, false, false);
+  }
+
+  private DatasetSensorValues getSnapshotValues(boolean ignoreFlushing)
+    throws Exception {
+    return DatasetSnapshots.getInstance().getSensorValues(getInstrument(),
+      DATASET_ID, ignoreFlushing, new TreeSet<Long>(), null);
+  }
+
+  private void assertSameValue(SensorValue expected, SensorValue actual) {
+    assertEquals(expected.getId(), actual.getId());
+    assertEquals(expected.getColumnId(), actual.getColumnId());
+    assertEquals(expected.getTime(), actual.getTime());
+    assertEquals(expected.getValue(), actual.getValue());
+    assertEquals(expected.getAutoQcResult(), actual.getAutoQcResult());
+    assertEquals(expected.getUserQCFlag(), actual.getUserQCFlag());
+    assertEquals(expected.getUserQCMessage(), actual.getUserQCMessage());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void disabledTest() throws Exception {
+    storeValues();
+
+    DatasetSnapshots snapshots = DatasetSnapshots.getInstance();
+    assertFalse(snapshots.isEnabled());
+
+    snapshots.write(getConnection(), DATASET_ID);
+    assertNull(getSnapshotValues(false));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void noSnapshotTest() throws Exception {
+    enableSnapshots();
+    assertNull(getSnapshotValues(false));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void snapshotMatchesDatabaseTest() throws Exception {
+    enableSnapshots();
+    storeValues();
+    DatasetSnapshots.getInstance().write(getConnection(), DATASET_ID);
+
+    DatasetSensorValues databaseValues = getDatabaseValues();
+    DatasetSensorValues snapshotValues = getSnapshotValues(false);
+
+    assertNotNull(snapshotValues);
+    assertEquals(databaseValues.size(), snapshotValues.size());
+
+    for (SensorValue value : databaseValues.getAll()) {
+      assertSameValue(value, snapshotValues.getById(value.getId()));
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void patchTest() throws Exception {
+    enableSnapshots();
+    storeValues();
+    DatasetSnapshots.getInstance().write(getConnection(), DATASET_ID);
+
+    SensorValue changed = getDatabaseValues().getColumnValues(COLUMN_ID)
+      .getRawSensorValue(FIRST_TIME);
+    changed.setUserQC(Flag.BAD, "Bad value");
+
+    DataSetDataDB.storeSensorValues(getConnection(), getDataset(),
+      List.of(changed));
+
+    SensorValue patched = getSnapshotValues(false).getById(changed.getId());
+    assertEquals(Flag.BAD, patched.getUserQCFlag());
+    assertSameValue(changed, patched);
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void ignoreFlushingTest() throws Exception {
+    enableSnapshots();
+    storeValues();
+    DatasetSnapshots.getInstance().write(getConnection(), DATASET_ID);
+
+    SensorValue flushing = getDatabaseValues().getColumnValues(COLUMN_ID)
+      .getRawSensorValue(FIRST_TIME);
+    flushing.setUserQC(Flag.FLUSHING, "Flushing");
+
+    DataSetDataDB.storeSensorValues(getConnection(), getDataset(),
+      List.of(flushing));
+
+    assertEquals(2, getSnapshotValues(false).size());
+    assertEquals(1, getSnapshotValues(true).size());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/variable", "resources/sql/testbase/instrument",
+    "resources/sql/testbase/dataset" })
+  @Test
+  public void deleteTest() throws Exception {
+    enableSnapshots();
+    storeValues();
+
+    DatasetSnapshots snapshots = DatasetSnapshots.getInstance();
+    snapshots.write(getConnection(), DATASET_ID);
+    snapshots.delete(DATASET_ID);
+
+    assertNull(getSnapshotValues(false));
+  }
+}
@@ -0,0 +1,215 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import junit.uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ControsPco2ReducerTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetWorkingSet;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link DatasetWorkingSet}.
+ *
+ * <p>
+ * Uses the same Flyway test data as {@link ControsPco2ReducerTest}.
+ * </p>
+ */
+public class DatasetWorkingSetTest extends BaseTest {
+
+  /**
+   * The database ID of the {@link Instrument} in the FlyWay test data.
+   */
+  private static final long INSTRUMENT_ID = 124L;
+
+  /**
+   * The database ID of the {@link DataSet} in the FlyWay test data.
+   */
+  private static final long DATASET_ID = 2765L;
+
+  /**
+   * Initialise the Resource Manager.
+   */
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+  }
+
+  /**
+   * Destroy the Resource Manager.
+   */
+  @AfterEach
+  public void tearDown() {
+    ResourceManager.destroy();
+  }
+
+  /**
+   * Get the database IDs of the {@link SensorValue}s in a
+   * {@link DatasetSensorValues} object.
+   *
+   * @param values
+   *          The sensor values.
+   * @return The IDs.
+   */
+  private Set<Long> getIds(DatasetSensorValues values) {
+    Set<Long> result = new TreeSet<Long>();
+    values.getAll().forEach(v -> result.add(v.getId()));
+    return result;
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros" })
+  @Test
+  public void sensorValuesMatchDatabaseTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+
+      DatasetWorkingSet workingSet = new DatasetWorkingSet(DATASET_ID);
+      workingSet
+        .setMeasurements(DataSetDataDB.getMeasurements(conn, DATASET_ID));
+
+      boolean[] options = new boolean[] { false, true };
+
+      for (boolean ignoreFlushing : options) {
+        for (boolean ignoreInternalCalibrations : options) {
+          assertEquals(
+            getIds(DataSetDataDB.getSensorValues(conn, instrument, DATASET_ID,
+              ignoreFlushing, ignoreInternalCalibrations)),
+            getIds(workingSet.getSensorValues(conn, instrument,
+              ignoreFlushing, ignoreInternalCalibrations)));
+        }
+      }
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros" })
+  @Test
+  public void sensorValuesSharedTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      DataSet dataset = DataSetDB.getDataSet(conn, DATASET_ID);
+
+      DatasetWorkingSet workingSet = new DatasetWorkingSet(DATASET_ID);
+      assertFalse(workingSet.hasSensorValues());
+
+      dataset.setWorkingSet(workingSet);
+
+      DatasetSensorValues first = DataSetDataDB.getSensorValues(conn,
+        instrument, dataset, false, false);
+      DatasetSensorValues second = DataSetDataDB.getSensorValues(conn,
+        instrument, dataset, true, true);
+
+      assertTrue(workingSet.hasSensorValues());
+      assertEquals(first.size(), workingSet.sensorValueCount());
+      assertNotSame(first, second);
+
+      for (SensorValue value : second.getAll()) {
+        assertSame(first.getById(value.getId()), value);
+      }
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros" })
+  @Test
+  public void measurementsTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      DataSet dataset = DataSetDB.getDataSet(conn, DATASET_ID);
+      DatasetWorkingSet workingSet = new DatasetWorkingSet(DATASET_ID);
+      dataset.setWorkingSet(workingSet);
+
+      // Without measurements in the working set, they come from the database
+      List<Measurement> dbMeasurements = DataSetDataDB.getMeasurements(conn,
+        dataset);
+      assertFalse(workingSet.hasMeasurements());
+      assertTrue(dbMeasurements.size() > 0);
+
+      workingSet.setMeasurements(dbMeasurements);
+
+      List<Measurement> workingSetMeasurements = DataSetDataDB
+        .getMeasurements(conn, dataset);
+      assertEquals(dbMeasurements.size(), workingSetMeasurements.size());
+      for (int i = 0; i < dbMeasurements.size(); i++) {
+        assertSame(dbMeasurements.get(i), workingSetMeasurements.get(i));
+      }
+
+      // The sorted list and run type grouping are built once and shared
+      assertSame(workingSetMeasurements,
+        DataSetDataDB.getMeasurements(conn, dataset));
+      assertSame(workingSet.getMeasurementsByRunType(),
+        workingSet.getMeasurementsByRunType());
+
+      workingSet.clearMeasurements();
+      assertFalse(workingSet.hasMeasurements());
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros" })
+  @Test
+  public void windowedTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      DataSet dataset = DataSetDB.getDataSet(conn, DATASET_ID);
+
+      List<SensorValue> allValues = new ArrayList<SensorValue>(DataSetDataDB
+        .getSensorValues(conn, instrument, DATASET_ID, false, false).getAll());
+      allValues.sort((a, b) -> a.getTime().compareTo(b.getTime()));
+      LocalDateTime windowStart = allValues.get(allValues.size() / 2)
+        .getTime();
+
+      Set<Long> expectedIds = new TreeSet<Long>();
+      allValues.stream().filter(v -> !v.getTime().isBefore(windowStart))
+        .forEach(v -> expectedIds.add(v.getId()));
+
+      DatasetWorkingSet workingSet = new DatasetWorkingSet(DATASET_ID,
+        windowStart);
+      assertTrue(workingSet.isWindowed());
+      dataset.setWorkingSet(workingSet);
+
+      assertEquals(expectedIds, getIds(DataSetDataDB.getSensorValues(conn,
+        instrument, dataset, false, false)));
+
+      // Measurements come from the database for the window only
+      List<Measurement> measurements = DataSetDataDB.getMeasurements(conn,
+        dataset);
+      assertFalse(workingSet.hasMeasurements());
+
+      long expectedCount = DataSetDataDB.getMeasurements(conn, DATASET_ID)
+        .stream().filter(m -> !m.getTime().isBefore(windowStart)).count();
+      assertEquals(expectedCount, measurements.size());
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Dataset.MeasurementDependencyIndex;
+import uk.ac.exeter.QuinCe.data.Dataset.MeasurementValue;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotPageTableValue;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link MeasurementDependencyIndex}.
+ *
+ * <p>
+ * The tests use ten values in column 1, one per minute with IDs 1 to 10, and a
+ * single value in column 2 with ID 20. Measurement 100 uses value 2 and has
+ * value 8 as a supporting value. Measurement 101 uses value 5. No other values
+ * are used.
+ * </p>
+ */
+public class MeasurementDependencyIndexTest extends BaseTest {
+
+  private static final long DATASET_ID = 1L;
+
+  private static final LocalDateTime START_TIME = LocalDateTime.of(2023, 1, 1,
+    0, 0, 0);
+
+  @BeforeEach
+  public void setUp() {
+    initResourceManager();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    ResourceManager.destroy();
+  }
+
+  private DatasetSensorValues makeSensorValues() throws Exception {
+    DatasetSensorValues sensorValues = new DatasetSensorValues(
+      InstrumentDB.getInstrument(getConnection(), 1L));
+
+    for (int i = 1; i <= 10; i++) {
+      sensorValues.add(new SensorValue(i, DATASET_ID, 1L,
+        START_TIME.plusMinutes(i - 1), "12", null, Flag.ASSUMED_GOOD, null));
+    }
+
+    sensorValues.add(new SensorValue(20L, DATASET_ID, 2L, START_TIME, "12",
+      null, Flag.ASSUMED_GOOD, null));
+
+    return sensorValues;
+  }
+
+  private Measurement makeMeasurement(long id, int minute,
+    List<Long> sensorValueIds, List<Long> supportingSensorValueIds)
+    throws Exception {
+
+    long sensorTypeId = ResourceManager.getInstance().getSensorsConfiguration()
+      .getSensorType("Water Temperature").getId();
+
+    HashMap<Long, MeasurementValue> values = new HashMap<Long, MeasurementValue>();
+    values.put(sensorTypeId,
+      new MeasurementValue(sensorTypeId, sensorValueIds,
+        supportingSensorValueIds, sensorValueIds.size(), 12D, Flag.GOOD,
+        new HashSet<String>(), PlotPageTableValue.MEASURED_TYPE,
+        new Properties()));
+
+    return new Measurement(id, DATASET_ID, START_TIME.plusMinutes(minute),
+      new HashMap<Long, String>(), values);
+  }
+
+  private MeasurementDependencyIndex makeIndex() throws Exception {
+    return new MeasurementDependencyIndex(Arrays.asList(
+      makeMeasurement(100L, 1, Arrays.asList(2L), Arrays.asList(8L)),
+      makeMeasurement(101L, 4, Arrays.asList(5L), Arrays.asList())));
+  }
+
+  private Set<Long> ids(Long... ids) {
+    return new TreeSet<Long>(Arrays.asList(ids));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void measurementIdsTest() throws Exception {
+    MeasurementDependencyIndex index = makeIndex();
+
+    assertEquals(ids(100L), index.getMeasurementIds(2L));
+    assertEquals(ids(100L), index.getMeasurementIds(8L));
+    assertEquals(ids(101L), index.getMeasurementIds(5L));
+    assertTrue(index.getMeasurementIds(3L).isEmpty());
+
+    assertTrue(index.isUsed(2L));
+    assertFalse(index.isUsed(3L));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void changedUsedValueTest() throws Exception {
+    // The measurement using value 2, plus the one using the next used value
+    assertEquals(ids(100L, 101L),
+      makeIndex().getAffectedMeasurementIds(makeSensorValues(), ids(2L)));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void changedUnusedValueTest() throws Exception {
+    // Value 4 is between values 2 and 5
+    assertEquals(ids(100L, 101L),
+      makeIndex().getAffectedMeasurementIds(makeSensorValues(), ids(4L)));
+
+    // Value 10 is after value 8, and nothing is after it
+    assertEquals(ids(100L),
+      makeIndex().getAffectedMeasurementIds(makeSensorValues(), ids(10L)));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void unusedColumnTest() throws Exception {
+    assertTrue(makeIndex()
+      .getAffectedMeasurementIds(makeSensorValues(), ids(20L)).isEmpty());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void unknownValueTest() throws Exception {
+    assertTrue(makeIndex()
+      .getAffectedMeasurementIds(makeSensorValues(), ids(999L)).isEmpty());
+  }
+}
@@ -0,0 +1,191 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset.QC.DataReduction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ControsPco2Reducer;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ReadOnlyDataReductionRecord;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.DataReduction.DataReductionQCRoutine;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.DataReduction.PostDataSetCalculationCoefficientCheckRoutine;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.FlaggedItems;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link PostDataSetCalculationCoefficientCheckRoutine}.
+ *
+ * <p>
+ * The routine must look for post-calibrations after the last measurement in
+ * the dataset, whichever of the dataset's records it is given. This matches
+ * the {@link ControsPco2Reducer}, and means that a recalculation of some of
+ * the dataset's measurements is flagged in the same way as the whole dataset.
+ * </p>
+ */
+public class PostDataSetCalculationCoefficientCheckRoutineTest
+  extends BaseTest {
+
+  /**
+   * The database ID of the {@link Instrument} in the FlyWay test data.
+   */
+  private static final long INSTRUMENT_ID = 124L;
+
+  /**
+   * The database ID of the {@link DataSet} in the FlyWay test data.
+   */
+  private static final long DATASET_ID = 2765L;
+
+  /**
+   * Initialise the Resource Manager.
+   */
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+  }
+
+  /**
+   * Destroy the Resource Manager.
+   */
+  @AfterEach
+  public void tearDown() {
+    ResourceManager.destroy();
+  }
+
+  /**
+   * Get the CONTROS {@link Variable}.
+   *
+   * @return The Variable.
+   * @throws Exception
+   *           If the Variable cannot be retrieved.
+   */
+  private Variable getVariable() throws Exception {
+    List<Variable> variables = InstrumentDB.getAllVariables(getDataSource());
+    return variables.stream().filter(v -> v.getName().equals("CONTROS pCO₂"))
+      .findAny().get();
+  }
+
+  /**
+   * Get the configured routine.
+   *
+   * @return The routine.
+   */
+  private DataReductionQCRoutine getRoutine() {
+    return ResourceManager.getInstance()
+      .getDataReductionQCRoutinesConfiguration()
+      .getRoutines(ControsPco2Reducer.class).stream()
+      .filter(r -> r instanceof PostDataSetCalculationCoefficientCheckRoutine)
+      .findAny().get();
+  }
+
+  /**
+   * Run the routine with records for a number of the dataset's measurements
+   * and return the QC flags of the records.
+   *
+   * @param recordCount
+   *          The number of measurements to be given records, starting from
+   *          the first measurement in the dataset.
+   * @return The QC flags of the records.
+   * @throws Exception
+   *           If the routine cannot be run.
+   */
+  private List<Flag> runRoutine(int recordCount) throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      DataSet dataSet = DataSetDB.getDataSet(conn, DATASET_ID);
+      Variable variable = getVariable();
+
+      List<Measurement> measurements = DataSetDataDB
+        .getMeasurementsByRunType(conn, instrument, DATASET_ID)
+        .getTimeOrderedMeasurements();
+
+      TreeMap<Measurement, ReadOnlyDataReductionRecord> records = new TreeMap<Measurement, ReadOnlyDataReductionRecord>();
+      for (Measurement measurement : measurements.subList(0, recordCount)) {
+        records.put(measurement,
+          ReadOnlyDataReductionRecord.makeRecord(measurement.getId(),
+            variable.getId(), new HashMap<String, Double>(), Flag.GOOD, ""));
+      }
+
+      DatasetSensorValues allSensorValues = DataSetDataDB.getSensorValues(conn,
+        instrument, DATASET_ID, false, false);
+
+      getRoutine().qc(conn, instrument, dataSet, variable, records,
+        allSensorValues, new FlaggedItems());
+
+      return records.values().stream().map(r -> r.getQCFlag()).toList();
+    }
+  }
+
+  /**
+   * Get the number of measurements in the test dataset.
+   *
+   * @return The number of measurements.
+   * @throws Exception
+   *           If the measurements cannot be retrieved.
+   */
+  private int getMeasurementCount() throws Exception {
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      return DataSetDataDB
+        .getMeasurementsByRunType(conn, instrument, DATASET_ID)
+        .getTimeOrderedMeasurements().size();
+    }
+  }
+
+  /**
+   * Test that records are not flagged when there is a calibration after the
+   * end of the dataset, whether the routine is given all the records or only
+   * the first.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/post-calibration" })
+  @Test
+  public void postCalibrationTest() throws Exception {
+    assertEquals(List.of(Flag.GOOD), runRoutine(1));
+    runRoutine(getMeasurementCount())
+      .forEach(f -> assertEquals(Flag.GOOD, f));
+  }
+
+  /**
+   * Test that records are flagged when the only calibration after the first
+   * measurement is part way through the dataset, whether the routine is given
+   * all the records or only the first.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration",
+    "resources/sql/data/DataSet/QC/PostDataSetCalculationCoefficientCheckRoutineTest/mid-calibration" })
+  @Test
+  public void midDatasetCalibrationTest() throws Exception {
+    assertEquals(List.of(Flag.NOT_CALIBRATED), runRoutine(1));
+    runRoutine(getMeasurementCount())
+      .forEach(f -> assertEquals(Flag.NOT_CALIBRATED, f));
+  }
+}
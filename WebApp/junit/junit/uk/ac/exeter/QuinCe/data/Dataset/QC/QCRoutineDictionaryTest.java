@@ -0,0 +1,154 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset.QC;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.QCRoutineDictionary;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link QCRoutineDictionary}, and for checking the routines in
+ * stored {@link AutoQCResult}s against it.
+ */
+public class QCRoutineDictionaryTest extends BaseTest {
+
+  private static final String RANGE_CHECK = "SensorValues.RangeCheck";
+
+  private static final String GRADIENT_TEST = "SensorValues.GradientTest";
+
+  @BeforeEach
+  public void setUp() {
+    initResourceManager();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    ResourceManager.destroy();
+  }
+
+  /**
+   * Add a routine to the database directly, as if it had been added by
+   * another application instance.
+   *
+   * @param id
+   *          The routine ID.
+   * @param name
+   *          The routine name.
+   * @throws Exception
+   *           If the routine cannot be added.
+   */
+  private void addRoutine(int id, String name) throws Exception {
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn
+        .prepareStatement("INSERT INTO qc_routines (id, name) VALUES (?, ?)")) {
+      stmt.setInt(1, id);
+      stmt.setString(2, name);
+      stmt.execute();
+    }
+  }
+
+  @FlywayTest
+  @Test
+  public void getIdTest() throws Exception {
+    QCRoutineDictionary dictionary = QCRoutineDictionary.getInstance();
+    int rangeId = dictionary.getId(RANGE_CHECK);
+
+    assertEquals(rangeId, dictionary.getId(RANGE_CHECK));
+    assertEquals(RANGE_CHECK, dictionary.getName(rangeId));
+
+    // A new dictionary reads the routine from the database
+    QCRoutineDictionary.destroy();
+    dictionary = QCRoutineDictionary.getInstance();
+    dictionary.checkId(rangeId);
+    assertEquals(RANGE_CHECK, dictionary.getName(rangeId));
+    assertEquals(rangeId, dictionary.getId(RANGE_CHECK));
+  }
+
+  @FlywayTest
+  @Test
+  public void checkIdAddedElsewhereTest() throws Exception {
+    QCRoutineDictionary dictionary = QCRoutineDictionary.getInstance();
+    dictionary.getId(RANGE_CHECK);
+
+    addRoutine(1000, GRADIENT_TEST);
+
+    // Not checked yet
+    assertThrows(IllegalArgumentException.class, () -> {
+      dictionary.getName(1000);
+    });
+
+    dictionary.checkId(1000);
+    assertEquals(GRADIENT_TEST, dictionary.getName(1000));
+  }
+
+  @FlywayTest
+  @Test
+  public void checkUnknownIdTest() throws Exception {
+    assertThrows(DatabaseException.class, () -> {
+      QCRoutineDictionary.getInstance().checkId(1000);
+    });
+  }
+
+  @FlywayTest
+  @Test
+  public void checkRoutinesTest() throws Exception {
+    addRoutine(1000, RANGE_CHECK);
+    addRoutine(1001, GRADIENT_TEST);
+
+    String encoded = "1000:4:\\N:12;1001:3:0.5:0.7";
+    assertDoesNotThrow(() -> AutoQCResult.checkRoutines(encoded));
+
+    AutoQCResult decoded = AutoQCResult.decode(encoded);
+    assertEquals(2, decoded.size());
+  }
+
+  @FlywayTest
+  @Test
+  public void checkRoutinesEscapedSeparatorTest() throws Exception {
+    addRoutine(1000, RANGE_CHECK);
+
+    // The escaped separator is not the start of another flag
+    assertDoesNotThrow(
+      () -> AutoQCResult.checkRoutines("1000:4:a\\;9999:b\\\\"));
+  }
+
+  @FlywayTest
+  @Test
+  public void checkRoutinesUnknownTest() throws Exception {
+    addRoutine(1000, RANGE_CHECK);
+
+    assertThrows(DatabaseException.class, () -> {
+      AutoQCResult.checkRoutines("1000:4:\\N:12;9999:3:0.5:0.7");
+    });
+  }
+
+  @FlywayTest
+  @Test
+  public void checkRoutinesInvalidTest() throws Exception {
+    assertThrows(DatabaseException.class, () -> {
+      AutoQCResult.checkRoutines("x:4:\\N:12");
+    });
+  }
+
+  @FlywayTest
+  @Test
+  public void checkRoutinesNotEncodedTest() throws Exception {
+    // Empty and JSON results have no routine IDs
+    assertDoesNotThrow(() -> AutoQCResult.checkRoutines(null));
+    assertDoesNotThrow(() -> AutoQCResult.checkRoutines(""));
+    assertDoesNotThrow(() -> AutoQCResult.checkRoutines(
+      "[{\"routineName\":\"SensorValues.RangeCheck\",\"flagValue\":3}]"));
+  }
+}
@@ -0,0 +1,104 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineFlag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
+
+/**
+ * Tests for the encoding of {@link AutoQCResult}s.
+ */
+public class AutoQCResultTest extends BaseTest {
+
+  private static final String RANGE_CHECK = "SensorValues.RangeCheck";
+
+  private static final String GRADIENT_TEST = "SensorValues.GradientTest";
+
+  private Map<String, Integer> makeIds() {
+    Map<String, Integer> ids = new HashMap<String, Integer>();
+    ids.put(RANGE_CHECK, 1);
+    ids.put(GRADIENT_TEST, 2);
+    return ids;
+  }
+
+  private String getName(int id) {
+    return id == 1 ? RANGE_CHECK : GRADIENT_TEST;
+  }
+
+  private RoutineFlag getFlag(AutoQCResult result, String routineName) {
+    return result.stream().filter(f -> f.getRoutineName().equals(routineName))
+      .findFirst().get();
+  }
+
+  @Test
+  public void emptyEncodeTest() {
+    assertNull(new AutoQCResult().encode(makeIds()::get));
+  }
+
+  @Test
+  public void emptyDecodeTest() {
+    assertTrue(AutoQCResult.decode(null, this::getName).isEmpty());
+    assertTrue(AutoQCResult.decode("", this::getName).isEmpty());
+  }
+
+  @Test
+  public void roundTripTest() {
+    AutoQCResult result = new AutoQCResult();
+    result.add(new RoutineFlag(RANGE_CHECK, Flag.BAD, "0:10", "a;b\\c"));
+    result.add(new RoutineFlag(GRADIENT_TEST, Flag.QUESTIONABLE, null, "N"));
+
+    AutoQCResult decoded = AutoQCResult
+      .decode(result.encode(makeIds()::get), this::getName);
+
+    assertEquals(2, decoded.size());
+
+    RoutineFlag rangeFlag = getFlag(decoded, RANGE_CHECK);
+    assertEquals(Flag.BAD, rangeFlag);
+    assertEquals("0:10", rangeFlag.getRequiredValue());
+    assertEquals("a;b\\c", rangeFlag.getActualValue());
+
+    RoutineFlag gradientFlag = getFlag(decoded, GRADIENT_TEST);
+    assertEquals(Flag.QUESTIONABLE, gradientFlag);
+    assertNull(gradientFlag.getRequiredValue());
+    assertEquals("N", gradientFlag.getActualValue());
+  }
+
+  @Test
+  public void encodingTest() {
+    AutoQCResult result = new AutoQCResult();
+    result.add(new RoutineFlag(RANGE_CHECK, Flag.BAD, "5", "7"));
+
+    assertEquals("1:4:5:7", result.encode(makeIds()::get));
+  }
+
+  @Test
+  public void decodeJsonTest() {
+    String json = "[{\"routineName\":\"" + RANGE_CHECK
+      + "\",\"requiredValue\":\"5\",\"actualValue\":\"7\",\"flagValue\":4}]";
+
+    AutoQCResult decoded = AutoQCResult.decode(json, this::getName);
+
+    assertEquals(1, decoded.size());
+    RoutineFlag flag = getFlag(decoded, RANGE_CHECK);
+    assertEquals(Flag.BAD, flag);
+    assertEquals("5", flag.getRequiredValue());
+    assertEquals("7", flag.getActualValue());
+  }
+
+  @Test
+  public void invalidDecodeTest() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      AutoQCResult.decode("1:4:5", this::getName);
+    });
+  }
+}
@@ -0,0 +1,174 @@
+package junit.uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AbstractAutoQCRoutine;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCTask;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for running automatic QC with the {@link AutoQCTask}.
+ */
+public class AutoQCTaskTest extends BaseTest {
+
+  private static final long DATASET_ID = 1L;
+
+  private static final int COLUMNS = 24;
+
+  private static final int VALUES_PER_COLUMN = 500;
+
+  private static final LocalDateTime START_TIME = LocalDateTime.of(2023, 1, 1,
+    0, 0, 0);
+
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+  }
+
+  /**
+   * Make a set of Water Temperature values for each column. The values include
+   * out-of-range values and long constant periods, so the routines will set
+   * a variety of flags.
+   *
+   * @return The values for each column.
+   */
+  private List<List<SensorValue>> makeColumns() {
+    List<List<SensorValue>> columns = new ArrayList<List<SensorValue>>();
+
+    long id = 1L;
+    for (int c = 0; c < COLUMNS; c++) {
+      List<SensorValue> values = new ArrayList<SensorValue>();
+
+      for (int i = 0; i < VALUES_PER_COLUMN; i++) {
+        String value;
+        if ((i + c) % 97 == 0) {
+          value = "60";
+        } else if ((i + c) % 53 == 0) {
+          value = "45";
+        } else if (i > 200 + c && i < 400) {
+          value = "20";
+        } else {
+          value = String.valueOf(15 + ((i * (c + 1)) % 7) * 0.5);
+        }
+
+        Flag userFlag = (i + c) % 71 == 0 ? Flag.BAD : Flag.ASSUMED_GOOD;
+
+        values.add(new SensorValue(id++, DATASET_ID, c + 1,
+          START_TIME.plusMinutes(i), value, null, userFlag, null));
+      }
+
+      columns.add(values);
+    }
+
+    return columns;
+  }
+
+  private List<AutoQCTask> makeTasks(List<List<SensorValue>> columns)
+    throws Exception {
+
+    SensorType sensorType = ResourceManager.getInstance()
+      .getSensorsConfiguration().getSensorType("Water Temperature");
+
+    List<AbstractAutoQCRoutine> routines = ResourceManager.getInstance()
+      .getQCRoutinesConfiguration().getRoutines(sensorType);
+
+    List<AutoQCTask> tasks = new ArrayList<AutoQCTask>();
+    for (List<SensorValue> column : columns) {
+      tasks.add(new AutoQCTask(routines, column, null, true));
+    }
+
+    return tasks;
+  }
+
+  @FlywayTest
+  @Test
+  public void parallelMatchesSequentialTest() throws Exception {
+
+    List<List<SensorValue>> sequential = makeColumns();
+    AutoQCTask.runAll(makeTasks(sequential), null);
+
+    List<List<SensorValue>> parallel = makeColumns();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      AutoQCTask.runAll(makeTasks(parallel), pool);
+    } finally {
+      pool.shutdown();
+    }
+
+    boolean flagsSet = false;
+
+    for (int c = 0; c < COLUMNS; c++) {
+      for (int i = 0; i < VALUES_PER_COLUMN; i++) {
+        SensorValue sequentialValue = sequential.get(c).get(i);
+        SensorValue parallelValue = parallel.get(c).get(i);
+
+        assertEquals(sequentialValue.getAutoQcFlag(),
+          parallelValue.getAutoQcFlag());
+        assertEquals(sequentialValue.getAutoQcResult().getAllMessagesSet(),
+          parallelValue.getAutoQcResult().getAllMessagesSet());
+
+        if (!sequentialValue.getAutoQcFlag().equals(Flag.GOOD)) {
+          flagsSet = true;
+        }
+      }
+    }
+
+    assertTrue(flagsSet);
+  }
+
+  @FlywayTest
+  @Test
+  public void userFlaggedValuesSkippedTest() throws Exception {
+
+    List<List<SensorValue>> columns = makeColumns();
+    AutoQCTask.runAll(makeTasks(columns), null);
+
+    for (List<SensorValue> column : columns) {
+      for (SensorValue value : column) {
+        if (value.getUserQCFlag().equals(Flag.BAD)) {
+          assertEquals(Flag.GOOD, value.getAutoQcFlag());
+        }
+      }
+    }
+  }
+
+  @FlywayTest
+  @Test
+  public void routinesNotRunTest() throws Exception {
+
+    List<List<SensorValue>> columns = makeColumns();
+    AutoQCTask.runAll(makeTasks(columns), null);
+
+    SensorType sensorType = ResourceManager.getInstance()
+      .getSensorsConfiguration().getSensorType("Water Temperature");
+
+    List<AutoQCTask> clearTasks = new ArrayList<AutoQCTask>();
+    for (List<SensorValue> column : columns) {
+      clearTasks.add(new AutoQCTask(ResourceManager.getInstance()
+        .getQCRoutinesConfiguration().getRoutines(sensorType), column, null,
+        false));
+    }
+
+    AutoQCTask.runAll(clearTasks, null);
+
+    for (List<SensorValue> column : columns) {
+      for (SensorValue value : column) {
+        assertEquals(Flag.GOOD, value.getAutoQcFlag());
+      }
+    }
+  }
+}
@@ -13,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
 import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
 import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.DataReduction.DeltaTRangeRoutine;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.InvalidFlagException;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineException;
@@ -44,6 +45,10 @@ public class SensorValueQCTest extends BaseTest {
     return new RoutineFlag(new RangeCheckRoutine(), flag, "0", "1");
   }
 
+  private RoutineFlag makeDataReductionQCFlag(Flag flag) {
+    return new RoutineFlag(new DeltaTRangeRoutine(), flag, "0", "1");
+  }
+
   @BeforeEach
   public void setup() {
     initResourceManager();
@@ -112,6 +117,44 @@ public class SensorValueQCTest extends BaseTest {
     assertEquals(Flag.QUESTIONABLE, value.getUserQCFlag());
   }
 
+  @FlywayTest
+  @Test
+  public void clearDataReductionQCOnlyTest()
+    throws RecordNotFoundException, RoutineException {
+    SensorValue value = makeSensorValue(1L, 1L);
+    value.addAutoQCFlag(makeDataReductionQCFlag(Flag.BAD));
+    value.clearDataReductionQC();
+    assertEquals(Flag.GOOD, value.getAutoQcFlag());
+    assertEquals(Flag.ASSUMED_GOOD, value.getUserQCFlag());
+    assertEquals("", value.getUserQCMessage());
+  }
+
+  @FlywayTest
+  @Test
+  public void clearDataReductionQCKeepsAutoQCTest()
+    throws RecordNotFoundException, RoutineException {
+    SensorValue value = makeSensorValue(1L, 1L);
+    value.addAutoQCFlag(makeAutoQCFlag(Flag.QUESTIONABLE));
+    value.addAutoQCFlag(makeDataReductionQCFlag(Flag.BAD));
+    value.clearDataReductionQC();
+    assertEquals(Flag.QUESTIONABLE, value.getAutoQcFlag());
+    assertEquals(Flag.NEEDED, value.getUserQCFlag());
+    assertEquals(new RangeCheckRoutine().getShortMessage(),
+      value.getUserQCMessage());
+  }
+
+  @FlywayTest
+  @Test
+  public void clearDataReductionQCWithUserQCTest()
+    throws RecordNotFoundException, RoutineException, InvalidFlagException {
+    SensorValue value = makeSensorValue(1L, 1L);
+    value.addAutoQCFlag(makeDataReductionQCFlag(Flag.BAD));
+    value.setUserQC(Flag.QUESTIONABLE, "Q");
+    value.clearDataReductionQC();
+    assertEquals(Flag.QUESTIONABLE, value.getUserQCFlag());
+    assertEquals("Q", value.getUserQCMessage());
+  }
+
   @FlywayTest
   @Test
   public void userQCTest() throws InvalidFlagException {
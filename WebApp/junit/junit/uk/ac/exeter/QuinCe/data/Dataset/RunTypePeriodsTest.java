@@ -2,6 +2,7 @@ package junit.uk.ac.exeter.QuinCe.data.Dataset;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -199,4 +200,72 @@ public class RunTypePeriodsTest extends BaseTest {
     assertTrue(
       makeContainsPeriods().contains(LocalDateTime.of(2000, 2, 1, 12, 0, 0)));
   }
+
+  @Test
+  public void getRunTypeTest() throws Exception {
+    RunTypePeriods periods = makeContainsPeriods();
+    assertEquals("RunType",
+      periods.getRunType(LocalDateTime.of(2000, 1, 1, 0, 0, 0)));
+    assertEquals("RunType",
+      periods.getRunType(LocalDateTime.of(2000, 1, 2, 0, 0, 0)));
+    assertEquals("RunType2",
+      periods.getRunType(LocalDateTime.of(2000, 2, 1, 12, 0, 0)));
+    assertNull(periods.getRunType(LocalDateTime.of(2000, 1, 12, 0, 0, 0)));
+    assertNull(periods.getRunType(LocalDateTime.of(2000, 2, 3, 0, 0, 0)));
+  }
+
+  @Test
+  public void getRunTypeManyPeriodsTest() throws Exception {
+    RunTypePeriods periods = new RunTypePeriods();
+    LocalDateTime start = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+
+    // Alternate run types every ten minutes, with one value per minute
+    for (int i = 0; i < 10000; i++) {
+      periods.add("RunType" + ((i / 10) % 2), start.plusMinutes(i));
+    }
+
+    assertEquals(1000, periods.size());
+
+    for (int i = 0; i < 10000; i += 7) {
+      assertEquals("RunType" + ((i / 10) % 2),
+        periods.getRunType(start.plusMinutes(i)));
+    }
+
+    // Between the end of one period and the start of the next
+    assertNull(periods.getRunType(start.plusMinutes(9).plusSeconds(30)));
+  }
+
+  @Test
+  public void cursorTest() throws Exception {
+    RunTypePeriods.Cursor cursor = makeContainsPeriods().cursor();
+
+    assertEquals("RunType",
+      cursor.getRunType(LocalDateTime.of(2000, 1, 1, 12, 0, 0)));
+    assertEquals("RunType",
+      cursor.getRunType(LocalDateTime.of(2000, 1, 2, 0, 0, 0)));
+    assertNull(cursor.getRunType(LocalDateTime.of(2000, 1, 12, 0, 0, 0)));
+    assertEquals("RunType2",
+      cursor.getRunType(LocalDateTime.of(2000, 2, 1, 0, 0, 0)));
+    assertNull(cursor.getRunType(LocalDateTime.of(2000, 2, 3, 0, 0, 0)));
+  }
+
+  @Test
+  public void cursorAdvanceBetweenPeriodsTest() throws Exception {
+    RunTypePeriods.Cursor cursor = makeContainsPeriods().cursor();
+
+    // Times between periods give the following period
+    assertEquals("RunType2",
+      cursor.advance(LocalDateTime.of(2000, 1, 12, 0, 0, 0)).getRunType());
+    assertNull(cursor.advance(LocalDateTime.of(2000, 2, 3, 0, 0, 0)));
+  }
+
+  @Test
+  public void cursorFinishedTest() throws Exception {
+    RunTypePeriods periods = makeContainsPeriods();
+    periods.finish();
+
+    RunTypePeriods.Cursor cursor = periods.cursor();
+    assertEquals("RunType2",
+      cursor.getRunType(LocalDateTime.of(2100, 1, 1, 0, 0, 0)));
+  }
 }
@@ -1,6 +1,8 @@
 package junit.uk.ac.exeter.QuinCe.data.Dataset;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDateTime;
 
@@ -14,6 +16,7 @@ import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineFlag;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.RangeCheckRoutine;
 import uk.ac.exeter.QuinCe.utils.RecordNotFoundException;
+import uk.ac.exeter.QuinCe.utils.StringUtils;
 
 public class SensorValueTest extends BaseTest {
 
@@ -38,4 +41,75 @@ public class SensorValueTest extends BaseTest {
     });
   }
 
+  /**
+   * Test that the cached numeric state of a value matches
+   * {@link StringUtils#isNumeric(String)}.
+   */
+  @FlywayTest
+  @Test
+  public void isNumericMatchesStringUtilsTest() {
+    String[] values = { "20", " 20.5 ", "-1e3", "1,234", "", "  ", "EQU",
+      null };
+
+    for (String value : values) {
+      SensorValue sensorValue = new SensorValue(1L, 1L,
+        LocalDateTime.of(2021, 1, 1, 0, 0, 0), value);
+      assertEquals(StringUtils.isNumeric(value), sensorValue.isNumeric());
+    }
+  }
+
+  /**
+   * Test that values with commas are parsed.
+   */
+  @FlywayTest
+  @Test
+  public void doubleValueCommaTest() {
+    SensorValue sensorValue = new SensorValue(1L, 1L,
+      LocalDateTime.of(2021, 1, 1, 0, 0, 0), "1,234.5");
+    assertEquals(1234.5D, sensorValue.doubleValue());
+  }
+
+  /**
+   * Test that a missing value is parsed as {@link Double#NaN}.
+   */
+  @FlywayTest
+  @Test
+  public void doubleValueNullTest() {
+    SensorValue sensorValue = new SensorValue(1L, 1L,
+      LocalDateTime.of(2021, 1, 1, 0, 0, 0), null);
+    assertTrue(sensorValue.isNaN());
+  }
+
+  /**
+   * Test that non-numeric values throw an exception every time they are
+   * requested as numbers.
+   */
+  @FlywayTest
+  @Test
+  public void doubleValueTextTest() {
+    SensorValue sensorValue = new SensorValue(1L, 1L,
+      LocalDateTime.of(2021, 1, 1, 0, 0, 0), "EQU");
+
+    assertThrows(NumberFormatException.class, () -> {
+      sensorValue.getDoubleValue();
+    });
+
+    assertThrows(NumberFormatException.class, () -> {
+      sensorValue.getDoubleValue();
+    });
+  }
+
+  /**
+   * Test that the parsed value is updated when the value is changed.
+   */
+  @FlywayTest
+  @Test
+  public void setValueReparsesTest() {
+    SensorValue sensorValue = new SensorValue(1L, 1L,
+      LocalDateTime.of(2021, 1, 1, 0, 0, 0), "20");
+    assertEquals(20D, sensorValue.doubleValue());
+
+    sensorValue.setValue("21");
+    assertEquals(21D, sensorValue.doubleValue());
+  }
 }
@@ -2,6 +2,7 @@ package junit.uk.ac.exeter.QuinCe.data.Dataset;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -10,6 +11,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Stream;
 
 import org.flywaydb.test.annotation.FlywayTest;
@@ -24,6 +26,7 @@ import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
 import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
 import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
 import uk.ac.exeter.QuinCe.data.Dataset.SensorValuesList;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValuesTimeIndex;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
 import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
@@ -360,4 +363,86 @@ public class SensorValuesListTest extends BaseTest {
     SensorValuesList list = allSensorValues.getColumnValues(6L);
     assertEquals(3, list.valuesSize());
   }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void numericTimeIndexTest() throws Exception {
+    checkTimeIndex("numericValuesPeriodic.csv");
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void stringTimeIndexTest() throws Exception {
+    checkTimeIndex("stringValuesPeriodic.csv");
+  }
+
+  /**
+   * Check that the {@link SensorValuesTimeIndex} for a column matches the
+   * column's values, and finds each of them.
+   *
+   * @param valuesFile
+   *          The file containing the column's values.
+   * @throws Exception
+   *           If the values cannot be loaded.
+   */
+  private void checkTimeIndex(String valuesFile) throws Exception {
+    DatasetSensorValues allSensorValues = makeDatasetSensorValues(valuesFile,
+      6L, Flag.GOOD);
+
+    SensorValuesList list = allSensorValues.getColumnValues(6L);
+    SensorValuesTimeIndex timeIndex = list.getTimeIndex();
+
+    assertEquals(list.rawSize(), timeIndex.size());
+
+    for (int i = 0; i < timeIndex.size(); i++) {
+      SensorValue sensorValue = list.getRawValues().get(i);
+      assertEquals(DateTimeUtils.dateToLong(sensorValue.getTime()),
+        timeIndex.getTime(i));
+      assertSame(sensorValue, timeIndex.getSensorValue(i));
+      assertEquals(i, timeIndex.search(sensorValue.getTime()));
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void sharedTextValuesTest() throws Exception {
+
+    DatasetSensorValues allSensorValues = makeDatasetSensorValues(
+      "stringValuesPeriodic.csv", 6L, Flag.GOOD);
+
+    List<SensorValue> values = allSensorValues.getColumnValues(6L)
+      .getRawValues();
+
+    // The first two values are both 'W M'
+    assertSame(values.get(0).getValue(), values.get(1).getValue());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void timeIndexSearchMissingTimeTest() throws Exception {
+    SensorValuesList list = new SensorValuesList(1L, getDatasetSensorValues());
+    list.add(makeSensorValue(1L, 1, 1));
+    list.add(makeSensorValue(1L, 1, 3));
+
+    SensorValuesTimeIndex timeIndex = list.getTimeIndex();
+    assertEquals(-1, timeIndex.search(LocalDateTime.of(2023, 1, 1, 0, 0, 0)));
+    assertEquals(-2, timeIndex.search(LocalDateTime.of(2023, 1, 1, 1, 2, 0)));
+    assertEquals(-3, timeIndex.search(LocalDateTime.of(2023, 1, 1, 1, 4, 0)));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void timeIndexResetOnAddTest() throws Exception {
+    SensorValuesList list = new SensorValuesList(1L, getDatasetSensorValues());
+    list.add(makeSensorValue(1L, 1, 1));
+    assertEquals(1, list.getTimeIndex().size());
+
+    list.add(makeSensorValue(1L, 1, 2));
+    assertEquals(2, list.getTimeIndex().size());
+  }
 }
@@ -0,0 +1,453 @@
+package junit.uk.ac.exeter.QuinCe.data.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Files.DataFile;
+import uk.ac.exeter.QuinCe.data.Files.DataFileCatalogue;
+import uk.ac.exeter.QuinCe.data.Files.DataFileDB;
+import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link DataFileCatalogue}.
+ *
+ * <p>
+ * Each {@link DataFileDB} method that can use the catalogue is called with
+ * the catalogue disabled (so the database is queried) and enabled, and the
+ * results must be the same. The files in the test data are described in
+ * {@code resources/sql/data/Files/DataFileCatalogueTest}. Times in the tests
+ * are given in minutes after 2024-01-01 00:00:00.
+ * </p>
+ */
+public class DataFileCatalogueTest extends BaseTest {
+
+  private static final long INSTRUMENT_ID = 1L;
+
+  private static final LocalDateTime START_TIME = LocalDateTime.of(2024, 1, 1,
+    0, 0, 0);
+
+  /**
+   * The query periods, as {@code [start, end]} in minutes. These include
+   * periods that touch the ends of files, periods of zero length, and periods
+   * before and after all the files.
+   */
+  private static final int[][] PERIODS = { { 0, 0 }, { -10, -5 }, { -10, 0 },
+    { 30, 40 }, { 29, 41 }, { 11, 11 }, { 5, 45 }, { 55, 100 }, { 125, 126 },
+    { 0, 300 }, { 199, 250 }, { 210, 211 }, { 300, 400 } };
+
+  /**
+   * Times used to look for files after a given time, in minutes.
+   */
+  private static final int[] AFTER_TIMES = { -10, 0, 30, 60, 119, 150, 200,
+    205, 210, 220 };
+
+  /**
+   * A query to be run against the data files.
+   *
+   * @param <T>
+   *          The query result type.
+   */
+  @FunctionalInterface
+  private interface FileQuery<T> {
+    T run(Connection conn) throws Exception;
+  }
+
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+    ResourceManager.getInstance().getConfig().setProperty("filestore",
+      System.getProperty("java.io.tmpdir") + "/FILE_STORE");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    ResourceManager.destroy();
+  }
+
+  /**
+   * Enable or disable the catalogue. Any existing catalogue is discarded.
+   *
+   * @param enabled
+   *          Indicates whether or not the catalogue is enabled.
+   */
+  private void setCatalogueEnabled(boolean enabled) {
+    ResourceManager.getInstance().getConfig()
+      .setProperty(DataFileCatalogue.ENABLED_PROPERTY, String.valueOf(enabled));
+    DataFileCatalogue.destroy();
+  }
+
+  /**
+   * Run a query with the catalogue disabled and enabled, and check that the
+   * results are the same.
+   *
+   * @param <T>
+   *          The query result type.
+   * @param message
+   *          A description of the query for failure messages.
+   * @param query
+   *          The query.
+   * @return The result of the query.
+   * @throws Exception
+   *           If the query fails.
+   */
+  private <T> T compare(String message, FileQuery<T> query) throws Exception {
+    T databaseResult;
+    T catalogueResult;
+
+    try (Connection conn = getConnection()) {
+      setCatalogueEnabled(false);
+      databaseResult = query.run(conn);
+
+      setCatalogueEnabled(true);
+      catalogueResult = query.run(conn);
+
+      // Run again now that the catalogue has been loaded
+      assertEquals(catalogueResult, query.run(conn), message);
+    }
+
+    assertEquals(databaseResult, catalogueResult, message);
+    return catalogueResult;
+  }
+
+  /**
+   * Get the time for a number of minutes after the start time.
+   *
+   * @param minutes
+   *          The minutes.
+   * @return The time.
+   */
+  private LocalDateTime time(int minutes) {
+    return START_TIME.plusMinutes(minutes);
+  }
+
+  /**
+   * Get the sorted IDs of a list of files. The catalogue and database return
+   * files in different orders when time offsets are applied, so the IDs are
+   * sorted before they are compared.
+   *
+   * @param files
+   *          The files.
+   * @return The file IDs.
+   */
+  private List<Long> ids(List<DataFile> files) {
+    return files.stream().map(DataFile::getDatabaseId).sorted()
+      .collect(Collectors.toList());
+  }
+
+  private List<Long> ids(Long... ids) {
+    return Arrays.asList(ids);
+  }
+
+  /**
+   * Get a file definition for the test instrument.
+   *
+   * @param conn
+   *          A database connection.
+   * @param id
+   *          The file definition ID.
+   * @return The file definition.
+   * @throws Exception
+   *           If the file definition cannot be retrieved.
+   */
+  private FileDefinition getFileDefinition(Connection conn, long id)
+    throws Exception {
+    return InstrumentDB.getFileDefinitions(conn, INSTRUMENT_ID).stream()
+      .filter(d -> d.getDatabaseId() == id).findAny().get();
+  }
+
+  /**
+   * Get the IDs of the files for a file definition that overlap a period.
+   *
+   * @param definitionId
+   *          The file definition ID.
+   * @param start
+   *          The period start in minutes.
+   * @param end
+   *          The period end in minutes.
+   * @param applyOffset
+   *          Indicates whether or not time offsets are applied.
+   * @return The file IDs.
+   * @throws Exception
+   *           If the files cannot be retrieved.
+   */
+  private List<Long> definitionFiles(long definitionId, int start, int end,
+    boolean applyOffset) throws Exception {
+
+    return compare(
+      "Definition " + definitionId + " " + start + "-" + end + " offset "
+        + applyOffset,
+      c -> ids(DataFileDB.getFilesWithinDates(c,
+        getFileDefinition(c, definitionId), time(start), time(end),
+        applyOffset)));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void definitionFilesWithinDatesTest() throws Exception {
+    for (long definitionId : new long[] { 1L, 2L }) {
+      for (int[] period : PERIODS) {
+        definitionFiles(definitionId, period[0], period[1], false);
+        definitionFiles(definitionId, period[0], period[1], true);
+      }
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void instrumentFilesWithinDatesTest() throws Exception {
+    for (int[] period : PERIODS) {
+      for (boolean applyOffset : new boolean[] { false, true }) {
+        compare(
+          "Instrument " + period[0] + "-" + period[1] + " offset "
+            + applyOffset,
+          c -> DataFileDB.getFilesWithinDates(c, INSTRUMENT_ID,
+            time(period[0]), time(period[1]), applyOffset).stream().sorted()
+            .collect(Collectors.toList()));
+      }
+    }
+  }
+
+  /**
+   * Check that files must overlap the period, not just touch it, and that
+   * time offsets are applied when requested.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void filesWithinDatesSemanticsTest() throws Exception {
+    // File 1 ends at 30 and file 4 starts at 40
+    assertEquals(ids(), definitionFiles(1L, 30, 40, false));
+    assertEquals(ids(1L, 4L), definitionFiles(1L, 29, 41, false));
+
+    // File 3 is at 30-35 with its offset
+    assertEquals(ids(3L), definitionFiles(1L, 30, 40, true));
+
+    // A period of zero length inside files
+    assertEquals(ids(1L, 2L), definitionFiles(1L, 11, 11, false));
+
+    // A period ending where files start
+    assertEquals(ids(), definitionFiles(1L, -10, 0, false));
+
+    // File 5 is at 45-55 with its offset
+    assertEquals(ids(4L, 5L), definitionFiles(1L, 42, 48, true));
+    assertEquals(ids(4L), definitionFiles(1L, 42, 48, false));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void endDateBeforeStartTest() throws Exception {
+    for (boolean enabled : new boolean[] { false, true }) {
+      setCatalogueEnabled(enabled);
+
+      try (Connection conn = getConnection()) {
+        FileDefinition fileDefinition = getFileDefinition(conn, 1L);
+
+        assertThrows(IllegalArgumentException.class, () -> DataFileDB
+          .getFilesWithinDates(conn, fileDefinition, time(10), time(5), false));
+
+        assertThrows(IllegalArgumentException.class,
+          () -> DataFileDB.getFilesWithinDates(conn, INSTRUMENT_ID, time(10),
+            time(5), false));
+      }
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void completeFilesAfterTest() throws Exception {
+    Properties config = ResourceManager.getInstance().getConfig();
+
+    compare("No time", c -> DataFileDB.completeFilesAfter(c, config,
+      INSTRUMENT_ID, null));
+
+    for (int after : AFTER_TIMES) {
+      compare("After " + after, c -> DataFileDB.completeFilesAfter(c, config,
+        INSTRUMENT_ID, time(after)));
+    }
+
+    // File 6 is the last file for definition 1, and ends at 200
+    assertFalse(compare("After 200", c -> DataFileDB.completeFilesAfter(c,
+      config, INSTRUMENT_ID, time(200))));
+
+    // Files 6 and 10 overlap after 150
+    assertTrue(compare("After 150", c -> DataFileDB.completeFilesAfter(c,
+      config, INSTRUMENT_ID, time(150))));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void lastFileDateTest() throws Exception {
+    // File 10 ends last, with an offset of one minute
+    assertEquals(time(210), compare("Raw",
+      c -> DataFileDB.getLastFileDate(c, INSTRUMENT_ID, false)));
+    assertEquals(time(211), compare("Offset",
+      c -> DataFileDB.getLastFileDate(c, INSTRUMENT_ID, true)));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void fileDetailsTest() throws Exception {
+    Properties config = ResourceManager.getInstance().getConfig();
+
+    assertEquals(10, (int) compare("Count",
+      c -> DataFileDB.getFileCount(getDataSource(), INSTRUMENT_ID)));
+
+    assertTrue(compare("Name exists",
+      c -> DataFileDB.hasFileWithName(getDataSource(), INSTRUMENT_ID,
+        "file3.csv")));
+
+    assertFalse(compare("Name missing",
+      c -> DataFileDB.hasFileWithName(getDataSource(), INSTRUMENT_ID,
+        "file99.csv")));
+
+    compare("Instrument files",
+      c -> describe(DataFileDB.getFiles(c, config, INSTRUMENT_ID)));
+
+    compare("Definition files",
+      c -> describe(DataFileDB.getFiles(c, config, getFileDefinition(c, 2L))));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void storeAndDeleteTest() throws Exception {
+    Properties config = ResourceManager.getInstance().getConfig();
+    setCatalogueEnabled(true);
+
+    DataFile newFile;
+
+    try (Connection conn = getConnection()) {
+      // Load the catalogue
+      assertEquals(10, DataFileDB.getFileCount(getDataSource(), INSTRUMENT_ID));
+      assertEquals(ids(), ids(DataFileDB.getFilesWithinDates(conn,
+        getFileDefinition(conn, 1L), time(300), time(310), false)));
+
+      List<String> contents = new ArrayList<String>();
+      contents.add("2024-01-01 05:00:00,10,35");
+      contents.add("2024-01-01 05:01:00,10,35");
+      contents.add("2024-01-01 05:02:00,10,35");
+
+      newFile = new DataFile(config.getProperty("filestore"),
+        getFileDefinition(conn, 1L), "new.csv", contents);
+    }
+
+    DataFileDB.storeFile(getDataSource(), config, newFile, -1);
+
+    // The catalogue and the database must both include the new file
+    assertEquals(11, (int) compare("Count after store",
+      c -> DataFileDB.getFileCount(getDataSource(), INSTRUMENT_ID)));
+    assertEquals(ids(newFile.getDatabaseId()),
+      definitionFiles(1L, 300, 310, false));
+    assertEquals(time(302), compare("Last date after store",
+      c -> DataFileDB.getLastFileDate(c, INSTRUMENT_ID, false)));
+    assertTrue(compare("Name after store", c -> DataFileDB
+      .hasFileWithName(getDataSource(), INSTRUMENT_ID, "new.csv")));
+
+    setCatalogueEnabled(true);
+    try (Connection conn = getConnection()) {
+      // Load the catalogue before the file is deleted
+      assertEquals(11, DataFileDB.getFileCount(getDataSource(), INSTRUMENT_ID));
+      DataFileDB.deleteFile(conn, config, newFile);
+    }
+
+    assertEquals(10, (int) compare("Count after delete",
+      c -> DataFileDB.getFileCount(getDataSource(), INSTRUMENT_ID)));
+    assertEquals(ids(), definitionFiles(1L, 300, 310, false));
+    assertEquals(time(210), compare("Last date after delete",
+      c -> DataFileDB.getLastFileDate(c, INSTRUMENT_ID, false)));
+    assertFalse(compare("Name after delete",
+      c -> DataFileDB.hasFileWithName(getDataSource(), INSTRUMENT_ID,
+        "new.csv")));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void storedFileSeenByLoadedCatalogueTest() throws Exception {
+    Properties config = ResourceManager.getInstance().getConfig();
+    setCatalogueEnabled(true);
+
+    DataFile newFile;
+
+    try (Connection conn = getConnection()) {
+      // Load the catalogue
+      assertEquals(time(210),
+        DataFileDB.getLastFileDate(conn, INSTRUMENT_ID, false));
+
+      newFile = new DataFile(config.getProperty("filestore"),
+        getFileDefinition(conn, 2L), "new.csv",
+        List.of("2024-01-01 06:00:00,10,35", "2024-01-01 06:10:00,10,35"));
+    }
+
+    DataFileDB.storeFile(getDataSource(), config, newFile, -1);
+
+    try (Connection conn = getConnection()) {
+      // The catalogue was loaded before the store, so it must have been
+      // updated rather than reloaded
+      assertEquals(time(370),
+        DataFileDB.getLastFileDate(conn, INSTRUMENT_ID, false));
+      assertEquals(ids(newFile.getDatabaseId()),
+        DataFileDB.getFilesWithinDates(conn, INSTRUMENT_ID, time(365),
+          time(366), false));
+
+      DataFileDB.deleteFile(conn, config, newFile);
+
+      assertEquals(time(210),
+        DataFileDB.getLastFileDate(conn, INSTRUMENT_ID, false));
+      assertEquals(ids(), DataFileDB.getFilesWithinDates(conn, INSTRUMENT_ID,
+        time(365), time(366), false));
+    }
+  }
+
+  /**
+   * Describe a list of files so they can be compared. Files with the same
+   * start time can be returned in any order, so the files are sorted by ID.
+   *
+   * @param files
+   *          The files.
+   * @return The file descriptions.
+   * @throws Exception
+   *           If the files' details cannot be retrieved.
+   */
+  private List<String> describe(List<DataFile> files) throws Exception {
+    List<String> result = new ArrayList<String>(files.size());
+
+    for (DataFile file : files.stream()
+      .sorted((a, b) -> Long.compare(a.getDatabaseId(), b.getDatabaseId()))
+      .toList()) {
+      result.add(file.getDatabaseId() + "/"
+        + file.getFileDefinition().getDatabaseId() + "/" + file.getFilename()
+        + "/" + file.getRawStartTime() + "/" + file.getRawEndTime() + "/"
+        + file.getRecordCount() + "/" + file.getProperties());
+    }
+
+    return result;
+  }
+}
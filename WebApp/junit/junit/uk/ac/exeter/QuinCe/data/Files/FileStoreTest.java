@@ -0,0 +1,489 @@
+package junit.uk.ac.exeter.QuinCe.data.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Files.DataFile;
+import uk.ac.exeter.QuinCe.data.Files.DataFileDB;
+import uk.ac.exeter.QuinCe.data.Files.FileStore;
+import uk.ac.exeter.QuinCe.data.Files.FileStoreCodec;
+import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link FileStore}, and in particular for files stored with
+ * {@link FileStoreCodec#GZIP}.
+ *
+ * <p>
+ * The {@link FileStore} is used through the public methods of
+ * {@link DataFileDB} and {@link DataFile}. Some tests write files into the
+ * file store directly to set up situations (such as a part-finished
+ * conversion) that cannot be created through the application. The files in
+ * the database are described in
+ * {@code resources/sql/data/Files/DataFileCatalogueTest}; they have no
+ * contents on disk until a test writes them.
+ * </p>
+ */
+public class FileStoreTest extends BaseTest {
+
+  /**
+   * The number of data files in the test data.
+   */
+  private static final int FILE_COUNT = 10;
+
+  /**
+   * The file store for the current test.
+   */
+  private File fileStore;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    initResourceManager();
+    fileStore = Files.createTempDirectory("FILE_STORE").toFile();
+    getConfig().setProperty("filestore", fileStore.getAbsolutePath());
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    ResourceManager.destroy();
+
+    try (Stream<File> files = Files.walk(fileStore.toPath())
+      .sorted(Comparator.reverseOrder()).map(p -> p.toFile())) {
+      files.forEach(File::delete);
+    }
+  }
+
+  /**
+   * Get the application configuration.
+   *
+   * @return The configuration.
+   */
+  private Properties getConfig() {
+    return ResourceManager.getInstance().getConfig();
+  }
+
+  /**
+   * Set the codec used to store files.
+   *
+   * @param codec
+   *          The codec.
+   */
+  private void setCodec(FileStoreCodec codec) {
+    getConfig().setProperty(FileStoreCodec.CODEC_PROPERTY, codec.name());
+  }
+
+  /**
+   * Get a data file from the database.
+   *
+   * @param id
+   *          The file's database ID.
+   * @return The file.
+   * @throws Exception
+   *           If the file cannot be retrieved.
+   */
+  private DataFile getFile(long id) throws Exception {
+    try (Connection conn = getConnection()) {
+      List<Long> ids = new ArrayList<Long>(1);
+      ids.add(id);
+      return DataFileDB.getDataFiles(conn, getConfig(), ids).get(0);
+    }
+  }
+
+  /**
+   * Get the location of a file in the file store.
+   *
+   * @param dataFile
+   *          The file.
+   * @param suffix
+   *          The suffix of the stored file.
+   * @return The file location.
+   */
+  private File storedFile(DataFile dataFile, String suffix) {
+    return new File(fileStore,
+      dataFile.getFileDefinition().getDatabaseId() + File.separator
+        + dataFile.getDatabaseId() + suffix);
+  }
+
+  /**
+   * Write a file into the file store directly.
+   *
+   * @param dataFile
+   *          The file.
+   * @param suffix
+   *          The suffix of the stored file.
+   * @param compress
+   *          Indicates whether the contents should be compressed.
+   * @param contents
+   *          The file contents.
+   * @throws IOException
+   *           If the file cannot be written.
+   */
+  private void writeStoredFile(DataFile dataFile, String suffix,
+    boolean compress, byte[] contents) throws IOException {
+
+    File file = storedFile(dataFile, suffix);
+    file.getParentFile().mkdirs();
+
+    try (OutputStream out = compress
+      ? new GZIPOutputStream(new FileOutputStream(file))
+      : new FileOutputStream(file)) {
+      out.write(contents);
+    }
+  }
+
+  /**
+   * Make the contents of a file with the specified number of lines. The
+   * contents end with a newline.
+   *
+   * @param lines
+   *          The number of lines.
+   * @return The contents.
+   */
+  private byte[] makeContents(int lines) {
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      contents.append("2024-01-02 00:00:00,");
+      contents.append(i);
+      contents.append(",35\n");
+    }
+
+    return contents.toString().getBytes(Charset.defaultCharset());
+  }
+
+  /**
+   * Store a new file through {@link DataFileDB}.
+   *
+   * @param filename
+   *          The filename.
+   * @return The stored file.
+   * @throws Exception
+   *           If the file cannot be stored.
+   */
+  private DataFile storeNewFile(String filename) throws Exception {
+    List<String> contents = new ArrayList<String>();
+    contents.add("2024-01-02 00:00:00,10,35");
+    contents.add("2024-01-02 00:01:00,10.5,35.1");
+    contents.add("2024-01-02 00:02:00,11,35.2");
+
+    DataFile dataFile;
+    try (Connection conn = getConnection()) {
+      FileDefinition fileDefinition = InstrumentDB.getFileDefinitions(conn, 1L)
+        .stream().filter(d -> d.getDatabaseId() == 1L).findAny().get();
+      dataFile = new DataFile(getConfig().getProperty("filestore"),
+        fileDefinition, filename, contents);
+    }
+
+    DataFileDB.storeFile(getDataSource(), getConfig(), dataFile, -1);
+    return dataFile;
+  }
+
+  /**
+   * Read the decoded contents of a file.
+   *
+   * @param dataFile
+   *          The file.
+   * @return The contents.
+   * @throws IOException
+   *           If the file cannot be read.
+   */
+  private byte[] readStream(DataFile dataFile) throws IOException {
+    try (InputStream in = dataFile.getInputStream()) {
+      return in.readAllBytes();
+    }
+  }
+
+  /**
+   * Copy a file using {@link DataFile#transferBytes}.
+   *
+   * @param dataFile
+   *          The file.
+   * @return The copied bytes.
+   * @throws IOException
+   *           If the file cannot be copied.
+   */
+  private byte[] transfer(DataFile dataFile) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long count = dataFile.transferBytes(Channels.newChannel(out));
+    assertEquals(out.size(), count);
+    return out.toByteArray();
+  }
+
+  /**
+   * Test that a file stored with GZIP is compressed on disk and reads back
+   * with its original contents.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void gzipRoundTripTest() throws Exception {
+    setCodec(FileStoreCodec.GZIP);
+    DataFile stored = storeNewFile("gzip.csv");
+
+    File gzipFile = storedFile(stored, ".gz");
+    assertTrue(gzipFile.exists());
+    assertFalse(storedFile(stored, "").exists());
+
+    // Check the GZIP header
+    byte[] diskBytes = Files.readAllBytes(gzipFile.toPath());
+    assertEquals((byte) 0x1f, diskBytes[0]);
+    assertEquals((byte) 0x8b, diskBytes[1]);
+
+    DataFile loaded = getFile(stored.getDatabaseId());
+    byte[] expected = stored.getContents().getBytes(Charset.defaultCharset());
+
+    assertEquals(stored.getContents(), loaded.getContents());
+    assertArrayEquals(expected, loaded.getBytes());
+    assertArrayEquals(expected, readStream(loaded));
+    assertArrayEquals(expected, transfer(loaded));
+  }
+
+  /**
+   * Test {@link DataFile#endsWithNewline()} on uncompressed and compressed
+   * files.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void endsWithNewlineTest() throws Exception {
+    DataFile dataFile = getFile(1L);
+
+    for (boolean compress : new boolean[] { false, true }) {
+      String suffix = compress ? ".gz" : "";
+      String message = compress ? "Compressed" : "Uncompressed";
+
+      writeStoredFile(dataFile, suffix, compress, makeContents(3));
+      assertTrue(dataFile.endsWithNewline(), message);
+
+      // Large enough to need several reads when decompressing
+      writeStoredFile(dataFile, suffix, compress, makeContents(10000));
+      assertTrue(dataFile.endsWithNewline(), message);
+
+      writeStoredFile(dataFile, suffix, compress,
+        "a\nb".getBytes(Charset.defaultCharset()));
+      assertFalse(dataFile.endsWithNewline(), message);
+
+      writeStoredFile(dataFile, suffix, compress, new byte[0]);
+      assertFalse(dataFile.endsWithNewline(), message);
+
+      storedFile(dataFile, suffix).delete();
+    }
+  }
+
+  /**
+   * Test {@link DataFile#transferBytes} on uncompressed and compressed files.
+   * The compressed file is written out decompressed.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void transferBytesTest() throws Exception {
+    DataFile dataFile = getFile(1L);
+    byte[] contents = makeContents(10000);
+
+    writeStoredFile(dataFile, "", false, contents);
+    assertArrayEquals(contents, transfer(dataFile));
+    storedFile(dataFile, "").delete();
+
+    writeStoredFile(dataFile, ".gz", true, contents);
+    assertArrayEquals(contents, transfer(dataFile));
+    assertArrayEquals(contents, dataFile.getBytes());
+
+    writeStoredFile(dataFile, ".gz", true, new byte[0]);
+    assertArrayEquals(new byte[0], transfer(dataFile));
+  }
+
+  /**
+   * Test that files can be read at each stage of a conversion: with a
+   * partly written temporary file, with both the old and new files present,
+   * and after the old file has been removed.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void readMidConversionTest() throws Exception {
+    DataFile dataFile = getFile(1L);
+    byte[] contents = makeContents(100);
+
+    writeStoredFile(dataFile, "", false, contents);
+
+    // Partly written temporary file
+    writeStoredFile(dataFile, ".gz.tmp", false,
+      "garbage".getBytes(Charset.defaultCharset()));
+    assertArrayEquals(contents, readStream(dataFile));
+    assertArrayEquals(contents, transfer(dataFile));
+    assertTrue(dataFile.endsWithNewline());
+
+    // Converted file moved into place, original not yet deleted
+    storedFile(dataFile, ".gz.tmp").delete();
+    writeStoredFile(dataFile, ".gz", true, contents);
+    assertArrayEquals(contents, readStream(dataFile));
+    assertArrayEquals(contents, transfer(dataFile));
+    assertTrue(dataFile.endsWithNewline());
+
+    // Original deleted
+    storedFile(dataFile, "").delete();
+    assertArrayEquals(contents, readStream(dataFile));
+    assertArrayEquals(contents, transfer(dataFile));
+    assertTrue(dataFile.endsWithNewline());
+
+    // A restarted conversion finishes the interrupted one
+    writeStoredFile(dataFile, "", false, contents);
+    assertEquals(1, DataFileDB.convertStoredFiles(configWithCodec(), 10));
+    assertFalse(storedFile(dataFile, "").exists());
+    assertArrayEquals(contents, readStream(dataFile));
+  }
+
+  /**
+   * Test that files can be read while they are being converted on another
+   * thread.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void readDuringConversionTest() throws Exception {
+    List<DataFile> dataFiles = new ArrayList<DataFile>(FILE_COUNT);
+    List<byte[]> contents = new ArrayList<byte[]>(FILE_COUNT);
+
+    for (int i = 1; i <= FILE_COUNT; i++) {
+      DataFile dataFile = getFile(i);
+      byte[] fileContents = makeContents(i * 1000);
+      writeStoredFile(dataFile, "", false, fileContents);
+      dataFiles.add(dataFile);
+      contents.add(fileContents);
+    }
+
+    Properties config = configWithCodec();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try {
+      // Convert the files one at a time
+      Future<Integer> conversion = executor.submit(() -> {
+        int converted = 0;
+        int count = DataFileDB.convertStoredFiles(config, 1);
+        while (count > 0) {
+          converted += count;
+          count = DataFileDB.convertStoredFiles(config, 1);
+        }
+        return converted;
+      });
+
+      do {
+        for (int i = 0; i < FILE_COUNT; i++) {
+          assertArrayEquals(contents.get(i), readStream(dataFiles.get(i)));
+          assertTrue(dataFiles.get(i).endsWithNewline());
+        }
+      } while (!conversion.isDone());
+
+      assertEquals(FILE_COUNT, conversion.get());
+    } finally {
+      executor.shutdown();
+    }
+
+    for (int i = 0; i < FILE_COUNT; i++) {
+      assertTrue(storedFile(dataFiles.get(i), ".gz").exists());
+      assertArrayEquals(contents.get(i), transfer(dataFiles.get(i)));
+    }
+  }
+
+  /**
+   * Test that conversion skips temporary files and other files that are not
+   * stored data files, and respects the limit.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/data/Files/DataFileCatalogueTest" })
+  @Test
+  public void convertSkipsTempFilesTest() throws Exception {
+    DataFile file1 = getFile(1L);
+    DataFile file2 = getFile(2L);
+    DataFile file3 = getFile(3L);
+
+    writeStoredFile(file1, "", false, makeContents(10));
+    writeStoredFile(file2, "", false, makeContents(20));
+
+    // Temporary files left by interrupted stores and conversions
+    writeStoredFile(file3, ".tmp", false, makeContents(30));
+    writeStoredFile(file3, ".gz.tmp", false, makeContents(30));
+    File notes = new File(storedFile(file1, "").getParentFile(), "notes.txt");
+    Files.write(notes.toPath(), "notes".getBytes(Charset.defaultCharset()));
+
+    Properties config = configWithCodec();
+
+    assertEquals(1, DataFileDB.convertStoredFiles(config, 1));
+    assertEquals(1, DataFileDB.convertStoredFiles(config, 10));
+    assertEquals(0, DataFileDB.convertStoredFiles(config, 10));
+
+    assertTrue(storedFile(file1, ".gz").exists());
+    assertTrue(storedFile(file2, ".gz").exists());
+    assertArrayEquals(makeContents(10), readStream(file1));
+    assertArrayEquals(makeContents(20), readStream(file2));
+
+    // The other files are untouched
+    assertArrayEquals(makeContents(30),
+      Files.readAllBytes(storedFile(file3, ".tmp").toPath()));
+    assertArrayEquals(makeContents(30),
+      Files.readAllBytes(storedFile(file3, ".gz.tmp").toPath()));
+    assertFalse(storedFile(file3, ".gz").exists());
+    assertFalse(storedFile(file3, "").exists());
+    assertTrue(notes.exists());
+  }
+
+  /**
+   * Get a copy of the application configuration with the GZIP codec set.
+   *
+   * @return The configuration.
+   */
+  private Properties configWithCodec() {
+    Properties config = new Properties();
+    config.putAll(getConfig());
+    config.setProperty(FileStoreCodec.CODEC_PROPERTY,
+      FileStoreCodec.GZIP.name());
+    return config;
+  }
+}
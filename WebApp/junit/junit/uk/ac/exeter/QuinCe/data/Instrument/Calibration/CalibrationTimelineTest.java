@@ -0,0 +1,326 @@
+package junit.uk.ac.exeter.QuinCe.data.Instrument.Calibration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetMeasurements;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.data.Instrument.Calibration.Calibration;
+import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalculationCoefficientDB;
+import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalibrationSet;
+import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalibrationTimeline;
+import uk.ac.exeter.QuinCe.data.Instrument.Calibration.EmptyCalibration;
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for {@link CalibrationTimeline}.
+ *
+ * <p>
+ * These use the calculation coefficients from the CONTROS reducer tests. The
+ * pre-calibration contains six coefficients deployed on
+ * {@code 2021-07-16T00:00:00Z}, and the post-calibration contains four of those
+ * coefficients deployed on {@code 2024-01-11T00:00:00Z}.
+ * </p>
+ *
+ * <p>
+ * The query count tests act as a simple benchmark of the number of database
+ * queries issued by data reduction before and after the introduction of the
+ * timeline.
+ * </p>
+ */
+public class CalibrationTimelineTest extends BaseTest {
+
+  /**
+   * The database ID of the {@link Instrument} in the FlyWay test data.
+   */
+  private static final long INSTRUMENT_ID = 124L;
+
+  /**
+   * The database ID of the {@link DataSet} in the FlyWay test data.
+   */
+  private static final long DATASET_ID = 2765L;
+
+  /**
+   * The deployment date of the pre-calibration.
+   */
+  private static final LocalDateTime PRE_CALIBRATION = DateTimeUtils
+    .longToDate(1626393600000L);
+
+  /**
+   * The deployment date of the post-calibration.
+   */
+  private static final LocalDateTime POST_CALIBRATION = DateTimeUtils
+    .longToDate(1704931200000L);
+
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    ResourceManager.destroy();
+  }
+
+  /**
+   * Wrap a {@link Connection} so that the number of statements it prepares can
+   * be counted.
+   *
+   * @param conn
+   *          The connection.
+   * @param counter
+   *          The counter to be incremented for each statement.
+   * @return The wrapped connection.
+   */
+  private Connection countingConnection(Connection conn,
+    AtomicInteger counter) {
+    return (Connection) Proxy.newProxyInstance(
+      Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+      (proxy, method, args) -> {
+        if (method.getName().equals("prepareStatement")
+          || method.getName().equals("createStatement")) {
+          counter.incrementAndGet();
+        }
+
+        try {
+          return method.invoke(conn, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      });
+  }
+
+  /**
+   * Check that a {@link CalibrationSet} from a timeline contains the same
+   * calibrations as one retrieved directly from the database.
+   *
+   * @param expected
+   *          The calibrations from the database.
+   * @param actual
+   *          The calibrations from the timeline.
+   */
+  private void assertSameCalibrations(CalibrationSet expected,
+    CalibrationSet actual) {
+
+    assertEquals(expected.getTargets().keySet(),
+      actual.getTargets().keySet());
+
+    for (String target : expected.getTargets().keySet()) {
+      Calibration expectedCalibration = expected.getTargetCalibration(target);
+      Calibration actualCalibration = actual.getTargetCalibration(target);
+
+      if (expectedCalibration instanceof EmptyCalibration) {
+        assertTrue(actualCalibration instanceof EmptyCalibration);
+      } else {
+        assertEquals(expectedCalibration.getId(), actualCalibration.getId());
+      }
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/post-calibration" })
+  @Test
+  public void mostRecentMatchesDatabaseTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      CalculationCoefficientDB db = CalculationCoefficientDB.getInstance();
+      CalibrationTimeline timeline = db.getCalibrationTimeline(conn,
+        instrument);
+
+      LocalDateTime[] times = new LocalDateTime[] {
+        PRE_CALIBRATION.minusDays(1), PRE_CALIBRATION,
+        PRE_CALIBRATION.plusDays(1), POST_CALIBRATION.minusSeconds(1),
+        POST_CALIBRATION, POST_CALIBRATION.plusYears(1) };
+
+      for (LocalDateTime time : times) {
+        assertSameCalibrations(
+          db.getMostRecentCalibrations(conn, instrument, time),
+          timeline.getMostRecentCalibrations(time));
+      }
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/post-calibration" })
+  @Test
+  public void calibrationsAfterMatchesDatabaseTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      CalculationCoefficientDB db = CalculationCoefficientDB.getInstance();
+      CalibrationTimeline timeline = db.getCalibrationTimeline(conn,
+        instrument);
+
+      LocalDateTime[] times = new LocalDateTime[] {
+        PRE_CALIBRATION.minusDays(1), PRE_CALIBRATION,
+        PRE_CALIBRATION.plusDays(1), POST_CALIBRATION.minusSeconds(1),
+        POST_CALIBRATION, POST_CALIBRATION.plusYears(1) };
+
+      for (LocalDateTime time : times) {
+        assertSameCalibrations(
+          db.getCalibrationsAfter(conn, instrument, time),
+          timeline.getCalibrationsAfter(time));
+      }
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/post-calibration" })
+  @Test
+  public void calibrationsAfterTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      CalibrationTimeline timeline = CalculationCoefficientDB.getInstance()
+        .getCalibrationTimeline(conn, instrument);
+
+      CalibrationSet after = timeline
+        .getCalibrationsAfter(PRE_CALIBRATION.plusDays(1));
+
+      assertTrue(after.containsTarget("6.k1"));
+      assertTrue(after.containsTarget("6.Runtime"));
+      assertFalse(after.containsTarget("6.F"));
+      assertFalse(after.containsTarget("6.Response Time"));
+      assertEquals(POST_CALIBRATION,
+        after.getTargetCalibration("6.k1").getDeploymentDate());
+
+      // Deployments on the specified time are included
+      assertEquals(PRE_CALIBRATION, timeline
+        .getCalibrationsAfter(PRE_CALIBRATION).getTargetCalibration("6.k1")
+        .getDeploymentDate());
+
+      // Nothing is deployed after the post-calibration
+      assertFalse(timeline.getCalibrationsAfter(POST_CALIBRATION.plusDays(1))
+        .containsTarget("6.k1"));
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration" })
+  @Test
+  public void setsAreReadOnlyTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      CalibrationTimeline timeline = CalculationCoefficientDB.getInstance()
+        .getCalibrationTimeline(conn, instrument);
+
+      CalibrationSet set = timeline
+        .getMostRecentCalibrations(PRE_CALIBRATION.plusDays(1));
+
+      assertSame(set,
+        timeline.getMostRecentCalibrations(PRE_CALIBRATION.plusDays(2)));
+      assertThrows(UnsupportedOperationException.class, () -> {
+        set.clear();
+      });
+      assertThrows(UnsupportedOperationException.class, () -> {
+        set.add(set.first());
+      });
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/post-calibration" })
+  @Test
+  public void datasetTimelineLoadedOnceTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      DataSet dataset = DataSetDB.getDataSet(conn, DATASET_ID);
+
+      AtomicInteger queryCount = new AtomicInteger(0);
+      Connection countingConn = countingConnection(conn, queryCount);
+
+      CalibrationTimeline timeline = CalculationCoefficientDB.getInstance()
+        .getCalibrationTimeline(countingConn, instrument, dataset);
+      int loadQueries = queryCount.get();
+
+      assertSame(timeline, CalculationCoefficientDB.getInstance()
+        .getCalibrationTimeline(countingConn, instrument, dataset));
+      assertEquals(loadQueries, queryCount.get());
+    }
+  }
+
+  /**
+   * Compare the number of queries needed to find the calibrations for every
+   * measurement in a dataset, as performed during data reduction, using
+   * per-measurement database lookups and the timeline.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/post-calibration" })
+  @Test
+  public void dataReductionQueryCountTest() throws Exception {
+
+    try (Connection conn = getConnection()) {
+      Instrument instrument = InstrumentDB.getInstrument(conn, INSTRUMENT_ID);
+      DataSet dataset = DataSetDB.getDataSet(conn, DATASET_ID);
+      DatasetMeasurements measurements = DataSetDataDB
+        .getMeasurementsByRunType(conn, instrument, DATASET_ID);
+
+      int measurementCount = measurements.getTimeOrderedMeasurements().size();
+      assertTrue(measurementCount > 1);
+
+      CalculationCoefficientDB db = CalculationCoefficientDB.getInstance();
+
+      // Before: one lookup per measurement
+      AtomicInteger perMeasurementQueries = new AtomicInteger(0);
+      Connection perMeasurementConn = countingConnection(conn,
+        perMeasurementQueries);
+      for (Measurement measurement : measurements
+        .getTimeOrderedMeasurements()) {
+        db.getMostRecentCalibrations(perMeasurementConn, instrument,
+          measurement.getTime());
+      }
+
+      // After: the timeline is loaded once for the dataset
+      AtomicInteger timelineQueries = new AtomicInteger(0);
+      Connection timelineConn = countingConnection(conn, timelineQueries);
+      for (Measurement measurement : measurements
+        .getTimeOrderedMeasurements()) {
+        db.getCalibrationTimeline(timelineConn, instrument, dataset)
+          .getMostRecentCalibrations(measurement.getTime());
+      }
+
+      assertTrue(perMeasurementQueries.get() >= measurementCount);
+      assertEquals(1, timelineQueries.get());
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package junit.uk.ac.exeter.QuinCe.data.Instrument;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentCache;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link InstrumentCache}.
+ */
+public class InstrumentCacheTest extends BaseTest {
+
+  private static final long INSTRUMENT_ID = 1L;
+
+  @BeforeEach
+  public void setUp() {
+    initResourceManager();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    ResourceManager.destroy();
+  }
+
+  private void enableCache() {
+    ResourceManager.getInstance().getConfig()
+      .setProperty(InstrumentCache.ENABLED_PROPERTY, "true");
+    InstrumentCache.destroy();
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void disabledByDefaultTest() throws Exception {
+    InstrumentCache.destroy();
+    assertFalse(InstrumentCache.getInstance().isEnabled());
+
+    Instrument first = InstrumentDB.getInstrument(getConnection(),
+      INSTRUMENT_ID);
+    Instrument second = InstrumentDB.getInstrument(getConnection(),
+      INSTRUMENT_ID);
+
+    assertNotSame(first, second);
+    assertEquals(0, InstrumentCache.getInstance().size());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void cachedInstrumentTest() throws Exception {
+    enableCache();
+
+    Instrument first = InstrumentDB.getInstrument(getConnection(),
+      INSTRUMENT_ID);
+    Instrument second = InstrumentDB.getInstrument(getConnection(),
+      INSTRUMENT_ID);
+
+    assertSame(first, second);
+    assertEquals(1, InstrumentCache.getInstance().getHits());
+    assertEquals(1, InstrumentCache.getInstance().getMisses());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void loadInstrumentBypassesCacheTest() throws Exception {
+    enableCache();
+
+    Instrument cached = InstrumentDB.getInstrument(getConnection(),
+      INSTRUMENT_ID);
+
+    assertNotSame(cached,
+      InstrumentDB.loadInstrument(getConnection(), INSTRUMENT_ID));
+    assertSame(cached,
+      InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void saveInvalidatesTest() throws Exception {
+    enableCache();
+
+    Instrument first = InstrumentDB.getInstrument(getConnection(),
+      INSTRUMENT_ID);
+
+    Instrument edited = InstrumentDB.loadInstrument(getDataSource(),
+      INSTRUMENT_ID);
+    edited.setProperty(Instrument.PROP_DEPTH, 10);
+    InstrumentDB.saveInstrumentProperties(getDataSource(), edited);
+
+    Instrument second = InstrumentDB.getInstrument(getConnection(),
+      INSTRUMENT_ID);
+
+    assertNotSame(first, second);
+    assertEquals(10,
+      second.getIntProperty(Instrument.PROP_DEPTH).intValue());
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void invalidateAllTest() throws Exception {
+    enableCache();
+
+    Instrument first = InstrumentDB.getInstrument(getConnection(),
+      INSTRUMENT_ID);
+
+    InstrumentCache.getInstance().invalidateAll();
+    assertEquals(0, InstrumentCache.getInstance().size());
+
+    assertNotSame(first,
+      InstrumentDB.getInstrument(getConnection(), INSTRUMENT_ID));
+  }
+}
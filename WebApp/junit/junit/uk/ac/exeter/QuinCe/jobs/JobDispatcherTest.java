@@ -0,0 +1,363 @@
+package junit.uk.ac.exeter.QuinCe.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.User.UserDB;
+import uk.ac.exeter.QuinCe.jobs.Job;
+import uk.ac.exeter.QuinCe.jobs.JobDispatcher;
+import uk.ac.exeter.QuinCe.jobs.JobManager;
+import uk.ac.exeter.QuinCe.jobs.JobPriority;
+import uk.ac.exeter.QuinCe.jobs.QueuedJob;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link JobDispatcher}.
+ */
+public class JobDispatcherTest extends BaseTest {
+
+  /**
+   * The maximum time to wait for the dispatcher to act, in milliseconds.
+   */
+  private static final long TIMEOUT = 10000L;
+
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+  }
+
+  @AfterEach
+  public void stopDispatcher() {
+    JobDispatcher.destroy();
+  }
+
+  /**
+   * Start the dispatcher.
+   *
+   * @throws Exception
+   *           If the dispatcher cannot be started.
+   */
+  private void startDispatcher() throws Exception {
+    JobDispatcher.initialise(ResourceManager.getInstance(),
+      ResourceManager.getInstance().getConfig());
+  }
+
+  /**
+   * Add a {@link TestJob} to the job queue.
+   *
+   * @return The job's database ID.
+   * @throws Exception
+   *           If the job cannot be added.
+   */
+  private long addJob() throws Exception {
+    return JobManager.addJob(getDataSource(),
+      UserDB.getUser(getDataSource(), "test@test.com"),
+      TestJob.class.getName(), new Properties());
+  }
+
+  /**
+   * Add a {@link TestJob} directly to the database in the running state, as if
+   * it had been claimed by another application instance. The dispatcher is
+   * not told about the job.
+   *
+   * @return The job's database ID.
+   * @throws Exception
+   *           If the job cannot be added.
+   */
+  private long addRunningJob() throws Exception {
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn.prepareStatement(
+        "INSERT INTO job (owner, class, properties, status) "
+          + "VALUES (1, ?, '{}', 'RUNNING')",
+        PreparedStatement.RETURN_GENERATED_KEYS)) {
+
+      stmt.setString(1, TestJob.class.getName());
+      stmt.execute();
+
+      try (ResultSet keys = stmt.getGeneratedKeys()) {
+        keys.next();
+        return keys.getLong(1);
+      }
+    }
+  }
+
+  /**
+   * Get the status of a job from the database.
+   *
+   * @param jobId
+   *          The job's database ID.
+   * @return The job's status.
+   * @throws Exception
+   *           If the status cannot be retrieved.
+   */
+  private String getStatus(long jobId) throws Exception {
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn
+        .prepareStatement("SELECT status FROM job WHERE id = ?")) {
+
+      stmt.setLong(1, jobId);
+      try (ResultSet record = stmt.executeQuery()) {
+        record.next();
+        return record.getString(1);
+      }
+    }
+  }
+
+  /**
+   * Wait until a job has the specified status, or until the {@link #TIMEOUT}
+   * has passed.
+   *
+   * @param jobId
+   *          The job's database ID.
+   * @param status
+   *          The required status.
+   * @throws Exception
+   *           If the status cannot be retrieved.
+   */
+  private void waitForStatus(long jobId, String status) throws Exception {
+    long end = System.currentTimeMillis() + TIMEOUT;
+    while (!getStatus(jobId).equals(status)
+      && System.currentTimeMillis() < end) {
+      Thread.sleep(50);
+    }
+  }
+
+  /**
+   * Wait until the dispatcher's queue is empty, or until the {@link #TIMEOUT}
+   * has passed.
+   *
+   * @throws Exception
+   *           If the wait is interrupted.
+   */
+  private void waitForEmptyQueue() throws Exception {
+    long end = System.currentTimeMillis() + TIMEOUT;
+    while (JobDispatcher.getInstance().getQueueSize() > 0
+      && System.currentTimeMillis() < end) {
+      Thread.sleep(50);
+    }
+  }
+
+  /**
+   * Test that a job that is waiting when the dispatcher starts is run.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void dispatchExistingJobTest() throws Exception {
+    long jobId = addJob();
+    startDispatcher();
+
+    waitForStatus(jobId, Job.FINISHED_STATUS);
+    assertEquals(Job.FINISHED_STATUS, getStatus(jobId));
+    assertTrue(TestJob.hasRun(jobId));
+  }
+
+  /**
+   * Test that a job queued while the dispatcher is running is run.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void dispatchQueuedJobTest() throws Exception {
+    startDispatcher();
+    long jobId = addJob();
+
+    waitForStatus(jobId, Job.FINISHED_STATUS);
+    assertEquals(Job.FINISHED_STATUS, getStatus(jobId));
+    assertTrue(TestJob.hasRun(jobId));
+  }
+
+  /**
+   * Test that several queued jobs are all run, one after the other.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void dispatchMultipleJobsTest() throws Exception {
+    startDispatcher();
+    long job1 = addJob();
+    long job2 = addJob();
+    long job3 = addJob();
+
+    waitForStatus(job3, Job.FINISHED_STATUS);
+    waitForStatus(job2, Job.FINISHED_STATUS);
+    waitForStatus(job1, Job.FINISHED_STATUS);
+
+    assertTrue(TestJob.hasRun(job1));
+    assertTrue(TestJob.hasRun(job2));
+    assertTrue(TestJob.hasRun(job3));
+  }
+
+  /**
+   * Test that a job that has already been claimed elsewhere is dropped from
+   * the queue without being run.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void claimedJobSkippedTest() throws Exception {
+
+    // Run one job so we know the dispatcher has finished starting up. (At
+    // startup it returns running jobs without a thread to the queue.)
+    startDispatcher();
+    long firstJob = addJob();
+    waitForStatus(firstJob, Job.FINISHED_STATUS);
+
+    long jobId = addRunningJob();
+    JobDispatcher.jobQueued(jobId);
+    waitForEmptyQueue();
+
+    assertEquals(0, JobDispatcher.getInstance().getQueueSize());
+    assertFalse(TestJob.hasRun(jobId));
+    assertEquals(Job.RUNNING_STATUS, getStatus(jobId));
+  }
+
+  /**
+   * Make a bulk priority job for the selection tests.
+   *
+   * @param jobId
+   *          The job ID.
+   * @param ownerId
+   *          The owner ID.
+   * @param instrumentId
+   *          The instrument ID.
+   * @return The job.
+   */
+  private QueuedJob bulkJob(long jobId, long ownerId, long instrumentId) {
+    return new QueuedJob(jobId, JobPriority.BULK, ownerId, instrumentId);
+  }
+
+  /**
+   * Test that the oldest job is chosen when nothing else separates the jobs.
+   */
+  @Test
+  public void selectOldestJobTest() {
+    List<QueuedJob> queue = Arrays.asList(bulkJob(3L, 1L, 1L),
+      bulkJob(1L, 1L, 1L), bulkJob(2L, 1L, 1L));
+
+    assertEquals(1L, JobDispatcher.selectJob(queue, new ArrayList<QueuedJob>(),
+      new HashMap<Long, Long>(), new HashMap<Long, Long>()).getJobId());
+  }
+
+  /**
+   * Test that a job whose owner has no running jobs is chosen ahead of older
+   * jobs from an owner who does.
+   */
+  @Test
+  public void selectOwnerWithFewestRunningTest() {
+    List<QueuedJob> queue = Arrays.asList(bulkJob(1L, 1L, 1L),
+      bulkJob(2L, 1L, 2L), bulkJob(3L, 2L, 3L));
+
+    List<QueuedJob> running = Arrays.asList(bulkJob(10L, 1L, 4L));
+
+    assertEquals(3L, JobDispatcher.selectJob(queue, running,
+      new HashMap<Long, Long>(), new HashMap<Long, Long>()).getJobId());
+  }
+
+  /**
+   * Test that when owners are equal, a job for an instrument with no running
+   * jobs is chosen ahead of an older job for a busy instrument.
+   */
+  @Test
+  public void selectInstrumentWithFewestRunningTest() {
+    List<QueuedJob> queue = Arrays.asList(bulkJob(1L, 1L, 1L),
+      bulkJob(2L, 2L, 2L));
+
+    List<QueuedJob> running = Arrays.asList(bulkJob(10L, 1L, 1L),
+      bulkJob(11L, 2L, 3L));
+
+    assertEquals(2L, JobDispatcher.selectJob(queue, running,
+      new HashMap<Long, Long>(), new HashMap<Long, Long>()).getJobId());
+  }
+
+  /**
+   * Test that running jobs in other priority classes do not affect the
+   * choice.
+   */
+  @Test
+  public void selectIgnoresOtherPrioritiesTest() {
+    List<QueuedJob> queue = Arrays.asList(bulkJob(1L, 1L, 1L),
+      bulkJob(2L, 2L, 2L));
+
+    List<QueuedJob> running = Arrays
+      .asList(new QueuedJob(10L, JobPriority.NRT, 1L, 1L));
+
+    assertEquals(1L, JobDispatcher.selectJob(queue, running,
+      new HashMap<Long, Long>(), new HashMap<Long, Long>()).getJobId());
+  }
+
+  /**
+   * Test that when running counts are equal, the owner who least recently
+   * had a job started is chosen.
+   */
+  @Test
+  public void selectLeastRecentOwnerTest() {
+    List<QueuedJob> queue = Arrays.asList(bulkJob(1L, 1L, 1L),
+      bulkJob(2L, 2L, 2L));
+
+    Map<Long, Long> ownerLastStarted = new HashMap<Long, Long>();
+    ownerLastStarted.put(1L, 5L);
+    ownerLastStarted.put(2L, 3L);
+
+    assertEquals(2L, JobDispatcher.selectJob(queue, new ArrayList<QueuedJob>(),
+      ownerLastStarted, new HashMap<Long, Long>()).getJobId());
+  }
+
+  /**
+   * Test that repeatedly selecting jobs from two owners alternates between
+   * them, even when one owner queued all their jobs first.
+   */
+  @Test
+  public void selectAlternatesOwnersTest() {
+    List<QueuedJob> queue = new ArrayList<QueuedJob>();
+    for (long i = 1; i <= 4; i++) {
+      queue.add(bulkJob(i, 1L, 1L));
+    }
+    for (long i = 5; i <= 6; i++) {
+      queue.add(bulkJob(i, 2L, 2L));
+    }
+
+    Map<Long, Long> ownerLastStarted = new HashMap<Long, Long>();
+    Map<Long, Long> instrumentLastStarted = new HashMap<Long, Long>();
+
+    List<Long> owners = new ArrayList<Long>();
+
+    // Run one job at a time
+    for (long dispatch = 1; dispatch <= 6; dispatch++) {
+      QueuedJob next = JobDispatcher.selectJob(queue,
+        new ArrayList<QueuedJob>(), ownerLastStarted, instrumentLastStarted);
+
+      queue.remove(next);
+      owners.add(next.getOwnerId());
+      ownerLastStarted.put(next.getOwnerId(), dispatch);
+      instrumentLastStarted.put(next.getInstrumentId(), dispatch);
+    }
+
+    assertEquals(Arrays.asList(1L, 2L, 1L, 2L, 1L, 1L), owners);
+  }
+}
@@ -0,0 +1,220 @@
+package junit.uk.ac.exeter.QuinCe.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.User.UserDB;
+import uk.ac.exeter.QuinCe.jobs.Job;
+import uk.ac.exeter.QuinCe.jobs.JobManager;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for claiming queued jobs with
+ * {@link JobManager#claimJob(Connection, ResourceManager, Properties, long)}.
+ */
+public class JobManagerTest extends BaseTest {
+
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+  }
+
+  /**
+   * Add a {@link TestJob} to the job queue.
+   *
+   * @return The job's database ID.
+   * @throws Exception
+   *           If the job cannot be added.
+   */
+  private long addJob() throws Exception {
+    return JobManager.addJob(getDataSource(),
+      UserDB.getUser(getDataSource(), "test@test.com"),
+      TestJob.class.getName(), new Properties());
+  }
+
+  /**
+   * Add a job to the queue directly in the database, without checking its
+   * class.
+   *
+   * @param jobClass
+   *          The job class.
+   * @return The job's database ID.
+   * @throws Exception
+   *           If the job cannot be added.
+   */
+  private long addRawJob(String jobClass) throws Exception {
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn.prepareStatement(
+        "INSERT INTO job (owner, class, properties) VALUES (1, ?, '{}')",
+        PreparedStatement.RETURN_GENERATED_KEYS)) {
+
+      stmt.setString(1, jobClass);
+      stmt.execute();
+
+      try (ResultSet keys = stmt.getGeneratedKeys()) {
+        keys.next();
+        return keys.getLong(1);
+      }
+    }
+  }
+
+  /**
+   * Get the status of a job from the database.
+   *
+   * @param jobId
+   *          The job's database ID.
+   * @return The job's status.
+   * @throws Exception
+   *           If the status cannot be retrieved.
+   */
+  private String getStatus(long jobId) throws Exception {
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn
+        .prepareStatement("SELECT status FROM job WHERE id = ?")) {
+
+      stmt.setLong(1, jobId);
+      try (ResultSet record = stmt.executeQuery()) {
+        record.next();
+        return record.getString(1);
+      }
+    }
+  }
+
+  /**
+   * Claim a job using a new connection, and either commit or roll back the
+   * claim.
+   *
+   * @param jobId
+   *          The job's database ID.
+   * @param commit
+   *          Indicates whether the claim should be committed.
+   * @return The claimed job, or {@code null} if it could not be claimed.
+   * @throws Exception
+   *           If the claim fails.
+   */
+  private Job claim(long jobId, boolean commit) throws Exception {
+    try (Connection conn = getConnection()) {
+      conn.setAutoCommit(false);
+
+      Job job = JobManager.claimJob(conn, ResourceManager.getInstance(),
+        ResourceManager.getInstance().getConfig(), jobId);
+
+      if (commit) {
+        conn.commit();
+      } else {
+        conn.rollback();
+      }
+
+      conn.setAutoCommit(true);
+      return job;
+    }
+  }
+
+  /**
+   * Test that a waiting job can be claimed, and that claiming it sets it
+   * running.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void claimWaitingJobTest() throws Exception {
+    long jobId = addJob();
+
+    Job job = claim(jobId, true);
+
+    assertNotNull(job);
+    assertEquals(jobId, job.getID());
+    assertEquals(TestJob.class, job.getClass());
+    assertEquals(Job.RUNNING_STATUS, getStatus(jobId));
+  }
+
+  /**
+   * Test that a job cannot be claimed a second time.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void claimClaimedJobTest() throws Exception {
+    long jobId = addJob();
+
+    assertNotNull(claim(jobId, true));
+    assertNull(claim(jobId, true));
+    assertEquals(Job.RUNNING_STATUS, getStatus(jobId));
+  }
+
+  /**
+   * Test that a job whose claim was rolled back is returned to the queue and
+   * can be claimed again.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void claimRolledBackJobTest() throws Exception {
+    long jobId = addJob();
+
+    assertNotNull(claim(jobId, false));
+    assertEquals(Job.WAITING_STATUS, getStatus(jobId));
+    assertNotNull(claim(jobId, true));
+  }
+
+  /**
+   * Test that a finished job cannot be claimed.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void claimFinishedJobTest() throws Exception {
+    long jobId = addJob();
+    JobManager.setStatus(getDataSource(), jobId, Job.FINISHED_STATUS);
+
+    assertNull(claim(jobId, true));
+    assertEquals(Job.FINISHED_STATUS, getStatus(jobId));
+  }
+
+  /**
+   * Test that a job that does not exist cannot be claimed.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void claimMissingJobTest() throws Exception {
+    assertNull(claim(1000L, true));
+  }
+
+  /**
+   * Test that a job whose class cannot be created is not returned, and is
+   * marked as failed.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user" })
+  @Test
+  public void claimInvalidJobTest() throws Exception {
+    long jobId = addRawJob("uk.ac.exeter.QuinCe.jobs.NoSuchJob");
+
+    assertNull(claim(jobId, true));
+    assertEquals(Job.ERROR_STATUS, getStatus(jobId));
+  }
+}
@@ -0,0 +1,216 @@
+package junit.uk.ac.exeter.QuinCe.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import uk.ac.exeter.QuinCe.jobs.InvalidThreadCountException;
+import uk.ac.exeter.QuinCe.jobs.Job;
+import uk.ac.exeter.QuinCe.jobs.JobPriority;
+import uk.ac.exeter.QuinCe.jobs.JobThread;
+import uk.ac.exeter.QuinCe.jobs.JobThreadPool;
+
+/**
+ * Tests for the thread reservations in {@link JobThreadPool}.
+ */
+public class JobThreadPoolTest {
+
+  @BeforeEach
+  @AfterEach
+  public void destroyPool() {
+    JobThreadPool.destroy();
+  }
+
+  /**
+   * Make a map of reserved thread counts.
+   *
+   * @param interactive
+   *          The threads reserved for interactive jobs.
+   * @param nrt
+   *          The threads reserved for NRT jobs.
+   * @param bulk
+   *          The threads reserved for bulk jobs.
+   * @return The reservations.
+   */
+  private Map<JobPriority, Integer> reservations(int interactive, int nrt,
+    int bulk) {
+
+    Map<JobPriority, Integer> result = new EnumMap<JobPriority, Integer>(
+      JobPriority.class);
+    result.put(JobPriority.INTERACTIVE, interactive);
+    result.put(JobPriority.NRT, nrt);
+    result.put(JobPriority.BULK, bulk);
+    return result;
+  }
+
+  /**
+   * Take a thread from the pool for a job of the specified priority.
+   *
+   * @param priority
+   *          The job's priority class.
+   * @return The thread, or {@code null} if none is available.
+   * @throws Exception
+   *           If the pool cannot be accessed.
+   */
+  private JobThread takeThread(JobPriority priority) throws Exception {
+    return JobThreadPool.getInstance().getJobThread(Mockito.mock(Job.class),
+      priority);
+  }
+
+  /**
+   * Test that a pool with no reservations gives threads to any class until
+   * they are all used.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @Test
+  public void noReservationsTest() throws Exception {
+    JobThreadPool.initialise(2);
+    JobThreadPool pool = JobThreadPool.getInstance();
+
+    assertTrue(pool.canStart(JobPriority.BULK));
+    assertNotNull(takeThread(JobPriority.BULK));
+    assertTrue(pool.canStart(JobPriority.BULK));
+    assertNotNull(takeThread(JobPriority.BULK));
+
+    for (JobPriority priority : JobPriority.values()) {
+      assertFalse(pool.canStart(priority));
+    }
+
+    assertNull(takeThread(JobPriority.INTERACTIVE));
+  }
+
+  /**
+   * Test that reserved threads are held back from the other classes.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @Test
+  public void reservedThreadsHeldTest() throws Exception {
+    JobThreadPool.initialise(4, reservations(1, 1, 0));
+    JobThreadPool pool = JobThreadPool.getInstance();
+
+    // Bulk jobs can only use the two unreserved threads
+    assertNotNull(takeThread(JobPriority.BULK));
+    assertNotNull(takeThread(JobPriority.BULK));
+    assertFalse(pool.canStart(JobPriority.BULK));
+    assertNull(takeThread(JobPriority.BULK));
+
+    // The reserved threads are still available to their own classes
+    assertTrue(pool.canStart(JobPriority.INTERACTIVE));
+    assertTrue(pool.canStart(JobPriority.NRT));
+    assertNotNull(takeThread(JobPriority.NRT));
+    assertNotNull(takeThread(JobPriority.INTERACTIVE));
+
+    for (JobPriority priority : JobPriority.values()) {
+      assertFalse(pool.canStart(priority));
+    }
+  }
+
+  /**
+   * Test that a class can use unreserved threads once its own reservation is
+   * in use, but not another class's reservation.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @Test
+  public void reservationUsedTest() throws Exception {
+    JobThreadPool.initialise(3, reservations(0, 1, 0));
+    JobThreadPool pool = JobThreadPool.getInstance();
+
+    assertNotNull(takeThread(JobPriority.NRT));
+    assertNotNull(takeThread(JobPriority.NRT));
+
+    // The NRT jobs have used their reservation and one unreserved thread, so
+    // one thread remains for anyone
+    assertEquals(2, pool.getRunningThreadsCount(JobPriority.NRT));
+    assertTrue(pool.canStart(JobPriority.BULK));
+    assertTrue(pool.canStart(JobPriority.NRT));
+  }
+
+  /**
+   * Test that returning a thread makes it available again.
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @Test
+  public void returnThreadTest() throws Exception {
+    JobThreadPool.initialise(2, reservations(1, 0, 0));
+    JobThreadPool pool = JobThreadPool.getInstance();
+
+    JobThread thread = takeThread(JobPriority.BULK);
+    assertFalse(pool.canStart(JobPriority.BULK));
+
+    pool.returnThread(thread);
+    assertEquals(0, pool.getRunningThreadsCount(JobPriority.BULK));
+    assertTrue(pool.canStart(JobPriority.BULK));
+  }
+
+  /**
+   * Test that a pool with no threads is rejected.
+   */
+  @Test
+  public void zeroThreadsTest() {
+    assertThrows(InvalidThreadCountException.class, () -> {
+      JobThreadPool.initialise(0);
+    });
+  }
+
+  /**
+   * Test that negative reservations are rejected.
+   */
+  @Test
+  public void negativeReservationTest() {
+    assertThrows(InvalidThreadCountException.class, () -> {
+      JobThreadPool.initialise(4, reservations(-1, 0, 0));
+    });
+  }
+
+  /**
+   * Test that reservations larger than the pool are rejected.
+   */
+  @Test
+  public void tooManyReservationsTest() {
+    assertThrows(InvalidThreadCountException.class, () -> {
+      JobThreadPool.initialise(2, reservations(1, 1, 1));
+    });
+  }
+
+  /**
+   * Test that reservations that leave no threads for a class without a
+   * reservation are rejected.
+   */
+  @Test
+  public void noUnreservedThreadsTest() {
+    assertThrows(InvalidThreadCountException.class, () -> {
+      JobThreadPool.initialise(2, reservations(1, 1, 0));
+    });
+  }
+
+  /**
+   * Test that every class can be given a reservation that uses the whole
+   * pool.
+   */
+  @Test
+  public void allThreadsReservedTest() {
+    assertDoesNotThrow(() -> {
+      JobThreadPool.initialise(3, reservations(1, 1, 1));
+    });
+  }
+}
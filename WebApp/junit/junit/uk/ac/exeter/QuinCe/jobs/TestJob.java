@@ -0,0 +1,74 @@
+package junit.uk.ac.exeter.QuinCe.jobs;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import uk.ac.exeter.QuinCe.jobs.InvalidJobParametersException;
+import uk.ac.exeter.QuinCe.jobs.Job;
+import uk.ac.exeter.QuinCe.jobs.JobFailedException;
+import uk.ac.exeter.QuinCe.jobs.JobThread;
+import uk.ac.exeter.QuinCe.utils.MissingParamException;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * A {@link Job} that does nothing except record that it has been run, for
+ * testing the job management classes.
+ */
+public class TestJob extends Job {
+
+  /**
+   * The IDs of the jobs that have been run.
+   */
+  private static Set<Long> runJobs = Collections
+    .synchronizedSet(new HashSet<Long>());
+
+  /**
+   * Constructor used by the job management classes.
+   *
+   * @param resourceManager
+   *          The application resource manager.
+   * @param config
+   *          The application configuration.
+   * @param id
+   *          The job's database ID.
+   * @param properties
+   *          The job properties.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws InvalidJobParametersException
+   *           If the job properties are invalid.
+   */
+  public TestJob(ResourceManager resourceManager, Properties config, long id,
+    Properties properties)
+    throws MissingParamException, InvalidJobParametersException {
+    super(resourceManager, config, id, properties);
+  }
+
+  @Override
+  protected void execute(JobThread thread) throws JobFailedException {
+    runJobs.add(getID());
+  }
+
+  @Override
+  protected void validateParameters() throws InvalidJobParametersException {
+    // No parameters
+  }
+
+  @Override
+  public String getJobName() {
+    return "Test Job";
+  }
+
+  /**
+   * Determine whether the job with the specified ID has been run.
+   *
+   * @param jobId
+   *          The job's database ID.
+   * @return {@code true} if the job has been run; {@code false} otherwise.
+   */
+  public static boolean hasRun(long jobId) {
+    return runJobs.contains(jobId);
+  }
+}
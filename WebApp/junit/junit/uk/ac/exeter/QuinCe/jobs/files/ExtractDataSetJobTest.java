@@ -0,0 +1,313 @@
+package junit.uk.ac.exeter.QuinCe.jobs.files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.User.UserDB;
+import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
+import uk.ac.exeter.QuinCe.jobs.Job;
+import uk.ac.exeter.QuinCe.jobs.JobDispatcher;
+import uk.ac.exeter.QuinCe.jobs.JobManager;
+import uk.ac.exeter.QuinCe.jobs.files.DataSetJob;
+import uk.ac.exeter.QuinCe.jobs.files.ExtractDataSetJob;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link ExtractDataSetJob}.
+ */
+public class ExtractDataSetJobTest extends BaseTest {
+
+  /**
+   * The maximum time to wait for the job to finish, in milliseconds.
+   */
+  private static final long TIMEOUT = 30000L;
+
+  /**
+   * The database ID of the file definition used in the tests.
+   */
+  private static final long FILE_DEFINITION_ID = 1L;
+
+  /**
+   * The database ID of the GPS file definition used in the position tests.
+   */
+  private static final long GPS_FILE_DEFINITION_ID = 2L;
+
+  /**
+   * The database ID of the dataset used in the tests.
+   */
+  private static final long DATASET_ID = 1L;
+
+  /**
+   * The database ID of the SST column.
+   */
+  private static final long SST_COLUMN_ID = 1L;
+
+  /**
+   * The data files created by the test.
+   */
+  private List<File> files = new ArrayList<File>();
+
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+    ResourceManager.getInstance().getConfig().setProperty("filestore",
+      System.getProperty("java.io.tmpdir") + "/FILE_STORE");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    JobDispatcher.destroy();
+    files.forEach(File::delete);
+    ResourceManager.destroy();
+  }
+
+  /**
+   * Write a data file to the file store. The file has one line per minute
+   * between the specified minutes past midnight on 2024-01-01, inclusive, and
+   * every line has the same SST value.
+   *
+   * @param fileId
+   *          The file's database ID.
+   * @param firstMinute
+   *          The minute of the first line.
+   * @param lastMinute
+   *          The minute of the last line.
+   * @param sst
+   *          The SST value.
+   * @throws Exception
+   *           If the file cannot be written.
+   */
+  private void writeFile(long fileId, int firstMinute, int lastMinute,
+    String sst) throws Exception {
+
+    writeFile(FILE_DEFINITION_ID, fileId, firstMinute, lastMinute,
+      "," + sst + ",35");
+  }
+
+  /**
+   * Write a data file to the file store. The file has one line per minute
+   * between the specified minutes past midnight on 2024-01-01, inclusive.
+   * Each line is the time followed by the same fields.
+   *
+   * @param fileDefinitionId
+   *          The database ID of the file's definition.
+   * @param fileId
+   *          The file's database ID.
+   * @param firstMinute
+   *          The minute of the first line.
+   * @param lastMinute
+   *          The minute of the last line.
+   * @param fields
+   *          The fields after the time, including the leading separator.
+   * @throws Exception
+   *           If the file cannot be written.
+   */
+  private void writeFile(long fileDefinitionId, long fileId, int firstMinute,
+    int lastMinute, String fields) throws Exception {
+
+    File directory = new File(
+      ResourceManager.getInstance().getConfig().getProperty("filestore"),
+      String.valueOf(fileDefinitionId));
+    directory.mkdirs();
+
+    File file = new File(directory, String.valueOf(fileId));
+    try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+      for (int minute = firstMinute; minute <= lastMinute; minute++) {
+        out.println(String.format("2024-01-01 00:%02d:00%s", minute, fields));
+      }
+    }
+
+    files.add(file);
+  }
+
+  /**
+   * Get the stored values for a column in the test dataset.
+   *
+   * @param columnId
+   *          The column's database ID.
+   * @return The values' times and values.
+   * @throws Exception
+   *           If the values cannot be retrieved.
+   */
+  private List<Object[]> getStoredValues(long columnId) throws Exception {
+    List<Object[]> result = new ArrayList<Object[]>();
+
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn.prepareStatement(
+        "SELECT date, value FROM sensor_values "
+          + "WHERE dataset_id = ? AND file_column = ?")) {
+
+      stmt.setLong(1, DATASET_ID);
+      stmt.setLong(2, columnId);
+
+      try (ResultSet records = stmt.executeQuery()) {
+        while (records.next()) {
+          result.add(
+            new Object[] { records.getLong(1), records.getString(2) });
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Run an {@link ExtractDataSetJob} for the test dataset and wait for it to
+   * finish.
+   *
+   * @return The job's final status.
+   * @throws Exception
+   *           If the job cannot be run.
+   */
+  private String runJob() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(DataSetJob.ID_PARAM, String.valueOf(DATASET_ID));
+
+    long jobId = JobManager.addJob(getDataSource(),
+      UserDB.getUser(getDataSource(), "test@test.com"),
+      ExtractDataSetJob.class.getName(), properties);
+
+    JobDispatcher.initialise(ResourceManager.getInstance(),
+      ResourceManager.getInstance().getConfig());
+
+    long end = System.currentTimeMillis() + TIMEOUT;
+    String status = getJobStatus(jobId);
+    while ((status.equals(Job.WAITING_STATUS)
+      || status.equals(Job.RUNNING_STATUS))
+      && System.currentTimeMillis() < end) {
+      Thread.sleep(50);
+      status = getJobStatus(jobId);
+    }
+
+    return status;
+  }
+
+  /**
+   * Get the status of a job from the database.
+   *
+   * @param jobId
+   *          The job's database ID.
+   * @return The job's status.
+   * @throws Exception
+   *           If the status cannot be retrieved.
+   */
+  private String getJobStatus(long jobId) throws Exception {
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn
+        .prepareStatement("SELECT status FROM job WHERE id = ?")) {
+
+      stmt.setLong(1, jobId);
+      try (ResultSet record = stmt.executeQuery()) {
+        record.next();
+        return record.getString(1);
+      }
+    }
+  }
+
+  /**
+   * Test that lines appearing in more than one file are only extracted once,
+   * from the first file, even when the files containing them are not next to
+   * each other.
+   *
+   * <p>
+   * File 1 covers 00:00 to 00:30. Files 2 (00:10 to 00:12) and 3 (00:20 to
+   * 00:25) both lie inside file 1, but not inside each other, so file 3's
+   * lines are only duplicates of lines in file 1.
+   * </p>
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/jobs/files/ExtractDataSetJobTest" })
+  @Test
+  public void nonAdjacentOverlappingFilesTest() throws Exception {
+    writeFile(1L, 0, 30, "10");
+    writeFile(2L, 10, 12, "20");
+    writeFile(3L, 20, 25, "30");
+
+    assertEquals(Job.FINISHED_STATUS, runJob());
+
+    List<Object[]> stored = getStoredValues(SST_COLUMN_ID);
+    Set<Long> times = new HashSet<Long>();
+    Set<String> values = new HashSet<String>();
+    for (Object[] value : stored) {
+      times.add((Long) value[0]);
+      values.add((String) value[1]);
+    }
+
+    assertEquals(31, stored.size());
+    assertEquals(31, times.size());
+    assertEquals(Set.of("10"), values);
+  }
+
+  /**
+   * Check that a column has one stored value for each of a number of times,
+   * and that all the values are the same.
+   *
+   * @param columnId
+   *          The column's database ID.
+   * @param count
+   *          The expected number of values.
+   * @param expectedValue
+   *          The expected value.
+   * @throws Exception
+   *           If the values cannot be retrieved.
+   */
+  private void checkStoredValues(long columnId, int count,
+    double expectedValue) throws Exception {
+
+    List<Object[]> stored = getStoredValues(columnId);
+    Set<Long> times = new HashSet<Long>();
+    for (Object[] value : stored) {
+      times.add((Long) value[0]);
+      assertEquals(expectedValue, Double.parseDouble((String) value[1]));
+    }
+
+    assertEquals(count, stored.size());
+    assertEquals(count, times.size());
+  }
+
+  /**
+   * Test that position values supplied by two file definitions at the same
+   * time are only extracted once, from the first file.
+   *
+   * <p>
+   * The data file covers 00:00 to 00:10 and the GPS file covers 00:05 to
+   * 00:15, so the dataset covers 00:05 to 00:10. Both files contain position
+   * for all those times, with different values.
+   * </p>
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/jobs/files/ExtractDataSetJobPositionTest" })
+  @Test
+  public void positionInTwoDefinitionsTest() throws Exception {
+    writeFile(FILE_DEFINITION_ID, 1L, 0, 10, ",10,-10,50");
+    writeFile(GPS_FILE_DEFINITION_ID, 2L, 5, 15, ",-20,60");
+
+    assertEquals(Job.FINISHED_STATUS, runJob());
+
+    checkStoredValues(SST_COLUMN_ID, 6, 10D);
+    checkStoredValues(FileDefinition.LONGITUDE_COLUMN_ID, 6, -10D);
+    checkStoredValues(FileDefinition.LATITUDE_COLUMN_ID, 6, 50D);
+  }
+}
@@ -0,0 +1,219 @@
+package junit.uk.ac.exeter.QuinCe.jobs.files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.User.UserDB;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.jobs.Job;
+import uk.ac.exeter.QuinCe.jobs.JobDispatcher;
+import uk.ac.exeter.QuinCe.jobs.JobManager;
+import uk.ac.exeter.QuinCe.jobs.files.DataReductionJob;
+import uk.ac.exeter.QuinCe.jobs.files.DataSetJob;
+import uk.ac.exeter.QuinCe.jobs.files.RecalculateMeasurementsJob;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link RecalculateMeasurementsJob}.
+ *
+ * <p>
+ * The tests use the CONTROS pCO₂ dataset from the reducer tests. The data
+ * reduction records produced by recalculating the measurements affected by a
+ * QC change must be the same as those produced by re-running the data
+ * reduction for the whole dataset.
+ * </p>
+ */
+public class RecalculateMeasurementsJobTest extends BaseTest {
+
+  /**
+   * The maximum time to wait for the jobs to finish, in milliseconds.
+   */
+  private static final long TIMEOUT = 60000L;
+
+  /**
+   * The database ID of the dataset used in the tests.
+   */
+  private static final long DATASET_ID = 2765L;
+
+  /**
+   * The database ID of an SST value used by a measurement near the end of the
+   * dataset.
+   */
+  private static final long SST_VALUE_ID = 2075823382L;
+
+  @BeforeEach
+  public void setup() {
+    initResourceManager();
+    ResourceManager.getInstance().getConfig().setProperty("filestore",
+      System.getProperty("java.io.tmpdir") + "/FILE_STORE");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    JobDispatcher.destroy();
+    ResourceManager.destroy();
+  }
+
+  /**
+   * Run a job for the test dataset, and wait for it and any jobs it queues to
+   * finish.
+   *
+   * @param jobClass
+   *          The job class.
+   * @param properties
+   *          The job properties. The dataset ID is added to these.
+   * @throws Exception
+   *           If the job cannot be run.
+   */
+  private void runJob(Class<? extends DataSetJob> jobClass,
+    Properties properties) throws Exception {
+
+    properties.setProperty(DataSetJob.ID_PARAM, String.valueOf(DATASET_ID));
+
+    JobManager.addJob(getDataSource(),
+      UserDB.getUser(getDataSource(), "test@test.com"), jobClass.getName(),
+      properties);
+
+    JobDispatcher.initialise(ResourceManager.getInstance(),
+      ResourceManager.getInstance().getConfig());
+
+    long end = System.currentTimeMillis() + TIMEOUT;
+    while (countJobs("status IN ('" + Job.WAITING_STATUS + "', '"
+      + Job.RUNNING_STATUS + "')") > 0 && System.currentTimeMillis() < end) {
+      Thread.sleep(50);
+    }
+
+    assertEquals(0,
+      countJobs("status != '" + Job.FINISHED_STATUS + "'"),
+      "Not all jobs finished successfully");
+  }
+
+  /**
+   * Count the jobs that match a condition.
+   *
+   * @param condition
+   *          The SQL condition.
+   * @return The number of matching jobs.
+   * @throws Exception
+   *           If the jobs cannot be counted.
+   */
+  private int countJobs(String condition) throws Exception {
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn
+        .prepareStatement("SELECT COUNT(*) FROM job WHERE " + condition);
+      ResultSet record = stmt.executeQuery()) {
+
+      record.next();
+      return record.getInt(1);
+    }
+  }
+
+  /**
+   * Get the data reduction records for the test dataset, keyed by measurement
+   * and variable ID.
+   *
+   * @return The records.
+   * @throws Exception
+   *           If the records cannot be retrieved.
+   */
+  private Map<String, String> getDataReduction() throws Exception {
+
+    Map<String, String> result = new TreeMap<String, String>();
+
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn.prepareStatement(
+        "SELECT dr.measurement_id, dr.variable_id, dr.calculation_values, "
+          + "dr.qc_flag, dr.qc_message FROM data_reduction dr "
+          + "INNER JOIN measurements m ON dr.measurement_id = m.id "
+          + "WHERE m.dataset_id = ?")) {
+
+      stmt.setLong(1, DATASET_ID);
+
+      try (ResultSet records = stmt.executeQuery()) {
+        while (records.next()) {
+          result.put(records.getLong(1) + "/" + records.getLong(2),
+            records.getString(3) + "/" + records.getInt(4) + "/"
+              + records.getString(5));
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Set the user QC flag of a sensor value in the database.
+   *
+   * @param id
+   *          The sensor value's database ID.
+   * @param flag
+   *          The flag.
+   * @throws Exception
+   *           If the flag cannot be set.
+   */
+  private void setUserQC(long id, Flag flag) throws Exception {
+    try (Connection conn = getConnection();
+      PreparedStatement stmt = conn.prepareStatement("UPDATE sensor_values "
+        + "SET user_qc_flag = ?, user_qc_message = ? WHERE id = ?")) {
+
+      stmt.setInt(1, flag.getFlagValue());
+      stmt.setString(2, "Manual");
+      stmt.setLong(3, id);
+      stmt.execute();
+    }
+  }
+
+  /**
+   * Test that recalculating the measurements affected by a QC change gives
+   * the same data reduction records as processing the whole dataset.
+   *
+   * <p>
+   * There is no post-calibration for the dataset, so every record is also
+   * flagged by the post-calibration check. This must be the same for the
+   * recalculated records as for the full dataset.
+   * </p>
+   *
+   * @throws Exception
+   *           If any errors occur.
+   */
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/dataset_both_zeros",
+    "resources/sql/data/DataSet/DataReduction/ControsPco2ReducerTest/pre-calibration" })
+  @Test
+  public void targetedMatchesFullTest() throws Exception {
+
+    runJob(DataReductionJob.class, new Properties());
+    Map<String, String> original = getDataReduction();
+    assertFalse(original.isEmpty());
+
+    setUserQC(SST_VALUE_ID, Flag.BAD);
+
+    Properties recalculateProperties = new Properties();
+    recalculateProperties.setProperty(
+      RecalculateMeasurementsJob.SENSOR_VALUES_PARAM,
+      String.valueOf(SST_VALUE_ID));
+    runJob(RecalculateMeasurementsJob.class, recalculateProperties);
+    Map<String, String> targeted = getDataReduction();
+
+    runJob(DataReductionJob.class, new Properties());
+    Map<String, String> full = getDataReduction();
+
+    assertNotEquals(original, targeted);
+    assertEquals(full, targeted);
+  }
+}
@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
@@ -1655,4 +1656,47 @@ public class StringUtilsTest extends BaseTest {
   public void formatDoubleDoubleTest(Double in, String out) {
     assertEquals(out, StringUtils.formatNumber(in));
   }
+
+  /**
+   * Lines to be split by
+   * {@link StringUtils#splitLine(String, char, int, boolean)} with each
+   * separator.
+   *
+   * @return The lines and separators.
+   */
+  private static final Object[] getSplitLineValues() {
+    return new Object[] { new Object[] { "a,b,c", ',' },
+      new Object[] { "a,,c", ',' }, new Object[] { "a,b,", ',' },
+      new Object[] { ",a,b", ',' }, new Object[] { ",,,,", ',' },
+      new Object[] { "", ',' }, new Object[] { "abc", ',' },
+      new Object[] { "a\tb\t\tc", '\t' }, new Object[] { "a;b; c ;", ';' } };
+  }
+
+  /**
+   * Test that {@link StringUtils#splitLine(String, char, int, boolean)} gives
+   * the same result as {@link String#split(String, int)} with the limit used
+   * for data file lines.
+   *
+   * @param line
+   *          The line
+   * @param separator
+   *          The separator
+   */
+  @ParameterizedTest
+  @MethodSource("getSplitLineValues")
+  public void splitLineTest(String line, char separator) {
+    assertEquals(
+      Arrays.asList(line.split(String.valueOf(separator), line.length())),
+      StringUtils.splitLine(line, separator, line.length(), false));
+  }
+
+  /**
+   * Test that {@link StringUtils#splitLine(String, char, int, boolean)}
+   * treats runs of separators as a single separator when requested.
+   */
+  @Test
+  public void splitLineCollapseTest() {
+    assertEquals(Arrays.asList("a", "b", "c"),
+      StringUtils.splitLine("a   b c", ' ', 7, true));
+  }
 }
@@ -0,0 +1,200 @@
+package junit.uk.ac.exeter.QuinCe.web.datasets.plotPage.ManualQC;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.flywaydb.test.annotation.FlywayTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ReadOnlyDataReductionRecord;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.ManualQC.TableRowIndex;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Tests for the {@link TableRowIndex}.
+ *
+ * <p>
+ * The tests use ten values in column 1, one per minute with IDs 1 to 10, and
+ * two values in column 2: ID 20 at minute 0 and ID 21 at 5:30. There are
+ * therefore eleven rows, and the row at 5:30 has no value in column 1.
+ * Measurement 100 is at minute 2 and has data reduction records. Measurement
+ * 101 is at minute 6 and has none.
+ * </p>
+ */
+public class TableRowIndexTest extends BaseTest {
+
+  private static final long DATASET_ID = 1L;
+
+  private static final LocalDateTime START_TIME = LocalDateTime.of(2023, 1, 1,
+    0, 0, 0);
+
+  private static final int ROW_COUNT = 11;
+
+  /**
+   * The row at 5:30.
+   */
+  private static final int HALF_MINUTE_ROW = 6;
+
+  private Measurement measurement100;
+
+  private Measurement measurement101;
+
+  private Map<Variable, ReadOnlyDataReductionRecord> dataReduction100;
+
+  @BeforeEach
+  public void setUp() {
+    initResourceManager();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    ResourceManager.destroy();
+  }
+
+  private TableRowIndex makeIndex() throws Exception {
+    DatasetSensorValues sensorValues = new DatasetSensorValues(
+      InstrumentDB.getInstrument(getConnection(), 1L));
+
+    for (int i = 1; i <= 10; i++) {
+      sensorValues.add(new SensorValue(i, DATASET_ID, 1L,
+        START_TIME.plusMinutes(i - 1), "12", null, Flag.ASSUMED_GOOD, null));
+    }
+
+    sensorValues.add(new SensorValue(20L, DATASET_ID, 2L, START_TIME, "12",
+      null, Flag.ASSUMED_GOOD, null));
+    sensorValues.add(new SensorValue(21L, DATASET_ID, 2L,
+      START_TIME.plusMinutes(5).plusSeconds(30), "12", null,
+      Flag.ASSUMED_GOOD, null));
+
+    measurement100 = new Measurement(100L, DATASET_ID,
+      START_TIME.plusMinutes(2), "var_1");
+    measurement101 = new Measurement(101L, DATASET_ID,
+      START_TIME.plusMinutes(6), "var_1");
+
+    TreeMap<LocalDateTime, Measurement> measurements = new TreeMap<LocalDateTime, Measurement>();
+    measurements.put(measurement100.getTime(), measurement100);
+    measurements.put(measurement101.getTime(), measurement101);
+
+    dataReduction100 = new HashMap<Variable, ReadOnlyDataReductionRecord>();
+    Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> dataReduction = new HashMap<Long, Map<Variable, ReadOnlyDataReductionRecord>>();
+    dataReduction.put(100L, dataReduction100);
+
+    return new TableRowIndex(sensorValues, Arrays.asList(1L, 2L),
+      measurements, dataReduction);
+  }
+
+  /**
+   * Get the row number for a whole minute.
+   *
+   * @param minute
+   *          The minute.
+   * @return The row number.
+   */
+  private int row(int minute) {
+    return minute <= 5 ? minute : minute + 1;
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void rowTimesTest() throws Exception {
+    TableRowIndex index = makeIndex();
+
+    assertEquals(ROW_COUNT, index.size());
+
+    for (int minute = 0; minute < 10; minute++) {
+      assertEquals(START_TIME.plusMinutes(minute),
+        index.getTime(row(minute)));
+    }
+
+    assertEquals(START_TIME.plusMinutes(5).plusSeconds(30),
+      index.getTime(HALF_MINUTE_ROW));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void sensorValuesTest() throws Exception {
+    TableRowIndex index = makeIndex();
+
+    for (int minute = 0; minute < 10; minute++) {
+      assertEquals(minute + 1,
+        index.getSensorValue(row(minute), 1L).getId());
+    }
+
+    assertNull(index.getSensorValue(HALF_MINUTE_ROW, 1L));
+
+    assertEquals(20L, index.getSensorValue(0, 2L).getId());
+    assertEquals(21L, index.getSensorValue(HALF_MINUTE_ROW, 2L).getId());
+    assertNull(index.getSensorValue(row(1), 2L));
+
+    // Column that isn't indexed
+    assertNull(index.getSensorValue(0, 3L));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void noMeasurementBeforeTest() throws Exception {
+    TableRowIndex index = makeIndex();
+
+    for (int minute = 0; minute < 2; minute++) {
+      assertNull(index.getMeasurement(row(minute)));
+      assertNull(index.getConcurrentMeasurement(row(minute)));
+      assertNull(index.getDataReduction(row(minute)));
+    }
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void measurementRowsTest() throws Exception {
+    TableRowIndex index = makeIndex();
+
+    assertSame(measurement100, index.getMeasurement(row(2)));
+    assertSame(measurement100, index.getConcurrentMeasurement(row(2)));
+    assertSame(dataReduction100, index.getDataReduction(row(2)));
+
+    // Measurement 101 has no data reduction records
+    assertSame(measurement101, index.getMeasurement(row(6)));
+    assertSame(measurement101, index.getConcurrentMeasurement(row(6)));
+    assertNull(index.getDataReduction(row(6)));
+  }
+
+  @FlywayTest(locationsForMigrate = { "resources/sql/testbase/user",
+    "resources/sql/testbase/instrument" })
+  @Test
+  public void rowsWithoutMeasurementTest() throws Exception {
+    TableRowIndex index = makeIndex();
+
+    // Between the measurements, including the row with no column 1 value
+    for (int row : new int[] { row(3), row(4), row(5), HALF_MINUTE_ROW }) {
+      assertNull(index.getMeasurement(row));
+      assertSame(measurement100, index.getConcurrentMeasurement(row));
+      assertNull(index.getDataReduction(row));
+    }
+
+    // After the last measurement
+    for (int minute = 7; minute < 10; minute++) {
+      assertNull(index.getMeasurement(row(minute)));
+      assertSame(measurement101, index.getConcurrentMeasurement(row(minute)));
+      assertNull(index.getDataReduction(row(minute)));
+    }
+  }
+}
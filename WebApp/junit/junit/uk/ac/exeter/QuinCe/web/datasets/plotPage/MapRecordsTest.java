@@ -0,0 +1,118 @@
+package junit.uk.ac.exeter.QuinCe.web.datasets.plotPage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.javadocmd.simplelatlng.LatLng;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.GeoBounds;
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.MapRecords;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.TimeMapRecord;
+
+/**
+ * Tests for the map data generated by {@link MapRecords}.
+ *
+ * <p>
+ * The records form a straight track running north-east from (0, 0), one
+ * record per minute, with 0.0005 degrees between records.
+ * </p>
+ */
+public class MapRecordsTest extends BaseTest {
+
+  private static final LocalDateTime START_TIME = LocalDateTime.of(2023, 1, 1,
+    0, 0, 0);
+
+  private static final GeoBounds WORLD = new GeoBounds(-180, 180, -90, 90);
+
+  private MapRecords makeRecords(int count) {
+    MapRecords records = new MapRecords(count);
+    for (int i = 0; i < count; i++) {
+      records.add(new TimeMapRecord(new LatLng(i * 0.0005, i * 0.0005),
+        START_TIME.plusMinutes(i)));
+    }
+
+    return records;
+  }
+
+  private long rowId(int minute) {
+    return DateTimeUtils.dateToLong(START_TIME.plusMinutes(minute));
+  }
+
+  private int featureCount(String json, int layer) {
+    JsonArray layers = JsonParser.parseString(json).getAsJsonArray();
+    return layers.get(layer).getAsJsonObject().get("features")
+      .getAsJsonArray().size();
+  }
+
+  @Test
+  public void allRecordsBelowLimitTest() {
+    String json = makeRecords(500).getDisplayJson(WORLD,
+      new ArrayList<Long>(), true, false);
+    assertEquals(500, featureCount(json, 0));
+  }
+
+  @Test
+  public void boundsTest() {
+    // Records 100 to 199 inclusive
+    GeoBounds bounds = new GeoBounds(0.04975, 0.09975, 0.04975, 0.09975);
+    String json = makeRecords(500).getDisplayJson(bounds,
+      new ArrayList<Long>(), true, false);
+    assertEquals(100, featureCount(json, 0));
+  }
+
+  @Test
+  public void decimatedTest() {
+    String json = makeRecords(100000).getDisplayJson(WORLD,
+      new ArrayList<Long>(), true, false);
+
+    int count = featureCount(json, 0);
+    assertTrue(count > 0);
+    assertTrue(count <= 1000);
+  }
+
+  @Test
+  public void decimatedBoundsTest() {
+    GeoBounds bounds = new GeoBounds(10.0003, 30.0003, 10.0003, 30.0003);
+    String json = makeRecords(100000).getDisplayJson(bounds,
+      new ArrayList<Long>(), true, false);
+
+    JsonArray features = JsonParser.parseString(json).getAsJsonArray().get(0)
+      .getAsJsonObject().get("features").getAsJsonArray();
+
+    assertTrue(features.size() > 0);
+    assertTrue(features.size() <= 1000);
+
+    for (JsonElement feature : features) {
+      JsonArray coordinates = feature.getAsJsonObject().get("geometry")
+        .getAsJsonObject().get("coordinates").getAsJsonArray();
+      assertTrue(bounds.inBounds(new LatLng(coordinates.get(1).getAsDouble(),
+        coordinates.get(0).getAsDouble())));
+    }
+  }
+
+  @Test
+  public void selectionTest() {
+    List<Long> selection = Arrays.asList(rowId(5), rowId(50000), rowId(99999));
+
+    String json = makeRecords(100000).getDisplayJson(WORLD, selection, true,
+      false);
+    assertEquals(3, featureCount(json, 2));
+
+    // Only the selected records in the bounds are included
+    GeoBounds bounds = new GeoBounds(0, 1, 0, 1);
+    json = makeRecords(100000).getDisplayJson(bounds, selection, true, false);
+    assertEquals(1, featureCount(json, 2));
+  }
+}
@@ -0,0 +1,162 @@
+package junit.uk.ac.exeter.QuinCe.web.datasets.plotPage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotDownsampler;
+
+/**
+ * Tests for the Largest-Triangle-Three-Buckets implementation in
+ * {@link PlotDownsampler}.
+ *
+ * <p>
+ * The values are {@code [x, y]} arrays, with X values running from zero.
+ * </p>
+ */
+public class PlotDownsamplerTest extends BaseTest {
+
+  /**
+   * Make a set of values following a sine wave.
+   *
+   * @param count
+   *          The number of values.
+   * @return The values.
+   */
+  private List<double[]> makeValues(int count) {
+    List<double[]> values = new ArrayList<double[]>(count);
+    for (int i = 0; i < count; i++) {
+      values.add(new double[] { i, Math.sin(i / 10D) });
+    }
+
+    return values;
+  }
+
+  /**
+   * Downsample a set of values without keeping any extra values.
+   *
+   * @param values
+   *          The values.
+   * @param threshold
+   *          The downsampling threshold.
+   * @return The downsampled values.
+   */
+  private List<double[]> downsample(List<double[]> values, int threshold) {
+    return PlotDownsampler.downsample(values, threshold, v -> v[0], v -> v[1],
+      v -> false);
+  }
+
+  /**
+   * Check that a list of values is in X order.
+   *
+   * @param values
+   *          The values.
+   */
+  private void checkOrder(List<double[]> values) {
+    for (int i = 1; i < values.size(); i++) {
+      assertTrue(values.get(i)[0] > values.get(i - 1)[0]);
+    }
+  }
+
+  @Test
+  public void thresholdCountTest() {
+    List<double[]> values = makeValues(10000);
+    List<double[]> result = downsample(values, 500);
+    assertEquals(500, result.size());
+    checkOrder(result);
+  }
+
+  @Test
+  public void firstAndLastKeptTest() {
+    List<double[]> values = makeValues(10000);
+    List<double[]> result = downsample(values, 100);
+    assertSame(values.get(0), result.get(0));
+    assertSame(values.get(values.size() - 1), result.get(result.size() - 1));
+  }
+
+  @Test
+  public void spikeKeptTest() {
+    List<double[]> values = makeValues(10000);
+    double[] spike = values.get(5000);
+    spike[1] = 1000D;
+
+    assertTrue(downsample(values, 100).contains(spike));
+  }
+
+  @Test
+  public void belowThresholdTest() {
+    List<double[]> values = makeValues(50);
+    assertSame(values, downsample(values, 100));
+  }
+
+  @Test
+  public void equalToThresholdTest() {
+    List<double[]> values = makeValues(100);
+    assertSame(values, downsample(values, 100));
+  }
+
+  @Test
+  public void disabledTest() {
+    List<double[]> values = makeValues(10000);
+    assertSame(values, downsample(values, 0));
+    assertSame(values, downsample(values, 2));
+  }
+
+  @Test
+  public void nanGapsTest() {
+    List<double[]> values = makeValues(10000);
+
+    // NaN values at the start and end, and a gap in the middle
+    for (int i = 0; i < 10; i++) {
+      values.get(i)[1] = Double.NaN;
+      values.get(values.size() - 1 - i)[1] = Double.NaN;
+    }
+
+    for (int i = 4000; i < 6000; i++) {
+      values.get(i)[1] = Double.NaN;
+    }
+
+    List<double[]> result = downsample(values, 100);
+
+    assertEquals(100, result.size());
+    result.forEach(v -> assertFalse(Double.isNaN(v[1])));
+    checkOrder(result);
+
+    // The first and last values with a Y value are kept
+    assertSame(values.get(10), result.get(0));
+    assertSame(values.get(values.size() - 11),
+      result.get(result.size() - 1));
+  }
+
+  @Test
+  public void nanBelowThresholdTest() {
+    // 200 values, but only 50 with a Y value
+    List<double[]> values = makeValues(200);
+    for (int i = 50; i < 200; i++) {
+      values.get(i)[1] = Double.NaN;
+    }
+
+    assertSame(values, downsample(values, 100));
+  }
+
+  @Test
+  public void keepTest() {
+    List<double[]> values = makeValues(10000);
+    List<double[]> result = PlotDownsampler.downsample(values, 100,
+      v -> v[0], v -> v[1], v -> v[0] % 1000 == 500);
+
+    for (int i = 500; i < 10000; i += 1000) {
+      assertTrue(result.contains(values.get(i)));
+    }
+
+    assertTrue(result.size() <= 110);
+    checkOrder(result);
+  }
+}
@@ -0,0 +1,358 @@
+package junit.uk.ac.exeter.QuinCe.web.datasets.plotPage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+
+import junit.uk.ac.exeter.QuinCe.TestBase.BaseTest;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.DataLatLng;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.Plot;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotPageColumnHeading;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotPageData;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotPageTableRecord;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotPageTableValue;
+import uk.ac.exeter.QuinCe.web.datasets.plotPage.SimplePlotPageTableValue;
+
+/**
+ * Tests for selecting values in a {@link Plot} and detecting when its data is
+ * downsampled.
+ *
+ * <p>
+ * The plot has ten values, one per minute, plotted against time. The Y values
+ * run from {@code 0} to {@code 9}, and the Y2 values from {@code 100} to
+ * {@code 109}.
+ * </p>
+ */
+public class PlotTest extends BaseTest {
+
+  private static final long Y_COLUMN_ID = 1L;
+
+  private static final long Y2_COLUMN_ID = 2L;
+
+  private static final int VALUE_COUNT = 10;
+
+  private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0,
+    0, 0);
+
+  private static final PlotPageColumnHeading TIME_HEADING = new PlotPageColumnHeading(
+    FileDefinition.TIME_COLUMN_ID, "Time", "Time", "TIME", null, false, false,
+    false, false);
+
+  private static final PlotPageColumnHeading Y_HEADING = new PlotPageColumnHeading(
+    Y_COLUMN_ID, "Y", "Y", "Y", null, false, true, true, true);
+
+  private static final PlotPageColumnHeading Y2_HEADING = new PlotPageColumnHeading(
+    Y2_COLUMN_ID, "Y2", "Y2", "Y2", null, false, true, true, true);
+
+  /**
+   * Minimal {@link PlotPageData} that supplies fixed column values.
+   */
+  private static class TestPlotPageData extends PlotPageData {
+
+    private final Map<Long, TreeMap<LocalDateTime, PlotPageTableValue>> values = new HashMap<Long, TreeMap<LocalDateTime, PlotPageTableValue>>();
+
+    private TestPlotPageData() throws SQLException {
+      super(null, null, null);
+      values.put(Y_COLUMN_ID, new TreeMap<LocalDateTime, PlotPageTableValue>());
+      values.put(Y2_COLUMN_ID,
+        new TreeMap<LocalDateTime, PlotPageTableValue>());
+    }
+
+    /**
+     * Add a value for a column.
+     *
+     * @param columnId
+     *          The column.
+     * @param time
+     *          The value's time.
+     * @param value
+     *          The value.
+     * @param flag
+     *          The value's QC flag.
+     */
+    private void addValue(long columnId, LocalDateTime time, double value,
+      Flag flag) {
+      values.get(columnId).put(time,
+        new SimplePlotPageTableValue(String.valueOf(value), flag, null, false,
+          PlotPageTableValue.MEASURED_TYPE, null));
+    }
+
+    @Override
+    protected void loadDataAction() throws Exception {
+      // Noop
+    }
+
+    @Override
+    protected DatasetSensorValues getAllSensorValues() {
+      return null;
+    }
+
+    @Override
+    protected void buildColumnHeadings() throws Exception {
+      columnHeadings = new LinkedHashMap<String, List<PlotPageColumnHeading>>();
+      columnHeadings.put(ROOT_FIELD_GROUP,
+        Arrays.asList(TIME_HEADING, Y_HEADING, Y2_HEADING));
+      extendedColumnHeadings = columnHeadings;
+    }
+
+    @Override
+    public int size() {
+      return VALUE_COUNT;
+    }
+
+    @Override
+    public List<Long> getRowIDs() {
+      return new ArrayList<Long>();
+    }
+
+    @Override
+    protected List<PlotPageTableRecord> generateTableDataRecords(int start,
+      int length) {
+      return new ArrayList<PlotPageTableRecord>();
+    }
+
+    @Override
+    protected TreeMap<LocalDateTime, PlotPageTableValue> getColumnValues(
+      PlotPageColumnHeading column) throws Exception {
+
+      TreeMap<LocalDateTime, PlotPageTableValue> result;
+
+      if (column.getId() == FileDefinition.TIME_COLUMN_ID) {
+        result = new TreeMap<LocalDateTime, PlotPageTableValue>();
+        for (LocalDateTime time : getDataTimes()) {
+          result.put(time, new SimplePlotPageTableValue(time, null, false));
+        }
+      } else {
+        result = values.get(column.getId());
+      }
+
+      return result;
+    }
+
+    @Override
+    protected PlotPageColumnHeading getDefaultYAxis1() throws Exception {
+      return Y_HEADING;
+    }
+
+    @Override
+    protected PlotPageColumnHeading getDefaultYAxis2() throws Exception {
+      return Y_HEADING;
+    }
+
+    @Override
+    protected List<LocalDateTime> getDataTimes() {
+      List<LocalDateTime> times = new ArrayList<LocalDateTime>(VALUE_COUNT);
+      for (int i = 0; i < VALUE_COUNT; i++) {
+        times.add(getTime(i));
+      }
+
+      return times;
+    }
+
+    @Override
+    protected DataLatLng getMapPosition(LocalDateTime time) throws Exception {
+      return null;
+    }
+  }
+
+  /**
+   * A {@link Plot} whose flag hiding can be set by the tests.
+   */
+  private static class TestPlot extends Plot {
+
+    private TestPlot(PlotPageData data, int maxPoints) throws Exception {
+      super(data, TIME_HEADING, Y_HEADING, false, maxPoints);
+    }
+
+    private void hideFlags(boolean hideFlags) {
+      setHideFlags(hideFlags);
+    }
+  }
+
+  /**
+   * Get the time of the value with the specified index.
+   *
+   * @param index
+   *          The value index.
+   * @return The value's time.
+   */
+  private static LocalDateTime getTime(int index) {
+    return START.plusMinutes(index);
+  }
+
+  /**
+   * Get the plot ID of the value with the specified index.
+   *
+   * @param index
+   *          The value index.
+   * @return The value's ID.
+   */
+  private static long getId(int index) {
+    return DateTimeUtils.dateToLong(getTime(index));
+  }
+
+  /**
+   * Make the plot data, with all values flagged as Good.
+   *
+   * @return The plot data.
+   * @throws Exception
+   *           If the data cannot be created.
+   */
+  private TestPlotPageData makeData() throws Exception {
+    TestPlotPageData data = new TestPlotPageData();
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      data.addValue(Y_COLUMN_ID, getTime(i), i, Flag.GOOD);
+      data.addValue(Y2_COLUMN_ID, getTime(i), 100 + i, Flag.GOOD);
+    }
+
+    return data;
+  }
+
+  /**
+   * Make an initialised plot.
+   *
+   * @param data
+   *          The plot data.
+   * @param maxPoints
+   *          The maximum number of values to send for each plot series.
+   * @param y2
+   *          Whether or not the plot has a second Y axis.
+   * @return The plot.
+   * @throws Exception
+   *           If the plot cannot be created.
+   */
+  private TestPlot makePlot(PlotPageData data, int maxPoints, boolean y2)
+    throws Exception {
+    TestPlot plot = new TestPlot(data, maxPoints);
+    if (y2) {
+      plot.setY2axis(Y2_COLUMN_ID);
+    }
+    plot.init();
+    return plot;
+  }
+
+  /**
+   * Select the values in a rectangle covering all times.
+   *
+   * @param plot
+   *          The plot.
+   * @param yRange
+   *          The Y range, followed by the Y2 range if required.
+   * @return The selected IDs.
+   */
+  private List<Long> select(Plot plot, double... yRange) {
+    double[] rect = new double[yRange.length + 2];
+    rect[0] = getId(0);
+    rect[1] = getId(VALUE_COUNT - 1);
+    System.arraycopy(yRange, 0, rect, 2, yRange.length);
+
+    plot.setSelectRect(new Gson().toJson(rect));
+    plot.selectPointsInRect();
+
+    List<Long> result = new ArrayList<Long>();
+    for (double id : new Gson().fromJson(plot.getRectPoints(),
+      double[].class)) {
+      result.add((long) id);
+    }
+
+    return result;
+  }
+
+  @Test
+  public void selectYTest() throws Exception {
+    Plot plot = makePlot(makeData(), 3, false);
+    assertEquals(Arrays.asList(getId(2), getId(3), getId(4)),
+      select(plot, 2, 4));
+  }
+
+  @Test
+  public void selectY2Test() throws Exception {
+    Plot plot = makePlot(makeData(), 3, true);
+    assertEquals(Arrays.asList(getId(2), getId(3), getId(4), getId(7),
+      getId(8)), select(plot, 2, 4, 107, 108));
+  }
+
+  @Test
+  public void selectY2OnlyTest() throws Exception {
+    Plot plot = makePlot(makeData(), 3, true);
+    assertEquals(Arrays.asList(getId(7), getId(8)),
+      select(plot, 50, 60, 107, 108));
+  }
+
+  @Test
+  public void selectNoY2RangeTest() throws Exception {
+    // Without a Y2 range only the Y values are checked
+    Plot plot = makePlot(makeData(), 3, true);
+    assertEquals(Arrays.asList(getId(2), getId(3), getId(4)),
+      select(plot, 2, 4));
+  }
+
+  @Test
+  public void selectY2NoAxisTest() throws Exception {
+    // The Y2 range is ignored if the plot has no second Y axis
+    Plot plot = makePlot(makeData(), 3, false);
+    assertEquals(Arrays.asList(getId(2), getId(3), getId(4)),
+      select(plot, 2, 4, 107, 108));
+  }
+
+  @Test
+  public void downsampledTest() throws Exception {
+    assertTrue(makePlot(makeData(), 5, false).getDownsampled());
+  }
+
+  @Test
+  public void notDownsampledTest() throws Exception {
+    assertFalse(makePlot(makeData(), VALUE_COUNT, false).getDownsampled());
+  }
+
+  @Test
+  public void downsampledNoMaxPointsTest() throws Exception {
+    assertFalse(makePlot(makeData(), 0, false).getDownsampled());
+  }
+
+  @Test
+  public void hiddenFlagsNotDownsampledTest() throws Exception {
+    TestPlotPageData data = makeData();
+    for (int i = 0; i < 6; i++) {
+      data.addValue(Y_COLUMN_ID, getTime(i), i, Flag.BAD);
+    }
+
+    TestPlot plot = makePlot(data, 5, false);
+    assertTrue(plot.getDownsampled());
+
+    // Only four values are left in the main plot
+    plot.hideFlags(true);
+    assertFalse(plot.getDownsampled());
+  }
+
+  @Test
+  public void y2DownsampledTest() throws Exception {
+    TestPlotPageData data = makeData();
+    for (int i = 0; i < 6; i++) {
+      data.addValue(Y_COLUMN_ID, getTime(i), i, Flag.BAD);
+    }
+
+    // The main plot has four values, but the Y2 plot has ten
+    TestPlot plot = makePlot(data, 5, true);
+    plot.hideFlags(true);
+    assertTrue(plot.getDownsampled());
+  }
+}
@@ -0,0 +1,7 @@
+-- Dictionary of automatic QC routines, used to store compact auto_qc values
+CREATE TABLE qc_routines (
+  id INT NOT NULL AUTO_INCREMENT,
+  name VARCHAR(255) NOT NULL,
+  PRIMARY KEY (id));
+
+CREATE UNIQUE INDEX qcroutines_name_idx ON qc_routines(name);
@@ -0,0 +1,112 @@
+-- Sensor values at five times, one minute apart, for the batch QC cascade
+-- tests. Assumes testbase.DataReduction.base
+--
+-- Run types: var_1, var_1, var_2, var_2, var_3
+-- Water flow diagnostic values at minutes 0, 1 and 2.5 (between the
+-- SST and CO2 values at minutes 2 and 3)
+-- Gas flow diagnostic values at minutes 3 and 4
+
+-- Run Type
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (100, 1, 1, 1704067200000, 'var_1', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (101, 1, 1, 1704067260000, 'var_1', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (102, 1, 1, 1704067320000, 'var_2', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (103, 1, 1, 1704067380000, 'var_2', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (104, 1, 1, 1704067440000, 'var_3', NULL, -2, NULL);
+
+-- SST
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (200, 1, 2, 1704067200000, '20', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (201, 1, 2, 1704067260000, '21', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (202, 1, 2, 1704067320000, '22', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (203, 1, 2, 1704067380000, '23', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (204, 1, 2, 1704067440000, '24', NULL, -2, NULL);
+
+-- CO2
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (400, 1, 4, 1704067200000, '375', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (401, 1, 4, 1704067260000, '376', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (402, 1, 4, 1704067320000, '377', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (403, 1, 4, 1704067380000, '378', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (404, 1, 4, 1704067440000, '379', NULL, -2, NULL);
+
+-- Diagnostic water
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (500, 1, 5, 1704067200000, '2', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (501, 1, 5, 1704067260000, '2', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (502, 1, 5, 1704067350000, '2', NULL, -2, NULL);
+
+-- Diagnostic gas
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (603, 1, 6, 1704067380000, '10', NULL, -2, NULL);
+
+INSERT INTO sensor_values
+  (id, dataset_id, file_column, date, value, auto_qc, user_qc_flag, user_qc_message)
+  VALUES
+  (604, 1, 6, 1704067440000, '10', NULL, -2, NULL);
@@ -0,0 +1,15 @@
+-- Calibrations part way through the Contros pCO2 test dataset
+
+-- 1686258000000 = 2023-06-08 21:00:00
+
+INSERT INTO calibration (instrument_id, type, target, deployment_date, coefficients, class)
+  VALUES (124, 'CALC_COEFFICIENT', '6.Runtime', 1686258000000, '{"Value":"4121874"}', 'CalculationCoefficient');
+
+INSERT INTO calibration (instrument_id, type, target, deployment_date, coefficients, class)
+  VALUES (124, 'CALC_COEFFICIENT', '6.k1', 1686258000000, '{"Value":"6.347129e-02"}', 'CalculationCoefficient');
+
+INSERT INTO calibration (instrument_id, type, target, deployment_date, coefficients, class)
+  VALUES (124, 'CALC_COEFFICIENT', '6.k2', 1686258000000, '{"Value":"2.713467e-06"}', 'CalculationCoefficient');
+
+INSERT INTO calibration (instrument_id, type, target, deployment_date, coefficients, class)
+  VALUES (124, 'CALC_COEFFICIENT', '6.k3', 1686258000000, '{"Value":"3.840130e-10"}', 'CalculationCoefficient');
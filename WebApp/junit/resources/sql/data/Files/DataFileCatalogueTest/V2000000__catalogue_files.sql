@@ -0,0 +1,83 @@
+-- Data files for the DataFileCatalogue tests.
+-- Assumes the user from testbase.user
+
+INSERT INTO instrument (id, owner, name, platform_name, platform_code)
+  VALUES (1, 1, 'Instrument', 'Platform', 'CODE');
+
+INSERT INTO instrument_variables (instrument_id, variable_id) VALUES (1, 1);
+
+-- File definition 1: time, SST, salinity
+INSERT INTO file_definition (id, instrument_id, description, column_separator,
+    header_type, header_lines, column_header_rows, column_count, lon_spec,
+    lat_spec, datetime_spec)
+  VALUES (1, 1, 'Data File', ',', 0, 0, 0, 3,
+    '{"valueColumn":-1,"hemisphereColumn":-1,"format":-1}',
+    '{"valueColumn":-1,"hemisphereColumn":-1,"format":-1}',
+    '{"assignments":{"0":{"assignmentIndex":0,"column":0,"properties":{"formatString":"yyyy-MM-dd HH:mm:ss"}},"1":{"assignmentIndex":1,"column":-1,"properties":{}},"2":{"assignmentIndex":2,"column":-1,"properties":{}},"3":{"assignmentIndex":3,"column":-1,"properties":{}},"4":{"assignmentIndex":4,"column":-1,"properties":{}},"5":{"assignmentIndex":5,"column":-1,"properties":{}},"6":{"assignmentIndex":6,"column":-1,"properties":{}},"7":{"assignmentIndex":7,"column":-1,"properties":{}},"8":{"assignmentIndex":8,"column":-1,"properties":{}},"9":{"assignmentIndex":9,"column":-1,"properties":{}},"10":{"assignmentIndex":10,"column":-1,"properties":{}},"11":{"assignmentIndex":11,"column":-1,"properties":{}},"12":{"assignmentIndex":12,"column":-1,"properties":{}}},"fileHasHeader":false}'
+  );
+
+INSERT INTO file_column
+  (id, file_definition_id, file_column, primary_sensor, sensor_type, sensor_name)
+  VALUES
+  (1, 1, 1, 1,
+   (SELECT id FROM sensor_types WHERE name = 'Water Temperature'),
+   'SST');
+
+INSERT INTO file_column
+  (id, file_definition_id, file_column, primary_sensor, sensor_type, sensor_name)
+  VALUES
+  (2, 1, 2, 1,
+   (SELECT id FROM sensor_types WHERE name = 'Salinity'),
+   'SAL');
+
+-- Second file definition with the same layout
+INSERT INTO file_definition (id, instrument_id, description, column_separator,
+    header_type, header_lines, column_header_rows, column_count, lon_spec,
+    lat_spec, datetime_spec)
+  VALUES (2, 1, 'Second File', ',', 0, 0, 0, 3,
+    '{"valueColumn":-1,"hemisphereColumn":-1,"format":-1}',
+    '{"valueColumn":-1,"hemisphereColumn":-1,"format":-1}',
+    '{"assignments":{"0":{"assignmentIndex":0,"column":0,"properties":{"formatString":"yyyy-MM-dd HH:mm:ss"}},"1":{"assignmentIndex":1,"column":-1,"properties":{}},"2":{"assignmentIndex":2,"column":-1,"properties":{}},"3":{"assignmentIndex":3,"column":-1,"properties":{}},"4":{"assignmentIndex":4,"column":-1,"properties":{}},"5":{"assignmentIndex":5,"column":-1,"properties":{}},"6":{"assignmentIndex":6,"column":-1,"properties":{}},"7":{"assignmentIndex":7,"column":-1,"properties":{}},"8":{"assignmentIndex":8,"column":-1,"properties":{}},"9":{"assignmentIndex":9,"column":-1,"properties":{}},"10":{"assignmentIndex":10,"column":-1,"properties":{}},"11":{"assignmentIndex":11,"column":-1,"properties":{}},"12":{"assignmentIndex":12,"column":-1,"properties":{}}},"fileHasHeader":false}'
+  );
+
+INSERT INTO file_column
+  (id, file_definition_id, file_column, primary_sensor, sensor_type, sensor_name)
+  VALUES
+  (3, 2, 1, 1,
+   (SELECT id FROM sensor_types WHERE name = 'Water Temperature'),
+   'SST');
+
+INSERT INTO file_column
+  (id, file_definition_id, file_column, primary_sensor, sensor_type, sensor_name)
+  VALUES
+  (4, 2, 2, 1,
+   (SELECT id FROM sensor_types WHERE name = 'Salinity'),
+   'SAL');
+
+-- Files. Times are minutes after 2024-01-01 00:00:00, with the time
+-- offsets in seconds.
+--
+-- ID  Definition  Start  End  Offset
+--  1           1      0   30       0
+--  2           1     10   12       0
+--  3           1     20   25     600
+--  4           1     40   50       0
+--  5           1     50   60    -300
+--  6           1    100  200       0
+--  7           1    120  130       0
+--  8           2      0   60       0
+--  9           2     60  120    3600
+-- 10           2    150  210      60
+INSERT INTO data_file
+  (id, file_definition_id, filename, start_date, end_date, record_count, properties)
+  VALUES
+  (1, 1, 'file1.csv', 1704067200000, 1704069000000, 31, '{"timeOffset":"0"}'),
+  (2, 1, 'file2.csv', 1704067800000, 1704067920000, 3, '{"timeOffset":"0"}'),
+  (3, 1, 'file3.csv', 1704068400000, 1704068700000, 6, '{"timeOffset":"600"}'),
+  (4, 1, 'file4.csv', 1704069600000, 1704070200000, 11, '{"timeOffset":"0"}'),
+  (5, 1, 'file5.csv', 1704070200000, 1704070800000, 11, '{"timeOffset":"-300"}'),
+  (6, 1, 'file6.csv', 1704073200000, 1704079200000, 101, '{"timeOffset":"0"}'),
+  (7, 1, 'file7.csv', 1704074400000, 1704075000000, 11, '{"timeOffset":"0"}'),
+  (8, 2, 'file8.csv', 1704067200000, 1704070800000, 61, '{"timeOffset":"0"}'),
+  (9, 2, 'file9.csv', 1704070800000, 1704074400000, 61, '{"timeOffset":"3600"}'),
+  (10, 2, 'file10.csv', 1704076200000, 1704079800000, 61, '{"timeOffset":"60"}');
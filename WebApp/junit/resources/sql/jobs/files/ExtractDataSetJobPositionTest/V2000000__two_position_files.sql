@@ -0,0 +1,54 @@
+-- Data files for the ExtractDataSetJob position tests.
+-- Assumes the user from testbase.user
+
+-- Instrument without a fixed position
+INSERT INTO instrument (id, owner, name, platform_name, platform_code)
+  VALUES (1, 1, 'Instrument', 'Platform', 'CODE');
+
+INSERT INTO instrument_variables (instrument_id, variable_id) VALUES (1, 1);
+
+-- File definition 1: time, SST, longitude, latitude
+INSERT INTO file_definition (id, instrument_id, description, column_separator,
+    header_type, header_lines, column_header_rows, column_count, lon_spec,
+    lat_spec, datetime_spec)
+  VALUES (1, 1, 'Data File', ',', 0, 0, 0, 4,
+    '{"valueColumn":2,"hemisphereColumn":-1,"format":1}',
+    '{"valueColumn":3,"hemisphereColumn":-1,"format":0}',
+    '{"assignments":{"0":{"assignmentIndex":0,"column":0,"properties":{"formatString":"yyyy-MM-dd HH:mm:ss"}},"1":{"assignmentIndex":1,"column":-1,"properties":{}},"2":{"assignmentIndex":2,"column":-1,"properties":{}},"3":{"assignmentIndex":3,"column":-1,"properties":{}},"4":{"assignmentIndex":4,"column":-1,"properties":{}},"5":{"assignmentIndex":5,"column":-1,"properties":{}},"6":{"assignmentIndex":6,"column":-1,"properties":{}},"7":{"assignmentIndex":7,"column":-1,"properties":{}},"8":{"assignmentIndex":8,"column":-1,"properties":{}},"9":{"assignmentIndex":9,"column":-1,"properties":{}},"10":{"assignmentIndex":10,"column":-1,"properties":{}},"11":{"assignmentIndex":11,"column":-1,"properties":{}},"12":{"assignmentIndex":12,"column":-1,"properties":{}}},"fileHasHeader":false}'
+  );
+
+-- File definition 2: time, longitude, latitude
+INSERT INTO file_definition (id, instrument_id, description, column_separator,
+    header_type, header_lines, column_header_rows, column_count, lon_spec,
+    lat_spec, datetime_spec)
+  VALUES (2, 1, 'GPS File', ',', 0, 0, 0, 3,
+    '{"valueColumn":1,"hemisphereColumn":-1,"format":1}',
+    '{"valueColumn":2,"hemisphereColumn":-1,"format":0}',
+    '{"assignments":{"0":{"assignmentIndex":0,"column":0,"properties":{"formatString":"yyyy-MM-dd HH:mm:ss"}},"1":{"assignmentIndex":1,"column":-1,"properties":{}},"2":{"assignmentIndex":2,"column":-1,"properties":{}},"3":{"assignmentIndex":3,"column":-1,"properties":{}},"4":{"assignmentIndex":4,"column":-1,"properties":{}},"5":{"assignmentIndex":5,"column":-1,"properties":{}},"6":{"assignmentIndex":6,"column":-1,"properties":{}},"7":{"assignmentIndex":7,"column":-1,"properties":{}},"8":{"assignmentIndex":8,"column":-1,"properties":{}},"9":{"assignmentIndex":9,"column":-1,"properties":{}},"10":{"assignmentIndex":10,"column":-1,"properties":{}},"11":{"assignmentIndex":11,"column":-1,"properties":{}},"12":{"assignmentIndex":12,"column":-1,"properties":{}}},"fileHasHeader":false}'
+  );
+
+INSERT INTO file_column
+  (id, file_definition_id, file_column, primary_sensor, sensor_type, sensor_name)
+  VALUES
+  (1, 1, 1, 1,
+   (SELECT id FROM sensor_types WHERE name = 'Water Temperature'),
+   'SST');
+
+-- Two files. The contents are written by the test.
+-- File 1 (Data File): 2024-01-01 00:00:00 to 00:10:00
+-- File 2 (GPS File):  2024-01-01 00:05:00 to 00:15:00
+INSERT INTO data_file
+  (id, file_definition_id, filename, start_date, end_date, record_count, properties)
+  VALUES (1, 1, 'data.csv', 1704067200000, 1704067800000, 11, '{"timeOffset":"0"}');
+
+INSERT INTO data_file
+  (id, file_definition_id, filename, start_date, end_date, record_count, properties)
+  VALUES (2, 2, 'gps.csv', 1704067500000, 1704068100000, 11, '{"timeOffset":"0"}');
+
+-- Dataset covering all the files
+INSERT INTO dataset
+  (id, instrument_id, name, start, end, min_longitude, max_longitude,
+   min_latitude, max_latitude, status, status_date, properties)
+  VALUES
+  (1, 1, 'Dataset', 1704067200000, 1704068100000, 0, 0, 0, 0, 0, 1704068100000,
+   '{"_INSTRUMENT":{"depth":"2","postFlushingTime":"0","preFlushingTime":"0"},"_DATASET":{"ProcessingVersion":"v19.2.15"},"__SENSOR_OFFSETS":{}}');
@@ -1,5 +1,6 @@
 package uk.ac.exeter.QuinCe.api.export;
 
+import java.io.IOException;
 import java.sql.Connection;
 
 import javax.sql.DataSource;
@@ -7,9 +8,11 @@ import javax.ws.rs.FormParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
@@ -103,6 +106,17 @@ import uk.ac.exeter.QuinCe.web.system.ResourceManager;
  *   }
  * }
  * </pre>
+ *
+ * <p>
+ * The ZIP file is streamed to the client as it is built, so neither the ZIP
+ * nor the exported files are held in memory. The dataset's values are still
+ * loaded in full for each export format in turn (see
+ * {@link ExportBean#writeExportZip}), so the memory needed for an export grows
+ * with the size of the dataset. Once the complete ZIP has been sent, the
+ * dataset's status is set to {@link DataSet#STATUS_EXPORTING}. If an error
+ * occurs part way through the export the response will be truncated, and the
+ * dataset's status will not be changed.
+ * </p>
  */
 @Path("/export/exportDataset")
 public class ExportDataset {
@@ -126,7 +140,7 @@ public class ExportDataset {
     Connection conn = null;
     Response response;
     Status responseCode = Status.OK;
-    byte[] zip = null;
+    StreamingOutput zip = null;
 
     try {
       ResourceManager resourceManager = ResourceManager.getInstance();
@@ -139,8 +153,7 @@ public class ExportDataset {
       if (dataset.getStatus() != DataSet.STATUS_READY_FOR_EXPORT) {
         responseCode = Status.FORBIDDEN;
       } else {
-        zip = ExportBean.buildExportZip(conn, instrument, dataset, null);
-        DataSetDB.setDatasetStatus(conn, id, DataSet.STATUS_EXPORTING);
+        zip = makeZipStream(dataSource, instrument, dataset);
       }
     } catch (RecordNotFoundException e) {
       responseCode = Status.NOT_FOUND;
@@ -160,4 +173,44 @@ public class ExportDataset {
 
     return response;
   }
+
+  /**
+   * Create the {@link StreamingOutput} that writes the export ZIP to the
+   * response.
+   *
+   * <p>
+   * The stream is written after {@link #getDatasetZip(long)} has returned, so
+   * it uses its own database connection.
+   * </p>
+   *
+   * @param dataSource
+   *          A data source.
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @param dataset
+   *          The dataset to export.
+   * @return The output stream.
+   */
+  private StreamingOutput makeZipStream(DataSource dataSource,
+    Instrument instrument, DataSet dataset) {
+
+    return out -> {
+      Connection conn = null;
+
+      try {
+        conn = dataSource.getConnection();
+        ExportBean.writeExportZip(conn, instrument, dataset, null, out);
+        DataSetDB.setDatasetStatus(conn, dataset.getId(),
+          DataSet.STATUS_EXPORTING);
+      } catch (IOException e) {
+        // Usually caused by the client disconnecting
+        throw e;
+      } catch (Exception e) {
+        ExceptionUtils.printStackTrace(e);
+        throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
+      } finally {
+        DatabaseUtils.closeConnection(conn);
+      }
+    };
+  }
 }
@@ -60,11 +60,11 @@ public class ControsPco2MeasurementLocator extends MeasurementLocator {
         .getColumnIds(refSensorType).get(0);
 
       DatasetSensorValues sensorValues = DataSetDataDB.getSensorValues(conn,
-        instrument, dataset.getId(), false, true);
+        instrument, dataset, false, true);
 
       CalibrationSet priorCoefficients = CalculationCoefficientDB.getInstance()
-        .getMostRecentCalibrations(conn, instrument,
-          sensorValues.getTimes().get(0));
+        .getCalibrationTimeline(conn, instrument, dataset)
+        .getMostRecentCalibrations(sensorValues.getTimes().get(0));
 
       long defaultFlushingTime = Math.round(CalculationCoefficient
         .getCoefficient(priorCoefficients, variable, "Response Time")
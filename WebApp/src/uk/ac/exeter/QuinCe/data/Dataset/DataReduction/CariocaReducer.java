@@ -28,7 +28,7 @@ import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
  */
 public class CariocaReducer extends DataReducer {
 
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   private static final double S = 35;
 
@@ -71,8 +71,8 @@ public class CariocaReducer extends DataReducer {
     try {
       // Get prior and post coefficients
       CalibrationSet coefficients = CalculationCoefficientDB.getInstance()
-        .getMostRecentCalibrations(conn, instrument,
-          allMeasurements.get(0).getTime());
+        .getCalibrationTimeline(conn, instrument, dataset)
+        .getMostRecentCalibrations(allMeasurements.get(0).getTime());
 
       A = CalculationCoefficient.getCoefficient(coefficients, variable, "tempA")
         .getBigDecimalValue();
@@ -250,86 +250,88 @@ public class CariocaReducer extends DataReducer {
   @Override
   public List<CalculationParameter> getCalculationParameters() {
     if (null == calculationParameters) {
-      calculationParameters = new ArrayList<CalculationParameter>();
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>();
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(0),
+      parameters.add(new CalculationParameter(makeParameterId(0),
         "Water Temperature", "Water Temperature", "TEMPPR01", "°C", false));
 
-      calculationParameters.add(
+      parameters.add(
         new CalculationParameter(makeParameterId(1), "K", "K", "K", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(2),
+      parameters.add(new CalculationParameter(makeParameterId(2),
         "R_temp", "R_temp", "R_temp", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(3),
+      parameters.add(new CalculationParameter(makeParameterId(3),
         "lnR", "lnR", "lnR", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(4),
+      parameters.add(new CalculationParameter(makeParameterId(4),
         "Bpart", "Bpart", "Bpart", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(5),
+      parameters.add(new CalculationParameter(makeParameterId(5),
         "Cpart", "Cpart", "Cpart", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(6),
+      parameters.add(new CalculationParameter(makeParameterId(6),
         "kelvin", "kelvin", "kelvin", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(7),
+      parameters.add(new CalculationParameter(makeParameterId(7),
         "e2", "e2", "e2", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(8),
+      parameters.add(new CalculationParameter(makeParameterId(8),
         "e3", "e3", "e3", "", false));
 
-      calculationParameters
+      parameters
         .add(new CalculationParameter(makeParameterId(9), "alphaSalinityPart",
           "alphaSalinityPart", "alphaSalinityPart", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(10),
+      parameters.add(new CalculationParameter(makeParameterId(10),
         "alpha", "alpha", "alpha", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(11),
+      parameters.add(new CalculationParameter(makeParameterId(11),
         "pK_1", "pK_1", "pK_1", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(12),
+      parameters.add(new CalculationParameter(makeParameterId(12),
         "K_1", "K_1", "K_1", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(13),
+      parameters.add(new CalculationParameter(makeParameterId(13),
         "pK_2", "pK_2", "pK_2", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(14),
+      parameters.add(new CalculationParameter(makeParameterId(14),
         "K_2", "K_2", "K_2", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(15),
+      parameters.add(new CalculationParameter(makeParameterId(15),
         "pK_i", "pK_i", "pK_i", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(16),
+      parameters.add(new CalculationParameter(makeParameterId(16),
         "K_i", "K_i", "K_i", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(17),
+      parameters.add(new CalculationParameter(makeParameterId(17),
         "A_434", "A_434", "A_434", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(18),
+      parameters.add(new CalculationParameter(makeParameterId(18),
         "A_596", "A_596", "A_596", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(19),
+      parameters.add(new CalculationParameter(makeParameterId(19),
         "R", "R", "R", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(20),
+      parameters.add(new CalculationParameter(makeParameterId(20),
         "X", "X", "X", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(21),
+      parameters.add(new CalculationParameter(makeParameterId(21),
         "xTop", "xTop", "xTop", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(22),
+      parameters.add(new CalculationParameter(makeParameterId(22),
         "xBottom", "xBottom", "xBottom", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(23),
+      parameters.add(new CalculationParameter(makeParameterId(23),
         "Amax", "Amax", "CARAMAX", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(24),
+      parameters.add(new CalculationParameter(makeParameterId(24),
         "pCO₂ SST", "pCO₂ In Water", "PCO2TK02", "μatm", true));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(25),
+      parameters.add(new CalculationParameter(makeParameterId(25),
         "fCO₂", "fCO₂ In Water", "FCO2XXXX", "μatm", true));
+
+      calculationParameters = parameters;
     }
 
     return calculationParameters;
@@ -18,6 +18,7 @@ import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
 import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalculationCoefficient;
 import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalculationCoefficientDB;
 import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalibrationSet;
+import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalibrationTimeline;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorTypeNotFoundException;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
 import uk.ac.exeter.QuinCe.utils.MeanCalculator;
@@ -38,7 +39,7 @@ public class ControsPco2Reducer extends DataReducer {
 
   private static final BigDecimal P0 = new BigDecimal("1013.25");
 
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   private TreeMap<Double, Double> zeroS2Beams;
 
@@ -80,13 +81,14 @@ public class ControsPco2Reducer extends DataReducer {
 
     try {
       // Get prior and post coefficients
-      priorCoefficients = CalculationCoefficientDB.getInstance()
-        .getMostRecentCalibrations(conn, instrument,
-          allMeasurements.get(0).getTime());
+      CalibrationTimeline coefficientsTimeline = CalculationCoefficientDB
+        .getInstance().getCalibrationTimeline(conn, instrument, dataset);
 
-      postCoefficients = CalculationCoefficientDB.getInstance()
-        .getCalibrationsAfter(conn, instrument,
-          allMeasurements.get(allMeasurements.size() - 1).getTime());
+      priorCoefficients = coefficientsTimeline
+        .getMostRecentCalibrations(allMeasurements.get(0).getTime());
+
+      postCoefficients = coefficientsTimeline.getCalibrationsAfter(
+        allMeasurements.get(allMeasurements.size() - 1).getTime());
 
       calcKSteps();
 
@@ -307,25 +309,28 @@ public class ControsPco2Reducer extends DataReducer {
   @Override
   public List<CalculationParameter> getCalculationParameters() {
     if (null == calculationParameters) {
-      calculationParameters = new ArrayList<CalculationParameter>(8);
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        8);
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(0),
+      parameters.add(new CalculationParameter(makeParameterId(0),
         "Zero S₂beam", "Interpolated Zero Signal", "CONZERO2BEAM", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(1),
+      parameters.add(new CalculationParameter(makeParameterId(1),
         "S₂beam", "Two-beam Signal", "CON2BEAM", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(2),
+      parameters.add(new CalculationParameter(makeParameterId(2),
         "Sproc", "Drift-corrected Signal", "CONSPROC", "", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(3),
+      parameters.add(new CalculationParameter(makeParameterId(3),
         "xCO₂", "xCO₂ In Water", "XCO2WBDY", "μmol/mol", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(4),
+      parameters.add(new CalculationParameter(makeParameterId(4),
         "pCO₂ SST", "pCO₂ In Water", "PCO2TK02", "μatm", true));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(5),
+      parameters.add(new CalculationParameter(makeParameterId(5),
         "fCO₂", "fCO₂ In Water", "FCO2XXXX", "μatm", true));
+
+      calculationParameters = parameters;
     }
 
     return calculationParameters;
@@ -12,7 +12,7 @@ import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
 
 public class DExcessReducer extends DataReducer {
 
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   public DExcessReducer(Variable variable, Map<String, Properties> properties) {
     super(variable, properties);
@@ -37,10 +37,13 @@ public class DExcessReducer extends DataReducer {
   @Override
   public List<CalculationParameter> getCalculationParameters() {
     if (null == calculationParameters) {
-      calculationParameters = new ArrayList<CalculationParameter>(1);
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        1);
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(0),
+      parameters.add(new CalculationParameter(makeParameterId(0),
         "D-Excess", "D-Excess", "DEXCESS", "permil", true));
+
+      calculationParameters = parameters;
     }
 
     return calculationParameters;
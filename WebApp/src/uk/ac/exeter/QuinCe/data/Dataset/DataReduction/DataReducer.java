@@ -150,6 +150,13 @@ public abstract class DataReducer {
    * {@link Measurement} and add the results to the supplied
    * {@link DataReductionRecord}.
    *
+   * <p>
+   * This method may be called for several measurements at once from different
+   * threads (see {@link DataReductionTask}), so it must not change the state
+   * of the reducer. Any state needed for the calculations should be set up in
+   * {@link #preprocess(Connection, Instrument, DataSet, List)}.
+   * </p>
+   *
    * @param instrument
    *          The {@link Instrument} that took the measurement.
    * @param measurement
@@ -157,7 +164,8 @@ public abstract class DataReducer {
    * @param record
    *          The record to hold the calculation results.
    * @param conn
-   *          A database connection.
+   *          A database connection. This is {@code null} when the calculation
+   *          is run by a {@link DataReductionTask}.
    * @throws DataReductionException
    *           If any errors occur during calculation.
    */
@@ -0,0 +1,161 @@
+package uk.ac.exeter.QuinCe.data.Dataset.DataReduction;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+
+/**
+ * Runs a {@link DataReducer} on a chunk of {@link Measurement}s.
+ *
+ * <p>
+ * Once a reducer's {@link DataReducer#preprocess} method has been called, its
+ * state is only read by
+ * {@link DataReducer#performDataReduction(Instrument, Measurement, Connection)}
+ * and each {@link Measurement} is reduced independently of the others. The
+ * measurements for a reducer can therefore be split into chunks and reduced
+ * in parallel using {@link #runAll(List, ForkJoinPool)}.
+ * </p>
+ *
+ * <p>
+ * JDBC connections must not be shared between threads, and taking a
+ * connection from the pool for every task could exhaust it while several jobs
+ * are running. The reducers are therefore called without a connection (see
+ * {@link DataReducer#doCalculation}); anything they need from the database
+ * must be loaded in {@link DataReducer#preprocess}. All database writes are
+ * made by the calling job once {@link #runAll(List, ForkJoinPool)} has
+ * returned.
+ * </p>
+ *
+ * <p>
+ * The records from each task are kept in the order of its measurements, and
+ * {@link #runAll(List, ForkJoinPool)} returns the records in task order, so
+ * the result is the same as reducing all the measurements in turn.
+ * </p>
+ */
+public class DataReductionTask implements Callable<List<DataReductionRecord>> {
+
+  /**
+   * The reducer. Its {@link DataReducer#preprocess} method must already have
+   * been called.
+   */
+  private final DataReducer reducer;
+
+  /**
+   * The instrument that took the measurements.
+   */
+  private final Instrument instrument;
+
+  /**
+   * The measurements to be reduced.
+   */
+  private final List<Measurement> measurements;
+
+  /**
+   * Create a data reduction task for a chunk of measurements.
+   *
+   * @param reducer
+   *          The reducer.
+   * @param instrument
+   *          The instrument that took the measurements.
+   * @param measurements
+   *          The measurements to be reduced.
+   */
+  public DataReductionTask(DataReducer reducer, Instrument instrument,
+    List<Measurement> measurements) {
+    this.reducer = reducer;
+    this.instrument = instrument;
+    this.measurements = measurements;
+  }
+
+  /**
+   * Reduce the measurements.
+   *
+   * @return The data reduction records, in the same order as the
+   *         measurements.
+   * @throws DataReductionException
+   *           If any measurement cannot be reduced.
+   */
+  @Override
+  public List<DataReductionRecord> call() throws DataReductionException {
+    List<DataReductionRecord> records = new ArrayList<DataReductionRecord>(
+      measurements.size());
+
+    for (Measurement measurement : measurements) {
+      records.add(reducer.performDataReduction(instrument, measurement, null));
+    }
+
+    return records;
+  }
+
+  /**
+   * Run a set of data reduction tasks and combine their records.
+   *
+   * <p>
+   * If a pool is supplied, the tasks are submitted to it and this method waits
+   * for them all to finish. Otherwise they are run in turn on the calling
+   * thread. If any tasks fail, the exception from the first failed task in the
+   * list is thrown, regardless of the order in which the tasks completed.
+   * </p>
+   *
+   * @param tasks
+   *          The tasks.
+   * @param pool
+   *          The pool on which to run the tasks, or {@code null} to run them
+   *          on the calling thread.
+   * @return The records from all the tasks, in task order.
+   * @throws DataReductionException
+   *           If any of the tasks fail.
+   * @throws InterruptedException
+   *           If the calling thread is interrupted while waiting for the tasks
+   *           to finish.
+   */
+  public static List<DataReductionRecord> runAll(List<DataReductionTask> tasks,
+    ForkJoinPool pool) throws DataReductionException, InterruptedException {
+
+    List<DataReductionRecord> result = new ArrayList<DataReductionRecord>();
+
+    if (null == pool) {
+      for (DataReductionTask task : tasks) {
+        result.addAll(task.call());
+      }
+    } else {
+      List<Future<List<DataReductionRecord>>> futures = new ArrayList<Future<List<DataReductionRecord>>>(
+        tasks.size());
+      for (DataReductionTask task : tasks) {
+        futures.add(pool.submit(task));
+      }
+
+      DataReductionException failure = null;
+
+      // Wait for every task, even if one fails, so no task is still running
+      // once we return.
+      for (Future<List<DataReductionRecord>> future : futures) {
+        try {
+          List<DataReductionRecord> records = future.get();
+          if (null == failure) {
+            result.addAll(records);
+          }
+        } catch (ExecutionException e) {
+          if (null == failure) {
+            failure = e.getCause() instanceof DataReductionException
+              ? (DataReductionException) e.getCause()
+              : new DataReductionException(e.getCause());
+          }
+        }
+      }
+
+      if (null != failure) {
+        throw failure;
+      }
+    }
+
+    return result;
+  }
+}
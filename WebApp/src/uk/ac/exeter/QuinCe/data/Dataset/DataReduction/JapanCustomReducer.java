@@ -18,7 +18,7 @@ import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
 
 public class JapanCustomReducer extends DataReducer {
 
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   private BigDecimal baseSlope = null;
 
@@ -41,8 +41,8 @@ public class JapanCustomReducer extends DataReducer {
     try {
       // Get the calibration slope information
       CalibrationSet coefficients = CalculationCoefficientDB.getInstance()
-        .getMostRecentCalibrations(conn, instrument,
-          allMeasurements.get(0).getTime());
+        .getCalibrationTimeline(conn, instrument, dataset)
+        .getMostRecentCalibrations(allMeasurements.get(0).getTime());
 
       baseSlope = CalculationCoefficient
         .getCoefficient(coefficients, variable, "Base Slope")
@@ -101,14 +101,17 @@ public class JapanCustomReducer extends DataReducer {
   @Override
   public List<CalculationParameter> getCalculationParameters() {
     if (null == calculationParameters) {
-      calculationParameters = new ArrayList<CalculationParameter>(2);
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        2);
 
-      calculationParameters
+      parameters
         .add(new CalculationParameter(makeParameterId(0), "ΔT",
           "Water-Equilibrator Temperature Difference", "DELTAT", "°C", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(1),
+      parameters.add(new CalculationParameter(makeParameterId(1),
         "pCO₂ SST", "pCO₂ In Water", "PCO2TK02", "μatm", true));
+
+      calculationParameters = parameters;
     }
 
     return calculationParameters;
@@ -21,7 +21,7 @@ import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
  */
 public class ProOceanusAtmosphericCO2Reducer extends DataReducer {
 
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   public ProOceanusAtmosphericCO2Reducer(Variable variable,
     Map<String, Properties> properties) {
@@ -59,16 +59,21 @@ public class ProOceanusAtmosphericCO2Reducer extends DataReducer {
 
   @Override
   public List<CalculationParameter> getCalculationParameters() {
-    calculationParameters = new ArrayList<CalculationParameter>(3);
+    if (null == calculationParameters) {
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        3);
 
-    calculationParameters.add(new CalculationParameter(makeParameterId(0),
-      "xCO₂", "xCO₂ In Atmosphere", "XCO2DRAT", "μmol mol⁻¹", true));
+      parameters.add(new CalculationParameter(makeParameterId(0),
+        "xCO₂", "xCO₂ In Atmosphere", "XCO2DRAT", "μmol mol⁻¹", true));
 
-    calculationParameters.add(new CalculationParameter(makeParameterId(1),
-      "pCO₂", "pCO₂ In Atmosphere", "ACO2XXXX", "μatm", true));
+      parameters.add(new CalculationParameter(makeParameterId(1),
+        "pCO₂", "pCO₂ In Atmosphere", "ACO2XXXX", "μatm", true));
 
-    calculationParameters.add(new CalculationParameter(makeParameterId(2),
-      "fCO₂", "fCO₂ In Atmosphere", "FCO2WTAT", "μatm", true));
+      parameters.add(new CalculationParameter(makeParameterId(2),
+        "fCO₂", "fCO₂ In Atmosphere", "FCO2WTAT", "μatm", true));
+
+      calculationParameters = parameters;
+    }
 
     return calculationParameters;
   }
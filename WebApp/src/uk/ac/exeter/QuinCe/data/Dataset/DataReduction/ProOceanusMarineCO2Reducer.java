@@ -12,7 +12,7 @@ import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
 
 public class ProOceanusMarineCO2Reducer extends DataReducer {
 
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   public ProOceanusMarineCO2Reducer(Variable variable,
     Map<String, Properties> properties) {
@@ -44,13 +44,18 @@ public class ProOceanusMarineCO2Reducer extends DataReducer {
 
   @Override
   public List<CalculationParameter> getCalculationParameters() {
-    calculationParameters = new ArrayList<CalculationParameter>(2);
+    if (null == calculationParameters) {
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        2);
 
-    calculationParameters.add(new CalculationParameter(makeParameterId(0),
-      "pCO₂ SST", "pCO₂ In Water", "PCO2TK02", "μatm", true));
+      parameters.add(new CalculationParameter(makeParameterId(0),
+        "pCO₂ SST", "pCO₂ In Water", "PCO2TK02", "μatm", true));
 
-    calculationParameters.add(new CalculationParameter(makeParameterId(1),
-      "fCO₂", "fCO₂ In Water", "FCO2XXXX", "μatm", true));
+      parameters.add(new CalculationParameter(makeParameterId(1),
+        "fCO₂", "fCO₂ In Water", "FCO2XXXX", "μatm", true));
+
+      calculationParameters = parameters;
+    }
 
     return calculationParameters;
   }
@@ -22,7 +22,7 @@ public class SaildroneAtmosphericPco2Reducer extends DataReducer {
   /**
    * The calculation parameters generated by this reducer.
    */
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   public SaildroneAtmosphericPco2Reducer(Variable variable,
     Map<String, Properties> properties) {
@@ -62,13 +62,16 @@ public class SaildroneAtmosphericPco2Reducer extends DataReducer {
   @Override
   public List<CalculationParameter> getCalculationParameters() {
     if (null == calculationParameters) {
-      calculationParameters = new ArrayList<CalculationParameter>(3);
-      calculationParameters.add(new CalculationParameter(makeParameterId(0),
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        3);
+      parameters.add(new CalculationParameter(makeParameterId(0),
         "pH₂O", "Marine Water Vapour Pressure", "RH2OX0EQ", "hPa", false));
-      calculationParameters.add(new CalculationParameter(makeParameterId(1),
+      parameters.add(new CalculationParameter(makeParameterId(1),
         "pCO₂", "pCO₂ In Atmosphere", "ACO2XXXX", "μatm", true));
-      calculationParameters.add(new CalculationParameter(makeParameterId(2),
+      parameters.add(new CalculationParameter(makeParameterId(2),
         "fCO₂", "fCO₂ In Atmoshpere", "FCO2WTAT", "μatm", true));
+
+      calculationParameters = parameters;
     }
 
     return calculationParameters;
@@ -19,7 +19,7 @@ import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
  */
 public class SaildroneMarinePco2Reducer extends DataReducer {
 
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   public SaildroneMarinePco2Reducer(Variable variable,
     Map<String, Properties> properties) {
@@ -58,13 +58,16 @@ public class SaildroneMarinePco2Reducer extends DataReducer {
   @Override
   public List<CalculationParameter> getCalculationParameters() {
     if (null == calculationParameters) {
-      calculationParameters = new ArrayList<CalculationParameter>(3);
-      calculationParameters.add(new CalculationParameter(makeParameterId(0),
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        3);
+      parameters.add(new CalculationParameter(makeParameterId(0),
         "pH₂O", "Marine Water Vapour Pressure", "RH2OX0EQ", "hPa", false));
-      calculationParameters.add(new CalculationParameter(makeParameterId(1),
+      parameters.add(new CalculationParameter(makeParameterId(1),
         "pCO₂", "pCO₂ In Water", "PCO2TK02", "μatm", true));
-      calculationParameters.add(new CalculationParameter(makeParameterId(2),
+      parameters.add(new CalculationParameter(makeParameterId(2),
         "fCO₂", "fCO₂ In Water", "FCO2XXXX", "μatm", true));
+
+      calculationParameters = parameters;
     }
     return calculationParameters;
   }
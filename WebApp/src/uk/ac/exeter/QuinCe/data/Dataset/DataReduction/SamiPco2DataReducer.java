@@ -20,7 +20,7 @@ import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
  */
 public class SamiPco2DataReducer extends DataReducer {
 
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   public SamiPco2DataReducer(Variable variable,
     Map<String, Properties> properties) {
@@ -55,13 +55,16 @@ public class SamiPco2DataReducer extends DataReducer {
   @Override
   public List<CalculationParameter> getCalculationParameters() {
     if (null == calculationParameters) {
-      calculationParameters = new ArrayList<CalculationParameter>(2);
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        2);
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(0),
+      parameters.add(new CalculationParameter(makeParameterId(0),
         "pCO₂ SST", "pCO₂ In Water", "PCO2TK02", "μatm", true));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(1),
+      parameters.add(new CalculationParameter(makeParameterId(1),
         "fCO₂", "fCO₂ In Water", "FCO2XXXX", "μatm", true));
+
+      calculationParameters = parameters;
     }
 
     return calculationParameters;
@@ -20,7 +20,7 @@ public class UnderwayAtmosphericPco2Reducer extends DataReducer {
   /**
    * The reducer's calculation parameters.
    */
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   /**
    * Basic {@link DataReducer} constructor.
@@ -71,19 +71,22 @@ public class UnderwayAtmosphericPco2Reducer extends DataReducer {
   @Override
   public List<CalculationParameter> getCalculationParameters() {
     if (null == calculationParameters) {
-      calculationParameters = new ArrayList<CalculationParameter>(5);
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        5);
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(0),
+      parameters.add(new CalculationParameter(makeParameterId(0),
         "Sea Level Pressure", "Sea Level Pressure", "CAPASS01", "hPa", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(1),
+      parameters.add(new CalculationParameter(makeParameterId(1),
         "pH₂O", "Atmosphere Water Vapour Pressure", "CPVPZZ01", "hPa", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(2),
+      parameters.add(new CalculationParameter(makeParameterId(2),
         "pCO₂", "pCO₂ In Atmosphere", "ACO2XXXX", "μatm", true));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(3),
+      parameters.add(new CalculationParameter(makeParameterId(3),
         "fCO₂", "fCO₂ In Atmosphere", "FCO2WTAT", "μatm", true));
+
+      calculationParameters = parameters;
     }
 
     return calculationParameters;
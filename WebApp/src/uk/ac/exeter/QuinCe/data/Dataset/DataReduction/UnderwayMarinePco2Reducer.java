@@ -20,7 +20,7 @@ public class UnderwayMarinePco2Reducer extends DataReducer {
   /**
    * The reducer's calculation parameters.
    */
-  private static List<CalculationParameter> calculationParameters = null;
+  private static volatile List<CalculationParameter> calculationParameters = null;
 
   /**
    * Basic {@link DataReducer} constructor.
@@ -69,28 +69,31 @@ public class UnderwayMarinePco2Reducer extends DataReducer {
   @Override
   public List<CalculationParameter> getCalculationParameters() {
     if (null == calculationParameters) {
-      calculationParameters = new ArrayList<CalculationParameter>(6);
+      List<CalculationParameter> parameters = new ArrayList<CalculationParameter>(
+        6);
 
-      calculationParameters
+      parameters
         .add(new CalculationParameter(makeParameterId(0), "ΔT",
           "Water-Equilibrator Temperature Difference", "DELTAT", "°C", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(1),
+      parameters.add(new CalculationParameter(makeParameterId(1),
         "pH₂O", "Marine Water Vapour Pressure", "RH2OX0EQ", "hPa", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(2),
+      parameters.add(new CalculationParameter(makeParameterId(2),
         "pCO₂ TE Wet", "pCO₂ In Water - Equilibrator Temperature", "PCO2IG02",
         "μatm", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(3),
+      parameters.add(new CalculationParameter(makeParameterId(3),
         "fCO₂ TE Wet", "fCO₂ In Water - Equilibrator Temperature", "FCO2IG02",
         "μatm", false));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(4),
+      parameters.add(new CalculationParameter(makeParameterId(4),
         "pCO₂ SST", "pCO₂ In Water", "PCO2TK02", "μatm", true));
 
-      calculationParameters.add(new CalculationParameter(makeParameterId(5),
+      parameters.add(new CalculationParameter(makeParameterId(5),
         "fCO₂", "fCO₂ In Water", "FCO2XXXX", "μatm", true));
+
+      calculationParameters = parameters;
     }
 
     return calculationParameters;
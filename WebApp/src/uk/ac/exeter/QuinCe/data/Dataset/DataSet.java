@@ -14,6 +14,8 @@ import com.google.gson.JsonArray;
 import uk.ac.exeter.QuinCe.data.Files.DataFile;
 import uk.ac.exeter.QuinCe.data.Files.DataFileDB;
 import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalibrationDB;
+import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalibrationTimeline;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.VariableNotFoundException;
 import uk.ac.exeter.QuinCe.utils.DatabaseException;
@@ -313,6 +315,22 @@ public class DataSet implements Comparable<DataSet>, TimeRange {
    */
   private SensorOffsets sensorOffsets;
 
+  /**
+   * The calibration timelines loaded while processing this dataset, keyed by
+   * calibration type. These are not stored in the database.
+   *
+   * @see CalibrationDB#getCalibrationTimeline(Connection, Instrument, DataSet)
+   */
+  private Map<String, CalibrationTimeline> calibrationTimelines = new HashMap<String, CalibrationTimeline>();
+
+  /**
+   * The in-memory working set shared by the jobs processing this dataset, if
+   * there is one. This is not stored in the database.
+   *
+   * @see DatasetWorkingSet
+   */
+  private DatasetWorkingSet workingSet = null;
+
   static {
     validStatuses = new HashMap<Integer, String>();
     validStatuses.put(STATUS_REPROCESS, STATUS_REPROCESS_NAME);
@@ -993,4 +1011,48 @@ public class DataSet implements Comparable<DataSet>, TimeRange {
   public void markExported() {
     exported = true;
   }
+
+  /**
+   * Get the calibration timeline of the specified type that has been loaded
+   * for this dataset.
+   *
+   * @param calibrationType
+   *          The calibration type.
+   * @return The timeline, or {@code null} if it has not been loaded.
+   * @see CalibrationDB#getCalibrationTimeline(Connection, Instrument, DataSet)
+   */
+  public CalibrationTimeline getCalibrationTimeline(String calibrationType) {
+    return calibrationTimelines.get(calibrationType);
+  }
+
+  /**
+   * Store a calibration timeline for this dataset.
+   *
+   * @param timeline
+   *          The timeline.
+   * @see CalibrationDB#getCalibrationTimeline(Connection, Instrument, DataSet)
+   */
+  public void setCalibrationTimeline(CalibrationTimeline timeline) {
+    calibrationTimelines.put(timeline.getType(), timeline);
+  }
+
+  /**
+   * Get the in-memory working set attached to this dataset.
+   *
+   * @return The working set, or {@code null} if there is no working set.
+   */
+  public DatasetWorkingSet getWorkingSet() {
+    return workingSet;
+  }
+
+  /**
+   * Attach an in-memory working set to this dataset. Pass {@code null} to
+   * remove the working set.
+   *
+   * @param workingSet
+   *          The working set.
+   */
+  public void setWorkingSet(DatasetWorkingSet workingSet) {
+    this.workingSet = workingSet;
+  }
 }
@@ -113,6 +113,12 @@ public class DataSetDB {
   private static final String DATASET_EXPORTED_STATEMENT = "UPDATE dataset "
     + "SET exported = 1 WHERE id = ?";
 
+  /**
+   * Statement to set the creation date of a dataset to the current time
+   */
+  private static final String RESET_CREATED_DATE_STATEMENT = "UPDATE dataset "
+    + "SET created = CURRENT_TIMESTAMP WHERE id = ?";
+
   private static final String SENSOR_OFFSETS_PROPERTY = "__SENSOR_OFFSETS";
 
   /**
@@ -842,6 +848,8 @@ public class DataSetDB {
       datasetStatement.setLong(1, dataSet.getId());
       datasetStatement.execute();
 
+      DatasetSnapshots.getInstance().delete(dataSet.getId());
+
       if (currentAutoCommitStatus) {
         // Return the connection to its non-transaction state
         conn.commit();
@@ -1275,4 +1283,30 @@ public class DataSetDB {
       throw new DatabaseException("Error setting dataset export status", e);
     }
   }
+
+  /**
+   * Set the creation date of a dataset to the current time. This is used when
+   * an existing dataset is extended with new data instead of being recreated.
+   *
+   * @param conn
+   *          A database connection
+   * @param datasetId
+   *          The dataset's database ID
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
+  public static void resetCreatedDate(Connection conn, long datasetId)
+    throws DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkPositive(datasetId, "datasetId");
+
+    try (PreparedStatement stmt = conn
+      .prepareStatement(RESET_CREATED_DATE_STATEMENT)) {
+      stmt.setLong(1, datasetId);
+      stmt.execute();
+    } catch (SQLException e) {
+      throw new DatabaseException("Error resetting dataset creation date", e);
+    }
+  }
 }
@@ -16,6 +16,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
@@ -28,7 +29,6 @@ import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionRecord;
 import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ReadOnlyDataReductionRecord;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.InvalidFlagException;
-import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
 import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
 import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
 import uk.ac.exeter.QuinCe.data.Instrument.InstrumentException;
@@ -40,6 +40,7 @@ import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
 import uk.ac.exeter.QuinCe.utils.DatabaseException;
 import uk.ac.exeter.QuinCe.utils.DatabaseUtils;
 import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
 import uk.ac.exeter.QuinCe.utils.MissingParam;
 import uk.ac.exeter.QuinCe.utils.MissingParamException;
 import uk.ac.exeter.QuinCe.utils.RecordNotFoundException;
@@ -79,6 +80,28 @@ public class DataSetDataDB {
     + "auto_qc, user_qc_flag, user_qc_message) "
     + "VALUES (?, ?, ?, ?, ?, ?, ?)";
 
+  /**
+   * Start of the multi-row statement used to bulk load sensor values. The
+   * {@link #BULK_STORE_SENSOR_VALUE_ROW} is appended once for each row.
+   *
+   * @see #bulkStoreSensorValues(Connection, DataSet, Instrument, Collection)
+   */
+  private static final String BULK_STORE_SENSOR_VALUES_STATEMENT = "INSERT INTO "
+    + "sensor_values (dataset_id, file_column, date, value, "
+    + "auto_qc, user_qc_flag, user_qc_message) VALUES ";
+
+  /**
+   * The parameters for a single row in the
+   * {@link #BULK_STORE_SENSOR_VALUES_STATEMENT}.
+   */
+  private static final String BULK_STORE_SENSOR_VALUE_ROW = "(?, ?, ?, ?, ?, ?, ?)";
+
+  /**
+   * The number of rows written by each statement when bulk loading sensor
+   * values, and by each JDBC batch when storing measurement values.
+   */
+  private static final int BULK_STORE_CHUNK_SIZE = 1000;
+
   private static final String UPDATE_SENSOR_VALUE_STATEMENT = "UPDATE sensor_values "
     + "SET auto_qc=?, user_qc_flag=?, user_qc_message=? WHERE id = ?";
 
@@ -93,6 +116,20 @@ public class DataSetDataDB {
     + "user_qc_flag, user_qc_message " // 7
     + "FROM sensor_values WHERE dataset_id = ?";
 
+  /**
+   * Query to get the sensor values for a dataset from a given time onwards.
+   */
+  private static final String GET_SENSOR_VALUES_FROM_TIME_QUERY = "SELECT "
+    + "id, file_column, date, value, auto_qc, " // 5
+    + "user_qc_flag, user_qc_message " // 7
+    + "FROM sensor_values WHERE dataset_id = ? AND date >= ?";
+
+  /**
+   * Statement to remove the sensor values for a data set after a given time.
+   */
+  private static final String DELETE_SENSOR_VALUES_AFTER_STATEMENT = "DELETE FROM "
+    + "sensor_values WHERE dataset_id = ? AND date > ?";
+
   private static final String GET_SENSOR_VALUES_FOR_DATASET_NO_FLUSHING_QUERY = "SELECT "
     + "id, file_column, date, value, auto_qc, " // 5
     + "user_qc_flag, user_qc_message " // 7
@@ -124,6 +161,16 @@ public class DataSetDataDB {
     + "LEFT JOIN measurement_run_types r ON r.measurement_id = m.id "
     + "WHERE dataset_id = ? " + "ORDER BY m.date ASC";
 
+  /**
+   * Query to get the measurement records for a dataset from a given time
+   * onwards
+   */
+  private static final String GET_MEASUREMENTS_FROM_TIME_QUERY = "SELECT "
+    + "m.id, m.date, m.measurement_values, r.variable_id, r.run_type "
+    + "FROM measurements m "
+    + "LEFT JOIN measurement_run_types r ON r.measurement_id = m.id "
+    + "WHERE dataset_id = ? AND m.date >= ? " + "ORDER BY m.date ASC";
+
   private static final String GET_MEASUREMENT_TIMES_QUERY = "SELECT "
     + "id, date FROM measurements WHERE dataset_id = ? " + "AND run_type IN "
     + DatabaseUtils.IN_PARAMS_TOKEN + " ORDER BY date ASC";
@@ -153,6 +200,26 @@ public class DataSetDataDB {
   private static final String DELETE_MEASUREMENTS_STATEMENT = "DELETE FROM "
     + "measurements WHERE dataset_id = ?";
 
+  private static final String DELETE_DATA_REDUCTION_AFTER_STATEMENT = "DELETE FROM "
+    + "data_reduction WHERE measurement_id IN "
+    + "(SELECT id FROM measurements WHERE dataset_id = ? AND date > ?)";
+
+  private static final String DELETE_MEASUREMENTS_DATA_REDUCTION_STATEMENT = "DELETE FROM "
+    + "data_reduction WHERE measurement_id IN " + DatabaseUtils.IN_PARAMS_TOKEN;
+
+  private static final String DELETE_MEASUREMENT_RUN_TYPES_AFTER_STATEMENT = "DELETE FROM "
+    + "measurement_run_types WHERE measurement_id IN "
+    + "(SELECT id FROM measurements WHERE dataset_id = ? AND date > ?)";
+
+  private static final String DELETE_MEASUREMENTS_AFTER_STATEMENT = "DELETE FROM "
+    + "measurements WHERE dataset_id = ? AND date > ?";
+
+  private static final String GET_SENSOR_VALUE_COUNT_QUERY = "SELECT "
+    + "COUNT(*) FROM sensor_values WHERE dataset_id = ?";
+
+  private static final String GET_LAST_MEASUREMENT_TIME_QUERY = "SELECT "
+    + "MAX(date) FROM measurements WHERE dataset_id = ?";
+
   private static final String GET_REQUIRED_FLAGS_QUERY = "SELECT "
     + "COUNT(*) FROM sensor_values WHERE dataset_id = ? "
     + "AND user_qc_flag = " + Flag.VALUE_NEEDED;
@@ -168,6 +235,17 @@ public class DataSetDataDB {
     + " WHERE dataset_id = ? AND file_column IN "
     + DatabaseUtils.IN_PARAMS_TOKEN + " ORDER BY date ASC";
 
+  private static final String GET_RUN_TYPES_FROM_TIME_QUERY = "SELECT "
+    + "date, value FROM sensor_values "
+    + " WHERE dataset_id = ? AND date >= ? AND file_column IN "
+    + DatabaseUtils.IN_PARAMS_TOKEN + " ORDER BY date ASC";
+
+  private static final String GET_DATA_REDUCTION_FROM_TIME_QUERY = "SELECT "
+    + "dr.measurement_id, dr.variable_id, dr.calculation_values, "
+    + "dr.qc_flag, dr.qc_message FROM data_reduction dr INNER JOIN "
+    + "measurements m ON dr.measurement_id = m.id WHERE m.dataset_id = ? "
+    + "AND m.date >= ? ORDER BY dr.measurement_id ASC";
+
   private static final String STORE_MEASUREMENT_VALUES_STATEMENT = "UPDATE measurements "
     + "SET measurement_values = ? WHERE id = ?";
 
@@ -380,24 +458,16 @@ public class DataSetDataDB {
               addStmt.setString(4, value.getValue());
             }
 
-            addStmt.setString(5, value.getAutoQcResult().toJson());
+            addStmt.setString(5, value.getEncodedAutoQcResult());
             addStmt.setInt(6, value.getUserQCFlag().getFlagValue());
             addStmt.setString(7, value.getUserQCMessage());
 
             addStmt.addBatch();
           } else {
-            updateStmt.setString(1, value.getAutoQcResult().toJson());
+            updateStmt.setString(1, value.getEncodedAutoQcResult());
             updateStmt.setInt(2, value.getUserQCFlag().getFlagValue());
 
-            // Truncate user QC message (except for LOOKUP flags)
-            String userQCMessage = value.getUserQCMessage();
-            if (!value.getUserQCFlag().equals(Flag.LOOKUP)) {
-              if (userQCMessage.length() > 255) {
-                userQCMessage = userQCMessage.substring(0, 255);
-              }
-            }
-
-            updateStmt.setString(3, userQCMessage);
+            updateStmt.setString(3, getStoredUserQCMessage(value));
             updateStmt.setLong(4, value.getId());
 
             updateStmt.addBatch();
@@ -415,6 +485,239 @@ public class DataSetDataDB {
     SensorValue.clearDirtyFlag(sensorValues);
   }
 
+  /**
+   * Store a set of sensor values for a dataset in the database, and apply the
+   * changes to the dataset's snapshot (see {@link DatasetSnapshots}). Used
+   * for user QC changes made after the dataset has been processed.
+   *
+   * @param conn
+   *          A database connection.
+   * @param dataset
+   *          The dataset to which the values belong.
+   * @param sensorValues
+   *          The sensor values.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws InstrumentException
+   *           If the instrument details cannot be retrieved.
+   * @throws InvalidSensorValueException
+   *           If any sensor value contains invalid dataset/column IDs.
+   * @throws SensorGroupsException
+   * @see #storeSensorValues(Connection, Collection)
+   */
+  public static void storeSensorValues(Connection conn, DataSet dataset,
+    Collection<SensorValue> sensorValues) throws MissingParamException,
+    DatabaseException, InvalidSensorValueException, RecordNotFoundException,
+    InstrumentException, SensorGroupsException {
+
+    MissingParam.checkMissing(dataset, "dataset");
+
+    storeSensorValues(conn, sensorValues);
+    DatasetSnapshots.getInstance().patch(dataset.getId(), sensorValues);
+  }
+
+  /**
+   * Get the user QC message for a sensor value as it is stored in the
+   * database. Long messages are truncated, except for {@link Flag#LOOKUP}
+   * flags.
+   *
+   * @param value
+   *          The sensor value.
+   * @return The stored message.
+   */
+  protected static String getStoredUserQCMessage(SensorValue value) {
+    String userQCMessage = value.getUserQCMessage();
+    if (!value.getUserQCFlag().equals(Flag.LOOKUP)) {
+      if (userQCMessage.length() > 255) {
+        userQCMessage = userQCMessage.substring(0, 255);
+      }
+    }
+
+    return userQCMessage;
+  }
+
+  /**
+   * Store a large number of new sensor values for a dataset.
+   *
+   * <p>
+   * This is a faster alternative to
+   * {@link #storeSensorValues(Connection, Collection)} for use when data is
+   * first extracted. The values' columns are checked against the supplied
+   * {@link Instrument} once, instead of the dataset and instrument being
+   * retrieved from the database for each column. The values are then written
+   * using multi-row {@code INSERT} statements of up to
+   * {@link #BULK_STORE_CHUNK_SIZE} rows each, so the size of each statement
+   * sent to the database is limited.
+   * </p>
+   *
+   * <p>
+   * All the values must be new, i.e. not already stored in the database, and
+   * belong to the specified dataset. As with
+   * {@link #storeSensorValues(Connection, Collection)}, only values whose
+   * {@code dirty} flag is set are stored, and they are not given database
+   * IDs. The statements are run on the supplied connection without
+   * committing, so the caller controls the transaction.
+   * </p>
+   *
+   * @param conn
+   *          A database connection.
+   * @param dataSet
+   *          The dataset to which the values belong.
+   * @param instrument
+   *          The dataset's instrument.
+   * @param sensorValues
+   *          The sensor values.
+   * @return The number of values stored.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws InvalidSensorValueException
+   *           If any sensor value is already in the database, or contains
+   *           invalid dataset/column IDs.
+   */
+  public static int bulkStoreSensorValues(Connection conn, DataSet dataSet,
+    Instrument instrument, Collection<SensorValue> sensorValues)
+    throws MissingParamException, DatabaseException,
+    InvalidSensorValueException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkMissing(dataSet, "dataSet");
+    MissingParam.checkMissing(instrument, "instrument");
+    MissingParam.checkMissing(sensorValues, "sensorValues", true);
+
+    // Check the values and collect the ones to be stored
+    List<SensorValue> storeValues = new ArrayList<SensorValue>(
+      sensorValues.size());
+    HashSet<Long> verifiedColumns = new HashSet<Long>();
+
+    for (SensorValue value : sensorValues) {
+      if (!value.canBeSaved()) {
+        throw new InvalidSensorValueException(
+          "Attempt to store SensorValue but canBeSaved = false", value);
+      }
+
+      if (value.isInDatabase()) {
+        throw new InvalidSensorValueException(
+          "SensorValue is already in the database", value);
+      }
+
+      if (value.getDatasetId() != dataSet.getId()) {
+        throw new InvalidSensorValueException(
+          "SensorValue does not belong to the dataset", value);
+      }
+
+      if (!verifiedColumns.contains(value.getColumnId())) {
+        if (!instrument.columnValid(value.getColumnId())) {
+          throw new InvalidSensorValueException(
+            "Column specified in SensorValue is not valid for the instrument",
+            value);
+        }
+
+        verifiedColumns.add(value.getColumnId());
+      }
+
+      if (value.isDirty()) {
+        storeValues.add(value);
+      }
+    }
+
+    PreparedStatement chunkStmt = null;
+    PreparedStatement remainderStmt = null;
+
+    try {
+      int fullChunks = storeValues.size() / BULK_STORE_CHUNK_SIZE;
+      int remainder = storeValues.size() % BULK_STORE_CHUNK_SIZE;
+
+      if (fullChunks > 0) {
+        chunkStmt = conn
+          .prepareStatement(makeBulkStoreStatement(BULK_STORE_CHUNK_SIZE));
+
+        for (int chunk = 0; chunk < fullChunks; chunk++) {
+          int start = chunk * BULK_STORE_CHUNK_SIZE;
+          setBulkStoreParams(chunkStmt,
+            storeValues.subList(start, start + BULK_STORE_CHUNK_SIZE));
+          chunkStmt.execute();
+        }
+      }
+
+      if (remainder > 0) {
+        remainderStmt = conn.prepareStatement(makeBulkStoreStatement(remainder));
+        setBulkStoreParams(remainderStmt, storeValues
+          .subList(storeValues.size() - remainder, storeValues.size()));
+        remainderStmt.execute();
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error storing sensor values", e);
+    } finally {
+      DatabaseUtils.closeStatements(chunkStmt, remainderStmt);
+    }
+
+    SensorValue.clearDirtyFlag(storeValues);
+    return storeValues.size();
+  }
+
+  /**
+   * Build a multi-row statement for bulk loading sensor values.
+   *
+   * @param rows
+   *          The number of rows in the statement.
+   * @return The statement SQL.
+   */
+  private static String makeBulkStoreStatement(int rows) {
+    StringBuilder sql = new StringBuilder(BULK_STORE_SENSOR_VALUES_STATEMENT
+      .length() + rows * (BULK_STORE_SENSOR_VALUE_ROW.length() + 1));
+
+    sql.append(BULK_STORE_SENSOR_VALUES_STATEMENT);
+    for (int i = 0; i < rows; i++) {
+      if (i > 0) {
+        sql.append(',');
+      }
+      sql.append(BULK_STORE_SENSOR_VALUE_ROW);
+    }
+
+    return sql.toString();
+  }
+
+  /**
+   * Set the parameters of a multi-row bulk load statement from a list of
+   * sensor values. The statement must have been built for the same number of
+   * rows as there are values.
+   *
+   * @param stmt
+   *          The statement.
+   * @param values
+   *          The values.
+   * @throws SQLException
+   *           If the parameters cannot be set.
+   * @throws DatabaseException
+   *           If a value's automatic QC result cannot be encoded.
+   * @see #makeBulkStoreStatement(int)
+   */
+  private static void setBulkStoreParams(PreparedStatement stmt,
+    List<SensorValue> values) throws SQLException, DatabaseException {
+
+    int param = 1;
+    for (SensorValue value : values) {
+      stmt.setLong(param++, value.getDatasetId());
+      stmt.setLong(param++, value.getColumnId());
+      stmt.setLong(param++, DateTimeUtils.dateToLong(value.getTime()));
+      if (null == value.getValue()) {
+        stmt.setNull(param++, Types.VARCHAR);
+      } else {
+        stmt.setString(param++, value.getValue());
+      }
+
+      // New values usually have no automatic QC, in which case this returns
+      // null without any encoding
+      stmt.setString(param++, value.getEncodedAutoQcResult());
+      stmt.setInt(param++, value.getUserQCFlag().getFlagValue());
+      stmt.setString(param++, value.getUserQCMessage());
+    }
+  }
+
   /**
    * Remove all sensor values for a dataset
    *
@@ -447,6 +750,39 @@ public class DataSetDataDB {
     }
   }
 
+  /**
+   * Remove the sensor values for a dataset that are later than the specified
+   * time. Values at or before the time are left untouched.
+   *
+   * @param conn
+   *          A database connection
+   * @param datasetId
+   *          The dataset's database ID
+   * @param after
+   *          The time after which values will be removed
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static void deleteSensorValues(Connection conn, long datasetId,
+    LocalDateTime after) throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkZeroPositive(datasetId, "datasetId");
+    MissingParam.checkMissing(after, "after");
+
+    try (PreparedStatement stmt = conn
+      .prepareStatement(DELETE_SENSOR_VALUES_AFTER_STATEMENT)) {
+
+      stmt.setLong(1, datasetId);
+      stmt.setLong(2, DateTimeUtils.dateToLong(after));
+      stmt.execute();
+    } catch (SQLException e) {
+      throw new DatabaseException("Error deleting sensor values", e);
+    }
+  }
+
   /**
    * Get all the sensor values for a dataset grouped by their column in the
    * source data file(s)
@@ -477,12 +813,62 @@ public class DataSetDataDB {
     MissingParam.checkMissing(conn, "conn");
     MissingParam.checkZeroPositive(datasetId, "datasetId");
 
-    TreeSet<Long> ignoredSensorValues = new TreeSet<Long>();
+    return getSensorValues(conn, instrument, datasetId, ignoreFlushing,
+      getIgnoredSensorValueIDs(conn, instrument, datasetId,
+        ignoreInternalCalibrations));
+  }
 
-    if (instrument.hasInternalCalibrations() && ignoreInternalCalibrations) {
-      ignoredSensorValues = getInternalCalibrationSensorValueIDs(conn,
-        instrument, datasetId);
-    }
+  /**
+   * Get the IDs of the sensor values that are left out of a dataset's values
+   * if internal calibration values are to be ignored.
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @param datasetId
+   *          The dataset's database ID
+   * @param ignoreInternalCalibrations
+   *          Indicates whether or not values measured during internal
+   *          calibration runs should be left out.
+   * @return The IDs of the values to be left out
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
+  private static Set<Long> getIgnoredSensorValueIDs(Connection conn,
+    Instrument instrument, long datasetId, boolean ignoreInternalCalibrations)
+    throws DatabaseException {
+
+    return instrument.hasInternalCalibrations() && ignoreInternalCalibrations
+      ? getInternalCalibrationSensorValueIDs(conn, instrument, datasetId)
+      : new TreeSet<Long>();
+  }
+
+  /**
+   * Get all the sensor values for a dataset from the database, leaving out
+   * the specified values.
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @param datasetId
+   *          The database ID of the dataset whose values are to be retrieved
+   * @param ignoreFlushing
+   *          Indicates whether or not values in the instrument's flushing
+   *          period should be left out of the result.
+   * @param ignoredSensorValues
+   *          The IDs of values to be left out of the result.
+   * @return The values
+   * @throws RecordNotFoundException
+   *           If the instrument configuration does not match the values
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
+  private static DatasetSensorValues getSensorValues(Connection conn,
+    Instrument instrument, long datasetId, boolean ignoreFlushing,
+    Set<Long> ignoredSensorValues)
+    throws RecordNotFoundException, DatabaseException {
 
     DatasetSensorValues values = new DatasetSensorValues(instrument);
 
@@ -490,24 +876,301 @@ public class DataSetDataDB {
       ? GET_SENSOR_VALUES_FOR_DATASET_NO_FLUSHING_QUERY
       : GET_SENSOR_VALUES_FOR_DATASET_QUERY;
 
-    try (PreparedStatement stmt = conn.prepareStatement(query)) {
+    try (PreparedStatement stmt = conn.prepareStatement(query)) {
+
+      stmt.setLong(1, datasetId);
+
+      try (ResultSet records = stmt.executeQuery()) {
+
+        while (records.next()) {
+          SensorValue value = sensorValueFromResultSet(records, datasetId);
+          if (!ignoredSensorValues.contains(value.getId())) {
+            values.add(value);
+          }
+        }
+      }
+    } catch (Exception e) {
+      throw new DatabaseException("Error while retrieving sensor values", e);
+    }
+
+    return values;
+  }
+
+  /**
+   * Get the sensor values for a dataset that were measured at or after the
+   * specified time, grouped by their column in the source data file(s). No
+   * values are filtered out.
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @param datasetId
+   *          The database ID of the dataset whose values are to be retrieved
+   * @param from
+   *          The time of the earliest value to retrieve
+   * @return The values
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static DatasetSensorValues getSensorValues(Connection conn,
+    Instrument instrument, long datasetId, LocalDateTime from)
+    throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkZeroPositive(datasetId, "datasetId");
+    MissingParam.checkMissing(from, "from");
+
+    DatasetSensorValues values;
+
+    try (PreparedStatement stmt = conn
+      .prepareStatement(GET_SENSOR_VALUES_FROM_TIME_QUERY)) {
+
+      values = new DatasetSensorValues(instrument);
+      stmt.setLong(1, datasetId);
+      stmt.setLong(2, DateTimeUtils.dateToLong(from));
+
+      try (ResultSet records = stmt.executeQuery()) {
+        while (records.next()) {
+          values.add(sensorValueFromResultSet(records, datasetId));
+        }
+      }
+    } catch (Exception e) {
+      throw new DatabaseException("Error while retrieving sensor values", e);
+    }
+
+    return values;
+  }
+
+  /**
+   * Get all the sensor values for a dataset grouped by their column in the
+   * source data file(s).
+   *
+   * <p>
+   * If the dataset has a {@link DatasetWorkingSet} attached, the values are
+   * taken from it instead of the database. Otherwise they are taken from the
+   * dataset's snapshot if it has one (see {@link DatasetSnapshots}).
+   * </p>
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @param dataset
+   *          The dataset whose values are to be retrieved
+   * @param ignoreFlushing
+   *          Indicates whether or not values in the instrument's flushing
+   *          period should be left out of the result.
+   * @param ignoreInternalCalibrations
+   *          Indicates whether or not values measured during internal
+   *          calibration runs should be left out of the result.
+   * @return The values
+   * @throws RecordNotFoundException
+   *           If the instrument configuration does not match the values
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws InvalidFlagException
+   *           If any stored QC flags are invalid
+   * @see #getSensorValues(Connection, Instrument, long, boolean, boolean)
+   */
+  public static DatasetSensorValues getSensorValues(Connection conn,
+    Instrument instrument, DataSet dataset, boolean ignoreFlushing,
+    boolean ignoreInternalCalibrations) throws RecordNotFoundException,
+    DatabaseException, MissingParamException, InvalidFlagException {
+
+    MissingParam.checkMissing(dataset, "dataset");
+
+    DatasetSensorValues result;
+
+    if (null != dataset.getWorkingSet()) {
+      result = dataset.getWorkingSet().getSensorValues(conn, instrument,
+        ignoreFlushing, ignoreInternalCalibrations);
+    } else {
+      Set<Long> ignoredSensorValues = getIgnoredSensorValueIDs(conn,
+        instrument, dataset.getId(), ignoreInternalCalibrations);
+
+      result = getSnapshotSensorValues(instrument, dataset.getId(),
+        ignoreFlushing, ignoredSensorValues, null);
+
+      if (null == result) {
+        result = getSensorValues(conn, instrument, dataset.getId(),
+          ignoreFlushing, ignoredSensorValues);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the sensor values for a dataset from its snapshot, if it has one.
+   *
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @param datasetId
+   *          The dataset's database ID
+   * @param ignoreFlushing
+   *          Indicates whether or not values in the instrument's flushing
+   *          period should be left out of the result.
+   * @param ignoredSensorValues
+   *          The IDs of values to be left out of the result.
+   * @param columnIds
+   *          The columns whose values are to be retrieved, or {@code null} to
+   *          retrieve all columns.
+   * @return The values, or {@code null} if there is no usable snapshot.
+   * @see DatasetSnapshots#getSensorValues(Instrument, long, boolean, Set, Set)
+   */
+  private static DatasetSensorValues getSnapshotSensorValues(
+    Instrument instrument, long datasetId, boolean ignoreFlushing,
+    Set<Long> ignoredSensorValues, Set<Long> columnIds) {
+
+    DatasetSensorValues result = null;
+
+    DatasetSnapshots snapshots = DatasetSnapshots.getInstance();
+    if (snapshots.isEnabled()) {
+      try {
+        result = snapshots.getSensorValues(instrument, datasetId,
+          ignoreFlushing, ignoredSensorValues, columnIds);
+      } catch (Exception e) {
+        // Fall back to the database, and rebuild the snapshot next time the
+        // dataset is processed
+        ExceptionUtils.printStackTrace(e);
+        snapshots.delete(datasetId);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the number of sensor values stored for a dataset.
+   *
+   * @param conn
+   *          A database connection
+   * @param datasetId
+   *          The dataset's database ID
+   * @return The number of sensor values
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static int getSensorValueCount(Connection conn, long datasetId)
+    throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkZeroPositive(datasetId, "datasetId");
+
+    int result = 0;
+
+    try (PreparedStatement stmt = conn
+      .prepareStatement(GET_SENSOR_VALUE_COUNT_QUERY)) {
+
+      stmt.setLong(1, datasetId);
+
+      try (ResultSet records = stmt.executeQuery()) {
+        records.next();
+        result = records.getInt(1);
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while counting sensor values", e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the time of the last measurement in a dataset.
+   *
+   * @param conn
+   *          A database connection
+   * @param datasetId
+   *          The dataset's database ID
+   * @return The time of the last measurement, or {@code null} if the dataset
+   *         has no measurements
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static LocalDateTime getLastMeasurementTime(Connection conn,
+    long datasetId) throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkZeroPositive(datasetId, "datasetId");
+
+    LocalDateTime result = null;
+
+    try (PreparedStatement stmt = conn
+      .prepareStatement(GET_LAST_MEASUREMENT_TIME_QUERY)) {
+
+      stmt.setLong(1, datasetId);
+
+      try (ResultSet records = stmt.executeQuery()) {
+        records.next();
+        long time = records.getLong(1);
+        if (!records.wasNull()) {
+          result = DateTimeUtils.longToDate(time);
+        }
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while getting last measurement time",
+        e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the position sensor values for a dataset.
+   *
+   * <p>
+   * If the dataset has a {@link DatasetWorkingSet} attached, the values are
+   * taken from it instead of the database. Otherwise they are taken from the
+   * dataset's snapshot if it has one (see {@link DatasetSnapshots}).
+   * </p>
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @param dataset
+   *          The dataset whose values are to be retrieved
+   * @return The position values
+   * @throws RecordNotFoundException
+   *           If the instrument configuration does not match the values
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws InvalidFlagException
+   *           If any stored QC flags are invalid
+   */
+  public static DatasetSensorValues getPositionSensorValues(Connection conn,
+    Instrument instrument, DataSet dataset) throws RecordNotFoundException,
+    DatabaseException, MissingParamException, InvalidFlagException {
+
+    MissingParam.checkMissing(dataset, "dataset");
 
-      stmt.setLong(1, datasetId);
+    DatasetSensorValues result;
 
-      try (ResultSet records = stmt.executeQuery()) {
+    if (null != dataset.getWorkingSet()) {
+      result = dataset.getWorkingSet().getPositionSensorValues(conn,
+        instrument);
+    } else {
+      result = getSnapshotSensorValues(instrument, dataset.getId(), false,
+        new TreeSet<Long>(),
+        Set.of(SensorType.LONGITUDE_ID, SensorType.LATITUDE_ID));
 
-        while (records.next()) {
-          SensorValue value = sensorValueFromResultSet(records, datasetId);
-          if (!ignoredSensorValues.contains(value.getId())) {
-            values.add(value);
-          }
-        }
+      if (null == result) {
+        result = getPositionSensorValues(conn, instrument, dataset.getId());
       }
-    } catch (Exception e) {
-      throw new DatabaseException("Error while retrieving sensor values", e);
     }
 
-    return values;
+    return result;
   }
 
   public static DatasetSensorValues getPositionSensorValues(Connection conn,
@@ -548,20 +1211,23 @@ public class DataSetDataDB {
    *           If any values cannot be read
    * @throws InvalidFlagException
    *           If the stored Flag value is invalid
+   * @throws DatabaseException
+   *           If the automatic QC result refers to unknown QC routines
    */
   private static SensorValue sensorValueFromResultSet(ResultSet record,
-    long datasetId) throws SQLException, InvalidFlagException {
+    long datasetId)
+    throws SQLException, InvalidFlagException, DatabaseException {
 
     long valueId = record.getLong(1);
     long fileColumnId = record.getLong(2);
     LocalDateTime time = DateTimeUtils.longToDate(record.getLong(3));
     String value = record.getString(4);
-    AutoQCResult autoQC = AutoQCResult.buildFromJson(record.getString(5));
+    String autoQC = record.getString(5);
     Flag userQCFlag = new Flag(record.getInt(6));
     String userQCMessage = record.getString(7);
 
-    return new SensorValue(valueId, datasetId, fileColumnId, time, value,
-      autoQC, userQCFlag, userQCMessage);
+    return SensorValue.fromDatabase(valueId, datasetId, fileColumnId, time,
+      value, autoQC, userQCFlag, userQCMessage);
   }
 
   /**
@@ -671,6 +1337,98 @@ public class DataSetDataDB {
     return measurements;
   }
 
+  /**
+   * Get the set of measurements for a dataset, grouped by run type and ordered
+   * by date.
+   *
+   * <p>
+   * If the dataset has a {@link DatasetWorkingSet} containing the
+   * measurements, they are taken from it instead of the database. If the
+   * working set only covers part of the dataset (see
+   * {@link DatasetWorkingSet#isWindowed()}), only the measurements in that
+   * part are returned.
+   * </p>
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument to which the dataset belongs
+   * @param dataset
+   *          The dataset
+   * @return The measurements
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static DatasetMeasurements getMeasurementsByRunType(Connection conn,
+    Instrument instrument, DataSet dataset)
+    throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(dataset, "dataset");
+
+    DatasetWorkingSet workingSet = dataset.getWorkingSet();
+
+    DatasetMeasurements result;
+
+    if (null == workingSet) {
+      result = getMeasurementsByRunType(conn, instrument, dataset.getId());
+    } else if (workingSet.hasMeasurements()) {
+      result = workingSet.getMeasurementsByRunType();
+    } else if (workingSet.isWindowed()) {
+      result = new DatasetMeasurements();
+      getMeasurements(conn, dataset.getId(), workingSet.getStart())
+        .forEach(result::addMeasurement);
+    } else {
+      result = getMeasurementsByRunType(conn, instrument, dataset.getId());
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the set of measurements for a dataset ordered by date.
+   *
+   * <p>
+   * If the dataset has a {@link DatasetWorkingSet} containing the
+   * measurements, they are taken from it instead of the database. If the
+   * working set only covers part of the dataset (see
+   * {@link DatasetWorkingSet#isWindowed()}), only the measurements in that
+   * part are returned.
+   * </p>
+   *
+   * @param conn
+   *          A database connection
+   * @param dataset
+   *          The dataset
+   * @return The measurements
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static List<Measurement> getMeasurements(Connection conn,
+    DataSet dataset) throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(dataset, "dataset");
+
+    DatasetWorkingSet workingSet = dataset.getWorkingSet();
+
+    List<Measurement> result;
+
+    if (null == workingSet) {
+      result = getMeasurements(conn, dataset.getId());
+    } else if (workingSet.hasMeasurements()) {
+      result = workingSet.getMeasurements();
+    } else if (workingSet.isWindowed()) {
+      result = getMeasurements(conn, dataset.getId(), workingSet.getStart());
+    } else {
+      result = getMeasurements(conn, dataset.getId());
+    }
+
+    return result;
+  }
+
   /**
    * Get the set of measurements for a dataset ordered by date
    *
@@ -716,6 +1474,51 @@ public class DataSetDataDB {
     return measurements;
   }
 
+  /**
+   * Get the measurements for a dataset taken at or after the specified time,
+   * ordered by date.
+   *
+   * @param conn
+   *          A database connection
+   * @param datasetId
+   *          The database ID of the dataset
+   * @param from
+   *          The time of the earliest measurement to retrieve
+   * @return The measurements
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static List<Measurement> getMeasurements(Connection conn,
+    long datasetId, LocalDateTime from)
+    throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkZeroPositive(datasetId, "datasetId");
+    MissingParam.checkMissing(from, "from");
+
+    List<Measurement> measurements = new ArrayList<Measurement>();
+
+    try (PreparedStatement stmt = conn
+      .prepareStatement(GET_MEASUREMENTS_FROM_TIME_QUERY)) {
+
+      stmt.setLong(1, datasetId);
+      stmt.setLong(2, DateTimeUtils.dateToLong(from));
+
+      try (ResultSet records = stmt.executeQuery()) {
+        records.next();
+        while (!records.isAfterLast()) {
+          measurements.add(measurementFromResultSet(datasetId, records));
+        }
+      }
+    } catch (Exception e) {
+      throw new DatabaseException("Error while retrieving measurements", e);
+    }
+
+    return measurements;
+  }
+
   private static Measurement measurementFromResultSet(long datasetId,
     ResultSet record) throws SQLException {
 
@@ -922,6 +1725,65 @@ public class DataSetDataDB {
     }
   }
 
+  /**
+   * Remove the measurement details from a data set for all measurements later
+   * than the specified time. Earlier measurements are left untouched.
+   *
+   * @param conn
+   *          A database connection
+   * @param datasetId
+   *          The database ID of the data set
+   * @param after
+   *          The time after which measurements will be removed
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static void deleteMeasurements(Connection conn, long datasetId,
+    LocalDateTime after) throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkZeroPositive(datasetId, "datasetId");
+    MissingParam.checkMissing(after, "after");
+
+    long afterLong = DateTimeUtils.dateToLong(after);
+
+    try (
+      PreparedStatement delDataReductionStmt = conn
+        .prepareStatement(DELETE_DATA_REDUCTION_AFTER_STATEMENT);
+      PreparedStatement delRunTypesStmt = conn
+        .prepareStatement(DELETE_MEASUREMENT_RUN_TYPES_AFTER_STATEMENT);
+      PreparedStatement delMeasurementsStmt = conn
+        .prepareStatement(DELETE_MEASUREMENTS_AFTER_STATEMENT)) {
+
+      boolean initialAutoCommitState = conn.getAutoCommit();
+      if (initialAutoCommitState) {
+        conn.setAutoCommit(false);
+      }
+
+      delDataReductionStmt.setLong(1, datasetId);
+      delDataReductionStmt.setLong(2, afterLong);
+      delDataReductionStmt.execute();
+
+      delRunTypesStmt.setLong(1, datasetId);
+      delRunTypesStmt.setLong(2, afterLong);
+      delRunTypesStmt.execute();
+
+      delMeasurementsStmt.setLong(1, datasetId);
+      delMeasurementsStmt.setLong(2, afterLong);
+      delMeasurementsStmt.execute();
+
+      conn.commit();
+
+      if (initialAutoCommitState) {
+        conn.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while deleting measurements", e);
+    }
+  }
+
   public static int getFlagsRequired(DataSource dataSource, long datasetId)
     throws MissingParamException, DatabaseException {
 
@@ -996,6 +1858,11 @@ public class DataSetDataDB {
    * DataReductionRecord.
    * <p>
    *
+   * <p>
+   * If the dataset has a {@link DatasetWorkingSet} that only covers part of
+   * the dataset, only the records for measurements in that part are returned.
+   * </p>
+   *
    * @param conn
    *          A database connection
    * @param instrument
@@ -1018,10 +1885,16 @@ public class DataSetDataDB {
 
     Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> result = new HashMap<Long, Map<Variable, ReadOnlyDataReductionRecord>>();
 
-    try (PreparedStatement stmt = conn
-      .prepareStatement(GET_DATA_REDUCTION_QUERY)) {
+    DatasetWorkingSet workingSet = dataSet.getWorkingSet();
+    boolean windowed = null != workingSet && workingSet.isWindowed();
+
+    try (PreparedStatement stmt = conn.prepareStatement(
+      windowed ? GET_DATA_REDUCTION_FROM_TIME_QUERY : GET_DATA_REDUCTION_QUERY)) {
 
       stmt.setLong(1, dataSet.getId());
+      if (windowed) {
+        stmt.setLong(2, DateTimeUtils.dateToLong(workingSet.getStart()));
+      }
 
       long currentMeasurement = -1L;
       try (ResultSet records = stmt.executeQuery()) {
@@ -1103,6 +1976,34 @@ public class DataSetDataDB {
     Instrument instrument, long datasetId)
     throws MissingParamException, DatabaseException, DataSetException {
 
+    return getRunTypePeriods(conn, instrument, datasetId, null);
+  }
+
+  /**
+   * Get the run type periods for a dataset starting from the run type value
+   * recorded at or after the specified time. If the time is {@code null}, the
+   * periods for the whole dataset are returned.
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument to which the dataset belongs
+   * @param datasetId
+   *          The database ID of the dataset
+   * @param from
+   *          The earliest time to include
+   * @return The run type periods
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws DataSetException
+   *           If the run type values are not in time order
+   */
+  public static RunTypePeriods getRunTypePeriods(Connection conn,
+    Instrument instrument, long datasetId, LocalDateTime from)
+    throws MissingParamException, DatabaseException, DataSetException {
+
     MissingParam.checkMissing(conn, "conn");
     MissingParam.checkMissing(instrument, "instrument");
     MissingParam.checkZeroPositive(datasetId, "datasetId");
@@ -1113,14 +2014,20 @@ public class DataSetDataDB {
       .getRunTypeColumnIDs();
 
     if (runTypeColumnIds.size() > 0) {
-      String sensorValuesSQL = DatabaseUtils
-        .makeInStatementSql(GET_RUN_TYPES_QUERY, runTypeColumnIds.size());
+      String sensorValuesSQL = DatabaseUtils.makeInStatementSql(
+        null == from ? GET_RUN_TYPES_QUERY : GET_RUN_TYPES_FROM_TIME_QUERY,
+        runTypeColumnIds.size());
 
       try (PreparedStatement stmt = conn.prepareStatement(sensorValuesSQL)) {
 
         stmt.setLong(1, datasetId);
 
         int currentParam = 2;
+        if (null != from) {
+          stmt.setLong(currentParam, DateTimeUtils.dateToLong(from));
+          currentParam++;
+        }
+
         for (long column : runTypeColumnIds) {
           stmt.setLong(currentParam, column);
           currentParam++;
@@ -1140,6 +2047,38 @@ public class DataSetDataDB {
     return result;
   }
 
+  /**
+   * Get the run type periods for a dataset. If the dataset has a
+   * {@link DatasetWorkingSet} that only covers part of the dataset, only the
+   * periods in that part are returned.
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument to which the dataset belongs
+   * @param dataset
+   *          The dataset
+   * @return The run type periods
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws DataSetException
+   *           If the run type values are not in time order
+   */
+  public static RunTypePeriods getRunTypePeriods(Connection conn,
+    Instrument instrument, DataSet dataset)
+    throws MissingParamException, DatabaseException, DataSetException {
+
+    MissingParam.checkMissing(dataset, "dataset");
+
+    DatasetWorkingSet workingSet = dataset.getWorkingSet();
+
+    return getRunTypePeriods(conn, instrument, dataset.getId(),
+      null != workingSet && workingSet.isWindowed() ? workingSet.getStart()
+        : null);
+  }
+
   public static void storeMeasurementValues(Connection conn,
     Measurement measurement) throws MissingParamException, DatabaseException {
 
@@ -1156,6 +2095,19 @@ public class DataSetDataDB {
     }
   }
 
+  /**
+   * Store the measurement values for a set of measurements. The updates are
+   * sent to the database in batches of {@link #BULK_STORE_CHUNK_SIZE}.
+   *
+   * @param conn
+   *          A database connection
+   * @param measurements
+   *          The measurements
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
   public static void storeMeasurementValues(Connection conn,
     Collection<Measurement> measurements)
     throws MissingParamException, DatabaseException {
@@ -1166,13 +2118,23 @@ public class DataSetDataDB {
     try (PreparedStatement stmt = conn
       .prepareStatement(STORE_MEASUREMENT_VALUES_STATEMENT)) {
 
+      int batchSize = 0;
+
       for (Measurement measurement : measurements) {
         stmt.setString(1, measurement.getMeasurementValuesJson());
         stmt.setLong(2, measurement.getId());
         stmt.addBatch();
+        batchSize++;
+
+        if (batchSize == BULK_STORE_CHUNK_SIZE) {
+          stmt.executeBatch();
+          batchSize = 0;
+        }
       }
 
-      stmt.executeBatch();
+      if (batchSize > 0) {
+        stmt.executeBatch();
+      }
     } catch (SQLException e) {
       throw new DatabaseException("Error while storing measurement values", e);
     }
@@ -1195,6 +2157,79 @@ public class DataSetDataDB {
     }
   }
 
+  /**
+   * Remove the data reduction records for all measurements in a dataset that
+   * are later than the specified time.
+   *
+   * @param conn
+   *          A database connection
+   * @param datasetId
+   *          The database ID of the data set
+   * @param after
+   *          The time after which records will be removed
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static void deleteDataReduction(Connection conn, long datasetId,
+    LocalDateTime after) throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkPositive(datasetId, "datasetId");
+    MissingParam.checkMissing(after, "after");
+
+    try (PreparedStatement drStmt = conn
+      .prepareStatement(DELETE_DATA_REDUCTION_AFTER_STATEMENT)) {
+
+      drStmt.setLong(1, datasetId);
+      drStmt.setLong(2, DateTimeUtils.dateToLong(after));
+      drStmt.execute();
+
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while deleting data reduction", e);
+    }
+  }
+
+  /**
+   * Remove the data reduction records for the specified measurements.
+   *
+   * @param conn
+   *          A database connection
+   * @param measurementIds
+   *          The database IDs of the measurements
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static void deleteDataReduction(Connection conn,
+    Collection<Long> measurementIds)
+    throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkMissing(measurementIds, "measurementIds", true);
+
+    if (measurementIds.size() > 0) {
+      String sql = DatabaseUtils.makeInStatementSql(
+        DELETE_MEASUREMENTS_DATA_REDUCTION_STATEMENT, measurementIds.size());
+
+      try (PreparedStatement drStmt = conn.prepareStatement(sql)) {
+
+        int index = 1;
+        for (long measurementId : measurementIds) {
+          drStmt.setLong(index, measurementId);
+          index++;
+        }
+
+        drStmt.execute();
+
+      } catch (SQLException e) {
+        throw new DatabaseException("Error while deleting data reduction", e);
+      }
+    }
+  }
+
   public static TreeSet<Long> getInternalCalibrationSensorValueIDs(
     Connection conn, Instrument instrument, long datasetId)
     throws DatabaseException {
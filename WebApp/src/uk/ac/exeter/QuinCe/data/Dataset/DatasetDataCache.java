@@ -0,0 +1,362 @@
+package uk.ac.exeter.QuinCe.data.Dataset;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ReadOnlyDataReductionRecord;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
+import uk.ac.exeter.QuinCe.utils.MissingParamException;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Application-wide cache of the processed data for {@link DataSet}s, shared
+ * between all user sessions that view the same dataset.
+ *
+ * <p>
+ * Loading the {@link Measurement}s and data reduction records for a large
+ * dataset is expensive, and several users (or browser tabs) often view the
+ * same dataset at once. These data are only written by the processing jobs,
+ * so they can be loaded once and shared.
+ * </p>
+ *
+ * <p>
+ * The {@link DatasetSensorValues}, which are the largest part of a dataset,
+ * are not cached. Users edit their QC flags in place, so each session still
+ * loads its own full copy, and the memory used by a dataset still grows with
+ * the number of sessions viewing it. Sharing them would need a read-only base
+ * with a per-session overlay of QC edits, which is not implemented.
+ * </p>
+ *
+ * <p>
+ * Each entry is tagged with the dataset's status date. Every processing job
+ * sets the dataset's status, so an entry whose status date does not match the
+ * dataset is out of date and is discarded. Entries are also removed by
+ * {@link #invalidate(long)} when a job for the dataset finishes.
+ * </p>
+ *
+ * <p>
+ * The cache is bounded by an estimate of the memory used by its entries. When
+ * the limit is exceeded, the least recently used entries are evicted. The
+ * limit is set by the {@link #MAX_SIZE_PROPERTY} application configuration
+ * property; a value of zero disables the cache.
+ * </p>
+ */
+public class DatasetDataCache {
+
+  /**
+   * The application configuration property for the maximum size of the cache
+   * in megabytes.
+   */
+  public static final String MAX_SIZE_PROPERTY = "qc.dataset_cache.max_mb";
+
+  /**
+   * The maximum cache size (in megabytes) used if it is not configured.
+   */
+  private static final long DEFAULT_MAX_SIZE = 256;
+
+  /**
+   * The estimated size of a {@link Measurement}, excluding its measurement
+   * values.
+   */
+  private static final long MEASUREMENT_WEIGHT = 256;
+
+  /**
+   * The estimated size of a {@link MeasurementValue}.
+   */
+  private static final long MEASUREMENT_VALUE_WEIGHT = 256;
+
+  /**
+   * The estimated size of a data reduction record.
+   */
+  private static final long RECORD_WEIGHT = 512;
+
+  /**
+   * The singleton instance of the cache.
+   */
+  private static DatasetDataCache instance = null;
+
+  /**
+   * The maximum total weight of the cached entries, in bytes.
+   */
+  private final long maxWeight;
+
+  /**
+   * The cached entries, keyed by dataset ID in least recently used order.
+   */
+  private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>(
+    16, 0.75f, true);
+
+  /**
+   * The total weight of the cached entries.
+   */
+  private long weight = 0;
+
+  /**
+   * Counter incremented on every invalidation. Used to prevent data that was
+   * being loaded while an entry was invalidated from being added to the cache.
+   */
+  private long invalidations = 0;
+
+  /**
+   * Create a cache with the specified maximum size.
+   *
+   * @param maxWeight
+   *          The maximum total weight of the cached entries, in bytes.
+   */
+  protected DatasetDataCache(long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Get the cache instance, creating it from the application configuration
+   * if required.
+   *
+   * @return The cache.
+   */
+  public static synchronized DatasetDataCache getInstance() {
+    if (null == instance) {
+      ResourceManager resourceManager = ResourceManager.getInstance();
+      instance = new DatasetDataCache(getMaxWeight(
+        null == resourceManager ? null : resourceManager.getConfig()));
+    }
+
+    return instance;
+  }
+
+  /**
+   * Discard the cache instance and all its entries.
+   */
+  public static synchronized void destroy() {
+    instance = null;
+  }
+
+  /**
+   * Get the maximum cache weight from the application configuration.
+   *
+   * @param config
+   *          The application configuration.
+   * @return The maximum weight in bytes.
+   */
+  private static long getMaxWeight(Properties config) {
+    long maxSize = DEFAULT_MAX_SIZE;
+
+    if (null != config) {
+      String property = config.getProperty(MAX_SIZE_PROPERTY);
+      if (null != property) {
+        try {
+          maxSize = Long.parseLong(property.trim());
+        } catch (NumberFormatException e) {
+          // Log the error and use the default size
+          ExceptionUtils.printStackTrace(e);
+        }
+      }
+    }
+
+    return Math.max(0L, maxSize) * 1024 * 1024;
+  }
+
+  /**
+   * Get the processed data for a {@link DataSet}, loading it from the
+   * database if it is not in the cache or is out of date.
+   *
+   * @param conn
+   *          A database connection.
+   * @param instrument
+   *          The instrument that the dataset belongs to.
+   * @param dataset
+   *          The dataset.
+   * @return The dataset's data.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   */
+  public Entry get(Connection conn, Instrument instrument, DataSet dataset)
+    throws MissingParamException, DatabaseException {
+
+    long startInvalidations;
+
+    synchronized (this) {
+      Entry entry = entries.get(dataset.getId());
+      if (null != entry) {
+        if (entry.isVersion(dataset)) {
+          return entry;
+        }
+
+        remove(dataset.getId());
+      }
+
+      startInvalidations = invalidations;
+    }
+
+    // Load outside the lock so other datasets can still be retrieved
+    Entry loaded = new Entry(dataset.getStatusDate(),
+      DataSetDataDB.getMeasurements(conn, dataset.getId()),
+      DataSetDataDB.getDataReductionData(conn, instrument, dataset));
+
+    synchronized (this) {
+      if (startInvalidations == invalidations && loaded.weight <= maxWeight) {
+        Entry existing = entries.get(dataset.getId());
+        if (null != existing) {
+          if (existing.isVersion(dataset)) {
+            // Another session loaded the data first; share its copy
+            return existing;
+          }
+          remove(dataset.getId());
+        }
+
+        entries.put(dataset.getId(), loaded);
+        weight += loaded.weight;
+        evict();
+      }
+    }
+
+    return loaded;
+  }
+
+  /**
+   * Remove the cached data for a {@link DataSet}. Called when the dataset's
+   * data is changed by a processing job.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   */
+  public synchronized void invalidate(long datasetId) {
+    invalidations++;
+    remove(datasetId);
+  }
+
+  /**
+   * Get the number of datasets in the cache.
+   *
+   * @return The number of cached datasets.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Remove an entry from the cache.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   */
+  private void remove(long datasetId) {
+    Entry removed = entries.remove(datasetId);
+    if (null != removed) {
+      weight -= removed.weight;
+    }
+  }
+
+  /**
+   * Evict the least recently used entries until the cache is within its size
+   * limit.
+   */
+  private void evict() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (weight > maxWeight && iterator.hasNext()) {
+      weight -= iterator.next().weight;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * The cached data for a single {@link DataSet}.
+   *
+   * <p>
+   * The data is shared between sessions and must not be modified.
+   * </p>
+   */
+  public static class Entry {
+
+    /**
+     * The dataset's status date when the data was loaded.
+     */
+    private final LocalDateTime version;
+
+    /**
+     * The dataset's measurements, in time order.
+     */
+    private final List<Measurement> measurements;
+
+    /**
+     * The data reduction records, keyed by measurement ID.
+     */
+    private final Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> dataReduction;
+
+    /**
+     * The estimated memory used by the entry.
+     */
+    private final long weight;
+
+    /**
+     * Create a cache entry.
+     *
+     * @param version
+     *          The dataset's status date.
+     * @param measurements
+     *          The measurements.
+     * @param dataReduction
+     *          The data reduction records.
+     */
+    private Entry(LocalDateTime version, List<Measurement> measurements,
+      Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> dataReduction) {
+      this.version = version;
+      this.measurements = Collections.unmodifiableList(measurements);
+      this.dataReduction = Collections.unmodifiableMap(dataReduction);
+
+      long entryWeight = 0;
+      for (Measurement measurement : measurements) {
+        entryWeight += MEASUREMENT_WEIGHT + MEASUREMENT_VALUE_WEIGHT
+          * measurement.getMeasurementValues().size();
+      }
+      for (Map<Variable, ReadOnlyDataReductionRecord> records : dataReduction
+        .values()) {
+        entryWeight += RECORD_WEIGHT * records.size();
+      }
+
+      this.weight = entryWeight;
+    }
+
+    /**
+     * Determine whether or not this entry was loaded for the current version
+     * of a {@link DataSet}.
+     *
+     * @param dataset
+     *          The dataset.
+     * @return {@code true} if the entry is up to date; {@code false} if it is
+     *         not.
+     */
+    private boolean isVersion(DataSet dataset) {
+      return Objects.equals(version, dataset.getStatusDate());
+    }
+
+    /**
+     * Get the dataset's measurements in time order.
+     *
+     * @return The measurements.
+     */
+    public List<Measurement> getMeasurements() {
+      return measurements;
+    }
+
+    /**
+     * Get the data reduction records, keyed by measurement ID.
+     *
+     * @return The data reduction records.
+     */
+    public Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> getDataReduction() {
+      return dataReduction;
+    }
+  }
+}
@@ -2,11 +2,11 @@ package uk.ac.exeter.QuinCe.data.Dataset;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
@@ -36,13 +36,26 @@ public class DatasetMeasurements {
 
   /**
    * A view of all the measurements in time order.
+   *
+   * <p>
+   * This and {@link #measurementTimes} are built together on demand, and are
+   * only accessed while holding this object's lock so they can be requested
+   * from the parallel data reduction tasks.
+   * </p>
    */
   private List<Measurement> timeOrderedMeasurements = null;
 
   /**
    * The list of all measurement times.
    */
-  private List<LocalDateTime> measurementTimes = null;;
+  private List<LocalDateTime> measurementTimes = null;
+
+  /**
+   * The index of contiguous runs for each {@link Variable}, built on demand.
+   *
+   * @see #getRunIndex(long)
+   */
+  private Map<Long, RunIndex> runIndexes = new HashMap<Long, RunIndex>();
 
   /**
    * Basic constructor.
@@ -87,7 +100,7 @@ public class DatasetMeasurements {
     return measurements.get(new VariableRunType(variableId, runType));
   }
 
-  public void addMeasurement(Measurement measurement) {
+  public synchronized void addMeasurement(Measurement measurement) {
 
     for (Map.Entry<Long, String> runTypeEntry : measurement.getRunTypes()
       .entrySet()) {
@@ -100,6 +113,7 @@ public class DatasetMeasurements {
       measurements.get(varRunType).add(measurement);
       timeOrderedMeasurements = null;
       measurementTimes = null;
+      runIndexes.clear();
     }
   }
 
@@ -108,7 +122,7 @@ public class DatasetMeasurements {
    *
    * @return The time-ordered measurements.
    */
-  public List<Measurement> getTimeOrderedMeasurements() {
+  public synchronized List<Measurement> getTimeOrderedMeasurements() {
     if (null == timeOrderedMeasurements) {
       makeTimeOrderedMeasurements();
     }
@@ -121,7 +135,7 @@ public class DatasetMeasurements {
    *
    * @return The measurement times.
    */
-  public List<LocalDateTime> getMeasurementTimes() {
+  public synchronized List<LocalDateTime> getMeasurementTimes() {
     if (null == timeOrderedMeasurements) {
       makeTimeOrderedMeasurements();
     }
@@ -147,85 +161,276 @@ public class DatasetMeasurements {
     measurementTimes = Collections.unmodifiableList(times);
   }
 
-  public TreeSet<Measurement> getMeasurementsInSameRun(Variable variable,
+  /**
+   * Get the measurements in the same run as the specified measurement, i.e.
+   * the contiguous block of measurements around it that have the same Run Type
+   * for the specified {@link Variable}.
+   *
+   * @param variable
+   *          The variable
+   * @param start
+   *          The measurement
+   * @return The measurements in the run, in time order.
+   * @see #getMeasurementsInSameRun(long, Measurement)
+   */
+  public List<Measurement> getMeasurementsInSameRun(Variable variable,
     Measurement start) {
     return getMeasurementsInSameRun(variable.getId(), start);
   }
 
-  public TreeSet<Measurement> getMeasurementsInSameRun(long variableId,
+  /**
+   * Get the measurements in the same run as the specified measurement, i.e.
+   * the contiguous block of measurements around it that have the same Run Type
+   * for the specified {@link Variable}.
+   *
+   * <p>
+   * The returned list is an unmodifiable view shared between all callers.
+   * </p>
+   *
+   * @param variableId
+   *          The variable's database ID
+   * @param start
+   *          The measurement
+   * @return The measurements in the run, in time order.
+   */
+  public List<Measurement> getMeasurementsInSameRun(long variableId,
     Measurement start) {
 
-    TreeSet<Measurement> result = new TreeSet<Measurement>(
-      Measurement.TIME_COMPARATOR);
-    result.add(start);
+    List<Measurement> result;
+
+    int position = Collections.binarySearch(getMeasurementTimes(),
+      start.getTime());
 
-    int startPos = getTimeOrderedMeasurements().indexOf(start);
+    if (position < 0) {
+      result = Collections.singletonList(start);
+    } else {
+      result = getRunIndex(variableId).getRunAt(position).measurements;
+    }
+
+    return result;
+  }
 
-    // Search backwards until will find a measurement that has a different run
-    // type
-    boolean sameRunType = true;
-    int searchPos = startPos;
-    while (sameRunType) {
-      searchPos--;
-      if (searchPos < 0) {
-        sameRunType = false;
+  /**
+   * Get the measurements in the last run of the specified Run Type that started
+   * before the specified time.
+   *
+   * <p>
+   * The returned list is an unmodifiable view shared between all callers.
+   * </p>
+   *
+   * @param variableId
+   *          The variable's database ID
+   * @param runType
+   *          The Run Type
+   * @param time
+   *          The time
+   * @return The measurements in the run, or an empty list if there is no such
+   *         run.
+   */
+  public List<Measurement> getRunBefore(long variableId, String runType,
+    LocalDateTime time) {
+
+    List<Measurement> result = Collections.emptyList();
+
+    List<Run> runs = getRunIndex(variableId).getRuns(runType);
+
+    // Find the last run that starts before the time
+    int low = 0;
+    int high = runs.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (runs.get(mid).getStartTime().isBefore(time)) {
+        low = mid + 1;
       } else {
-        String searchRunType = getTimeOrderedMeasurements().get(searchPos)
-          .getRunType(variableId);
-        if (searchPos < 0 || null == searchRunType
-          || !searchRunType.equals(start.getRunType(variableId))) {
-          sameRunType = false;
-        } else {
-          result.add(getTimeOrderedMeasurements().get(searchPos));
-        }
+        high = mid - 1;
       }
     }
 
-    // Search forwards until will find a measurement that has a different run
-    // type
-    sameRunType = true;
-    searchPos = startPos;
-    while (sameRunType) {
-      searchPos++;
-      if (searchPos >= getTimeOrderedMeasurements().size()) {
-        sameRunType = false;
+    if (high >= 0) {
+      result = runs.get(high).measurements;
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the measurements in the first run of the specified Run Type that ends
+   * after the specified time.
+   *
+   * <p>
+   * The returned list is an unmodifiable view shared between all callers.
+   * </p>
+   *
+   * @param variableId
+   *          The variable's database ID
+   * @param runType
+   *          The Run Type
+   * @param time
+   *          The time
+   * @return The measurements in the run, or an empty list if there is no such
+   *         run.
+   */
+  public List<Measurement> getRunAfter(long variableId, String runType,
+    LocalDateTime time) {
+
+    List<Measurement> result = Collections.emptyList();
+
+    List<Run> runs = getRunIndex(variableId).getRuns(runType);
+
+    // Find the first run that ends after the time
+    int low = 0;
+    int high = runs.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (runs.get(mid).getEndTime().isAfter(time)) {
+        high = mid - 1;
       } else {
-        String searchRunType = getTimeOrderedMeasurements().get(searchPos)
-          .getRunType(variableId);
-        if (searchPos >= getTimeOrderedMeasurements().size()
-          || null == searchRunType
-          || !searchRunType.equals(start.getRunType(variableId))) {
-          sameRunType = false;
-        } else {
-          result.add(getTimeOrderedMeasurements().get(searchPos));
-        }
+        low = mid + 1;
       }
     }
 
+    if (low < runs.size()) {
+      result = runs.get(low).measurements;
+    }
+
     return result;
   }
 
-  public TreeSet<Measurement> getRunBefore(long variableId, String runType,
-    LocalDateTime time) {
+  /**
+   * Get the run index for the specified {@link Variable}, building it if
+   * required.
+   *
+   * @param variableId
+   *          The variable's database ID
+   * @return The run index
+   */
+  private synchronized RunIndex getRunIndex(long variableId) {
+    RunIndex index = runIndexes.get(variableId);
+    if (null == index) {
+      index = new RunIndex(getTimeOrderedMeasurements(), variableId);
+      runIndexes.put(variableId, index);
+    }
 
-    Optional<Measurement> lastBefore = getMeasurements(variableId, runType)
-      .stream().filter(m -> m.getTime().isBefore(time))
-      .reduce((first, second) -> second);
+    return index;
+  }
+
+  /**
+   * A contiguous block of time-ordered measurements with the same Run Type for
+   * a {@link Variable}.
+   */
+  private static class Run {
+
+    /**
+     * The position of the first measurement of the run in the time-ordered
+     * measurements.
+     */
+    private final int startPosition;
+
+    /**
+     * The measurements in the run.
+     */
+    private final List<Measurement> measurements;
+
+    private Run(List<Measurement> timeOrderedMeasurements, int startPosition,
+      int endPosition) {
+      this.startPosition = startPosition;
+      this.measurements = Collections.unmodifiableList(
+        timeOrderedMeasurements.subList(startPosition, endPosition));
+    }
 
-    return lastBefore.isEmpty() ? new TreeSet<Measurement>()
-      : getMeasurementsInSameRun(variableId, lastBefore.get());
+    private LocalDateTime getStartTime() {
+      return measurements.get(0).getTime();
+    }
 
+    private LocalDateTime getEndTime() {
+      return measurements.get(measurements.size() - 1).getTime();
+    }
   }
 
-  public TreeSet<Measurement> getRunAfter(long variableId, String runType,
-    LocalDateTime time) {
+  /**
+   * Index of the runs in the time-ordered measurements for a single
+   * {@link Variable}.
+   *
+   * <p>
+   * Measurements without a Run Type for the variable are each placed in a run
+   * of their own, and are not included in the runs for any Run Type.
+   * </p>
+   */
+  private static class RunIndex {
+
+    /**
+     * All the runs, in time order.
+     */
+    private final List<Run> runs = new ArrayList<Run>();
+
+    /**
+     * The start position of each run, for searching.
+     */
+    private final int[] runStarts;
+
+    /**
+     * The runs for each Run Type, in time order.
+     */
+    private final Map<String, List<Run>> runTypeRuns = new HashMap<String, List<Run>>();
+
+    private RunIndex(List<Measurement> timeOrderedMeasurements,
+      long variableId) {
+
+      int runStart = 0;
+      while (runStart < timeOrderedMeasurements.size()) {
+        String runType = timeOrderedMeasurements.get(runStart)
+          .getRunType(variableId);
+
+        int runEnd = runStart + 1;
+        if (null != runType) {
+          while (runEnd < timeOrderedMeasurements.size()
+            && runType.equals(
+              timeOrderedMeasurements.get(runEnd).getRunType(variableId))) {
+            runEnd++;
+          }
+        }
+
+        Run run = new Run(timeOrderedMeasurements, runStart, runEnd);
+        runs.add(run);
+
+        if (null != runType) {
+          runTypeRuns.computeIfAbsent(runType, k -> new ArrayList<Run>())
+            .add(run);
+        }
 
-    Optional<Measurement> firstAfter = getMeasurements(variableId, runType)
-      .stream().filter(m -> m.getTime().isAfter(time)).findFirst();
+        runStart = runEnd;
+      }
+
+      runStarts = new int[runs.size()];
+      for (int i = 0; i < runs.size(); i++) {
+        runStarts[i] = runs.get(i).startPosition;
+      }
+    }
 
-    return firstAfter.isEmpty() ? new TreeSet<Measurement>()
-      : getMeasurementsInSameRun(variableId, firstAfter.get());
+    /**
+     * Get the run containing the measurement at the specified position in the
+     * time-ordered measurements.
+     *
+     * @param position
+     *          The position
+     * @return The run
+     */
+    private Run getRunAt(int position) {
+      int searchResult = Arrays.binarySearch(runStarts, position);
+      return runs
+        .get(searchResult >= 0 ? searchResult : -(searchResult + 1) - 1);
+    }
 
+    /**
+     * Get the runs for the specified Run Type.
+     *
+     * @param runType
+     *          The Run Type
+     * @return The runs, in time order
+     */
+    private List<Run> getRuns(String runType) {
+      return runTypeRuns.getOrDefault(runType, Collections.emptyList());
+    }
   }
 
   private static class VariableRunType {
@@ -3,6 +3,7 @@ package uk.ac.exeter.QuinCe.data.Dataset;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -82,6 +83,15 @@ public class DatasetSensorValues {
    */
   private TreeSet<Long> optionalColumns = new TreeSet<Long>();
 
+  /**
+   * The distinct text values (e.g. Run Types) that have been added. Values
+   * loaded from the database are separate {@link String} objects even when
+   * they are identical, so they are replaced with the entries in this lookup.
+   *
+   * @see SensorValue#isText()
+   */
+  private Map<String, String> textValues = new HashMap<String, String>();
+
   /**
    * Initialise an empty instance for a dataset attached to a given
    * {@link Instrument}.
@@ -125,11 +135,29 @@ public class DatasetSensorValues {
       latitudes.add(sensorValue);
       addById(sensorValue);
     } else if (!contains(sensorValue)) {
+      shareTextValue(sensorValue);
       addById(sensorValue);
       addByColumn(sensorValue);
     }
   }
 
+  /**
+   * Parse the value of a {@link SensorValue}. If it is a text value, make it
+   * share the {@link String} object with any identical values already added.
+   *
+   * @param sensorValue
+   *          The SensorValue.
+   */
+  private void shareTextValue(SensorValue sensorValue) {
+    if (sensorValue.isText()) {
+      String shared = textValues.putIfAbsent(sensorValue.getValue(),
+        sensorValue.getValue());
+      if (null != shared) {
+        sensorValue.shareValue(shared);
+      }
+    }
+  }
+
   /**
    * Add an optional {@link FileColumn}, which will be used in the data output
    * but which will not contain any {@link SensorValue}s.
@@ -684,43 +712,132 @@ public class DatasetSensorValues {
    */
   public Set<SensorValue> applyQCCascade(SensorValue source,
     RunTypePeriods runTypePeriods) throws RecordNotFoundException {
+    return applyQCCascade(Collections.singletonList(source), runTypePeriods);
+  }
+
+  /**
+   * Cascade QC values from a set of {@link SensorValue}s to other sensors.
+   *
+   * <p>
+   * This gives the same result as calling
+   * {@link #applyQCCascade(SensorValue, RunTypePeriods)} for each source in
+   * turn, but is much quicker for large numbers of sources. The affected
+   * sensors are worked out once for each source column, the affected values
+   * for each sensor are found in a single pass through that sensor's values,
+   * and each sensor's output cache is only reset once.
+   * </p>
+   *
+   * <p>
+   * The QC flags of all the sources must be set before this method is called.
+   * </p>
+   *
+   * @param sources
+   *          The source QCed {@link SensorValue}s.
+   * @param runTypePeriods
+   *          The run type periods to which the cascade should be applied.
+   * @return The {@link SensorValues} that have been changed as part of this
+   *         cascade.
+   * @throws RecordNotFoundException
+   *           If the {@link Instrument}'s configuration is invalid.
+   * @see #applyQCCascade(SensorValue, RunTypePeriods)
+   */
+  public Set<SensorValue> applyQCCascade(Collection<SensorValue> sources,
+    RunTypePeriods runTypePeriods) throws RecordNotFoundException {
 
     Set<SensorValue> changedValues = new HashSet<SensorValue>();
 
-    // For position values, we just copy from the source to the counterpart.
-    // Other sensors are sorted out as part of the Data Reduction QC.
-    if (SensorType.isPosition(source.getColumnId())) {
+    // The sources that cascade to each sensor
+    Map<SensorAssignment, List<CascadeSource>> cascades = new HashMap<SensorAssignment, List<CascadeSource>>();
+
+    // The affected sensors depend only on the source's column
+    Map<Long, Map<SensorAssignment, Collection<String>>> affectedByColumn = new HashMap<Long, Map<SensorAssignment, Collection<String>>>();
 
-      SensorValue other;
+    for (SensorValue source : sources) {
 
-      if (source.getColumnId() == SensorType.LONGITUDE_ID) {
-        other = getRawSensorValue(SensorType.LATITUDE_ID, source.getTime());
+      // For position values, we just copy from the source to the counterpart.
+      // Other sensors are sorted out as part of the Data Reduction QC.
+      if (SensorType.isPosition(source.getColumnId())) {
+
+        SensorValue other;
+
+        if (source.getColumnId() == SensorType.LONGITUDE_ID) {
+          other = getRawSensorValue(SensorType.LATITUDE_ID, source.getTime());
+        } else {
+          other = getRawSensorValue(SensorType.LONGITUDE_ID, source.getTime());
+        }
+
+        if (null != other) {
+          other.setUserQC(source);
+          changedValues.add(other);
+        }
       } else {
-        other = getRawSensorValue(SensorType.LONGITUDE_ID, source.getTime());
-      }
+        Map<SensorAssignment, Collection<String>> affectedSensorAssignments = affectedByColumn
+          .get(source.getColumnId());
+
+        if (null == affectedSensorAssignments) {
+          affectedSensorAssignments = getCascadeAffectedSensorAssignments(
+            source);
+          affectedByColumn.put(source.getColumnId(), affectedSensorAssignments);
+        }
 
-      if (null != other) {
-        other.setUserQC(source);
-        changedValues.add(other);
+        for (Map.Entry<SensorAssignment, Collection<String>> entry : affectedSensorAssignments
+          .entrySet()) {
+          cascades
+            .computeIfAbsent(entry.getKey(),
+              k -> new ArrayList<CascadeSource>())
+            .add(new CascadeSource(source, entry.getValue()));
+        }
       }
-    } else {
-      Map<SensorAssignment, Collection<String>> affectedSensorAssignments = getCascadeAffectedSensorAssignments(
-        source);
+    }
+
+    for (Map.Entry<SensorAssignment, List<CascadeSource>> entry : cascades
+      .entrySet()) {
+
+      SensorValuesList targetValues = valuesByColumn
+        .get(entry.getKey().getDatabaseId());
+      SensorValuesTimeIndex targetIndex = targetValues.getTimeIndex();
+
+      // Work through the sources in time order, so we can step through the
+      // target values instead of searching them for each source. The sort is
+      // stable, so sources with the same time stay in their original order.
+      List<CascadeSource> assignmentSources = entry.getValue();
+      assignmentSources.sort(
+        (a, b) -> a.source.getTime().compareTo(b.source.getTime()));
+
+      int position = 0;
+
+      for (CascadeSource cascade : assignmentSources) {
+        LocalDateTime sourceTime = cascade.source.getTime();
 
-      for (SensorAssignment assignment : affectedSensorAssignments.keySet()) {
-        List<SensorValue> affectedSensorValues = valuesByColumn
-          .get(assignment.getDatabaseId())
-          .getClosestSensorValues(source.getTime());
+        while (position < targetIndex.size() && targetIndex
+          .getSensorValue(position).getTime().isBefore(sourceTime)) {
+          position++;
+        }
+
+        // If there's a value at the source time, use it. Otherwise use the
+        // values either side of it.
+        int first;
+        int last;
+
+        if (position < targetIndex.size() && targetIndex
+          .getSensorValue(position).getTime().equals(sourceTime)) {
+          first = position;
+          last = position;
+        } else {
+          first = Math.max(0, position - 1);
+          last = Math.min(position, targetIndex.size() - 1);
+        }
+
+        for (int i = first; i <= last; i++) {
+          SensorValue value = targetIndex.getSensorValue(i);
 
-        for (SensorValue value : affectedSensorValues) {
           String valueRunType = runTypePeriods.getRunType(value.getTime());
-          if (null == valueRunType || affectedSensorAssignments.get(assignment)
-            .contains(valueRunType)) {
+          if (null == valueRunType || cascade.runTypes.contains(valueRunType)) {
 
-            if (!source.getDisplayFlag().equals(Flag.GOOD)) {
-              value.setCascadingQC(source);
+            if (!cascade.source.getDisplayFlag().equals(Flag.GOOD)) {
+              value.setCascadingQC(cascade.source);
             } else {
-              value.removeCascadingQC(source.getId());
+              value.removeCascadingQC(cascade.source.getId());
             }
 
             // Update the value in the By ID lookup map
@@ -729,10 +846,10 @@ public class DatasetSensorValues {
             changedValues.add(value);
           }
         }
-
-        // Reset the output cache for the SensorType
-        valuesByColumn.get(assignment.getDatabaseId()).resetOutput();
       }
+
+      // Reset the output cache for the SensorType
+      targetValues.resetOutput();
     }
 
     return changedValues;
@@ -947,4 +1064,26 @@ public class DatasetSensorValues {
     return getSensorValues(
       getInstrument().getSensorAssignments().getRunTypeColumnIDs());
   }
+
+  /**
+   * A source value for cascading QC, with the Run Types of the target sensor
+   * that it affects.
+   */
+  private static class CascadeSource {
+
+    /**
+     * The source value.
+     */
+    private final SensorValue source;
+
+    /**
+     * The affected Run Types.
+     */
+    private final Collection<String> runTypes;
+
+    private CascadeSource(SensorValue source, Collection<String> runTypes) {
+      this.source = source;
+      this.runTypes = runTypes;
+    }
+  }
 }
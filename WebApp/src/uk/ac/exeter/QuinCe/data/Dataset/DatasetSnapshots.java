@@ -0,0 +1,1014 @@
+package uk.ac.exeter.QuinCe.data.Dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.InvalidFlagException;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
+import uk.ac.exeter.QuinCe.utils.RecordNotFoundException;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Binary snapshots of the {@link SensorValue}s for processed {@link DataSet}s.
+ *
+ * <p>
+ * The QC pages and exports load every sensor value in a dataset, which for
+ * large datasets means millions of database rows. When a dataset's processing
+ * is complete, the final processing job writes a snapshot of its sensor
+ * values to the file store, and these consumers load the values from the
+ * snapshot instead of the database.
+ * </p>
+ *
+ * <p>
+ * A snapshot is held in columns: the IDs, column IDs, times and user QC flags
+ * are held in primitive arrays, followed by the offsets of the text fields in
+ * a single block of UTF-8 text. The rows are sorted by ID. The file is read
+ * through a memory mapped buffer, so the values are created directly from
+ * the mapped file without any parsing.
+ * </p>
+ *
+ * <p>
+ * User QC changes are written to the database as normal and then appended to
+ * a patch file for the snapshot (see {@link #patch(long, Collection)}),
+ * which is applied whenever the snapshot is read. When the patch file grows
+ * too large it is merged into a new snapshot. Snapshots are deleted whenever
+ * a processing job starts on the dataset, so a snapshot always matches the
+ * database.
+ * </p>
+ *
+ * <p>
+ * Snapshots are enabled by the {@link #ENABLED_PROPERTY} application
+ * configuration property.
+ * </p>
+ */
+public class DatasetSnapshots {
+
+  /**
+   * The application configuration property that enables snapshots.
+   */
+  public static final String ENABLED_PROPERTY = "qc.snapshots";
+
+  /**
+   * The directory within the file store where snapshots are held.
+   */
+  private static final String DIRECTORY = "snapshots";
+
+  /**
+   * The suffix for snapshot files.
+   */
+  private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+  /**
+   * The suffix for patch files.
+   */
+  private static final String PATCH_SUFFIX = ".patch";
+
+  /**
+   * The suffix for snapshot files that are being written.
+   */
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /**
+   * The identifier at the start of every snapshot file.
+   */
+  private static final int SNAPSHOT_MAGIC = 0x51534E50;
+
+  /**
+   * The identifier at the start of every patch file.
+   */
+  private static final int PATCH_MAGIC = 0x51504348;
+
+  /**
+   * The version of the file format. Files with a different version are
+   * ignored.
+   */
+  private static final int FORMAT_VERSION = 1;
+
+  /**
+   * The size of the snapshot file header: the identifier, format version,
+   * dataset ID, row count and text block size.
+   */
+  private static final int SNAPSHOT_HEADER_SIZE = 28;
+
+  /**
+   * The size of the patch file header: the identifier, format version and
+   * dataset ID.
+   */
+  private static final int PATCH_HEADER_SIZE = 16;
+
+  /**
+   * The number of text columns in a snapshot: the value, the automatic QC
+   * result and the user QC message.
+   */
+  private static final int TEXT_COLUMNS = 3;
+
+  /**
+   * The index of the value text column.
+   */
+  private static final int VALUE_COLUMN = 0;
+
+  /**
+   * The index of the automatic QC text column.
+   */
+  private static final int AUTO_QC_COLUMN = 1;
+
+  /**
+   * The index of the user QC message text column.
+   */
+  private static final int USER_QC_MESSAGE_COLUMN = 2;
+
+  /**
+   * The length stored for {@code null} text fields.
+   */
+  private static final int NULL_LENGTH = -1;
+
+  /**
+   * The patch file size at which the patches are merged into a new snapshot.
+   */
+  private static final long MAX_PATCH_SIZE = 4L * 1024 * 1024;
+
+  /**
+   * Query to get all the sensor values for a dataset, ordered by ID.
+   */
+  private static final String GET_SENSOR_VALUES_QUERY = "SELECT "
+    + "id, file_column, date, value, auto_qc, " // 5
+    + "user_qc_flag, user_qc_message " // 7
+    + "FROM sensor_values WHERE dataset_id = ? ORDER BY id";
+
+  /**
+   * The singleton instance of the snapshot store.
+   */
+  private static DatasetSnapshots instance = null;
+
+  /**
+   * The directory containing the snapshots, or {@code null} if snapshots are
+   * disabled.
+   */
+  private final File directory;
+
+  /**
+   * Locks for each dataset's snapshot, keyed by dataset ID. Reads take the
+   * read lock so they see a snapshot and its patches together; all changes
+   * take the write lock.
+   */
+  private final ConcurrentHashMap<Long, ReentrantReadWriteLock> locks = new ConcurrentHashMap<Long, ReentrantReadWriteLock>();
+
+  /**
+   * Create the snapshot store.
+   *
+   * @param directory
+   *          The directory containing the snapshots, or {@code null} if
+   *          snapshots are disabled.
+   */
+  protected DatasetSnapshots(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Get the snapshot store instance, creating it from the application
+   * configuration if required.
+   *
+   * @return The snapshot store.
+   */
+  public static synchronized DatasetSnapshots getInstance() {
+    if (null == instance) {
+      ResourceManager resourceManager = ResourceManager.getInstance();
+      Properties config = null == resourceManager ? null
+        : resourceManager.getConfig();
+
+      File directory = null;
+      if (null != config
+        && Boolean.parseBoolean(config.getProperty(ENABLED_PROPERTY))
+        && null != config.getProperty("filestore")) {
+        directory = new File(config.getProperty("filestore"), DIRECTORY);
+      }
+
+      instance = new DatasetSnapshots(directory);
+    }
+
+    return instance;
+  }
+
+  /**
+   * Discard the snapshot store instance. The snapshot files are not
+   * affected.
+   */
+  public static synchronized void destroy() {
+    instance = null;
+  }
+
+  /**
+   * Determine whether or not snapshots are enabled.
+   *
+   * @return {@code true} if snapshots are enabled; {@code false} if they are
+   *         not.
+   */
+  public boolean isEnabled() {
+    return null != directory;
+  }
+
+  /**
+   * Write a snapshot of a {@link DataSet}'s sensor values from the database,
+   * replacing any existing snapshot and patches.
+   *
+   * @param conn
+   *          A database connection.
+   * @param datasetId
+   *          The dataset's database ID.
+   * @throws DatabaseException
+   *           If the sensor values cannot be read.
+   * @throws IOException
+   *           If the snapshot cannot be written.
+   */
+  public void write(Connection conn, long datasetId)
+    throws DatabaseException, IOException {
+
+    if (isEnabled()) {
+      ReentrantReadWriteLock lock = getLock(datasetId);
+
+      // Hold the lock while the values are read so that changes made while
+      // the snapshot is being written wait to be patched into it
+      lock.writeLock().lock();
+      try {
+        Columns columns = new Columns();
+
+        try (PreparedStatement stmt = conn
+          .prepareStatement(GET_SENSOR_VALUES_QUERY)) {
+
+          stmt.setLong(1, datasetId);
+
+          try (ResultSet records = stmt.executeQuery()) {
+            while (records.next()) {
+              columns.add(records.getLong(1), records.getLong(2),
+                records.getLong(3), records.getInt(6), records.getString(4),
+                records.getString(5), records.getString(7));
+            }
+          }
+        } catch (SQLException e) {
+          throw new DatabaseException("Error while reading sensor values", e);
+        }
+
+        writeSnapshot(datasetId, columns);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Get the sensor values for a {@link DataSet} from its snapshot.
+   *
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @param datasetId
+   *          The dataset's database ID.
+   * @param ignoreFlushing
+   *          Indicates whether or not values in the instrument's flushing
+   *          period should be left out of the result.
+   * @param ignoredIds
+   *          The IDs of values to be left out of the result.
+   * @param columnIds
+   *          The columns whose values are to be retrieved, or {@code null} to
+   *          retrieve all columns.
+   * @return The values, or {@code null} if the dataset has no snapshot.
+   * @throws IOException
+   *           If the snapshot cannot be read.
+   * @throws InvalidFlagException
+   *           If any stored QC flags are invalid.
+   * @throws RecordNotFoundException
+   *           If the instrument configuration does not match the values.
+   * @throws DatabaseException
+   *           If any automatic QC results refer to unknown QC routines.
+   */
+  public DatasetSensorValues getSensorValues(Instrument instrument,
+    long datasetId, boolean ignoreFlushing, Set<Long> ignoredIds,
+    Set<Long> columnIds) throws IOException, InvalidFlagException,
+    RecordNotFoundException, DatabaseException {
+
+    DatasetSensorValues result = null;
+
+    if (isEnabled()) {
+      Snapshot snapshot;
+      Map<Long, Patch> patches;
+
+      ReentrantReadWriteLock lock = getLock(datasetId);
+      lock.readLock().lock();
+      try {
+        snapshot = openSnapshot(datasetId);
+        patches = null == snapshot ? null : readPatches(datasetId);
+      } finally {
+        lock.readLock().unlock();
+      }
+
+      if (null != snapshot) {
+        result = new DatasetSensorValues(instrument);
+
+        for (int i = 0; i < snapshot.size(); i++) {
+          long id = snapshot.getId(i);
+          long columnId = snapshot.getColumnId(i);
+          Patch patch = patches.get(id);
+
+          int flag = null == patch ? snapshot.getFlag(i) : patch.flag();
+
+          if ((!ignoreFlushing || flag != Flag.VALUE_FLUSHING)
+            && !ignoredIds.contains(id)
+            && (null == columnIds || columnIds.contains(columnId))) {
+
+            result.add(SensorValue.fromDatabase(id, datasetId, columnId,
+              DateTimeUtils.longToDate(snapshot.getTime(i)),
+              snapshot.getText(VALUE_COLUMN, i),
+              null == patch ? snapshot.getText(AUTO_QC_COLUMN, i)
+                : patch.autoQc(),
+              new Flag(flag),
+              null == patch ? snapshot.getText(USER_QC_MESSAGE_COLUMN, i)
+                : patch.message()));
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Apply changes to a {@link DataSet}'s sensor values to its snapshot. The
+   * values must already have been stored in the database.
+   *
+   * <p>
+   * If the snapshot cannot be updated it is deleted, so the values will be
+   * read from the database instead.
+   * </p>
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @param sensorValues
+   *          The changed values.
+   */
+  public void patch(long datasetId, Collection<SensorValue> sensorValues) {
+    if (isEnabled() && sensorValues.size() > 0) {
+      ReentrantReadWriteLock lock = getLock(datasetId);
+      lock.writeLock().lock();
+      try {
+        if (getSnapshotFile(datasetId).exists()) {
+          File patchFile = getPatchFile(datasetId);
+
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          DataOutputStream out = new DataOutputStream(bytes);
+
+          if (!patchFile.exists()) {
+            out.writeInt(PATCH_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(datasetId);
+          }
+
+          for (SensorValue value : sensorValues) {
+            out.writeLong(value.getId());
+            out.writeInt(value.getUserQCFlag().getFlagValue());
+            writeText(out, DataSetDataDB.getStoredUserQCMessage(value));
+            writeText(out, value.getEncodedAutoQcResult());
+          }
+
+          // Write all the records at once so a failure cannot leave a
+          // partial record followed by complete ones
+          try (FileOutputStream patchOut = new FileOutputStream(patchFile,
+            true)) {
+            patchOut.write(bytes.toByteArray());
+          }
+
+          if (patchFile.length() > MAX_PATCH_SIZE) {
+            compact(datasetId);
+          }
+        }
+      } catch (Exception e) {
+        ExceptionUtils.printStackTrace(e);
+        deleteFiles(datasetId);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Delete the snapshot for a {@link DataSet}. Called when the dataset is
+   * about to be processed or deleted.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   */
+  public void delete(long datasetId) {
+    if (isEnabled()) {
+      ReentrantReadWriteLock lock = getLock(datasetId);
+      lock.writeLock().lock();
+      try {
+        deleteFiles(datasetId);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Merge a dataset's patches into a new snapshot. The caller must hold the
+   * write lock for the dataset.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @throws IOException
+   *           If the snapshot cannot be read or written.
+   */
+  private void compact(long datasetId) throws IOException {
+    Snapshot snapshot = openSnapshot(datasetId);
+
+    if (null != snapshot) {
+      Map<Long, Patch> patches = readPatches(datasetId);
+      Columns columns = new Columns();
+
+      for (int i = 0; i < snapshot.size(); i++) {
+        Patch patch = patches.get(snapshot.getId(i));
+
+        columns.add(snapshot.getId(i), snapshot.getColumnId(i),
+          snapshot.getTime(i),
+          null == patch ? snapshot.getFlag(i) : patch.flag(),
+          snapshot.getText(VALUE_COLUMN, i),
+          null == patch ? snapshot.getText(AUTO_QC_COLUMN, i)
+            : patch.autoQc(),
+          null == patch ? snapshot.getText(USER_QC_MESSAGE_COLUMN, i)
+            : patch.message());
+      }
+
+      writeSnapshot(datasetId, columns);
+    }
+  }
+
+  /**
+   * Write a snapshot file, removing any existing patches. The caller must hold
+   * the write lock for the dataset.
+   *
+   * <p>
+   * The snapshot is written to a temporary file and moved into place when it
+   * is complete, so readers never see a partially written file.
+   * </p>
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @param columns
+   *          The snapshot contents.
+   * @throws IOException
+   *           If the snapshot cannot be written.
+   */
+  private void writeSnapshot(long datasetId, Columns columns)
+    throws IOException {
+
+    deleteFiles(datasetId);
+
+    long heapSize = columns.getHeapSize();
+    long fileSize = SNAPSHOT_HEADER_SIZE
+      + (long) columns.size * (8 + 8 + 8 + 4 + TEXT_COLUMNS * 8) + heapSize;
+
+    // Memory mapped files are limited to 2Gb
+    if (fileSize > Integer.MAX_VALUE) {
+      throw new IOException(
+        "Snapshot for dataset " + datasetId + " is too large");
+    }
+
+    directory.mkdirs();
+    File snapshotFile = getSnapshotFile(datasetId);
+    File tempFile = new File(snapshotFile.getAbsolutePath() + TEMP_SUFFIX);
+
+    try (DataOutputStream out = new DataOutputStream(
+      new BufferedOutputStream(new FileOutputStream(tempFile), 65536))) {
+
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(datasetId);
+      out.writeInt(columns.size);
+      out.writeInt((int) heapSize);
+
+      for (int i = 0; i < columns.size; i++) {
+        out.writeLong(columns.ids[i]);
+      }
+
+      for (int i = 0; i < columns.size; i++) {
+        out.writeLong(columns.columnIds[i]);
+      }
+
+      for (int i = 0; i < columns.size; i++) {
+        out.writeLong(columns.times[i]);
+      }
+
+      for (int i = 0; i < columns.size; i++) {
+        out.writeInt(columns.flags[i]);
+      }
+
+      int offset = 0;
+      for (int c = 0; c < TEXT_COLUMNS; c++) {
+        byte[][] text = columns.text[c];
+
+        for (int i = 0; i < columns.size; i++) {
+          out.writeInt(offset);
+          if (null != text[i]) {
+            offset += text[i].length;
+          }
+        }
+
+        for (int i = 0; i < columns.size; i++) {
+          out.writeInt(null == text[i] ? NULL_LENGTH : text[i].length);
+        }
+      }
+
+      for (int c = 0; c < TEXT_COLUMNS; c++) {
+        for (int i = 0; i < columns.size; i++) {
+          if (null != columns.text[c][i]) {
+            out.write(columns.text[c][i]);
+          }
+        }
+      }
+    } catch (IOException e) {
+      tempFile.delete();
+      throw e;
+    }
+
+    Files.move(tempFile.toPath(), snapshotFile.toPath(),
+      StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Open a dataset's snapshot. The caller must hold the lock for the
+   * dataset.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @return The snapshot, or {@code null} if there is no valid snapshot.
+   * @throws IOException
+   *           If the snapshot cannot be read.
+   */
+  private Snapshot openSnapshot(long datasetId) throws IOException {
+    Snapshot result = null;
+
+    try (FileChannel channel = FileChannel
+      .open(getSnapshotFile(datasetId).toPath(), StandardOpenOption.READ)) {
+
+      // The mapping remains valid after the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+        channel.size());
+
+      result = Snapshot.open(buffer, datasetId);
+      if (null == result) {
+        ExceptionUtils.printStackTrace(new IOException(
+          "Ignoring invalid snapshot for dataset " + datasetId));
+      }
+    } catch (NoSuchFileException e) {
+      // There is no snapshot
+    }
+
+    return result;
+  }
+
+  /**
+   * Read the patches for a dataset's snapshot. If the same sensor value has
+   * been patched more than once, the latest patch is returned. A truncated
+   * final record is ignored. The caller must hold the lock for the dataset.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @return The patches, keyed by sensor value ID.
+   * @throws IOException
+   *           If the patch file cannot be read.
+   */
+  private Map<Long, Patch> readPatches(long datasetId) throws IOException {
+    Map<Long, Patch> result = new HashMap<Long, Patch>();
+
+    try {
+      ByteBuffer buffer = ByteBuffer
+        .wrap(Files.readAllBytes(getPatchFile(datasetId).toPath()));
+
+      if (buffer.remaining() < PATCH_HEADER_SIZE
+        || buffer.getInt() != PATCH_MAGIC
+        || buffer.getInt() != FORMAT_VERSION
+        || buffer.getLong() != datasetId) {
+        throw new IOException(
+          "Invalid patch file for dataset " + datasetId);
+      }
+
+      try {
+        while (buffer.hasRemaining()) {
+          long id = buffer.getLong();
+          int flag = buffer.getInt();
+          String message = readText(buffer);
+          String autoQc = readText(buffer);
+          result.put(id, new Patch(flag, message, autoQc));
+        }
+      } catch (BufferUnderflowException e) {
+        ExceptionUtils.printStackTrace(new IOException(
+          "Ignoring truncated patch for dataset " + datasetId, e));
+      }
+    } catch (NoSuchFileException e) {
+      // There are no patches
+    }
+
+    return result;
+  }
+
+  /**
+   * Delete a dataset's snapshot and patch files. The caller must hold the
+   * write lock for the dataset.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   */
+  private void deleteFiles(long datasetId) {
+    getSnapshotFile(datasetId).delete();
+    getPatchFile(datasetId).delete();
+  }
+
+  /**
+   * Get the lock for a dataset's snapshot.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @return The lock.
+   */
+  private ReentrantReadWriteLock getLock(long datasetId) {
+    return locks.computeIfAbsent(datasetId,
+      d -> new ReentrantReadWriteLock());
+  }
+
+  /**
+   * Get the snapshot file for a dataset.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @return The snapshot file.
+   */
+  private File getSnapshotFile(long datasetId) {
+    return new File(directory, datasetId + SNAPSHOT_SUFFIX);
+  }
+
+  /**
+   * Get the patch file for a dataset.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @return The patch file.
+   */
+  private File getPatchFile(long datasetId) {
+    return new File(directory, datasetId + PATCH_SUFFIX);
+  }
+
+  /**
+   * Write a text field to a patch.
+   *
+   * @param out
+   *          The patch output.
+   * @param text
+   *          The text.
+   * @throws IOException
+   *           If the text cannot be written.
+   */
+  private static void writeText(DataOutputStream out, String text)
+    throws IOException {
+
+    if (null == text) {
+      out.writeInt(NULL_LENGTH);
+    } else {
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Read a text field from a patch.
+   *
+   * @param buffer
+   *          The patch contents.
+   * @return The text.
+   */
+  private static String readText(ByteBuffer buffer) {
+    String result = null;
+
+    int length = buffer.getInt();
+    if (length != NULL_LENGTH) {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      result = new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    return result;
+  }
+
+  /**
+   * A change to a sensor value's QC in a patch file.
+   */
+  private record Patch(int flag, String message, String autoQc) {
+  }
+
+  /**
+   * The contents of a snapshot being built, held as columns.
+   */
+  private static class Columns {
+
+    /**
+     * The number of rows.
+     */
+    private int size = 0;
+
+    /**
+     * The sensor value IDs.
+     */
+    private long[] ids = new long[1024];
+
+    /**
+     * The file column IDs.
+     */
+    private long[] columnIds = new long[1024];
+
+    /**
+     * The times, in epoch milliseconds.
+     */
+    private long[] times = new long[1024];
+
+    /**
+     * The user QC flag values.
+     */
+    private int[] flags = new int[1024];
+
+    /**
+     * The UTF-8 encoded text columns.
+     */
+    private byte[][][] text = new byte[TEXT_COLUMNS][1024][];
+
+    /**
+     * Add a row.
+     *
+     * @param id
+     *          The sensor value ID.
+     * @param columnId
+     *          The file column ID.
+     * @param time
+     *          The time in epoch milliseconds.
+     * @param flag
+     *          The user QC flag value.
+     * @param value
+     *          The value.
+     * @param autoQc
+     *          The encoded automatic QC result.
+     * @param message
+     *          The user QC message.
+     */
+    private void add(long id, long columnId, long time, int flag, String value,
+      String autoQc, String message) {
+
+      if (size == ids.length) {
+        int newLength = ids.length * 2;
+        ids = Arrays.copyOf(ids, newLength);
+        columnIds = Arrays.copyOf(columnIds, newLength);
+        times = Arrays.copyOf(times, newLength);
+        flags = Arrays.copyOf(flags, newLength);
+        for (int c = 0; c < TEXT_COLUMNS; c++) {
+          text[c] = Arrays.copyOf(text[c], newLength);
+        }
+      }
+
+      ids[size] = id;
+      columnIds[size] = columnId;
+      times[size] = time;
+      flags[size] = flag;
+      text[VALUE_COLUMN][size] = encode(value);
+      text[AUTO_QC_COLUMN][size] = encode(autoQc);
+      text[USER_QC_MESSAGE_COLUMN][size] = encode(message);
+      size++;
+    }
+
+    /**
+     * Get the total size of the text.
+     *
+     * @return The text size in bytes.
+     */
+    private long getHeapSize() {
+      long result = 0;
+      for (int c = 0; c < TEXT_COLUMNS; c++) {
+        for (int i = 0; i < size; i++) {
+          if (null != text[c][i]) {
+            result += text[c][i].length;
+          }
+        }
+      }
+
+      return result;
+    }
+
+    /**
+     * Encode a text field as UTF-8.
+     *
+     * @param value
+     *          The text.
+     * @return The encoded text.
+     */
+    private static byte[] encode(String value) {
+      return null == value ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * A read-only view of a snapshot file.
+   */
+  private static class Snapshot {
+
+    /**
+     * The snapshot contents.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of rows.
+     */
+    private final int size;
+
+    /**
+     * The position of the ID column.
+     */
+    private final int idsStart;
+
+    /**
+     * The position of the column ID column.
+     */
+    private final int columnIdsStart;
+
+    /**
+     * The position of the time column.
+     */
+    private final int timesStart;
+
+    /**
+     * The position of the flag column.
+     */
+    private final int flagsStart;
+
+    /**
+     * The position of the text offset and length columns.
+     */
+    private final int textStart;
+
+    /**
+     * The position of the text.
+     */
+    private final int heapStart;
+
+    /**
+     * Create the view.
+     *
+     * @param buffer
+     *          The snapshot contents.
+     * @param size
+     *          The number of rows.
+     */
+    private Snapshot(ByteBuffer buffer, int size) {
+      this.buffer = buffer;
+      this.size = size;
+      idsStart = SNAPSHOT_HEADER_SIZE;
+      columnIdsStart = idsStart + size * 8;
+      timesStart = columnIdsStart + size * 8;
+      flagsStart = timesStart + size * 8;
+      textStart = flagsStart + size * 4;
+      heapStart = textStart + size * TEXT_COLUMNS * 8;
+    }
+
+    /**
+     * Open a snapshot, checking that it is valid.
+     *
+     * @param buffer
+     *          The snapshot contents.
+     * @param datasetId
+     *          The database ID of the dataset that the snapshot should
+     *          contain.
+     * @return The snapshot, or {@code null} if it is not valid.
+     */
+    private static Snapshot open(ByteBuffer buffer, long datasetId) {
+      Snapshot result = null;
+
+      if (buffer.capacity() >= SNAPSHOT_HEADER_SIZE
+        && buffer.getInt(0) == SNAPSHOT_MAGIC
+        && buffer.getInt(4) == FORMAT_VERSION
+        && buffer.getLong(8) == datasetId) {
+
+        int size = buffer.getInt(16);
+        long expectedSize = SNAPSHOT_HEADER_SIZE
+          + (long) size * (8 + 8 + 8 + 4 + TEXT_COLUMNS * 8)
+          + buffer.getInt(20);
+
+        if (buffer.capacity() == expectedSize) {
+          result = new Snapshot(buffer, size);
+        }
+      }
+
+      return result;
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return The number of rows.
+     */
+    private int size() {
+      return size;
+    }
+
+    /**
+     * Get the sensor value ID for a row.
+     *
+     * @param row
+     *          The row.
+     * @return The ID.
+     */
+    private long getId(int row) {
+      return buffer.getLong(idsStart + row * 8);
+    }
+
+    /**
+     * Get the file column ID for a row.
+     *
+     * @param row
+     *          The row.
+     * @return The column ID.
+     */
+    private long getColumnId(int row) {
+      return buffer.getLong(columnIdsStart + row * 8);
+    }
+
+    /**
+     * Get the time for a row.
+     *
+     * @param row
+     *          The row.
+     * @return The time in epoch milliseconds.
+     */
+    private long getTime(int row) {
+      return buffer.getLong(timesStart + row * 8);
+    }
+
+    /**
+     * Get the user QC flag value for a row.
+     *
+     * @param row
+     *          The row.
+     * @return The flag value.
+     */
+    private int getFlag(int row) {
+      return buffer.getInt(flagsStart + row * 4);
+    }
+
+    /**
+     * Get a text field for a row.
+     *
+     * @param column
+     *          The text column.
+     * @param row
+     *          The row.
+     * @return The text.
+     */
+    private String getText(int column, int row) {
+      String result = null;
+
+      int columnStart = textStart + column * size * 8;
+      int length = buffer.getInt(columnStart + size * 4 + row * 4);
+
+      if (length != NULL_LENGTH) {
+        byte[] bytes = new byte[length];
+        buffer.get(heapStart + buffer.getInt(columnStart + row * 4), bytes);
+        result = new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      return result;
+    }
+  }
+}
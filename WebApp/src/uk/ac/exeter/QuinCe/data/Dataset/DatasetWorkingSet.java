@@ -0,0 +1,404 @@
+package uk.ac.exeter.QuinCe.data.Dataset;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.InvalidFlagException;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.utils.MissingParam;
+import uk.ac.exeter.QuinCe.utils.MissingParamException;
+import uk.ac.exeter.QuinCe.utils.RecordNotFoundException;
+
+/**
+ * An in-memory copy of the {@link SensorValue}s and {@link Measurement}s for a
+ * {@link DataSet}, shared between the stages of a processing run.
+ *
+ * <p>
+ * Each stage of dataset processing (auto QC, measurement location, data
+ * reduction and data reduction QC) needs the complete set of
+ * {@link SensorValue}s for the dataset. Normally each stage loads them from
+ * the database itself. When a working set is attached to a {@link DataSet}
+ * (see {@link DataSet#setWorkingSet(DatasetWorkingSet)}), the
+ * {@link DataSetDataDB} methods that take a {@link DataSet} use the working
+ * set instead, so the values are only read from the database once for the
+ * whole run.
+ * </p>
+ *
+ * <p>
+ * All the structures returned by the working set contain the same
+ * {@link SensorValue} and {@link Measurement} objects, so changes made by one
+ * stage are seen by the next. Stages must still store their changes in the
+ * database as normal; since {@link DataSetDataDB#storeSensorValues} only
+ * writes values whose {@code dirty} flag is set, only the values that a stage
+ * has changed are written.
+ * </p>
+ *
+ * <p>
+ * New {@link SensorValue}s do not get a database ID when they are stored, so
+ * the working set cannot be populated by data extraction. The values are
+ * loaded from the database the first time they are requested.
+ * </p>
+ *
+ * <p>
+ * A working set can be restricted to the part of a dataset from a given time
+ * onwards (see {@link #DatasetWorkingSet(long, LocalDateTime)}). This is used
+ * when new data is appended to an existing dataset, so only the new data and
+ * a short period before it are processed.
+ * </p>
+ */
+public class DatasetWorkingSet {
+
+  /**
+   * The approximate memory used by each {@link SensorValue} in the working
+   * set, including its entries in the lookup structures of
+   * {@link DatasetSensorValues}.
+   */
+  public static final long BYTES_PER_SENSOR_VALUE = 600L;
+
+  /**
+   * The database ID of the {@link DataSet}.
+   */
+  private final long datasetId;
+
+  /**
+   * The time of the earliest data in the working set. If this is {@code null}
+   * the working set covers the whole dataset.
+   */
+  private final LocalDateTime start;
+
+  /**
+   * All the {@link SensorValue}s for the dataset. This is {@code null} until
+   * they are first requested.
+   */
+  private DatasetSensorValues sensorValues = null;
+
+  /**
+   * The {@link Measurement}s for the dataset, ordered by time. This is
+   * {@code null} until the measurements have been located.
+   */
+  private List<Measurement> measurements = null;
+
+  /**
+   * The {@link Measurement}s grouped by run type. Built from
+   * {@link #measurements} when first requested.
+   */
+  private DatasetMeasurements measurementsByRunType = null;
+
+  /**
+   * Create an empty working set for a {@link DataSet}.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @throws MissingParamException
+   *           If the dataset ID is invalid.
+   */
+  public DatasetWorkingSet(long datasetId) throws MissingParamException {
+    MissingParam.checkPositive(datasetId, "datasetId");
+    this.datasetId = datasetId;
+    this.start = null;
+  }
+
+  /**
+   * Create an empty working set that only covers the data in a {@link DataSet}
+   * from the specified time onwards.
+   *
+   * @param datasetId
+   *          The dataset's database ID.
+   * @param start
+   *          The time of the earliest data to include.
+   * @throws MissingParamException
+   *           If any parameters are missing or invalid.
+   */
+  public DatasetWorkingSet(long datasetId, LocalDateTime start)
+    throws MissingParamException {
+    MissingParam.checkPositive(datasetId, "datasetId");
+    MissingParam.checkMissing(start, "start");
+    this.datasetId = datasetId;
+    this.start = start;
+  }
+
+  /**
+   * Estimate the memory required to hold a working set containing the
+   * specified number of {@link SensorValue}s.
+   *
+   * @param sensorValueCount
+   *          The number of sensor values.
+   * @return The estimated memory in bytes.
+   */
+  public static long estimateMemory(long sensorValueCount) {
+    return sensorValueCount * BYTES_PER_SENSOR_VALUE;
+  }
+
+  /**
+   * Get the database ID of the {@link DataSet} that this working set belongs
+   * to.
+   *
+   * @return The dataset ID.
+   */
+  public long getDatasetId() {
+    return datasetId;
+  }
+
+  /**
+   * Get the time of the earliest data in the working set.
+   *
+   * @return The start time, or {@code null} if the working set covers the
+   *         whole dataset.
+   */
+  public LocalDateTime getStart() {
+    return start;
+  }
+
+  /**
+   * Determine whether the working set only covers part of the dataset.
+   *
+   * @return {@code true} if the working set has a start time; {@code false} if
+   *         it covers the whole dataset.
+   */
+  public boolean isWindowed() {
+    return null != start;
+  }
+
+  /**
+   * Get the {@link SensorValue}s for the dataset, loading them from the
+   * database if required. The filtering options match those of
+   * {@link DataSetDataDB#getSensorValues(Connection, Instrument, long, boolean, boolean)}.
+   *
+   * <p>
+   * A new {@link DatasetSensorValues} object is created for each call, but it
+   * contains the same {@link SensorValue} objects as every other call.
+   * </p>
+   *
+   * @param conn
+   *          A database connection.
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @param ignoreFlushing
+   *          Indicates whether or not values in the instrument's flushing
+   *          period should be left out of the result.
+   * @param ignoreInternalCalibrations
+   *          Indicates whether or not values measured during internal
+   *          calibration runs should be left out of the result.
+   * @return The sensor values.
+   * @throws RecordNotFoundException
+   *           If the instrument configuration does not match the values.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws InvalidFlagException
+   *           If any stored QC flags are invalid.
+   */
+  public DatasetSensorValues getSensorValues(Connection conn,
+    Instrument instrument, boolean ignoreFlushing,
+    boolean ignoreInternalCalibrations) throws RecordNotFoundException,
+    DatabaseException, MissingParamException, InvalidFlagException {
+
+    loadSensorValues(conn, instrument);
+
+    Set<LocalDateTime> calibrationTimes = new HashSet<LocalDateTime>();
+    Set<Long> calibratedColumns = new HashSet<Long>();
+
+    if (instrument.hasInternalCalibrations() && ignoreInternalCalibrations
+      && null != measurements) {
+
+      List<String> calibrationRunTypes = instrument
+        .getInternalCalibrationRunTypes();
+
+      for (Measurement measurement : measurements) {
+        for (String runType : measurement.getRunTypes().values()) {
+          if (calibrationRunTypes.contains(runType)) {
+            calibrationTimes.add(measurement.getTime());
+            break;
+          }
+        }
+      }
+
+      calibratedColumns.addAll(
+        instrument.getSensorAssignments().getInternalCalibrationSensors());
+    }
+
+    DatasetSensorValues result = new DatasetSensorValues(instrument);
+
+    for (SensorValue value : sensorValues.getAll()) {
+      if (ignoreFlushing
+        && value.getUserQCFlag().getFlagValue() == Flag.VALUE_FLUSHING) {
+        continue;
+      }
+
+      if (calibratedColumns.contains(value.getColumnId())
+        && calibrationTimes.contains(value.getTime())) {
+        continue;
+      }
+
+      result.add(value);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the position {@link SensorValue}s for the dataset, loading them from
+   * the database if required. This is the equivalent of
+   * {@link DataSetDataDB#getPositionSensorValues(Connection, Instrument, long)}.
+   *
+   * @param conn
+   *          A database connection.
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @return The position values.
+   * @throws RecordNotFoundException
+   *           If the instrument configuration does not match the values.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws InvalidFlagException
+   *           If any stored QC flags are invalid.
+   */
+  public DatasetSensorValues getPositionSensorValues(Connection conn,
+    Instrument instrument) throws RecordNotFoundException, DatabaseException,
+    MissingParamException, InvalidFlagException {
+
+    loadSensorValues(conn, instrument);
+
+    DatasetSensorValues result = new DatasetSensorValues(instrument);
+    for (SensorValue value : sensorValues.getAll()) {
+      if (value.getColumnId() == SensorType.LONGITUDE_ID
+        || value.getColumnId() == SensorType.LATITUDE_ID) {
+        result.add(value);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Load the dataset's {@link SensorValue}s from the database if they have not
+   * already been loaded. If the working set is windowed, only the values from
+   * the {@link #start} time onwards are loaded.
+   *
+   * @param conn
+   *          A database connection.
+   * @param instrument
+   *          The instrument to which the dataset belongs.
+   * @throws RecordNotFoundException
+   *           If the instrument configuration does not match the values.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws InvalidFlagException
+   *           If any stored QC flags are invalid.
+   */
+  private void loadSensorValues(Connection conn, Instrument instrument)
+    throws RecordNotFoundException, DatabaseException, MissingParamException,
+    InvalidFlagException {
+
+    if (null == sensorValues) {
+      sensorValues = isWindowed()
+        ? DataSetDataDB.getSensorValues(conn, instrument, datasetId, start)
+        : DataSetDataDB.getSensorValues(conn, instrument, datasetId, false,
+          false);
+    }
+  }
+
+  /**
+   * Determine whether or not the {@link SensorValue}s have been loaded.
+   *
+   * @return {@code true} if the values have been loaded; {@code false} if
+   *         they have not.
+   */
+  public boolean hasSensorValues() {
+    return null != sensorValues;
+  }
+
+  /**
+   * Get the number of {@link SensorValue}s in the working set.
+   *
+   * @return The number of sensor values.
+   */
+  public int sensorValueCount() {
+    return null == sensorValues ? 0 : sensorValues.getAll().size();
+  }
+
+  /**
+   * Set the {@link Measurement}s for the dataset. The measurements must
+   * already have been stored in the database so they have IDs.
+   *
+   * @param measurements
+   *          The measurements.
+   */
+  public void setMeasurements(Collection<Measurement> measurements) {
+    List<Measurement> sorted = new ArrayList<Measurement>(measurements);
+    sorted.sort(Measurement.TIME_COMPARATOR);
+    this.measurements = Collections.unmodifiableList(sorted);
+    this.measurementsByRunType = null;
+  }
+
+  /**
+   * Remove the {@link Measurement}s from the working set. This must be called
+   * whenever the dataset's measurements are deleted from the database.
+   */
+  public void clearMeasurements() {
+    measurements = null;
+    measurementsByRunType = null;
+  }
+
+  /**
+   * Determine whether or not the working set contains the dataset's
+   * {@link Measurement}s.
+   *
+   * @return {@code true} if the measurements are available; {@code false} if
+   *         they are not.
+   */
+  public boolean hasMeasurements() {
+    return null != measurements;
+  }
+
+  /**
+   * Get the {@link Measurement}s for the dataset ordered by time.
+   *
+   * <p>
+   * The list is sorted when the measurements are set, and the same
+   * unmodifiable list is returned to every caller.
+   * </p>
+   *
+   * @return The measurements.
+   */
+  public List<Measurement> getMeasurements() {
+    return measurements;
+  }
+
+  /**
+   * Get the {@link Measurement}s for the dataset grouped by run type. This is
+   * the equivalent of
+   * {@link DataSetDataDB#getMeasurementsByRunType(Connection, Instrument, long)}.
+   *
+   * <p>
+   * The grouping is built on the first call and shared by later callers
+   * until the measurements are changed, so its time-ordered view and run
+   * indexes are only built once.
+   * </p>
+   *
+   * @return The measurements.
+   */
+  public DatasetMeasurements getMeasurementsByRunType() {
+    if (null == measurementsByRunType) {
+      DatasetMeasurements grouped = new DatasetMeasurements();
+      measurements.forEach(grouped::addMeasurement);
+      measurementsByRunType = grouped;
+    }
+
+    return measurementsByRunType;
+  }
+}
@@ -6,7 +6,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
@@ -117,8 +116,8 @@ public class DefaultMeasurementValueCalculator
       // (b) the instrument has calibration Run Types defined.
       if (allowCalibration && requiredSensorType.hasInternalCalibration()
         && instrument.hasInternalCalibrations()) {
-        calibrate(instrument, timeReference, requiredSensorType, result,
-          allMeasurements, sensorValues, conn);
+        calibrate(instrument, dataSet, timeReference, requiredSensorType,
+          result, allMeasurements, sensorValues, conn);
       }
     }
 
@@ -192,6 +191,8 @@ public class DefaultMeasurementValueCalculator
    * @param instrument
    *          The {@link Instrument} for which measurements are being
    *          calculated.
+   * @param dataSet
+   *          The {@link DataSet} for which measurements are being calculated.
    * @param measurement
    *          The {@link Measurement} being calculated.
    * @param sensorType
@@ -209,7 +210,7 @@ public class DefaultMeasurementValueCalculator
    * @throws MeasurementValueCalculatorException
    *           If the calibration cannot be performed.
    */
-  protected void calibrate(Instrument instrument,
+  protected void calibrate(Instrument instrument, DataSet dataSet,
     SensorValuesListValue timeReference, SensorType sensorType,
     MeasurementValue value, DatasetMeasurements allMeasurements,
     SensorValuesList sensorValues, Connection conn)
@@ -219,8 +220,8 @@ public class DefaultMeasurementValueCalculator
 
       try {
         CalibrationSet calibrationSet = ExternalStandardDB.getInstance()
-          .getMostRecentCalibrations(conn, instrument,
-            timeReference.getNominalTime());
+          .getCalibrationTimeline(conn, instrument, dataSet)
+          .getMostRecentCalibrations(timeReference.getNominalTime());
 
         // Get the calibration offset for the standard run prior to the
         // measurement
@@ -289,7 +290,7 @@ public class DefaultMeasurementValueCalculator
         || standardConcentration > 0.0D) {
 
         // Get the measurements for the closest run
-        TreeSet<Measurement> runTypeMeasurements;
+        List<Measurement> runTypeMeasurements;
 
         if (direction == PRIOR) {
           runTypeMeasurements = allMeasurements.getRunBefore(
@@ -45,6 +45,22 @@ public class GeoBounds {
     return result;
   }
 
+  public double getMinLon() {
+    return minLon;
+  }
+
+  public double getMaxLon() {
+    return maxLon;
+  }
+
+  public double getMinLat() {
+    return minLat;
+  }
+
+  public double getMaxLat() {
+    return maxLat;
+  }
+
   public double getMidLon() {
     return (maxLon - minLon) / 2 + minLon;
   }
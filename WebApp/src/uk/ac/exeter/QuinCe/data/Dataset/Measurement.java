@@ -351,6 +351,14 @@ public class Measurement implements Comparable<Measurement> {
     return measurementValues.values();
   }
 
+  /**
+   * Remove all the {@link MeasurementValue}s from the measurement so they can
+   * be collected again.
+   */
+  public void clearMeasurementValues() {
+    measurementValues.clear();
+  }
+
   public void setTime(LocalDateTime time) {
     this.time = time;
   }
@@ -0,0 +1,198 @@
+package uk.ac.exeter.QuinCe.data.Dataset;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionRecord;
+
+/**
+ * An index of the {@link Measurement}s that use each {@link SensorValue}.
+ *
+ * <p>
+ * Each {@link MeasurementValue} records the IDs of the {@link SensorValue}s
+ * used to calculate it (see {@link MeasurementValue#getSensorValueIds()} and
+ * {@link MeasurementValue#getSupportingSensorValueIds()}). This index inverts
+ * those links so that the {@link Measurement}s (and therefore the
+ * {@link DataReductionRecord}s) affected by a change to a {@link SensorValue}
+ * can be found without recalculating the whole dataset.
+ * </p>
+ */
+public class MeasurementDependencyIndex {
+
+  /**
+   * The IDs of the {@link Measurement}s that use each {@link SensorValue},
+   * keyed by the {@link SensorValue}'s ID.
+   */
+  private final Map<Long, Set<Long>> measurementIds = new HashMap<Long, Set<Long>>();
+
+  /**
+   * Cache of whether or not each column contains any {@link SensorValue}s used
+   * by a {@link Measurement}.
+   */
+  private final Map<Long, Boolean> usedColumns = new HashMap<Long, Boolean>();
+
+  /**
+   * Build the index for a set of {@link Measurement}s.
+   *
+   * @param measurements
+   *          The measurements.
+   */
+  public MeasurementDependencyIndex(Collection<Measurement> measurements) {
+    for (Measurement measurement : measurements) {
+      for (MeasurementValue value : measurement.getMeasurementValues()) {
+        addAll(value.getSensorValueIds(), measurement.getId());
+        addAll(value.getSupportingSensorValueIds(), measurement.getId());
+      }
+    }
+  }
+
+  /**
+   * Record that a {@link Measurement} uses a set of {@link SensorValue}s.
+   *
+   * @param sensorValueIds
+   *          The {@link SensorValue} IDs.
+   * @param measurementId
+   *          The {@link Measurement} ID.
+   */
+  private void addAll(Collection<Long> sensorValueIds, long measurementId) {
+    if (null != sensorValueIds) {
+      for (Long sensorValueId : sensorValueIds) {
+        measurementIds.computeIfAbsent(sensorValueId, k -> new TreeSet<Long>())
+          .add(measurementId);
+      }
+    }
+  }
+
+  /**
+   * Get the IDs of the {@link Measurement}s that use the specified
+   * {@link SensorValue}.
+   *
+   * @param sensorValueId
+   *          The {@link SensorValue} ID.
+   * @return The {@link Measurement} IDs.
+   */
+  public Set<Long> getMeasurementIds(long sensorValueId) {
+    Set<Long> result = measurementIds.get(sensorValueId);
+    return null == result ? Collections.emptySet()
+      : Collections.unmodifiableSet(result);
+  }
+
+  /**
+   * Determine whether or not any {@link Measurement} uses the specified
+   * {@link SensorValue}.
+   *
+   * @param sensorValueId
+   *          The {@link SensorValue} ID.
+   * @return {@code true} if the value is used; {@code false} if it is not.
+   */
+  public boolean isUsed(long sensorValueId) {
+    return measurementIds.containsKey(sensorValueId);
+  }
+
+  /**
+   * Get the IDs of the {@link Measurement}s that must be recalculated after
+   * the QC flags of the specified {@link SensorValue}s have been changed.
+   *
+   * <p>
+   * A changed value affects the {@link Measurement}s that use it. A value that
+   * was not previously used (e.g. because it was flagged as bad) may be used
+   * once its flag changes, so the {@link Measurement}s that use the nearest
+   * used values on either side of it in the same column are also included.
+   * These are the {@link Measurement}s whose values could have been
+   * calculated from the changed value instead.
+   * </p>
+   *
+   * @param allSensorValues
+   *          The dataset's sensor values.
+   * @param changedSensorValueIds
+   *          The IDs of the changed {@link SensorValue}s.
+   * @return The IDs of the affected {@link Measurement}s.
+   */
+  public TreeSet<Long> getAffectedMeasurementIds(
+    DatasetSensorValues allSensorValues,
+    Collection<Long> changedSensorValueIds) {
+
+    TreeSet<Long> result = new TreeSet<Long>();
+
+    for (long sensorValueId : changedSensorValueIds) {
+      result.addAll(getMeasurementIds(sensorValueId));
+
+      SensorValue sensorValue = allSensorValues.getById(sensorValueId);
+      if (null != sensorValue) {
+        SensorValuesList columnValues = allSensorValues
+          .getColumnValues(sensorValue.getColumnId());
+
+        if (null != columnValues && isColumnUsed(sensorValue.getColumnId(),
+          columnValues.getTimeIndex())) {
+
+          SensorValuesTimeIndex timeIndex = columnValues.getTimeIndex();
+          int index = timeIndex.search(sensorValue.getTime());
+          if (index >= 0) {
+            addNearestUsed(timeIndex, index, -1, result);
+            addNearestUsed(timeIndex, index, 1, result);
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Add the {@link Measurement}s that use the nearest used value to the value
+   * at the specified position in a column.
+   *
+   * @param timeIndex
+   *          The column's values.
+   * @param index
+   *          The position of the changed value.
+   * @param step
+   *          The search direction ({@code -1} for earlier values, {@code 1}
+   *          for later values).
+   * @param result
+   *          The set to which the {@link Measurement} IDs are added.
+   */
+  private void addNearestUsed(SensorValuesTimeIndex timeIndex, int index,
+    int step, Set<Long> result) {
+
+    int searchIndex = index + step;
+    while (searchIndex >= 0 && searchIndex < timeIndex.size()) {
+      long id = timeIndex.getSensorValue(searchIndex).getId();
+      if (isUsed(id)) {
+        result.addAll(measurementIds.get(id));
+        break;
+      }
+
+      searchIndex += step;
+    }
+  }
+
+  /**
+   * Determine whether or not any values in a column are used by a
+   * {@link Measurement}. Columns whose values are never used (e.g.
+   * diagnostics) do not need to be searched for neighbouring values.
+   *
+   * @param columnId
+   *          The column ID.
+   * @param timeIndex
+   *          The column's values.
+   * @return {@code true} if the column contains used values; {@code false} if
+   *         it does not.
+   */
+  private boolean isColumnUsed(long columnId, SensorValuesTimeIndex timeIndex) {
+    return usedColumns.computeIfAbsent(columnId, k -> {
+      boolean used = false;
+      for (int i = 0; i < timeIndex.size(); i++) {
+        if (isUsed(timeIndex.getSensorValue(i).getId())) {
+          used = true;
+          break;
+        }
+      }
+      return used;
+    });
+  }
+}
@@ -75,7 +75,7 @@ public class ProOceanusCO2MeasurementLocator extends MeasurementLocator {
       atmRunTypes.put(atmVar.getId(), Measurement.MEASUREMENT_RUN_TYPE);
 
       DatasetSensorValues sensorValues = DataSetDataDB.getSensorValues(conn,
-        instrument, dataset.getId(), false, true);
+        instrument, dataset, false, true);
 
       SensorType zeroCountType = sensorConfig
         .getSensorType("ProOceanus Zero Count");
@@ -188,6 +188,20 @@ public class DataReductionQCRoutinesConfiguration {
       + routine.getClass().getSimpleName().replaceAll("Routine$", "");
   }
 
+  /**
+   * Determine whether or not a routine name (see
+   * {@link #getRoutineName(DataReductionQCRoutine)}) belongs to a data
+   * reduction QC routine.
+   *
+   * @param routineName
+   *          The routine name
+   * @return {@code true} if the name is for a data reduction QC routine;
+   *         {@code false} otherwise
+   */
+  public static boolean isDataReductionRoutine(String routineName) {
+    return routineName.startsWith(ROUTINE_CLASS_PACKAGE + ".");
+  }
+
   public static DataReductionQCRoutine getRoutine(String routineName)
     throws RoutineException {
 
@@ -1,10 +1,12 @@
 package uk.ac.exeter.QuinCe.data.Dataset.QC.DataReduction;
 
 import java.sql.Connection;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.TreeMap;
 
 import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
 import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
 import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
 import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionException;
@@ -45,9 +47,17 @@ public class PostDataSetCalculationCoefficientCheckRoutine
       List<String> calibrationCoefficientNames = CalculationCoefficient
         .getCoeffecientNames(variable, settings.getListOption("coefficients"));
 
+      // Look for calibrations after the dataset's last measurement. This is
+      // the time the reducers use to find their post-calibrations, and does
+      // not depend on which of the dataset's records we have been given.
+      LocalDateTime lastMeasurementTime = DataSetDataDB
+        .getLastMeasurementTime(conn, dataSet.getId());
+      if (null == lastMeasurementTime) {
+        lastMeasurementTime = dataReductionRecords.lastKey().getTime();
+      }
+
       CalibrationSet postCoefficients = CalculationCoefficientDB.getInstance()
-        .getCalibrationsAfter(conn, instrument,
-          dataReductionRecords.lastKey().getTime());
+        .getCalibrationsAfter(conn, instrument, lastMeasurementTime);
 
       boolean hasPostCalibration = postCoefficients
         .containsTargets(calibrationCoefficientNames);
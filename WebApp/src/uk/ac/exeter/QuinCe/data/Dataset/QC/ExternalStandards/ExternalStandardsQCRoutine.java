@@ -7,7 +7,6 @@ import uk.ac.exeter.QuinCe.data.Dataset.SensorValuesList;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineException;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AbstractAutoQCRoutine;
 import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalibrationSet;
-import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
 import uk.ac.exeter.QuinCe.web.system.ResourceManager;
 
 public abstract class ExternalStandardsQCRoutine extends AbstractAutoQCRoutine {
@@ -18,10 +17,6 @@ public abstract class ExternalStandardsQCRoutine extends AbstractAutoQCRoutine {
       .getExternalStandardsRoutinesConfiguration().getRoutineName(this);
   }
 
-  public void setSensorType(SensorType sensorType) {
-    this.sensorType = sensorType;
-  }
-
   /**
    * Perform the QC on the specified values.
    *
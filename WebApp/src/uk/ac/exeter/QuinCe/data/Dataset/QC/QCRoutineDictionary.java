@@ -0,0 +1,218 @@
+package uk.ac.exeter.QuinCe.data.Dataset.QC;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Dictionary of the automatic QC {@link Routine}s that have produced flags in
+ * this deployment.
+ *
+ * <p>
+ * Each routine name is given a small integer ID in the {@code qc_routines}
+ * table, which is used in place of the name when {@link AutoQCResult}s are
+ * stored (see {@link AutoQCResult#encode()}). Routines are added to the table
+ * the first time they are stored. Entries are never changed or removed, so
+ * they can be cached for the lifetime of the application.
+ * </p>
+ *
+ * <p>
+ * Routine IDs in stored results are checked with {@link #checkId(int)} when
+ * the results are loaded, so any database errors are reported then.
+ * {@link #getName(int)} never reads the database, so results can be decoded
+ * later without errors.
+ * </p>
+ */
+public class QCRoutineDictionary {
+
+  /**
+   * Query to get all the routines in the dictionary.
+   */
+  private static final String GET_ROUTINES_QUERY = "SELECT "
+    + "id, name FROM qc_routines";
+
+  /**
+   * Statement to add a routine to the dictionary.
+   */
+  private static final String ADD_ROUTINE_STATEMENT = "INSERT INTO "
+    + "qc_routines (name) VALUES (?)";
+
+  /**
+   * The singleton instance of the dictionary.
+   */
+  private static QCRoutineDictionary instance = null;
+
+  /**
+   * The routine IDs, keyed by routine name.
+   */
+  private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+
+  /**
+   * The routine names, keyed by routine ID.
+   */
+  private final ConcurrentHashMap<Integer, String> names = new ConcurrentHashMap<Integer, String>();
+
+  /**
+   * Get the dictionary instance, creating it if required.
+   *
+   * @return The dictionary.
+   */
+  public static synchronized QCRoutineDictionary getInstance() {
+    if (null == instance) {
+      instance = new QCRoutineDictionary();
+    }
+
+    return instance;
+  }
+
+  /**
+   * Discard the dictionary instance.
+   */
+  public static synchronized void destroy() {
+    instance = null;
+  }
+
+  /**
+   * Get the ID of a routine, adding it to the dictionary if it is not already
+   * there.
+   *
+   * @param routineName
+   *          The routine name.
+   * @return The routine ID.
+   * @throws DatabaseException
+   *           If the dictionary cannot be read or updated.
+   */
+  public int getId(String routineName) throws DatabaseException {
+    Integer result = ids.get(routineName);
+
+    if (null == result) {
+      result = addRoutine(routineName);
+    }
+
+    return result;
+  }
+
+  /**
+   * Check that a routine ID is in the dictionary, reloading the dictionary
+   * from the database if it is not.
+   *
+   * @param id
+   *          The routine ID.
+   * @throws DatabaseException
+   *           If the dictionary cannot be read, or the ID is not in the
+   *           database.
+   */
+  public void checkId(int id) throws DatabaseException {
+    if (!names.containsKey(id)) {
+      // The routine may have been added by another application instance
+      load();
+
+      if (!names.containsKey(id)) {
+        throw new DatabaseException("Unknown QC routine ID " + id);
+      }
+    }
+  }
+
+  /**
+   * Get the name of the routine with the specified ID. The ID must have been
+   * checked with {@link #checkId(int)} or added with {@link #getId(String)}.
+   *
+   * @param id
+   *          The routine ID.
+   * @return The routine name.
+   * @throws IllegalArgumentException
+   *           If the ID is not in the dictionary.
+   */
+  public String getName(int id) {
+    String result = names.get(id);
+
+    if (null == result) {
+      throw new IllegalArgumentException("Unchecked QC routine ID " + id);
+    }
+
+    return result;
+  }
+
+  /**
+   * Add a routine to the dictionary. The routine is stored with its own
+   * connection, so it is committed even if the values being stored are rolled
+   * back.
+   *
+   * @param routineName
+   *          The routine name.
+   * @return The routine ID.
+   * @throws DatabaseException
+   *           If the dictionary cannot be read or updated.
+   */
+  private synchronized int addRoutine(String routineName)
+    throws DatabaseException {
+
+    // It may have been added by another thread or application instance
+    Integer result = ids.get(routineName);
+    if (null == result) {
+      load();
+      result = ids.get(routineName);
+    }
+
+    if (null == result) {
+      try (Connection conn = getDataSource().getConnection();
+        PreparedStatement stmt = conn.prepareStatement(ADD_ROUTINE_STATEMENT,
+          Statement.RETURN_GENERATED_KEYS)) {
+
+        stmt.setString(1, routineName);
+        stmt.execute();
+
+        try (ResultSet keys = stmt.getGeneratedKeys()) {
+          keys.next();
+          result = keys.getInt(1);
+        }
+      } catch (SQLException e) {
+        throw new DatabaseException("Unable to add QC routine " + routineName,
+          e);
+      }
+
+      ids.put(routineName, result);
+      names.put(result, routineName);
+    }
+
+    return result;
+  }
+
+  /**
+   * Load all the routines from the database.
+   *
+   * @throws DatabaseException
+   *           If the dictionary cannot be read.
+   */
+  private void load() throws DatabaseException {
+    try (Connection conn = getDataSource().getConnection();
+      PreparedStatement stmt = conn.prepareStatement(GET_ROUTINES_QUERY);
+      ResultSet records = stmt.executeQuery()) {
+
+      while (records.next()) {
+        ids.put(records.getString(2), records.getInt(1));
+        names.put(records.getInt(1), records.getString(2));
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Unable to load QC routine dictionary", e);
+    }
+  }
+
+  /**
+   * Get the application's data source.
+   *
+   * @return The data source.
+   */
+  private DataSource getDataSource() {
+    return ResourceManager.getInstance().getDBDataSource();
+  }
+}
@@ -63,6 +63,27 @@ public class RoutineFlag extends Flag {
     this.actualValue = actualValue;
   }
 
+  /**
+   * Create a Flag for an automatic QC routine identified by name. Used when
+   * rebuilding stored flags.
+   *
+   * @param routineName
+   *          The name of the routine that created the flag.
+   * @param flag
+   *          The flag value.
+   * @param requiredValue
+   *          The value required by the routine.
+   * @param actualValue
+   *          The actual (invalid) value encountered.
+   */
+  public RoutineFlag(String routineName, Flag flag, String requiredValue,
+    String actualValue) {
+    super(flag);
+    this.routineName = routineName;
+    this.requiredValue = requiredValue;
+    this.actualValue = actualValue;
+  }
+
   /**
    * Get a concrete instance of the {@link Routine} that generated this flag.
    *
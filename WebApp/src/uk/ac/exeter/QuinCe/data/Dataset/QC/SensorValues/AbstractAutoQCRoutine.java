@@ -91,10 +91,17 @@ public abstract class AbstractAutoQCRoutine implements Routine {
   /**
    * Set the {@link SensorType} whose values are to be checked by this routine.
    *
+   * <p>
+   * This is called once when the routine is loaded by the
+   * {@link AbstractQCRoutinesConfiguration}. Configured routines are not
+   * changed after that, so a single instance can be run on several groups of
+   * values at the same time.
+   * </p>
+   *
    * @param sensorType
    *          The {@link SensorType}.
    */
-  public void setSensorType(SensorType sensorType) {
+  protected void setSensorType(SensorType sensorType) {
     this.sensorType = sensorType;
   }
 
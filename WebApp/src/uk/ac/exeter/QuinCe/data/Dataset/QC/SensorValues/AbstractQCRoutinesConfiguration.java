@@ -105,7 +105,7 @@ public abstract class AbstractQCRoutinesConfiguration {
    * @throws Exception
    *           If the {@code routineClass} is not of the correct type, or it
    *           cannot be instantiated.
-   * @see #makeInstance(Class, List)
+   * @see #makeInstance(SensorType, Class, List)
    */
   private void addRoutine(SensorType sensorType, Class<?> routineClass,
     List<String> parameters) throws Exception {
@@ -119,12 +119,15 @@ public abstract class AbstractQCRoutinesConfiguration {
         + getRoutineSuperClass().getCanonicalName());
     }
 
-    routines.get(sensorType).add(makeInstance(routineClass, parameters));
+    routines.get(sensorType)
+      .add(makeInstance(sensorType, routineClass, parameters));
   }
 
   /**
    * Create a concrete instance of an Auto QC Routine.
    *
+   * @param sensorType
+   *          The routine's target {@link SensorType}.
    * @param routineClass
    *          The routine class.
    * @param parameters
@@ -137,11 +140,12 @@ public abstract class AbstractQCRoutinesConfiguration {
    * @see Constructor#newInstance
    * @see AbstractAutoQCRoutine#validateParameters()
    */
-  private AbstractAutoQCRoutine makeInstance(Class<?> routineClass,
-    List<String> parameters) throws Exception {
+  private AbstractAutoQCRoutine makeInstance(SensorType sensorType,
+    Class<?> routineClass, List<String> parameters) throws Exception {
 
     AbstractAutoQCRoutine instance = (AbstractAutoQCRoutine) routineClass
       .getDeclaredConstructor().newInstance();
+    instance.setSensorType(sensorType);
     instance.setParameters(parameters);
     return instance;
 
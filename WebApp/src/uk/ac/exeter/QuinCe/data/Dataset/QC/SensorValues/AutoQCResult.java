@@ -1,16 +1,23 @@
 package uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 
 import com.google.gson.Gson;
 
 import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.InvalidFlagException;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.QCRoutineDictionary;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineException;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineFlag;
 import uk.ac.exeter.QuinCe.jobs.files.AutoQCJob;
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
 import uk.ac.exeter.QuinCe.utils.StringUtils;
 
 /**
@@ -25,10 +32,37 @@ import uk.ac.exeter.QuinCe.utils.StringUtils;
  * {@link Flag#moreSignificantThan(Flag)}), and the QC message will be the
  * combination of messages from all the contributing {@link RoutineFlag}s.
  * </p>
+ *
+ * <p>
+ * Results are stored in the database in a compact encoding (see
+ * {@link #encode()}). Results stored as JSON by earlier versions can still be
+ * read.
+ * </p>
  */
 @SuppressWarnings("serial")
 public class AutoQCResult extends HashSet<RoutineFlag> {
 
+  /**
+   * The separator between flags in the encoded form.
+   */
+  private static final char FLAG_SEPARATOR = ';';
+
+  /**
+   * The separator between the fields of a flag in the encoded form.
+   */
+  private static final char FIELD_SEPARATOR = ':';
+
+  /**
+   * The escape character used in the encoded form.
+   */
+  private static final char ESCAPE = '\\';
+
+  /**
+   * The character that follows {@link #ESCAPE} to indicate a {@code null}
+   * value.
+   */
+  private static final char NULL_MARKER = 'N';
+
   /**
    * GSON (de)serializer.
    */
@@ -59,6 +93,166 @@ public class AutoQCResult extends HashSet<RoutineFlag> {
     return result;
   }
 
+  /**
+   * Check that the routines in a stored result are in the
+   * {@link QCRoutineDictionary}, so the result can be decoded later with
+   * {@link #decode(String)}. Results stored as JSON are not checked.
+   *
+   * <p>
+   * Only the routine IDs are read, so this is much quicker than decoding the
+   * result.
+   * </p>
+   *
+   * @param encoded
+   *          The stored result.
+   * @throws DatabaseException
+   *           If a routine ID is invalid or not in the dictionary, or the
+   *           dictionary cannot be read.
+   * @see QCRoutineDictionary#checkId(int)
+   */
+  public static void checkRoutines(String encoded) throws DatabaseException {
+    if (null != encoded && !encoded.isEmpty() && encoded.charAt(0) != '[') {
+      QCRoutineDictionary dictionary = QCRoutineDictionary.getInstance();
+
+      // Each flag starts with its routine ID
+      int flagStart = 0;
+      while (flagStart < encoded.length()) {
+        int idEnd = encoded.indexOf(FIELD_SEPARATOR, flagStart);
+        if (idEnd == -1) {
+          idEnd = encoded.length();
+        }
+
+        try {
+          dictionary
+            .checkId(Integer.parseInt(encoded.substring(flagStart, idEnd)));
+        } catch (NumberFormatException e) {
+          throw new DatabaseException("Invalid automatic QC result " + encoded,
+            e);
+        }
+
+        // Find the next unescaped flag separator
+        int i = idEnd;
+        while (i < encoded.length() && encoded.charAt(i) != FLAG_SEPARATOR) {
+          i += encoded.charAt(i) == ESCAPE ? 2 : 1;
+        }
+
+        flagStart = i + 1;
+      }
+    }
+  }
+
+  /**
+   * Build an AutoQCResult from its stored form, using the
+   * {@link QCRoutineDictionary} to identify the routines. The routines must
+   * have been checked with {@link #checkRoutines(String)}.
+   *
+   * @param encoded
+   *          The stored result.
+   * @return The AutoQCResult.
+   * @throws IllegalArgumentException
+   *           If the stored result is invalid.
+   * @see #encode()
+   */
+  public static AutoQCResult decode(String encoded) {
+    return decode(encoded, id -> QCRoutineDictionary.getInstance().getName(id));
+  }
+
+  /**
+   * Build an AutoQCResult from its stored form.
+   *
+   * <p>
+   * Results stored as JSON are also accepted.
+   * </p>
+   *
+   * @param encoded
+   *          The stored result.
+   * @param routineNames
+   *          Function to get a routine's name from its ID.
+   * @return The AutoQCResult.
+   * @throws IllegalArgumentException
+   *           If the stored result is invalid.
+   * @see #encode(ToIntFunction)
+   */
+  public static AutoQCResult decode(String encoded,
+    IntFunction<String> routineNames) {
+
+    AutoQCResult result;
+
+    if (null == encoded || encoded.isEmpty()) {
+      result = new AutoQCResult();
+    } else if (encoded.charAt(0) == '[') {
+      result = buildFromJson(encoded);
+    } else {
+      result = new AutoQCResult();
+
+      List<String> fields = new ArrayList<String>(4);
+      StringBuilder field = new StringBuilder();
+      boolean escaped = false;
+      boolean nullField = false;
+
+      for (int i = 0; i < encoded.length(); i++) {
+        char c = encoded.charAt(i);
+
+        if (escaped) {
+          if (c == NULL_MARKER) {
+            nullField = true;
+          } else {
+            field.append(c);
+          }
+          escaped = false;
+        } else if (c == ESCAPE) {
+          escaped = true;
+        } else if (c == FIELD_SEPARATOR || c == FLAG_SEPARATOR) {
+          fields.add(nullField ? null : field.toString());
+          field.setLength(0);
+          nullField = false;
+
+          if (c == FLAG_SEPARATOR) {
+            result.add(decodeFlag(fields, routineNames));
+            fields.clear();
+          }
+        } else {
+          field.append(c);
+        }
+      }
+
+      fields.add(nullField ? null : field.toString());
+      result.add(decodeFlag(fields, routineNames));
+    }
+
+    return result;
+  }
+
+  /**
+   * Build a {@link RoutineFlag} from the fields of its encoded form.
+   *
+   * @param fields
+   *          The fields.
+   * @param routineNames
+   *          Function to get a routine's name from its ID.
+   * @return The flag.
+   * @throws IllegalArgumentException
+   *           If the fields are invalid.
+   */
+  private static RoutineFlag decodeFlag(List<String> fields,
+    IntFunction<String> routineNames) {
+
+    if (fields.size() != 4) {
+      throw new IllegalArgumentException(
+        "Invalid automatic QC flag " + fields);
+    }
+
+    try {
+      return new RoutineFlag(
+        routineNames.apply(Integer.parseInt(fields.get(0))),
+        new Flag(Integer.parseInt(fields.get(1))), fields.get(2),
+        fields.get(3));
+    } catch (NumberFormatException | InvalidFlagException e) {
+      throw new IllegalArgumentException(
+        "Invalid automatic QC flag " + fields, e);
+    }
+  }
+
   /**
    * Returns the {@link #GSON} instance, creating it if required.
    *
@@ -107,6 +301,108 @@ public class AutoQCResult extends HashSet<RoutineFlag> {
     return json;
   }
 
+  /**
+   * Generate the compact form of this result for storing in the database,
+   * using the {@link QCRoutineDictionary} to identify the routines.
+   *
+   * <p>
+   * Each flag is stored as the routine's ID, the flag value, the required
+   * value and the actual value, separated by colons. Flags are separated by
+   * semicolons. Separators and backslashes within values are escaped with a
+   * backslash, and {@code null} values are stored as {@code \N}.
+   * </p>
+   *
+   * @return The encoded result, or {@code null} if there are no flags.
+   * @throws DatabaseException
+   *           If a routine cannot be added to the dictionary.
+   */
+  public String encode() throws DatabaseException {
+    String result = null;
+
+    if (size() > 0) {
+      QCRoutineDictionary dictionary = QCRoutineDictionary.getInstance();
+
+      StringBuilder encoded = new StringBuilder();
+      for (RoutineFlag flag : this) {
+        appendFlag(encoded, dictionary.getId(flag.getRoutineName()), flag);
+      }
+
+      result = encoded.toString();
+    }
+
+    return result;
+  }
+
+  /**
+   * Generate the compact form of this result using the specified routine IDs.
+   *
+   * @param routineIds
+   *          Function to get a routine's ID from its name.
+   * @return The encoded result, or {@code null} if there are no flags.
+   * @see #encode()
+   */
+  public String encode(ToIntFunction<String> routineIds) {
+    String result = null;
+
+    if (size() > 0) {
+      StringBuilder encoded = new StringBuilder();
+      for (RoutineFlag flag : this) {
+        appendFlag(encoded, routineIds.applyAsInt(flag.getRoutineName()),
+          flag);
+      }
+
+      result = encoded.toString();
+    }
+
+    return result;
+  }
+
+  /**
+   * Add the encoded form of a flag to an encoded result.
+   *
+   * @param encoded
+   *          The encoded result.
+   * @param routineId
+   *          The ID of the flag's routine.
+   * @param flag
+   *          The flag.
+   */
+  private static void appendFlag(StringBuilder encoded, int routineId,
+    RoutineFlag flag) {
+
+    if (encoded.length() > 0) {
+      encoded.append(FLAG_SEPARATOR);
+    }
+
+    encoded.append(routineId).append(FIELD_SEPARATOR)
+      .append(flag.getFlagValue()).append(FIELD_SEPARATOR);
+    appendValue(encoded, flag.getRequiredValue());
+    encoded.append(FIELD_SEPARATOR);
+    appendValue(encoded, flag.getActualValue());
+  }
+
+  /**
+   * Add a value to an encoded result, escaping any special characters.
+   *
+   * @param encoded
+   *          The encoded result.
+   * @param value
+   *          The value.
+   */
+  private static void appendValue(StringBuilder encoded, String value) {
+    if (null == value) {
+      encoded.append(ESCAPE).append(NULL_MARKER);
+    } else {
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == ESCAPE || c == FIELD_SEPARATOR || c == FLAG_SEPARATOR) {
+          encoded.append(ESCAPE);
+        }
+        encoded.append(c);
+      }
+    }
+  }
+
   /**
    * Get the short messages for each QC flag in this result as a delimited
    * {@link String}.
@@ -146,15 +146,10 @@ public abstract class AutoQCRoutine extends AbstractAutoQCRoutine {
     runTypePeriods.getRunTypeNames()
       .forEach(r -> result.put(r, new ArrayList<SensorValue>()));
 
-    int currentPeriodIndex = 0;
-    RunTypePeriod currentPeriod = runTypePeriods.get(currentPeriodIndex);
+    RunTypePeriods.Cursor cursor = runTypePeriods.cursor();
 
     for (SensorValue value : values) {
-      while (!currentPeriod.encompasses(value.getTime())) {
-        currentPeriodIndex++;
-        currentPeriod = runTypePeriods.get(currentPeriodIndex);
-      }
-
+      RunTypePeriod currentPeriod = cursor.advance(value.getTime());
       result.get(currentPeriod.getRunType()).add(value);
     }
 
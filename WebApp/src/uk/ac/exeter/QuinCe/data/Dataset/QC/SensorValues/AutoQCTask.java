@@ -0,0 +1,186 @@
+package uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import uk.ac.exeter.QuinCe.data.Dataset.RunTypePeriods;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineException;
+import uk.ac.exeter.QuinCe.jobs.files.AutoQCJob;
+
+/**
+ * Runs the automatic QC routines on a single group of {@link SensorValue}s.
+ *
+ * <p>
+ * The {@link AutoQCJob} QCs the values for each sensor column separately, and
+ * values for sensors with internal calibrations are split further into groups
+ * for each Run Type. Each group is independent of the others: the routines
+ * only add flags to the values they are given, and the configured routine
+ * instances are not changed while they run. The groups can therefore be QCed
+ * in parallel using {@link #runAll(List, ForkJoinPool)}.
+ * </p>
+ *
+ * <p>
+ * The routines for a group are always run in the order in which they are
+ * configured, so the QC result for each value does not depend on the order in
+ * which the groups are processed.
+ * </p>
+ */
+public class AutoQCTask implements Callable<Void> {
+
+  /**
+   * The routines to be run on the values.
+   */
+  private final List<AbstractAutoQCRoutine> routines;
+
+  /**
+   * The values to be QCed.
+   */
+  private final List<SensorValue> values;
+
+  /**
+   * The Run Type periods for the dataset.
+   */
+  private final RunTypePeriods runTypePeriods;
+
+  /**
+   * Indicates whether the routines should be run. If {@code false}, the
+   * existing automatic QC is cleared from the values but no new QC is
+   * performed.
+   */
+  private final boolean runRoutines;
+
+  /**
+   * Create a QC task for a group of values.
+   *
+   * @param routines
+   *          The routines to be run on the values.
+   * @param values
+   *          The values to be QCed.
+   * @param runTypePeriods
+   *          The Run Type periods for the dataset.
+   * @param runRoutines
+   *          Indicates whether the routines should be run, or the existing QC
+   *          simply cleared.
+   */
+  public AutoQCTask(List<AbstractAutoQCRoutine> routines,
+    List<SensorValue> values, RunTypePeriods runTypePeriods,
+    boolean runRoutines) {
+    this.routines = routines;
+    this.values = values;
+    this.runTypePeriods = runTypePeriods;
+    this.runRoutines = runRoutines;
+  }
+
+  /**
+   * Clear the existing automatic QC from the values and run the routines on
+   * them. Values that the user has marked as {@link Flag#BAD} or
+   * {@link Flag#QUESTIONABLE} are not passed to the routines.
+   */
+  @Override
+  public Void call() throws Exception {
+
+    SensorValue.clearAutoQC(values);
+
+    if (runRoutines) {
+      List<SensorValue> filteredValues = values.stream()
+        .filter(x -> !(x.getUserQCFlag().equals(Flag.BAD)
+          | x.getUserQCFlag().equals(Flag.QUESTIONABLE)))
+        .collect(Collectors.toList());
+
+      for (AbstractAutoQCRoutine routine : routines) {
+        ((AutoQCRoutine) routine).qc(filteredValues, runTypePeriods);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Run a set of QC tasks.
+   *
+   * <p>
+   * If a pool is supplied, the tasks are submitted to it and this method waits
+   * for them all to finish. Otherwise they are run in turn on the calling
+   * thread. If any tasks fail, the exception from the first failed task in the
+   * list is thrown, regardless of the order in which the tasks completed.
+   * </p>
+   *
+   * @param tasks
+   *          The tasks.
+   * @param pool
+   *          The pool on which to run the tasks, or {@code null} to run them
+   *          on the calling thread.
+   * @throws RoutineException
+   *           If any of the tasks fail.
+   * @throws InterruptedException
+   *           If the calling thread is interrupted while waiting for the tasks
+   *           to finish.
+   */
+  public static void runAll(List<AutoQCTask> tasks, ForkJoinPool pool)
+    throws RoutineException, InterruptedException {
+
+    if (null == pool) {
+      for (AutoQCTask task : tasks) {
+        runTask(task);
+      }
+    } else {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks.size());
+      for (AutoQCTask task : tasks) {
+        futures.add(pool.submit(task));
+      }
+
+      RoutineException failure = null;
+
+      // Wait for every task, even if one fails, so no task is still updating
+      // values once we return.
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (null == failure) {
+            failure = wrapException(e.getCause());
+          }
+        }
+      }
+
+      if (null != failure) {
+        throw failure;
+      }
+    }
+  }
+
+  /**
+   * Run a single task on the calling thread.
+   *
+   * @param task
+   *          The task.
+   * @throws RoutineException
+   *           If the task fails.
+   */
+  private static void runTask(AutoQCTask task) throws RoutineException {
+    try {
+      task.call();
+    } catch (Exception e) {
+      throw wrapException(e);
+    }
+  }
+
+  /**
+   * Convert an exception thrown by a task to a {@link RoutineException}.
+   *
+   * @param e
+   *          The exception.
+   * @return The {@link RoutineException}.
+   */
+  private static RoutineException wrapException(Throwable e) {
+    return e instanceof RoutineException ? (RoutineException) e
+      : new RoutineException("Error running QC routines", e);
+  }
+}
@@ -89,7 +89,8 @@ public class ConstantValueRoutine extends AutoQCRoutine {
     boolean result = false;
 
     try {
-      result = (value.getDoubleValue().equals(firstValue.getDoubleValue()));
+      result = Double.compare(value.doubleValue(),
+        firstValue.doubleValue()) == 0;
     } catch (NumberFormatException e) {
       throw new RoutineException("Cannot compare non-numeric values", e);
     }
@@ -1,5 +1,8 @@
 package uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
 import uk.ac.exeter.QuinCe.data.Dataset.RunTypePeriods;
 import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
@@ -26,6 +29,9 @@ public class DiagnosticsQCRoutine {
 
     DiagnosticQCConfig diagnosticConfig = instrument.getDiagnosticQCConfig();
 
+    // The cascade is applied for all the values at once at the end
+    List<SensorValue> cascadeSources = new ArrayList<SensorValue>();
+
     for (SensorAssignment sensor : instrument.getSensorAssignments()
       .getDiagnosticSensors()) {
 
@@ -54,9 +60,11 @@ public class DiagnosticsQCRoutine {
             value.setUserQC(Flag.GOOD, null);
           }
 
-          sensorValues.applyQCCascade(value, runTypePeriods);
+          cascadeSources.add(value);
         }
       }
     }
+
+    sensorValues.applyQCCascade(cascadeSources, runTypePeriods);
   }
 }
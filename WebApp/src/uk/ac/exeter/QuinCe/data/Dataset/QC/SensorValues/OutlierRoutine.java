@@ -43,8 +43,8 @@ public class OutlierRoutine extends AutoQCRoutine {
     double stdev = 0.0;
 
     for (SensorValue sensorValue : values) {
-      Double value = sensorValue.getDoubleValue();
-      if (!value.isNaN()) {
+      double value = sensorValue.doubleValue();
+      if (!Double.isNaN(value)) {
         valueCount++;
 
         if (valueCount == 1) {
@@ -64,7 +64,7 @@ public class OutlierRoutine extends AutoQCRoutine {
       // Check all values to see if they're outside the limit
       for (SensorValue sensorValue : values) {
         if (!sensorValue.isNaN()) {
-          double diffFromMean = Math.abs(sensorValue.getDoubleValue() - mean);
+          double diffFromMean = Math.abs(sensorValue.doubleValue() - mean);
 
           if (diffFromMean > (stdev * stdevLimit)) {
             addFlag(sensorValue, Flag.BAD, stdevLimit, stdev);
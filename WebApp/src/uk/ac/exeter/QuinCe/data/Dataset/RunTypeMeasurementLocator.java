@@ -25,7 +25,7 @@ public class RunTypeMeasurementLocator extends MeasurementLocator {
       TreeMap<LocalDateTime, String> runTypes = new TreeMap<LocalDateTime, String>();
 
       DatasetSensorValues allSensorValues = DataSetDataDB.getSensorValues(conn,
-        instrument, dataset.getId(), false, true);
+        instrument, dataset, false, true);
 
       SensorValuesList runTypeSensorValues = allSensorValues.getRunTypes();
 
@@ -2,10 +2,19 @@ package uk.ac.exeter.QuinCe.data.Dataset;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * The periods covered by each Run Type in a dataset, in time order.
+ *
+ * <p>
+ * Periods can only be added in time order and never overlap, so the period
+ * containing a given time can be found with a binary search. Loops that look
+ * up times in order should use a {@link Cursor}, which steps forward through
+ * the periods instead of searching from scratch each time.
+ * </p>
+ */
 @SuppressWarnings("serial")
 public class RunTypePeriods extends ArrayList<RunTypePeriod> {
 
@@ -49,24 +58,61 @@ public class RunTypePeriods extends ArrayList<RunTypePeriod> {
     finished = true;
   }
 
+  /**
+   * Determine whether any period contains the specified time.
+   *
+   * @param time
+   *          The time
+   * @return {@code true} if the time is in a period; {@code false} if it is
+   *         not.
+   */
   public boolean contains(LocalDateTime time) {
-    boolean result = false;
+    return null != getPeriod(time);
+  }
 
-    for (RunTypePeriod period : this) {
-      if (period.encompasses(time)) {
-        result = true;
-        break;
+  /**
+   * Get the Run Type at the specified time.
+   *
+   * @param time
+   *          The time
+   * @return The Run Type, or {@code null} if the time is not in any period.
+   */
+  public String getRunType(LocalDateTime time) {
+    RunTypePeriod period = getPeriod(time);
+    return null == period ? null : period.getRunType();
+  }
+
+  /**
+   * Get the period that contains the specified time.
+   *
+   * @param time
+   *          The time
+   * @return The period, or {@code null} if the time is not in any period.
+   */
+  public RunTypePeriod getPeriod(LocalDateTime time) {
+
+    // Find the last period that starts at or before the time
+    int low = 0;
+    int high = size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (get(mid).getStart().isAfter(time)) {
+        high = mid - 1;
+      } else {
+        low = mid + 1;
       }
     }
 
-    return result;
+    return high >= 0 && get(high).encompasses(time) ? get(high) : null;
   }
 
-  public String getRunType(LocalDateTime time) {
-    Optional<RunTypePeriod> period = stream().filter(p -> p.encompasses(time))
-      .findAny();
-
-    return period.isEmpty() ? null : period.get().getRunType();
+  /**
+   * Create a new {@link Cursor} positioned at the first period.
+   *
+   * @return The cursor.
+   */
+  public Cursor cursor() {
+    return new Cursor();
   }
 
   /**
@@ -89,4 +135,61 @@ public class RunTypePeriods extends ArrayList<RunTypePeriod> {
 
     return result;
   }
+
+  /**
+   * A forward-only position in the periods, for looking up a series of times
+   * in time order.
+   *
+   * <p>
+   * Each cursor holds its own position, so several threads can step through
+   * the same periods at once as long as they each use their own cursor. Times
+   * passed to a cursor must not go backwards; if they do, the cursor stays on
+   * its current period.
+   * </p>
+   */
+  public class Cursor {
+
+    /**
+     * The index of the current period.
+     */
+    private int index = 0;
+
+    /**
+     * Private constructor. Use {@link RunTypePeriods#cursor()}.
+     */
+    private Cursor() {
+    }
+
+    /**
+     * Move the cursor forward to the first period that ends at or after the
+     * specified time, and return that period. If the time falls between two
+     * periods, the later period is returned.
+     *
+     * @param time
+     *          The time
+     * @return The period, or {@code null} if all periods end before the time.
+     */
+    public RunTypePeriod advance(LocalDateTime time) {
+      while (index < size() && get(index).getEnd().isBefore(time)) {
+        index++;
+      }
+
+      return index < size() ? get(index) : null;
+    }
+
+    /**
+     * Move the cursor forward to the specified time and get the Run Type at
+     * that time.
+     *
+     * @param time
+     *          The time
+     * @return The Run Type, or {@code null} if the time is not in any period.
+     * @see #advance(LocalDateTime)
+     */
+    public String getRunType(LocalDateTime time) {
+      RunTypePeriod period = advance(time);
+      return null != period && period.encompasses(time) ? period.getRunType()
+        : null;
+    }
+  }
 }
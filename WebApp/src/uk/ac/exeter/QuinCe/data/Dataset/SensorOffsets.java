@@ -60,6 +60,16 @@ public class SensorOffsets {
     offsets.get(groupPair).removeIf(o -> o.getTime().equals(time));
   }
 
+  /**
+   * Determine whether or not any offsets have been defined. If there are no
+   * offsets, offset times are always the same as the original times.
+   *
+   * @return {@code true} if there are no offsets; {@code false} if there are.
+   */
+  public boolean isEmpty() {
+    return offsets.values().stream().allMatch(TreeSet::isEmpty);
+  }
+
   protected LinkedHashMap<SensorGroupPair, TreeSet<SensorOffset>> getMap() {
     return offsets;
   }
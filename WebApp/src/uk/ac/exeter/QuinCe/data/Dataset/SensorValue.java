@@ -14,6 +14,7 @@ import java.util.TreeSet;
 import com.google.gson.Gson;
 
 import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.Calculators;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.DataReduction.DataReductionQCRoutinesConfiguration;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.InvalidFlagException;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineException;
@@ -21,6 +22,7 @@ import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineFlag;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
 import uk.ac.exeter.QuinCe.data.Instrument.Calibration.Calibration;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
 import uk.ac.exeter.QuinCe.utils.DatabaseUtils;
 import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
 import uk.ac.exeter.QuinCe.utils.RecordNotFoundException;
@@ -42,6 +44,23 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
    */
   public static final String MISSING_QC_COMMENT = "Missing";
 
+  /**
+   * Parse state indicating that the {@link #value} was parsed successfully
+   * into {@link #doubleValue}.
+   */
+  private static final byte PARSED = 1;
+
+  /**
+   * Parse state indicating that the {@link #value} was parsed successfully,
+   * and is also numeric according to {@link StringUtils#isNumeric(String)}.
+   */
+  private static final byte PARSED_NUMERIC = 2;
+
+  /**
+   * Parse state indicating that the {@link #value} is not a number.
+   */
+  private static final byte NOT_NUMERIC = 3;
+
   /**
    * The database ID of this value
    */
@@ -64,9 +83,24 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
   private final LocalDateTime time;
 
   /**
-   * The automatic QC result
+   * The automatic QC result. Values loaded from the database have their
+   * result decoded from {@link #encodedAutoQC} when it is first needed.
+   *
+   * <p>
+   * Values are shared between threads (e.g. by data reduction tasks), so this
+   * is only set while holding the value's lock. Once set it is not replaced
+   * by another decode, so updates made to the result are never lost.
+   * </p>
+   *
+   * @see #autoQC()
+   */
+  private volatile AutoQCResult autoQC = null;
+
+  /**
+   * The automatic QC result as stored in the database, if the value was loaded
+   * from the database. Only accessed while holding the value's lock.
    */
-  private AutoQCResult autoQC = null;
+  private String encodedAutoQC = null;
 
   /**
    * The user QC flag
@@ -83,6 +117,20 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
    */
   private String value;
 
+  /**
+   * The {@link #value} parsed as a number. {@link Double#NaN} if the value is
+   * missing or not numeric.
+   *
+   * @see #getDoubleValue()
+   */
+  private double doubleValue = Double.NaN;
+
+  /**
+   * The result of parsing the {@link #value} into the {@link #doubleValue}.
+   * The value is parsed whenever it is set.
+   */
+  private byte parseState;
+
   /**
    * Indicates whether the value needs to be saved to the database
    */
@@ -109,6 +157,7 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
     this.columnId = columnId;
     this.time = time;
     this.value = value;
+    parseValue();
     this.autoQC = new AutoQCResult();
     this.dirty = true;
 
@@ -135,12 +184,10 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
     this.columnId = columnId;
     this.time = time;
     this.value = value;
+    parseValue();
 
-    if (null == autoQc) {
-      this.autoQC = new AutoQCResult();
-    } else {
-      this.autoQC = autoQc;
-    }
+    // A null result is treated as empty by autoQC()
+    this.autoQC = autoQc;
 
     this.userQCFlag = userQcFlag;
     this.userQCMessage = userQcMessage;
@@ -162,16 +209,66 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
     this.id = source.id;
     this.datasetId = source.datasetId;
     this.columnId = source.columnId;
-    this.autoQC = source.autoQC;
+    synchronized (source) {
+      this.autoQC = source.autoQC;
+      this.encodedAutoQC = source.encodedAutoQC;
+    }
     this.userQCFlag = source.userQCFlag;
     this.userQCMessage = source.userQCMessage;
     this.value = source.value;
+    this.doubleValue = source.doubleValue;
+    this.parseState = source.parseState;
     this.dirty = false;
 
     this.time = newTime;
     this.canBeSaved = false;
   }
 
+  /**
+   * Build a sensor value loaded from the database. The automatic QC result is
+   * not decoded until it is needed, but its QC routines are checked so that
+   * decoding it cannot fail.
+   *
+   * @param databaseId
+   *          The value's database ID
+   * @param datasetId
+   *          The dataset ID
+   * @param columnId
+   *          The file column ID
+   * @param time
+   *          The value's timestamp
+   * @param value
+   *          The value
+   * @param encodedAutoQc
+   *          The stored automatic QC result
+   * @param userQcFlag
+   *          The user QC flag
+   * @param userQcMessage
+   *          The user QC message
+   * @return The sensor value
+   * @throws DatabaseException
+   *           If the QC routines in the automatic QC result cannot be found
+   * @see AutoQCResult#checkRoutines(String)
+   * @see AutoQCResult#decode(String)
+   */
+  protected static SensorValue fromDatabase(long databaseId, long datasetId,
+    long columnId, LocalDateTime time, String value, String encodedAutoQc,
+    Flag userQcFlag, String userQcMessage) throws DatabaseException {
+
+    AutoQCResult.checkRoutines(encodedAutoQc);
+
+    SensorValue result = new SensorValue(databaseId, datasetId, columnId, time,
+      value, null, userQcFlag, userQcMessage);
+
+    // The value is not shared until it is returned, but the lock makes sure
+    // the encoded result is visible to other threads
+    synchronized (result) {
+      result.encodedAutoQC = encodedAutoQc;
+    }
+
+    return result;
+  }
+
   /**
    * Get the database ID of the dataset to which this value belongs
    *
@@ -214,9 +311,53 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
    * number before parsing
    *
    * @return The value as a Double
+   * @see #doubleValue()
    */
   public Double getDoubleValue() {
-    return StringUtils.doubleFromString(value);
+    return doubleValue();
+  }
+
+  /**
+   * Get the value as a primitive {@code double}. Missing values are returned
+   * as {@link Double#NaN}. All commas are removed from the number before
+   * parsing.
+   *
+   * <p>
+   * The value is parsed when it is set, so this does not parse it again.
+   * </p>
+   *
+   * @return The value as a {@code double}.
+   * @throws NumberFormatException
+   *           If the value is not numeric.
+   */
+  public double doubleValue() {
+    if (parseState == NOT_NUMERIC) {
+      // Let the parser throw the exception
+      return StringUtils.doubleFromString(value);
+    }
+
+    return doubleValue;
+  }
+
+  /**
+   * Parse the {@link #value} into the {@link #doubleValue} and record the
+   * result in the {@link #parseState}.
+   */
+  private void parseValue() {
+    try {
+      doubleValue = StringUtils.doubleFromString(value);
+
+      // StringUtils.isNumeric does not accept empty values or commas
+      if (null != value && value.indexOf(',') == -1
+        && value.trim().length() > 0) {
+        parseState = PARSED_NUMERIC;
+      } else {
+        parseState = PARSED;
+      }
+    } catch (NumberFormatException e) {
+      doubleValue = Double.NaN;
+      parseState = NOT_NUMERIC;
+    }
   }
 
   /**
@@ -225,7 +366,7 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
    * @return {@code true} if the value is null; {@code false} otherwise.
    */
   public boolean isNaN() {
-    return getDoubleValue().isNaN();
+    return Double.isNaN(doubleValue());
   }
 
   /**
@@ -235,7 +376,7 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
    * @return The automatic QC flag
    */
   public Flag getAutoQcFlag() {
-    return autoQC.getOverallFlag();
+    return autoQC().getOverallFlag();
   }
 
   /**
@@ -244,7 +385,60 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
    * @return The automatic QC result
    */
   public AutoQCResult getAutoQcResult() {
-    return autoQC;
+    return autoQC();
+  }
+
+  /**
+   * Get the automatic QC result in the form in which it is stored in the
+   * database. If the result has not been decoded since it was loaded, the
+   * loaded form is returned without being decoded.
+   *
+   * @return The encoded automatic QC result
+   * @throws DatabaseException
+   *           If the result cannot be encoded
+   * @see AutoQCResult#encode()
+   */
+  public String getEncodedAutoQcResult() throws DatabaseException {
+    AutoQCResult result = autoQC;
+
+    if (null == result) {
+      synchronized (this) {
+        result = autoQC;
+        if (null == result) {
+          return encodedAutoQC;
+        }
+      }
+    }
+
+    return result.encode();
+  }
+
+  /**
+   * Get the automatic QC result, decoding it from {@link #encodedAutoQC} if
+   * necessary.
+   *
+   * <p>
+   * The result is decoded while holding the value's lock, so threads sharing
+   * the value all get the same result object and changes made to it by one
+   * thread cannot be discarded by another thread decoding it again.
+   * </p>
+   *
+   * @return The automatic QC result
+   */
+  private AutoQCResult autoQC() {
+    AutoQCResult result = autoQC;
+
+    if (null == result) {
+      synchronized (this) {
+        result = autoQC;
+        if (null == result) {
+          result = AutoQCResult.decode(encodedAutoQC);
+          autoQC = result;
+        }
+      }
+    }
+
+    return result;
   }
 
   /**
@@ -295,7 +489,10 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
       throw new RecordNotFoundException(
         "SensorValue has not been stored in the database");
     }
-    autoQC = new AutoQCResult();
+    synchronized (this) {
+      encodedAutoQC = null;
+      autoQC = new AutoQCResult();
+    }
 
     // Reset the user QC if it hasn't been set by the user
     if (userQCFlag.equals(Flag.ASSUMED_GOOD)
@@ -307,6 +504,46 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
     dirty = true;
   }
 
+  /**
+   * Remove the flags set by the data reduction QC routines from the automatic
+   * QC result, keeping the flags from the other routines.
+   *
+   * <p>
+   * The user QC is updated to match the remaining flags if it hasn't been set
+   * by the user.
+   * </p>
+   *
+   * @throws RecordNotFoundException
+   *           If the value has not yet been stored in the database
+   * @throws RoutineException
+   *           If the messages for the remaining flags cannot be retrieved
+   */
+  public void clearDataReductionQC()
+    throws RecordNotFoundException, RoutineException {
+
+    if (!isInDatabase()) {
+      throw new RecordNotFoundException(
+        "SensorValue has not been stored in the database");
+    }
+
+    boolean removed = autoQC()
+      .removeIf(f -> DataReductionQCRoutinesConfiguration
+        .isDataReductionRoutine(f.getRoutineName()));
+
+    if (removed) {
+      if (userQCFlag.equals(Flag.NEEDED)) {
+        if (autoQC().isEmpty()) {
+          userQCFlag = Flag.ASSUMED_GOOD;
+          userQCMessage = null;
+        } else {
+          userQCMessage = autoQC().getAllMessages();
+        }
+      }
+
+      dirty = true;
+    }
+  }
+
   /**
    * Add a flag from an automatic QC routine to the automatic QC result
    *
@@ -323,13 +560,13 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
       throw new RecordNotFoundException(
         "SensorValue has not been stored in the database");
     }
-    autoQC.add(flag);
+    autoQC().add(flag);
 
     // Update the user QC if it hasn't been set by the user
     if (userQCFlag.equals(Flag.ASSUMED_GOOD)
       || userQCFlag.equals(Flag.NEEDED)) {
       userQCFlag = Flag.NEEDED;
-      userQCMessage = autoQC.getAllMessages();
+      userQCMessage = autoQC().getAllMessages();
     }
 
     dirty = true;
@@ -516,7 +753,8 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
 
   public void calibrateValue(Calibration calibration) {
     if (!isNaN()) {
-      value = String.valueOf(calibration.calibrateValue(getDoubleValue()));
+      setValue(
+        String.valueOf(calibration.calibrateValue(getDoubleValue())));
     }
   }
 
@@ -528,7 +766,7 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
     if (userQCFlag.equals(Flag.LOOKUP) || StringUtils.isEmpty(value)) {
       result = Flag.BAD;
     } else {
-      result = flagNeeded() ? autoQC.getOverallFlag() : getUserQCFlag();
+      result = flagNeeded() ? autoQC().getOverallFlag() : getUserQCFlag();
     }
 
     return result;
@@ -553,7 +791,7 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
       result = StringUtils.collectionToDelimited(messages, ";");
 
     } else {
-      result = flagNeeded() ? autoQC.getAllMessages() : userQCMessage;
+      result = flagNeeded() ? autoQC().getAllMessages() : userQCMessage;
     }
 
     return result;
@@ -571,6 +809,7 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
 
   public void setValue(String value) {
     this.value = value;
+    parseValue();
   }
 
   public boolean noValue() {
@@ -579,9 +818,15 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
 
   @Override
   public Object clone() {
-    SensorValue clone = new SensorValue(id, datasetId, columnId, time, value,
-      autoQC, userQCFlag, userQCMessage);
+    SensorValue clone;
+    synchronized (this) {
+      clone = new SensorValue(id, datasetId, columnId, time, value, autoQC,
+        userQCFlag, userQCMessage);
+      clone.encodedAutoQC = this.encodedAutoQC;
+    }
     clone.dirty = this.dirty;
+    clone.doubleValue = this.doubleValue;
+    clone.parseState = this.parseState;
     return clone;
   }
 
@@ -845,7 +1090,7 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
 
       if (sources.size() == 0) {
         // Reset the flag to either NEEDED or ASSUMED_GOOD
-        if (autoQC.getOverallFlag().moreSignificantThan(Flag.GOOD)) {
+        if (autoQC().getOverallFlag().moreSignificantThan(Flag.GOOD)) {
           userQCFlag = Flag.NEEDED;
         } else {
           userQCFlag = Flag.ASSUMED_GOOD;
@@ -870,7 +1115,7 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
 
       if (sources.size() == 0) {
         // Reset the flag to either NEEDED or ASSUMED_GOOD
-        if (autoQC.getOverallFlag().moreSignificantThan(Flag.GOOD)) {
+        if (autoQC().getOverallFlag().moreSignificantThan(Flag.GOOD)) {
           userQCFlag = Flag.NEEDED;
         } else {
           userQCFlag = Flag.ASSUMED_GOOD;
@@ -885,8 +1130,31 @@ public class SensorValue implements Comparable<SensorValue>, Cloneable {
     }
   }
 
+  /**
+   * Determine whether or not this value is a text value, i.e. it is not empty
+   * and cannot be parsed as a number.
+   *
+   * @return {@code true} if the value is text; {@code false} otherwise.
+   */
+  protected boolean isText() {
+    return parseState == NOT_NUMERIC;
+  }
+
+  /**
+   * Replace the value's {@link String} with an identical one that is shared
+   * with other values, to save memory.
+   *
+   * @param sharedValue
+   *          The shared {@link String}. Must be equal to the current value.
+   */
+  protected void shareValue(String sharedValue) {
+    if (sharedValue.equals(value)) {
+      value = sharedValue;
+    }
+  }
+
   public boolean isNumeric() {
-    return StringUtils.isNumeric(value);
+    return parseState == PARSED_NUMERIC;
   }
 
   public boolean isPosition() {
@@ -152,9 +152,17 @@ public class SensorValuesList {
   private int measurementMode = -1;
 
   /**
-   * A cache of the timestamps of all the {@link SensorValue}s in the list.
+   * An array based index of the list's timestamps, used for searching.
+   *
+   * <p>
+   * The field is volatile so the index can be built by one of the parallel
+   * data reduction tasks and safely used by the others. If two tasks build it
+   * at the same time, one copy is discarded.
+   * </p>
+   *
+   * @see #getTimeIndex()
    */
-  private List<LocalDateTime> rawTimesCache = null;
+  private volatile SensorValuesTimeIndex timeIndex = null;
 
   /**
    * The set of values to be returned to the rest of the application from this
@@ -318,9 +326,16 @@ public class SensorValuesList {
       }
     }
 
-    // Reset list properties for recalculation
+    resetCaches();
+  }
+
+  /**
+   * Reset the list properties that are calculated from its contents, so they
+   * will be recalculated when they are next needed.
+   */
+  private void resetCaches() {
     measurementMode = -1;
-    rawTimesCache = null;
+    timeIndex = null;
     outputValues = null;
     valueTimesCache = null;
   }
@@ -365,7 +380,12 @@ public class SensorValuesList {
    * @return If the list was changed.
    */
   public boolean remove(SensorValue sensorValue) {
-    return list.remove(sensorValue);
+    boolean removed = list.remove(sensorValue);
+    if (removed) {
+      resetCaches();
+    }
+
+    return removed;
   }
 
   /**
@@ -727,15 +747,28 @@ public class SensorValuesList {
 
   /**
    * Get a list of the timestamps of all the {@link SensorValue}s in the list.
+   * The list is built on each call and is not cached.
    *
    * return The value times.
    */
   public List<LocalDateTime> getRawTimes() {
-    if (null == rawTimesCache) {
-      rawTimesCache = list.stream().map(SensorValue::getTime).toList();
+    return list.stream().map(SensorValue::getTime).toList();
+  }
+
+  /**
+   * Get the array based index of the list's timestamps. The index is built
+   * the first time it is requested after the list is changed.
+   *
+   * @return The time index.
+   */
+  public SensorValuesTimeIndex getTimeIndex() {
+    SensorValuesTimeIndex index = timeIndex;
+    if (null == index) {
+      index = new SensorValuesTimeIndex(list);
+      timeIndex = index;
     }
 
-    return rawTimesCache;
+    return index;
   }
 
   /**
@@ -1298,7 +1331,7 @@ public class SensorValuesList {
 
     List<SensorValue> result = new ArrayList<SensorValue>();
 
-    int currentIndex = Collections.binarySearch(getRawTimes(), start);
+    int currentIndex = getTimeIndex().search(start);
 
     // If we didn't get an exact match, move to the index after the returned
     // insertion point.
@@ -1332,7 +1365,7 @@ public class SensorValuesList {
    *         not one.
    */
   public SensorValue getRawSensorValue(LocalDateTime time) {
-    int searchIndex = Collections.binarySearch(getRawTimes(), time);
+    int searchIndex = getTimeIndex().search(time);
     return searchIndex < 0 ? null : list.get(searchIndex);
   }
 
@@ -1354,7 +1387,7 @@ public class SensorValuesList {
   public List<SensorValue> getClosestSensorValues(LocalDateTime time) {
     List<SensorValue> result = new ArrayList<SensorValue>(2);
 
-    int searchIndex = Collections.binarySearch(getRawTimes(), time);
+    int searchIndex = getTimeIndex().search(time);
     if (searchIndex >= 0) {
       result.add(list.get(searchIndex));
     } else {
@@ -1500,7 +1533,8 @@ public class SensorValuesList {
     List<SensorValue> usedValues = new ArrayList<SensorValue>();
 
     // Search for the start time
-    int startSearchIndex = Collections.binarySearch(getRawTimes(), start);
+    SensorValuesTimeIndex timeIndex = getTimeIndex();
+    int startSearchIndex = timeIndex.search(start);
 
     int currentIndex;
     if (startSearchIndex >= 0) {
@@ -1514,9 +1548,9 @@ public class SensorValuesList {
     }
 
     // Get all the values between the start and end times
-    while (currentIndex < getRawTimes().size()
-      && !getRawTimes().get(currentIndex).isAfter(end)) {
-      usedValues.add(list.get(currentIndex));
+    while (currentIndex < timeIndex.size()
+      && !timeIndex.getSensorValue(currentIndex).getTime().isAfter(end)) {
+      usedValues.add(timeIndex.getSensorValue(currentIndex));
       currentIndex++;
     }
 
@@ -1568,7 +1602,7 @@ public class SensorValuesList {
    *         specified timestamp; {@code false} otherwise.
    */
   public boolean containsTime(LocalDateTime time) {
-    return Collections.binarySearch(getRawTimes(), time) >= 0;
+    return getTimeIndex().search(time) >= 0;
   }
 
   /**
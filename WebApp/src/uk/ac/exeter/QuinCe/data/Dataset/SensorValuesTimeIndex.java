@@ -0,0 +1,126 @@
+package uk.ac.exeter.QuinCe.data.Dataset;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+
+/**
+ * An array based index of the timestamps in a {@link SensorValuesList}.
+ *
+ * <p>
+ * The timestamps of the {@link SensorValue}s are held as epoch milliseconds in
+ * a primitive array, so they can be searched without comparing
+ * {@link LocalDateTime} objects. The values themselves are not copied; they
+ * are read from the list's {@link SensorValue} objects.
+ * </p>
+ *
+ * <p>
+ * The index is a snapshot of the list at the time it was built. The
+ * {@link SensorValuesList} discards it whenever values are added or removed.
+ * </p>
+ *
+ * @see SensorValuesList#getTimeIndex()
+ */
+public class SensorValuesTimeIndex {
+
+  /**
+   * The {@link SensorValue}s in the index, in time order. This is the list's
+   * own storage, not a copy.
+   */
+  private final List<SensorValue> sensorValues;
+
+  /**
+   * The timestamps of the {@link #sensorValues} in epoch milliseconds.
+   */
+  private final long[] times;
+
+  /**
+   * Build an index from a list of {@link SensorValue}s. The values must be in
+   * time order, and the list must not be changed while the index is in use.
+   *
+   * @param list
+   *          The values.
+   */
+  protected SensorValuesTimeIndex(List<SensorValue> list) {
+    sensorValues = list;
+    times = new long[list.size()];
+
+    for (int i = 0; i < times.length; i++) {
+      times[i] = DateTimeUtils.dateToLong(list.get(i).getTime());
+    }
+  }
+
+  /**
+   * Get the number of values in the index.
+   *
+   * @return The number of values.
+   */
+  public int size() {
+    return times.length;
+  }
+
+  /**
+   * Get the timestamp of the value at the specified index.
+   *
+   * @param index
+   *          The index.
+   * @return The timestamp in epoch milliseconds.
+   */
+  public long getTime(int index) {
+    return times[index];
+  }
+
+  /**
+   * Get the {@link SensorValue} at the specified index.
+   *
+   * @param index
+   *          The index.
+   * @return The {@link SensorValue}.
+   */
+  public SensorValue getSensorValue(int index) {
+    return sensorValues.get(index);
+  }
+
+  /**
+   * Search for the value with the specified timestamp.
+   *
+   * <p>
+   * The result follows the same rules as
+   * {@link java.util.Collections#binarySearch(List, Object)}: if a value with
+   * the timestamp exists its index is returned; otherwise the result is
+   * {@code (-(insertion point) - 1)}.
+   * </p>
+   *
+   * @param time
+   *          The timestamp.
+   * @return The search result.
+   */
+  public int search(LocalDateTime time) {
+    long millis = DateTimeUtils.dateToLong(time);
+
+    int low = 0;
+    int high = times.length - 1;
+
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+
+      int comparison = Long.compare(times[mid], millis);
+
+      // Timestamps in the same millisecond are compared in full
+      if (comparison == 0) {
+        comparison = sensorValues.get(mid).getTime().compareTo(time);
+      }
+
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+
+    return -(low + 1);
+  }
+}
@@ -30,7 +30,7 @@ public class SimpleMeasurementLocator extends MeasurementLocator {
         .getColumnIds(variable.getCoreSensorType()));
 
       DatasetSensorValues allSensorValues = DataSetDataDB.getSensorValues(conn,
-        instrument, dataset.getId(), false, true);
+        instrument, dataset, false, true);
 
       // Get all the sensor values for the identified columns
       SensorValuesList sensorValues = allSensorValues
@@ -44,7 +44,7 @@ public class WaterVapourMixingRatioMeasurementLocator
         .getInstrumentVariable("Water Vapour Mixing Ratio");
 
       DatasetSensorValues sensorValues = DataSetDataDB.getSensorValues(conn,
-        instrument, dataset.getId(), false, true);
+        instrument, dataset, false, true);
 
       SensorValuesList runTypes = sensorValues.getRunTypes();
 
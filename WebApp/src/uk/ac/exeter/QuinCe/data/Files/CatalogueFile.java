@@ -0,0 +1,91 @@
+package uk.ac.exeter.QuinCe.data.Files;
+
+import java.time.LocalDateTime;
+import java.util.Properties;
+
+import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
+
+/**
+ * The details of a data file held in the {@link DataFileCatalogue}.
+ *
+ * <p>
+ * These are the details stored in the {@code data_file} table, without the
+ * file contents. The properties must not be modified;
+ * {@link #toDataFile(String, FileDefinition)} gives each {@link DataFile} its
+ * own copy.
+ * </p>
+ */
+record CatalogueFile(long id, long fileDefinitionId, String filename,
+  LocalDateTime rawStart, LocalDateTime rawEnd, int recordCount,
+  Properties properties) {
+
+  /**
+   * Make a catalogue entry from a {@link DataFile}.
+   *
+   * @param dataFile
+   *          The data file.
+   * @return The catalogue entry.
+   * @throws DataFileException
+   *           If the file's record count cannot be determined.
+   */
+  static CatalogueFile of(DataFile dataFile) throws DataFileException {
+    Properties properties = new Properties();
+    properties.putAll(dataFile.getProperties());
+
+    return new CatalogueFile(dataFile.getDatabaseId(),
+      dataFile.getFileDefinition().getDatabaseId(), dataFile.getFilename(),
+      dataFile.getRawStartTime(), dataFile.getRawEndTime(),
+      dataFile.getRecordCount(), properties);
+  }
+
+  /**
+   * Get the file's time offset in seconds.
+   *
+   * @return The time offset.
+   */
+  int timeOffset() {
+    String offset = properties.getProperty(DataFile.TIME_OFFSET_PROP);
+    return null == offset ? 0 : Integer.parseInt(offset);
+  }
+
+  /**
+   * Get the time of the first record in the file.
+   *
+   * @param applyOffset
+   *          Indicates whether or not the file's time offset should be
+   *          applied.
+   * @return The start time.
+   */
+  LocalDateTime start(boolean applyOffset) {
+    return applyOffset ? rawStart.plusSeconds(timeOffset()) : rawStart;
+  }
+
+  /**
+   * Get the time of the last record in the file.
+   *
+   * @param applyOffset
+   *          Indicates whether or not the file's time offset should be
+   *          applied.
+   * @return The end time.
+   */
+  LocalDateTime end(boolean applyOffset) {
+    return applyOffset ? rawEnd.plusSeconds(timeOffset()) : rawEnd;
+  }
+
+  /**
+   * Create a {@link DataFile} object for this file.
+   *
+   * @param fileStore
+   *          The file store location.
+   * @param fileDefinition
+   *          The file's definition.
+   * @return The {@link DataFile}.
+   */
+  DataFile toDataFile(String fileStore, FileDefinition fileDefinition) {
+    Properties fileProperties = new Properties();
+    fileProperties.putAll(properties);
+
+    return new DataFile(fileStore, id, fileDefinition, filename, rawStart,
+      rawEnd, recordCount, fileProperties);
+  }
+}
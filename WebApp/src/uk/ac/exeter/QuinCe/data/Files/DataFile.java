@@ -1,6 +1,9 @@
 package uk.ac.exeter.QuinCe.data.Files;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -795,15 +798,22 @@ public class DataFile implements TimeRange {
    * Set the contents of the data file
    *
    * @param contents
-   *          The contents
+   *          The lines of the file
    */
-  protected void setContents(String contents) {
-    this.contents = new ArrayList<String>(
-      Arrays.asList(contents.split("[\\r\\n]+")));
-
+  protected void setContents(List<String> contents) {
+    this.contents = contents;
     StringUtils.removeBlankTailLines(this.contents);
   }
 
+  /**
+   * Release the contents of the file from memory. They will be reloaded from
+   * the file store if they are needed again. Files created from uploaded
+   * contents that have not yet been stored must not be unloaded.
+   */
+  public void unloadContents() {
+    contents = null;
+  }
+
   /**
    * Get the raw bytes for a file
    *
@@ -815,6 +825,58 @@ public class DataFile implements TimeRange {
     return FileStore.getBytes(fileStore, this);
   }
 
+  /**
+   * Open a stream of the file's contents directly from the file store. The
+   * stored file is decompressed as it is read if necessary, so the file is
+   * never held in memory in full. The caller must close the stream.
+   *
+   * @return The stream
+   * @throws IOException
+   *           If the file cannot be opened
+   */
+  public InputStream getInputStream() throws IOException {
+    return FileStore.openInputStream(fileStore, this);
+  }
+
+  /**
+   * Open a reader for the file's contents directly from the file store. The
+   * caller must close the reader.
+   *
+   * @return The reader
+   * @throws IOException
+   *           If the file cannot be opened
+   * @see #getInputStream()
+   */
+  public BufferedReader getReader() throws IOException {
+    return FileStore.openReader(fileStore, this);
+  }
+
+  /**
+   * Write the raw bytes of the file to a channel directly from the file store,
+   * without loading the file into memory. The channel is not closed.
+   *
+   * @param target
+   *          The channel to write to
+   * @return The number of bytes written
+   * @throws IOException
+   *           If the file cannot be read or the channel cannot be written
+   */
+  public long transferBytes(WritableByteChannel target) throws IOException {
+    return FileStore.transferBytes(fileStore, this, target);
+  }
+
+  /**
+   * Determine whether or not the stored file ends with a newline.
+   *
+   * @return {@code true} if the file ends with a newline; {@code false}
+   *         otherwise
+   * @throws IOException
+   *           If the file cannot be read
+   */
+  public boolean endsWithNewline() throws IOException {
+    return FileStore.endsWithNewline(fileStore, this);
+  }
+
   /**
    * Load the contents of the data file from disk, if they are not already
    * loaded
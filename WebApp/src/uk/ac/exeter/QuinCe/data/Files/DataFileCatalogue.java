@@ -0,0 +1,406 @@
+package uk.ac.exeter.QuinCe.data.Files;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * In-memory catalogue of the data files for each instrument.
+ *
+ * <p>
+ * Many parts of the application need to know which files an instrument has
+ * and which time periods they cover: the upload page checks new files against
+ * the existing ones, the datasets page draws a timeline of them, and the
+ * dataset creation jobs look for files covering a period. The catalogue
+ * holds the details of each instrument's files (but not their contents) so
+ * these questions can be answered without querying the database. The files
+ * are held in {@link FileIntervalTree}s so overlapping files can be found
+ * quickly for instruments with many files.
+ * </p>
+ *
+ * <p>
+ * An instrument's files are loaded the first time they are requested. After
+ * that the catalogue is kept up to date by {@link DataFileDB} as files are
+ * stored and deleted, so all changes to data files must be made through
+ * {@link DataFileDB}.
+ * </p>
+ *
+ * <p>
+ * The catalogue is enabled by the {@link #ENABLED_PROPERTY} application
+ * configuration property.
+ * </p>
+ */
+public class DataFileCatalogue {
+
+  /**
+   * The application configuration property that enables the catalogue.
+   */
+  public static final String ENABLED_PROPERTY = "files.catalogue";
+
+  /**
+   * The singleton instance of the catalogue.
+   */
+  private static DataFileCatalogue instance = null;
+
+  /**
+   * Indicates whether or not the catalogue is enabled.
+   */
+  private final boolean enabled;
+
+  /**
+   * The files for each instrument, keyed by instrument ID.
+   */
+  private final ConcurrentHashMap<Long, InstrumentFiles> instruments = new ConcurrentHashMap<Long, InstrumentFiles>();
+
+  /**
+   * The instrument that owns each file definition, keyed by file definition
+   * ID. File definitions never move between instruments, so entries only need
+   * to be removed when an instrument is deleted.
+   */
+  private final ConcurrentHashMap<Long, Long> definitionInstruments = new ConcurrentHashMap<Long, Long>();
+
+  /**
+   * Counter incremented on every change to the files. Used to prevent files
+   * that were loaded while files were being changed from being added to the
+   * catalogue.
+   */
+  private final AtomicLong changes = new AtomicLong(0);
+
+  /**
+   * Create the catalogue.
+   *
+   * @param enabled
+   *          Indicates whether or not the catalogue is enabled.
+   */
+  protected DataFileCatalogue(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Get the catalogue instance, creating it from the application
+   * configuration if required.
+   *
+   * @return The catalogue.
+   */
+  public static synchronized DataFileCatalogue getInstance() {
+    if (null == instance) {
+      ResourceManager resourceManager = ResourceManager.getInstance();
+      Properties config = null == resourceManager ? null
+        : resourceManager.getConfig();
+
+      instance = new DataFileCatalogue(null != config
+        && Boolean.parseBoolean(config.getProperty(ENABLED_PROPERTY)));
+    }
+
+    return instance;
+  }
+
+  /**
+   * Discard the catalogue instance and all its entries.
+   */
+  public static synchronized void destroy() {
+    instance = null;
+  }
+
+  /**
+   * Determine whether or not the catalogue is enabled.
+   *
+   * @return {@code true} if the catalogue is enabled; {@code false} if it is
+   *         not.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Get the files for an instrument, loading them from the database if
+   * necessary.
+   *
+   * @param conn
+   *          A database connection.
+   * @param instrumentId
+   *          The instrument's database ID.
+   * @return The instrument's files.
+   * @throws DatabaseException
+   *           If the files cannot be loaded.
+   */
+  protected InstrumentFiles getInstrumentFiles(Connection conn,
+    long instrumentId) throws DatabaseException {
+
+    InstrumentFiles files = instruments.get(instrumentId);
+
+    if (null == files) {
+      long startChanges = changes.get();
+
+      Map<Long, List<CatalogueFile>> definitionFiles = DataFileDB
+        .loadCatalogueFiles(conn, instrumentId);
+
+      files = new InstrumentFiles(definitionFiles);
+
+      synchronized (this) {
+        if (startChanges == changes.get()) {
+          InstrumentFiles existing = instruments.putIfAbsent(instrumentId,
+            files);
+          if (null != existing) {
+            files = existing;
+          } else {
+            definitionFiles.keySet()
+              .forEach(d -> definitionInstruments.put(d, instrumentId));
+          }
+        }
+      }
+    }
+
+    return files;
+  }
+
+  /**
+   * Get the ID of the instrument that owns a file definition, if it is known
+   * to the catalogue.
+   *
+   * @param fileDefinitionId
+   *          The file definition's database ID.
+   * @return The instrument ID, or {@code null} if it is not known.
+   */
+  protected Long getInstrumentId(long fileDefinitionId) {
+    return definitionInstruments.get(fileDefinitionId);
+  }
+
+  /**
+   * Record the owner of a file definition.
+   *
+   * @param fileDefinitionId
+   *          The file definition's database ID.
+   * @param instrumentId
+   *          The instrument's database ID.
+   */
+  protected void setInstrumentId(long fileDefinitionId, long instrumentId) {
+    definitionInstruments.put(fileDefinitionId, instrumentId);
+  }
+
+  /**
+   * Add or replace a file in the catalogue. Must be called after the file has
+   * been stored in the database.
+   *
+   * @param instrumentId
+   *          The database ID of the instrument that owns the file.
+   * @param file
+   *          The file details.
+   */
+  protected synchronized void fileStored(long instrumentId,
+    CatalogueFile file) {
+    changes.incrementAndGet();
+
+    InstrumentFiles files = instruments.get(instrumentId);
+    if (null != files) {
+      files.put(file);
+    }
+  }
+
+  /**
+   * Remove a file from the catalogue. Must be called after the file has been
+   * deleted from the database.
+   *
+   * @param instrumentId
+   *          The database ID of the instrument that owns the file.
+   * @param fileId
+   *          The file's database ID.
+   */
+  protected synchronized void fileDeleted(long instrumentId, long fileId) {
+    changes.incrementAndGet();
+
+    InstrumentFiles files = instruments.get(instrumentId);
+    if (null != files) {
+      files.remove(fileId);
+    }
+  }
+
+  /**
+   * Remove an instrument from the catalogue, so its files will be loaded from
+   * the database the next time they are needed.
+   *
+   * @param instrumentId
+   *          The instrument's database ID.
+   */
+  public synchronized void invalidate(long instrumentId) {
+    changes.incrementAndGet();
+    instruments.remove(instrumentId);
+    definitionInstruments.values().removeIf(i -> i == instrumentId);
+  }
+
+  /**
+   * The files for a single instrument.
+   *
+   * <p>
+   * The interval trees are built when they are first needed, and rebuilt
+   * after the files change.
+   * </p>
+   */
+  protected static class InstrumentFiles {
+
+    /**
+     * The files for each file definition, keyed by file definition ID.
+     */
+    private final Map<Long, Map<Long, CatalogueFile>> definitionFiles = new HashMap<Long, Map<Long, CatalogueFile>>();
+
+    /**
+     * Interval trees of the files for each file definition, with raw times.
+     */
+    private final Map<Long, FileIntervalTree> rawTrees = new HashMap<Long, FileIntervalTree>();
+
+    /**
+     * Interval trees of the files for each file definition, with offset times.
+     */
+    private final Map<Long, FileIntervalTree> offsetTrees = new HashMap<Long, FileIntervalTree>();
+
+    /**
+     * Interval tree of all the instrument's files, with raw times.
+     */
+    private FileIntervalTree allRawTree = null;
+
+    /**
+     * Interval tree of all the instrument's files, with offset times.
+     */
+    private FileIntervalTree allOffsetTree = null;
+
+    /**
+     * Create the catalogue for an instrument.
+     *
+     * @param files
+     *          The files, keyed by file definition ID.
+     */
+    private InstrumentFiles(Map<Long, List<CatalogueFile>> files) {
+      for (Map.Entry<Long, List<CatalogueFile>> entry : files.entrySet()) {
+        Map<Long, CatalogueFile> definitionMap = new HashMap<Long, CatalogueFile>();
+        entry.getValue().forEach(f -> definitionMap.put(f.id(), f));
+        definitionFiles.put(entry.getKey(), definitionMap);
+      }
+    }
+
+    /**
+     * Add or replace a file.
+     *
+     * @param file
+     *          The file.
+     */
+    private synchronized void put(CatalogueFile file) {
+      // A replaced file may have moved to a different definition
+      definitionFiles.values().forEach(m -> m.remove(file.id()));
+
+      definitionFiles
+        .computeIfAbsent(file.fileDefinitionId(),
+          d -> new HashMap<Long, CatalogueFile>())
+        .put(file.id(), file);
+
+      clearTrees();
+    }
+
+    /**
+     * Remove a file.
+     *
+     * @param fileId
+     *          The file's database ID.
+     */
+    private synchronized void remove(long fileId) {
+      definitionFiles.values().forEach(m -> m.remove(fileId));
+      clearTrees();
+    }
+
+    /**
+     * Discard the interval trees after the files have changed.
+     */
+    private void clearTrees() {
+      rawTrees.clear();
+      offsetTrees.clear();
+      allRawTree = null;
+      allOffsetTree = null;
+    }
+
+    /**
+     * Get the interval tree for a file definition.
+     *
+     * @param fileDefinitionId
+     *          The file definition's database ID.
+     * @param applyOffset
+     *          Indicates whether or not the files' time offsets should be
+     *          applied.
+     * @return The interval tree.
+     */
+    protected synchronized FileIntervalTree getTree(long fileDefinitionId,
+      boolean applyOffset) {
+
+      Map<Long, FileIntervalTree> trees = applyOffset ? offsetTrees
+        : rawTrees;
+
+      return trees.computeIfAbsent(fileDefinitionId,
+        d -> new FileIntervalTree(
+          definitionFiles.getOrDefault(d, new HashMap<Long, CatalogueFile>())
+            .values(),
+          applyOffset));
+    }
+
+    /**
+     * Get the interval tree for all the instrument's files.
+     *
+     * @param applyOffset
+     *          Indicates whether or not the files' time offsets should be
+     *          applied.
+     * @return The interval tree.
+     */
+    protected synchronized FileIntervalTree getTree(boolean applyOffset) {
+      if (applyOffset) {
+        if (null == allOffsetTree) {
+          allOffsetTree = new FileIntervalTree(getAllFiles(), true);
+        }
+        return allOffsetTree;
+      } else {
+        if (null == allRawTree) {
+          allRawTree = new FileIntervalTree(getAllFiles(), false);
+        }
+        return allRawTree;
+      }
+    }
+
+    /**
+     * Get all the instrument's files.
+     *
+     * @return The files.
+     */
+    private List<CatalogueFile> getAllFiles() {
+      List<CatalogueFile> result = new ArrayList<CatalogueFile>();
+      definitionFiles.values().forEach(m -> result.addAll(m.values()));
+      return result;
+    }
+
+    /**
+     * Get the number of files for the instrument.
+     *
+     * @return The number of files.
+     */
+    protected synchronized int size() {
+      return definitionFiles.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Determine whether or not the instrument has a file with the specified
+     * name.
+     *
+     * @param filename
+     *          The filename.
+     * @return {@code true} if there is a file with the name; {@code false} if
+     *         there is not.
+     */
+    protected synchronized boolean hasFileWithName(String filename) {
+      return definitionFiles.values().stream().anyMatch(
+        m -> m.values().stream().anyMatch(f -> f.filename().equals(filename)));
+    }
+  }
+}
@@ -6,6 +6,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
@@ -170,6 +171,32 @@ public class DataFileDB {
     + "(SELECT id FROM file_definition WHERE instrument_id = ?) "
     + "ORDER BY modified DESC LIMIT 1";
 
+  private static final String COUNT_MODIFIED_FILES_QUERY = "SELECT "
+    + "COUNT(*) FROM data_file WHERE file_definition_id IN "
+    + "(SELECT id FROM file_definition WHERE instrument_id = ?) "
+    + "AND start_date <= ? AND modified > ?";
+
+  /**
+   * Query to get the details of all the files for an instrument for the
+   * {@link DataFileCatalogue}. File definitions without any files are
+   * included with {@code null} file details.
+   *
+   * @see #loadCatalogueFiles(Connection, long)
+   */
+  private static final String GET_CATALOGUE_FILES_QUERY = "SELECT "
+    + "d.id, f.id, f.filename, f.start_date, f.end_date, f.record_count, "
+    + "f.properties FROM file_definition AS d "
+    + "LEFT JOIN data_file AS f ON f.file_definition_id = d.id "
+    + "WHERE d.instrument_id = ? ORDER BY f.start_date ASC";
+
+  /**
+   * Query to get the instrument that owns a file definition.
+   *
+   * @see #getDefinitionInstrument(Connection, long)
+   */
+  private static final String GET_DEFINITION_INSTRUMENT_QUERY = "SELECT "
+    + "instrument_id FROM file_definition WHERE id = ?";
+
   /**
    * Store a file in the database and in the file store
    *
@@ -187,7 +214,7 @@ public class DataFileDB {
    *           If an error occurs while storing the file
    * @throws RecordNotFoundException
    * @see #ADD_FILE_STATEMENT
-   * @see FileStore#storeFile(String, DataFile)
+   * @see FileStore#storeFile(String, FileStoreCodec, DataFile)
    */
   public static void storeFile(DataSource dataSource, Properties appConfig,
     DataFile dataFile, long replacementId) throws MissingParamException,
@@ -234,7 +261,7 @@ public class DataFileDB {
    * @throws DatabaseException
    *           If an error occurs while storing the file
    * @see #ADD_FILE_STATEMENT
-   * @see FileStore#storeFile(String, DataFile)
+   * @see FileStore#storeFile(String, FileStoreCodec, DataFile)
    */
   private static void storeNewFile(Connection conn, Properties appConfig,
     DataFile dataFile) throws DatabaseException, FileExistsException {
@@ -250,6 +277,12 @@ public class DataFileDB {
           dataFile.getRawStartTime(), dataFile.getRawEndTime());
       }
 
+      DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+      long instrumentId = catalogue.isEnabled()
+        ? getDefinitionInstrument(conn,
+          dataFile.getFileDefinition().getDatabaseId())
+        : -1;
+
       boolean initialAutoCommit = conn.getAutoCommit();
 
       if (initialAutoCommit) {
@@ -273,9 +306,15 @@ public class DataFileDB {
         dataFile.setDatabaseId(generatedKeys.getLong(1));
 
         // Store the file
-        FileStore.storeFile(appConfig.getProperty("filestore"), dataFile);
+        FileStore.storeFile(appConfig.getProperty("filestore"),
+          FileStoreCodec.fromConfig(appConfig), dataFile);
+        CatalogueFile catalogueFile = CatalogueFile.of(dataFile);
 
         conn.commit();
+
+        if (catalogue.isEnabled()) {
+          catalogue.fileStored(instrumentId, catalogueFile);
+        }
       }
 
       if (initialAutoCommit) {
@@ -312,7 +351,7 @@ public class DataFileDB {
    * @throws DatabaseException
    *           If an error occurs while storing the file
    * @see #ADD_FILE_STATEMENT
-   * @see FileStore#storeFile(String, DataFile)
+   * @see FileStore#storeFile(String, FileStoreCodec, DataFile)
    */
   private static void replaceFile(Connection conn, Properties appConfig,
     DataFile dataFile, long replacementId)
@@ -336,6 +375,12 @@ public class DataFileDB {
       }
 
       if (storeFile) {
+        DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+        long instrumentId = catalogue.isEnabled()
+          ? getDefinitionInstrument(conn,
+            dataFile.getFileDefinition().getDatabaseId())
+          : -1;
+
         boolean initialAutoCommit = conn.getAutoCommit();
 
         if (initialAutoCommit) {
@@ -355,10 +400,16 @@ public class DataFileDB {
         dataFile.setDatabaseId(replacementId);
 
         // Store the file - automatically replaces the old one
-        FileStore.storeFile(appConfig.getProperty("filestore"), dataFile);
+        FileStore.storeFile(appConfig.getProperty("filestore"),
+          FileStoreCodec.fromConfig(appConfig), dataFile);
+        CatalogueFile catalogueFile = CatalogueFile.of(dataFile);
 
         conn.commit();
 
+        if (catalogue.isEnabled()) {
+          catalogue.fileStored(instrumentId, catalogueFile);
+        }
+
         if (initialAutoCommit) {
           conn.setAutoCommit(true);
         }
@@ -483,6 +534,13 @@ public class DataFileDB {
       InstrumentFileSet fileDefinitions = InstrumentDB.getFileDefinitions(conn,
         instrumentId);
 
+      DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+      if (null != instrumentId && catalogue.isEnabled()) {
+        return makeDataFiles(catalogue.getInstrumentFiles(conn, instrumentId)
+          .getTree(false).getAll(), appConfig.getProperty("filestore"),
+          fileDefinitions);
+      }
+
       if (null != instrumentId) {
         stmt = conn.prepareStatement(GET_FILES_BY_INSTRUMENT_QUERY);
       } else {
@@ -561,6 +619,14 @@ public class DataFileDB {
     List<DataFile> fileInfo = new ArrayList<DataFile>();
 
     try {
+      DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+      if (catalogue.isEnabled()) {
+        return makeDataFiles(
+          getCatalogueFiles(conn, fileDefinition.getDatabaseId())
+            .getTree(fileDefinition.getDatabaseId(), false).getAll(),
+          appConfig.getProperty("filestore"), fileDefinition);
+      }
+
       stmt = conn.prepareStatement(GET_FILES_BY_DEFINITION_QUERY);
       stmt.setLong(1, fileDefinition.getDatabaseId());
 
@@ -611,6 +677,10 @@ public class DataFileDB {
     PreparedStatement stmt = null;
     ResultSet records = null;
 
+    // The file definitions for each instrument, so they are only retrieved
+    // once per instrument
+    Map<Long, InstrumentFileSet> instrumentFileSets = new HashMap<Long, InstrumentFileSet>();
+
     try {
 
       stmt = conn.prepareStatement(
@@ -621,8 +691,8 @@ public class DataFileDB {
 
       records = stmt.executeQuery();
       while (records.next()) {
-        files
-          .add(makeDataFile(records, appConfig.getProperty("filestore"), conn));
+        files.add(makeDataFile(records, appConfig.getProperty("filestore"),
+          conn, instrumentFileSets));
       }
 
     } catch (SQLException e) {
@@ -648,6 +718,9 @@ public class DataFileDB {
    *          The file store location
    * @param conn
    *          A database connection
+   * @param instrumentFileSets
+   *          The file definitions already retrieved for each instrument.
+   *          Definitions for new instruments are added to the map.
    * @return The DataFile object
    * @throws SQLException
    *           If the record cannot be read
@@ -655,13 +728,18 @@ public class DataFileDB {
    *           If any sub-queries fail
    */
   private static DataFile makeDataFile(ResultSet record, String fileStore,
-    Connection conn) throws SQLException, DatabaseException {
+    Connection conn, Map<Long, InstrumentFileSet> instrumentFileSets)
+    throws SQLException, DatabaseException {
     DataFile result = null;
 
     try {
       long instrumentId = record.getLong(8);
-      InstrumentFileSet files = InstrumentDB.getFileDefinitions(conn,
-        instrumentId);
+      InstrumentFileSet files = instrumentFileSets.get(instrumentId);
+      if (null == files) {
+        files = InstrumentDB.getFileDefinitions(conn, instrumentId);
+        instrumentFileSets.put(instrumentId, files);
+      }
+
       result = makeDataFile(record, fileStore, files);
     } catch (SQLException e) {
       throw e;
@@ -779,6 +857,12 @@ public class DataFileDB {
     PreparedStatement stmt = null;
 
     try {
+      DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+      long instrumentId = catalogue.isEnabled()
+        ? getDefinitionInstrument(conn,
+          dataFile.getFileDefinition().getDatabaseId())
+        : -1;
+
       conn.setAutoCommit(false);
 
       // Send out sub-record delete requests
@@ -791,6 +875,10 @@ public class DataFileDB {
 
       conn.commit();
 
+      if (catalogue.isEnabled()) {
+        catalogue.fileDeleted(instrumentId, dataFile.getDatabaseId());
+      }
+
     } catch (SQLException e) {
       DatabaseUtils.rollBack(conn);
       throw new DatabaseException(
@@ -861,6 +949,20 @@ public class DataFileDB {
     MissingParam.checkMissing(start, "start");
     MissingParam.checkMissing(end, "end");
 
+    DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+    if (catalogue.isEnabled()) {
+      if (end.isBefore(start)) {
+        throw new IllegalArgumentException("End must be >= start date");
+      }
+
+      return makeDataFiles(
+        getCatalogueFiles(conn, fileDefinition.getDatabaseId())
+          .getTree(fileDefinition.getDatabaseId(), applyOffset)
+          .getOverlapping(start, end),
+        ResourceManager.getInstance().getConfig().getProperty("filestore"),
+        fileDefinition);
+    }
+
     List<DataFile> allInstrumentFiles = getFiles(conn,
       ResourceManager.getInstance().getConfig(), fileDefinition);
 
@@ -924,6 +1026,17 @@ public class DataFileDB {
     MissingParam.checkMissing(start, "start");
     MissingParam.checkMissing(end, "end");
 
+    DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+    if (catalogue.isEnabled()) {
+      if (end.isBefore(start)) {
+        throw new IllegalArgumentException("End must be >= start date");
+      }
+
+      return catalogue.getInstrumentFiles(conn, instrumentId)
+        .getTree(applyOffset).getOverlapping(start, end).stream()
+        .map(CatalogueFile::id).collect(Collectors.toList());
+    }
+
     List<DataFile> allInstrumentFiles = getFiles(conn,
       ResourceManager.getInstance().getConfig(), instrumentId);
 
@@ -970,24 +1083,38 @@ public class DataFileDB {
         instrumentId);
       Map<FileDefinition, List<DataFile>> filesAfterDate = new HashMap<FileDefinition, List<DataFile>>();
 
+      DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+      DataFileCatalogue.InstrumentFiles catalogueFiles = catalogue.isEnabled()
+        ? catalogue.getInstrumentFiles(conn, instrumentId)
+        : null;
+
       // Get all the files after the specified date, grouped by file definition
       for (FileDefinition fileDefinition : fileDefinitions) {
-        List<DataFile> foundFiles = new ArrayList<DataFile>();
-
-        PreparedStatement stmt = conn
-          .prepareStatement(GET_FILES_AFTER_DATE_QUERY);
-        stmt.setLong(1, fileDefinition.getDatabaseId());
-        stmt.setLong(2, DateTimeUtils.dateToLong(time));
+        List<DataFile> foundFiles;
+
+        if (null != catalogueFiles) {
+          foundFiles = makeDataFiles(
+            catalogueFiles.getTree(fileDefinition.getDatabaseId(), false)
+              .getEndingAfter(time),
+            appConfig.getProperty("filestore"), fileDefinition);
+        } else {
+          foundFiles = new ArrayList<DataFile>();
+
+          PreparedStatement stmt = conn
+            .prepareStatement(GET_FILES_AFTER_DATE_QUERY);
+          stmt.setLong(1, fileDefinition.getDatabaseId());
+          stmt.setLong(2, DateTimeUtils.dateToLong(time));
+
+          ResultSet records = stmt.executeQuery();
+          while (records.next()) {
+            foundFiles.add(makeDataFile(records,
+              appConfig.getProperty("filestore"), fileDefinitions));
+          }
 
-        ResultSet records = stmt.executeQuery();
-        while (records.next()) {
-          foundFiles.add(makeDataFile(records,
-            appConfig.getProperty("filestore"), fileDefinitions));
+          statements.add(stmt);
+          resultSets.add(records);
         }
 
-        statements.add(stmt);
-        resultSets.add(records);
-
         // If no matching files are found, abort.
         if (foundFiles.size() == 0) {
           result = false;
@@ -1054,6 +1181,13 @@ public class DataFileDB {
 
     LocalDateTime result = null;
 
+    DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+    if (catalogue.isEnabled()) {
+      CatalogueFile lastFile = catalogue.getInstrumentFiles(conn, instrumentId)
+        .getTree(false).getLastEnding();
+      return null == lastFile ? null : lastFile.end(applyOffset);
+    }
+
     PreparedStatement stmt = null;
     ResultSet records = null;
 
@@ -1068,7 +1202,7 @@ public class DataFileDB {
         if (applyOffset) {
           Properties properties = new Gson().fromJson(records.getString(2),
             Properties.class);
-          result.plusSeconds(Integer
+          result = result.plusSeconds(Integer
             .parseInt(properties.getProperty(DataFile.TIME_OFFSET_PROP)));
         }
       }
@@ -1106,6 +1240,16 @@ public class DataFileDB {
     MissingParam.checkZeroPositive(instrumentId, "instrumentId");
     MissingParam.checkMissing(filename, "filename");
 
+    DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+    if (catalogue.isEnabled()) {
+      try (Connection conn = dataSource.getConnection()) {
+        return catalogue.getInstrumentFiles(conn, instrumentId)
+          .hasFileWithName(filename);
+      } catch (SQLException e) {
+        throw new DatabaseException("Error while searching for file", e);
+      }
+    }
+
     Connection conn = null;
     PreparedStatement stmt = null;
     ResultSet records = null;
@@ -1140,6 +1284,15 @@ public class DataFileDB {
 
     int fileCount = 0;
 
+    DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+    if (catalogue.isEnabled()) {
+      try (Connection conn = dataSource.getConnection()) {
+        return catalogue.getInstrumentFiles(conn, instrumentId).size();
+      } catch (SQLException e) {
+        throw new DatabaseException("Error while getting instrument files", e);
+      }
+    }
+
     try (Connection conn = dataSource.getConnection();
       PreparedStatement stmt = conn.prepareStatement(GET_FILE_COUNT_QUERY);) {
 
@@ -1216,4 +1369,225 @@ public class DataFileDB {
 
     return result;
   }
+
+  /**
+   * Determine whether any data files for an instrument containing data on or
+   * before the specified time have been added or modified since the specified
+   * date.
+   *
+   * @param conn
+   *          A database connection
+   * @param instrumentId
+   *          The instrument's database ID
+   * @param dataTime
+   *          The data time
+   * @param since
+   *          The modification date
+   * @return {@code true} if any matching files have been modified;
+   *         {@code false} otherwise
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
+  public static boolean hasModifiedFiles(Connection conn, long instrumentId,
+    LocalDateTime dataTime, LocalDateTime since)
+    throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkZeroPositive(instrumentId, "instrumentId");
+    MissingParam.checkMissing(dataTime, "dataTime");
+    MissingParam.checkMissing(since, "since");
+
+    boolean result = false;
+
+    try (PreparedStatement stmt = conn
+      .prepareStatement(COUNT_MODIFIED_FILES_QUERY)) {
+
+      stmt.setLong(1, instrumentId);
+      stmt.setLong(2, DateTimeUtils.dateToLong(dataTime));
+      stmt.setTimestamp(3, new Timestamp(DateTimeUtils.dateToLong(since)));
+
+      try (ResultSet records = stmt.executeQuery()) {
+        if (records.next()) {
+          result = records.getInt(1) > 0;
+        }
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while getting file modification dates",
+        e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Convert stored files to the codec set in the application configuration.
+   *
+   * @param appConfig
+   *          The application configuration
+   * @param limit
+   *          The maximum number of files to convert
+   * @return The number of files converted. If this is less than the limit,
+   *         all files have been converted.
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws IOException
+   *           If a file cannot be converted
+   * @see FileStore#convertFiles(String, FileStoreCodec, int)
+   */
+  public static int convertStoredFiles(Properties appConfig, int limit)
+    throws MissingParamException, IOException {
+
+    MissingParam.checkMissing(appConfig, "appConfig");
+    MissingParam.checkPositive(limit, "limit");
+
+    return FileStore.convertFiles(appConfig.getProperty("filestore"),
+      FileStoreCodec.fromConfig(appConfig), limit);
+  }
+
+  /**
+   * Load the details of all the files for an instrument for the
+   * {@link DataFileCatalogue}.
+   *
+   * @param conn
+   *          A database connection
+   * @param instrumentId
+   *          The instrument's database ID
+   * @return The files, grouped by file definition ID. Every file definition
+   *         for the instrument is included, even if it has no files.
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
+  protected static Map<Long, List<CatalogueFile>> loadCatalogueFiles(
+    Connection conn, long instrumentId) throws DatabaseException {
+
+    Map<Long, List<CatalogueFile>> result = new HashMap<Long, List<CatalogueFile>>();
+
+    try (PreparedStatement stmt = conn
+      .prepareStatement(GET_CATALOGUE_FILES_QUERY)) {
+
+      stmt.setLong(1, instrumentId);
+
+      try (ResultSet records = stmt.executeQuery()) {
+        while (records.next()) {
+          List<CatalogueFile> definitionFiles = result.computeIfAbsent(
+            records.getLong(1), d -> new ArrayList<CatalogueFile>());
+
+          long fileId = records.getLong(2);
+          if (!records.wasNull()) {
+            definitionFiles.add(new CatalogueFile(fileId, records.getLong(1),
+              records.getString(3),
+              DateTimeUtils.longToDate(records.getLong(4)),
+              DateTimeUtils.longToDate(records.getLong(5)),
+              records.getInt(6),
+              new Gson().fromJson(records.getString(7), Properties.class)));
+          }
+        }
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while getting instrument files", e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the ID of the instrument that owns a file definition.
+   *
+   * @param conn
+   *          A database connection
+   * @param fileDefinitionId
+   *          The file definition's database ID
+   * @return The instrument's database ID
+   * @throws DatabaseException
+   *           If a database error occurs, or the file definition does not
+   *           exist
+   */
+  private static long getDefinitionInstrument(Connection conn,
+    long fileDefinitionId) throws DatabaseException {
+
+    DataFileCatalogue catalogue = DataFileCatalogue.getInstance();
+    Long result = catalogue.getInstrumentId(fileDefinitionId);
+
+    if (null == result) {
+      try (PreparedStatement stmt = conn
+        .prepareStatement(GET_DEFINITION_INSTRUMENT_QUERY)) {
+
+        stmt.setLong(1, fileDefinitionId);
+
+        try (ResultSet records = stmt.executeQuery()) {
+          if (!records.next()) {
+            throw new DatabaseException(
+              "File definition " + fileDefinitionId + " does not exist");
+          }
+
+          result = records.getLong(1);
+          catalogue.setInstrumentId(fileDefinitionId, result);
+        }
+      } catch (SQLException e) {
+        throw new DatabaseException("Error while getting file definition", e);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the catalogue entry for the instrument that owns a file definition.
+   *
+   * @param conn
+   *          A database connection
+   * @param fileDefinitionId
+   *          The file definition's database ID
+   * @return The instrument's catalogue entry
+   * @throws DatabaseException
+   *           If a database error occurs, or the file definition does not
+   *           exist
+   */
+  private static DataFileCatalogue.InstrumentFiles getCatalogueFiles(
+    Connection conn, long fileDefinitionId) throws DatabaseException {
+
+    return DataFileCatalogue.getInstance().getInstrumentFiles(conn,
+      getDefinitionInstrument(conn, fileDefinitionId));
+  }
+
+  /**
+   * Build {@link DataFile} objects for a set of catalogue entries.
+   *
+   * @param files
+   *          The catalogue entries
+   * @param fileStore
+   *          The file store location
+   * @param fileDefinitions
+   *          The file definitions for the files' instrument
+   * @return The DataFile objects
+   */
+  private static List<DataFile> makeDataFiles(List<CatalogueFile> files,
+    String fileStore, InstrumentFileSet fileDefinitions) {
+
+    return files.stream()
+      .map(f -> f.toDataFile(fileStore,
+        fileDefinitions.get(f.fileDefinitionId())))
+      .collect(Collectors.toList());
+  }
+
+  /**
+   * Build {@link DataFile} objects for a set of catalogue entries that all
+   * belong to the same file definition.
+   *
+   * @param files
+   *          The catalogue entries
+   * @param fileStore
+   *          The file store location
+   * @param fileDefinition
+   *          The file definition
+   * @return The DataFile objects
+   */
+  private static List<DataFile> makeDataFiles(List<CatalogueFile> files,
+    String fileStore, FileDefinition fileDefinition) {
+
+    return files.stream().map(f -> f.toDataFile(fileStore, fileDefinition))
+      .collect(Collectors.toList());
+  }
 }
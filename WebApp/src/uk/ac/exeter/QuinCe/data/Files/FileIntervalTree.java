@@ -0,0 +1,218 @@
+package uk.ac.exeter.QuinCe.data.Files;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+
+/**
+ * An interval tree of {@link CatalogueFile}s, used to find the files that
+ * cover a given time period.
+ *
+ * <p>
+ * The files are held in an array sorted by start time, which is treated as an
+ * implicit balanced binary tree: the root of any range of the array is its
+ * middle element. Each node records the latest end time of all the files in
+ * its subtree, so whole subtrees that end before the period of interest can be
+ * skipped. Finding the files that overlap a period takes
+ * <i>O(log n + k)</i> time for <i>k</i> matching files.
+ * </p>
+ *
+ * <p>
+ * The tree is immutable; a new tree must be built when the files change.
+ * </p>
+ */
+class FileIntervalTree {
+
+  /**
+   * The files, sorted by start time.
+   */
+  private final CatalogueFile[] files;
+
+  /**
+   * The start time of each file in milliseconds.
+   */
+  private final long[] starts;
+
+  /**
+   * The end time of each file in milliseconds.
+   */
+  private final long[] ends;
+
+  /**
+   * The latest end time in the subtree rooted at each node.
+   */
+  private final long[] maxEnds;
+
+  /**
+   * Build a tree.
+   *
+   * @param files
+   *          The files.
+   * @param applyOffset
+   *          Indicates whether or not the files' time offsets should be
+   *          applied.
+   */
+  protected FileIntervalTree(Collection<CatalogueFile> files,
+    boolean applyOffset) {
+
+    this.files = files.stream()
+      .sorted(Comparator.comparing((CatalogueFile f) -> f.start(applyOffset))
+        .thenComparingLong(CatalogueFile::id))
+      .toArray(CatalogueFile[]::new);
+
+    starts = new long[this.files.length];
+    ends = new long[this.files.length];
+    maxEnds = new long[this.files.length];
+
+    for (int i = 0; i < this.files.length; i++) {
+      starts[i] = DateTimeUtils.dateToLong(this.files[i].start(applyOffset));
+      ends[i] = DateTimeUtils.dateToLong(this.files[i].end(applyOffset));
+    }
+
+    buildMaxEnds(0, this.files.length);
+  }
+
+  /**
+   * Calculate the latest end time for the subtree covering a range of the
+   * array.
+   *
+   * @param from
+   *          The start of the range (inclusive).
+   * @param to
+   *          The end of the range (exclusive).
+   * @return The latest end time in the range.
+   */
+  private long buildMaxEnds(int from, int to) {
+    if (from >= to) {
+      return Long.MIN_VALUE;
+    }
+
+    int mid = (from + to) >>> 1;
+    maxEnds[mid] = Math.max(ends[mid],
+      Math.max(buildMaxEnds(from, mid), buildMaxEnds(mid + 1, to)));
+    return maxEnds[mid];
+  }
+
+  /**
+   * Get all the files in the tree.
+   *
+   * @return The files, in start time order.
+   */
+  protected List<CatalogueFile> getAll() {
+    return List.of(files);
+  }
+
+  /**
+   * Get the files that overlap a time period, i.e. that end after the start
+   * of the period and start before its end.
+   *
+   * @param start
+   *          The start of the period.
+   * @param end
+   *          The end of the period.
+   * @return The overlapping files, in start time order.
+   */
+  protected List<CatalogueFile> getOverlapping(LocalDateTime start,
+    LocalDateTime end) {
+    List<CatalogueFile> result = new ArrayList<CatalogueFile>();
+    search(0, files.length, DateTimeUtils.dateToLong(start),
+      DateTimeUtils.dateToLong(end), result);
+    return result;
+  }
+
+  /**
+   * Get the files that end after a given time.
+   *
+   * @param time
+   *          The time.
+   * @return The matching files, in start time order.
+   */
+  protected List<CatalogueFile> getEndingAfter(LocalDateTime time) {
+    List<CatalogueFile> result = new ArrayList<CatalogueFile>();
+    search(0, files.length, DateTimeUtils.dateToLong(time), Long.MAX_VALUE,
+      result);
+    return result;
+  }
+
+  /**
+   * Get the file with the latest end time.
+   *
+   * @return The file, or {@code null} if there are no files.
+   */
+  protected CatalogueFile getLastEnding() {
+    CatalogueFile result = null;
+
+    if (files.length > 0) {
+      // Follow the maximum end time down from the root
+      int from = 0;
+      int to = files.length;
+      long maxEnd = maxEnds[(from + to) >>> 1];
+
+      while (null == result) {
+        int mid = (from + to) >>> 1;
+        if (ends[mid] == maxEnd) {
+          result = files[mid];
+        } else if (from < mid && maxEnds[(from + mid) >>> 1] == maxEnd) {
+          to = mid;
+        } else {
+          from = mid + 1;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the number of files in the tree.
+   *
+   * @return The number of files.
+   */
+  protected int size() {
+    return files.length;
+  }
+
+  /**
+   * Find the files in a subtree that overlap a time period.
+   *
+   * @param from
+   *          The start of the subtree's range (inclusive).
+   * @param to
+   *          The end of the subtree's range (exclusive).
+   * @param start
+   *          The start of the period.
+   * @param end
+   *          The end of the period.
+   * @param result
+   *          The list to which matching files are added.
+   */
+  private void search(int from, int to, long start, long end,
+    List<CatalogueFile> result) {
+
+    if (from >= to) {
+      return;
+    }
+
+    int mid = (from + to) >>> 1;
+
+    // Nothing in this subtree ends after the start of the period
+    if (maxEnds[mid] <= start) {
+      return;
+    }
+
+    search(from, mid, start, end, result);
+
+    // Files from here on start too late
+    if (starts[mid] < end) {
+      if (ends[mid] > start) {
+        result.add(files[mid]);
+      }
+
+      search(mid + 1, to, start, end, result);
+    }
+  }
+}
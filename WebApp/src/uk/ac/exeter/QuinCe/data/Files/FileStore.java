@@ -1,10 +1,27 @@
 package uk.ac.exeter.QuinCe.data.Files;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import javax.sql.DataSource;
@@ -17,6 +34,14 @@ import uk.ac.exeter.QuinCe.utils.MissingParamException;
  * Class to handle storage, retrieval and management of data file on disk.
  *
  * <p>
+ * Files can be stored as plain text or compressed, depending on the
+ * configured {@link FileStoreCodec}. Files stored with any codec can be read,
+ * so changing the codec only affects new files. Existing files can be
+ * converted to the configured codec with
+ * {@link #convertFiles(String, FileStoreCodec, int)}.
+ * </p>
+ *
+ * <p>
  * Note that these methods are not publicly accessible; all calls to this class
  * are made through the {@code DataFileDB} class.
  * </p>
@@ -25,11 +50,30 @@ import uk.ac.exeter.QuinCe.utils.MissingParamException;
  */
 public class FileStore {
 
+  /**
+   * The suffix for files that are being written.
+   */
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /**
+   * Lock held while files are written, converted or deleted, so that a
+   * conversion cannot overwrite a file that is being stored.
+   */
+  private static final Object WRITE_LOCK = new Object();
+
   /**
    * Store a file in the file store. This will overwrite any existing file.
    *
+   * <p>
+   * The file is written to a temporary file first and moved into place when
+   * it is complete, so readers never see a partially written file. Copies of
+   * the file stored with other codecs are removed.
+   * </p>
+   *
    * @param fileStore
    *          The location of the file store
+   * @param codec
+   *          The codec with which the file will be stored
    * @param dataFile
    *          The data file
    * @throws MissingParamException
@@ -38,35 +82,44 @@ public class FileStore {
    *           If an error occurs while storing the file
    * @see DataFileDB#storeFile(DataSource, Properties, DataFile)
    */
-  protected static void storeFile(String fileStore, DataFile dataFile)
-    throws MissingParamException, FileStoreException {
+  protected static void storeFile(String fileStore, FileStoreCodec codec,
+    DataFile dataFile) throws MissingParamException, FileStoreException {
 
     MissingParam.checkMissing(fileStore, "fileStore");
+    MissingParam.checkMissing(codec, "codec");
     MissingParam.checkMissing(dataFile, "dataFile");
 
-    FileWriter fileWriter = null;
     File file = null;
+    File tempFile = null;
 
-    try {
-      checkInstrumentDirectory(fileStore,
-        dataFile.getFileDefinition().getDatabaseId());
+    synchronized (WRITE_LOCK) {
+      try {
+        checkInstrumentDirectory(fileStore,
+          dataFile.getFileDefinition().getDatabaseId());
 
-      file = getFileObject(fileStore, dataFile);
-      if (file.exists()) {
-        file.delete();
-      }
+        file = getFileObject(fileStore, dataFile, codec);
+        tempFile = new File(file.getPath() + TEMP_SUFFIX);
 
-      fileWriter = new FileWriter(file);
-      fileWriter.write(dataFile.getContents());
-      fileWriter.close();
+        try (Writer writer = new OutputStreamWriter(
+          codec.encode(new FileOutputStream(tempFile)),
+          Charset.defaultCharset())) {
+          writer.write(dataFile.getContents());
+        }
 
-    } catch (Exception e) {
+        Files.move(tempFile.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
 
-      closeWriter(fileWriter);
-      deleteFile(file);
+        for (FileStoreCodec otherCodec : FileStoreCodec.values()) {
+          if (otherCodec != codec) {
+            deleteFile(getFileObject(fileStore, dataFile, otherCodec));
+          }
+        }
+      } catch (Exception e) {
+        deleteFile(tempFile);
 
-      throw new FileStoreException("An error occurred while storing the file",
-        e);
+        throw new FileStoreException("An error occurred while storing the file",
+          e);
+      }
     }
   }
 
@@ -87,8 +140,11 @@ public class FileStore {
     MissingParam.checkMissing(fileStore, "fileStore");
     MissingParam.checkMissing(dataFile, "dataFile");
 
-    File fileToDelete = getFileObject(fileStore, dataFile);
-    deleteFile(fileToDelete);
+    synchronized (WRITE_LOCK) {
+      for (FileStoreCodec codec : FileStoreCodec.values()) {
+        deleteFile(getFileObject(fileStore, dataFile, codec));
+      }
+    }
   }
 
   /**
@@ -105,7 +161,68 @@ public class FileStore {
    */
   protected static void loadFileContents(String fileStore, DataFile dataFile)
     throws IOException, MissingParamException {
-    dataFile.setContents(new String(getBytes(fileStore, dataFile)));
+
+    List<String> lines = new ArrayList<String>();
+
+    // Read the file a line at a time instead of building one large String
+    // and splitting it. Blank lines are skipped, except for a blank first
+    // line which is kept so line numbers are unchanged.
+    try (BufferedReader reader = openReader(fileStore, dataFile)) {
+
+      String line = reader.readLine();
+      while (null != line) {
+        if (line.length() > 0 || lines.isEmpty()) {
+          lines.add(line);
+        }
+
+        line = reader.readLine();
+      }
+    }
+
+    dataFile.setContents(lines);
+  }
+
+  /**
+   * Open a stream of the decoded contents of a file. The file is decoded as
+   * it is read, so it is never held in memory in full.
+   *
+   * @param fileStore
+   *          The file store
+   * @param dataFile
+   *          The file to be read
+   * @return The stream
+   * @throws IOException
+   *           If the file cannot be opened
+   */
+  protected static InputStream openInputStream(String fileStore,
+    DataFile dataFile) throws IOException {
+
+    StoredFile storedFile = openStoredFile(fileStore, dataFile);
+    try {
+      return storedFile.codec()
+        .decode(Channels.newInputStream(storedFile.channel()));
+    } catch (IOException e) {
+      storedFile.channel().close();
+      throw e;
+    }
+  }
+
+  /**
+   * Open a reader for the decoded contents of a file.
+   *
+   * @param fileStore
+   *          The file store
+   * @param dataFile
+   *          The file to be read
+   * @return The reader
+   * @throws IOException
+   *           If the file cannot be opened
+   * @see #openInputStream(String, DataFile)
+   */
+  protected static BufferedReader openReader(String fileStore,
+    DataFile dataFile) throws IOException {
+    return new BufferedReader(new InputStreamReader(
+      openInputStream(fileStore, dataFile), Charset.defaultCharset()));
   }
 
   /**
@@ -122,29 +239,262 @@ public class FileStore {
   protected static byte[] getBytes(String fileStore, DataFile dataFile)
     throws IOException {
 
-    byte[] fileData;
-    File readFile = getFileObject(fileStore, dataFile);
+    try (InputStream in = openInputStream(fileStore, dataFile)) {
+      return in.readAllBytes();
+    }
+  }
 
-    FileInputStream inputStream = null;
-    try {
-      inputStream = new FileInputStream(readFile);
-      int fileLength = (int) readFile.length();
-      fileData = new byte[fileLength];
-      int bytesRead = inputStream.read(fileData);
-      if (bytesRead < fileLength) {
-        throw new IOException(
-          "Too few bytes read from file " + readFile.getAbsolutePath()
-            + ": got " + bytesRead + ", expected " + fileLength);
+  /**
+   * Copy the raw bytes of a file to a channel without loading the whole file
+   * into memory. The target channel is not closed.
+   *
+   * @param fileStore
+   *          The file store
+   * @param dataFile
+   *          The file to be copied
+   * @param target
+   *          The channel to which the file will be written
+   * @return The number of bytes copied
+   * @throws IOException
+   *           If the file cannot be read or the channel cannot be written
+   */
+  protected static long transferBytes(String fileStore, DataFile dataFile,
+    WritableByteChannel target) throws IOException {
+
+    StoredFile storedFile = openStoredFile(fileStore, dataFile);
+
+    try (FileChannel channel = storedFile.channel()) {
+
+      long result;
+
+      if (storedFile.codec() == FileStoreCodec.NONE) {
+        long size = channel.size();
+        long position = 0;
+
+        // transferTo may copy fewer bytes than requested, so keep going until
+        // the whole file has been sent
+        while (position < size) {
+          position += channel.transferTo(position, size - position, target);
+        }
+
+        result = size;
+      } else {
+        // Closing the output stream would close the target, so we don't
+        InputStream in = storedFile.codec()
+          .decode(Channels.newInputStream(channel));
+        result = in.transferTo(Channels.newOutputStream(target));
       }
-    } catch (IOException e) {
-      throw e;
-    } finally {
-      if (null != inputStream) {
-        inputStream.close();
+
+      return result;
+    }
+  }
+
+  /**
+   * Determine whether or not the last byte of a file is a newline.
+   *
+   * @param fileStore
+   *          The file store
+   * @param dataFile
+   *          The file to be checked
+   * @return {@code true} if the file ends with a newline; {@code false} if it
+   *         does not, or if the file is empty
+   * @throws IOException
+   *           If the file cannot be read
+   */
+  protected static boolean endsWithNewline(String fileStore, DataFile dataFile)
+    throws IOException {
+
+    boolean result = false;
+    StoredFile storedFile = openStoredFile(fileStore, dataFile);
+
+    try (FileChannel channel = storedFile.channel()) {
+
+      if (storedFile.codec() == FileStoreCodec.NONE) {
+        long size = channel.size();
+        if (size > 0) {
+          ByteBuffer lastByte = ByteBuffer.allocate(1);
+          channel.read(lastByte, size - 1);
+          result = lastByte.get(0) == '\n';
+        }
+      } else {
+        // Compressed files have to be read to the end
+        InputStream in = storedFile.codec()
+          .decode(Channels.newInputStream(channel));
+
+        byte[] buffer = new byte[8192];
+        int read = in.read(buffer);
+        while (read != -1) {
+          if (read > 0) {
+            result = buffer[read - 1] == '\n';
+          }
+          read = in.read(buffer);
+        }
       }
     }
 
-    return fileData;
+    return result;
+  }
+
+  /**
+   * Convert files that are not stored with the specified codec.
+   *
+   * <p>
+   * This is used to migrate the file store after the configured codec has
+   * changed. Each file is converted to a temporary file which is then moved
+   * into place before the original is removed, so files can be read
+   * throughout the conversion. Conversion can be stopped and restarted at any
+   * time.
+   * </p>
+   *
+   * @param fileStore
+   *          The location of the file store
+   * @param codec
+   *          The codec to convert files to
+   * @param limit
+   *          The maximum number of files to convert
+   * @return The number of files converted
+   * @throws IOException
+   *           If a file cannot be converted
+   */
+  protected static int convertFiles(String fileStore, FileStoreCodec codec,
+    int limit) throws IOException {
+
+    int converted = 0;
+
+    File[] definitionDirs = new File(fileStore).listFiles(File::isDirectory);
+    if (null != definitionDirs) {
+      for (File dir : definitionDirs) {
+        File[] files = dir.listFiles(File::isFile);
+        if (null != files) {
+          for (File file : files) {
+            if (converted >= limit) {
+              return converted;
+            }
+
+            FileStoreCodec fileCodec = getFileCodec(file);
+            if (null != fileCodec && fileCodec != codec) {
+              if (convertFile(file, fileCodec, codec)) {
+                converted++;
+              }
+            }
+          }
+        }
+      }
+    }
+
+    return converted;
+  }
+
+  /**
+   * Convert a single file to a different codec.
+   *
+   * @param file
+   *          The file
+   * @param fileCodec
+   *          The codec with which the file is currently stored
+   * @param codec
+   *          The codec to convert the file to
+   * @return {@code true} if the file was converted; {@code false} if it was
+   *         replaced or deleted before it could be converted
+   * @throws IOException
+   *           If the file cannot be converted
+   */
+  private static boolean convertFile(File file, FileStoreCodec fileCodec,
+    FileStoreCodec codec) throws IOException {
+
+    boolean result = false;
+
+    String baseName = file.getPath().substring(0,
+      file.getPath().length() - fileCodec.getSuffix().length());
+    File target = new File(baseName + codec.getSuffix());
+    File tempFile = new File(target.getPath() + TEMP_SUFFIX);
+
+    synchronized (WRITE_LOCK) {
+      if (file.exists()) {
+        // If the converted file exists a previous conversion was interrupted
+        // after the file was moved into place
+        if (!target.exists()) {
+          try (InputStream in = fileCodec.decode(new FileInputStream(file));
+            OutputStream out = codec.encode(new FileOutputStream(tempFile))) {
+            in.transferTo(out);
+          } catch (IOException e) {
+            deleteFile(tempFile);
+            throw e;
+          }
+
+          Files.move(tempFile.toPath(), target.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        deleteFile(file);
+        result = true;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Identify the codec of a file in the file store from its name.
+   *
+   * @param file
+   *          The file
+   * @return The codec, or {@code null} if the file is not a stored data file
+   */
+  private static FileStoreCodec getFileCodec(File file) {
+    FileStoreCodec result = null;
+
+    String name = file.getName();
+
+    for (FileStoreCodec codec : FileStoreCodec.values()) {
+      if (name.endsWith(codec.getSuffix())) {
+        String id = name.substring(0,
+          name.length() - codec.getSuffix().length());
+
+        if (id.length() > 0 && id.chars().allMatch(Character::isDigit)) {
+          result = codec;
+          break;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Open a stored file, with whichever codec it is stored.
+   *
+   * <p>
+   * The file is located by trying each codec in turn. Conversions create the
+   * new file before removing the old one, so a second pass will find a file
+   * that was converted while the first pass was looking for it.
+   * </p>
+   *
+   * @param fileStore
+   *          The file store
+   * @param dataFile
+   *          The file
+   * @return The open file and its codec
+   * @throws IOException
+   *           If the file does not exist or cannot be opened
+   */
+  private static StoredFile openStoredFile(String fileStore, DataFile dataFile)
+    throws IOException {
+
+    for (int attempt = 0; attempt < 2; attempt++) {
+      for (FileStoreCodec codec : FileStoreCodec.values()) {
+        try {
+          return new StoredFile(codec,
+            FileChannel.open(getFileObject(fileStore, dataFile, codec).toPath(),
+              StandardOpenOption.READ));
+        } catch (NoSuchFileException e) {
+          // Try the next codec
+        }
+      }
+    }
+
+    throw new FileNotFoundException(
+      "File " + dataFile.getDatabaseId() + " not found in file store");
   }
 
   /**
@@ -208,35 +558,21 @@ public class FileStore {
   }
 
   /**
-   * Get the Java File object for a data file
+   * Get the Java File object for a data file stored with a given codec
    *
    * @param fileStorePath
    *          The path to the data file within the file store
    * @param dataFile
    *          The data file
+   * @param codec
+   *          The codec
    * @return The Java File object
    */
-  private static File getFileObject(String fileStorePath, DataFile dataFile) {
+  private static File getFileObject(String fileStorePath, DataFile dataFile,
+    FileStoreCodec codec) {
     return new File(getStorageDirectory(fileStorePath,
       dataFile.getFileDefinition().getDatabaseId()) + File.separator
-      + dataFile.getDatabaseId());
-  }
-
-  /**
-   * Close a writer. Not strictly a database thing, but it's in the same spirit
-   * and used in the same places.
-   *
-   * @param writer
-   *          The writer
-   */
-  private static void closeWriter(Writer writer) {
-    if (null != writer) {
-      try {
-        writer.close();
-      } catch (IOException e) {
-        // Do nothing
-      }
-    }
+      + dataFile.getDatabaseId() + codec.getSuffix());
   }
 
   /**
@@ -253,4 +589,15 @@ public class FileStore {
       }
     }
   }
+
+  /**
+   * A file opened from the file store, with the codec it is stored with.
+   *
+   * @param codec
+   *          The file's codec
+   * @param channel
+   *          The open file
+   */
+  private record StoredFile(FileStoreCodec codec, FileChannel channel) {
+  }
 }
@@ -0,0 +1,142 @@
+package uk.ac.exeter.QuinCe.data.Files;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The formats in which files can be held in the {@link FileStore}.
+ *
+ * <p>
+ * Each codec stores files with its own filename suffix, so the format of a
+ * stored file can be identified without reading it. Files can therefore be
+ * read regardless of the currently configured codec, and existing files can
+ * be converted to a new format gradually (see {@link FileStore}).
+ * </p>
+ *
+ * <p>
+ * New formats can be supported by adding codecs to this enum.
+ * </p>
+ */
+public enum FileStoreCodec {
+
+  /**
+   * Files are stored as plain text.
+   */
+  NONE("") {
+    @Override
+    protected OutputStream encode(OutputStream out) {
+      return new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    @Override
+    protected InputStream decode(InputStream in) {
+      return new BufferedInputStream(in, BUFFER_SIZE);
+    }
+  },
+
+  /**
+   * Files are compressed with GZIP.
+   */
+  GZIP(".gz") {
+    @Override
+    protected OutputStream encode(OutputStream out) throws IOException {
+      return new GZIPOutputStream(out, BUFFER_SIZE);
+    }
+
+    @Override
+    protected InputStream decode(InputStream in) throws IOException {
+      return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+  };
+
+  /**
+   * The application configuration property that sets the codec for new
+   * files.
+   */
+  public static final String CODEC_PROPERTY = "filestore.compression";
+
+  /**
+   * The buffer size used when reading and writing files.
+   */
+  private static final int BUFFER_SIZE = 65536;
+
+  /**
+   * The suffix added to the names of files stored with this codec.
+   */
+  private final String suffix;
+
+  /**
+   * Create a codec.
+   *
+   * @param suffix
+   *          The filename suffix.
+   */
+  private FileStoreCodec(String suffix) {
+    this.suffix = suffix;
+  }
+
+  /**
+   * Get the suffix added to the names of files stored with this codec.
+   *
+   * @return The filename suffix.
+   */
+  protected String getSuffix() {
+    return suffix;
+  }
+
+  /**
+   * Wrap a stream so that data written to it is encoded with this codec.
+   * Closing the returned stream closes the underlying stream.
+   *
+   * @param out
+   *          The stream to which the encoded data will be written.
+   * @return The encoding stream.
+   * @throws IOException
+   *           If the stream cannot be created.
+   */
+  protected abstract OutputStream encode(OutputStream out) throws IOException;
+
+  /**
+   * Wrap a stream so that data read from it is decoded with this codec.
+   * Closing the returned stream closes the underlying stream.
+   *
+   * @param in
+   *          The stream of encoded data.
+   * @return The decoding stream.
+   * @throws IOException
+   *           If the stream cannot be created.
+   */
+  protected abstract InputStream decode(InputStream in) throws IOException;
+
+  /**
+   * Get the codec to be used for new files from the application
+   * configuration. If no codec is configured, or the configured codec is not
+   * recognised, files are not compressed.
+   *
+   * @param config
+   *          The application configuration. May be {@code null}.
+   * @return The codec.
+   */
+  public static FileStoreCodec fromConfig(Properties config) {
+    FileStoreCodec result = NONE;
+
+    if (null != config) {
+      String codec = config.getProperty(CODEC_PROPERTY);
+      if (null != codec) {
+        try {
+          result = valueOf(codec.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+          result = NONE;
+        }
+      }
+    }
+
+    return result;
+  }
+}
@@ -17,6 +17,7 @@ import javax.sql.DataSource;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
 import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
 import uk.ac.exeter.QuinCe.data.Instrument.InstrumentException;
 import uk.ac.exeter.QuinCe.utils.DatabaseException;
@@ -318,7 +319,7 @@ public abstract class CalibrationDB {
       stmt.setLong(3, DateTimeUtils.dateToLong(date));
       records = stmt.executeQuery();
       while (!result.isComplete() && records.next()) {
-        String target = records.getString(1);
+        String target = records.getString(3);
 
         if (!result.containsTarget(target)) {
           result.add(calibrationFromResultSet(records, instrument));
@@ -367,13 +368,13 @@ public abstract class CalibrationDB {
    *
    * @param dataSource
    *          A data source
-   * @param instrumentId
+   * @param instrument
    *          The instrument
-   * @param class
-   *          The calibration type
    * @return The calibrations
    * @throws MissingParamException
+   *           If any required parameters are missing
    * @throws DatabaseException
+   *           If a database error occurs
    */
   public TreeMap<String, List<Calibration>> getCalibrations(
     DataSource dataSource, Instrument instrument)
@@ -381,14 +382,46 @@ public abstract class CalibrationDB {
     MissingParam.checkMissing(dataSource, "dataSource");
     MissingParam.checkMissing(instrument, "instrument");
 
+    TreeMap<String, List<Calibration>> calibrations = null;
+    Connection conn = null;
+
+    try {
+      conn = dataSource.getConnection();
+      calibrations = getCalibrations(conn, instrument);
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while retrieving calibrations", e);
+    } finally {
+      DatabaseUtils.closeConnection(conn);
+    }
+
+    return calibrations;
+  }
+
+  /**
+   * Retrieve all calibrations from the database of a given type, grouped by
+   * target and ordered by date
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument
+   * @return The calibrations
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
+  public TreeMap<String, List<Calibration>> getCalibrations(Connection conn,
+    Instrument instrument) throws MissingParamException, DatabaseException {
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkMissing(instrument, "instrument");
+
     TreeMap<String, List<Calibration>> calibrations = new TreeMap<String, List<Calibration>>();
 
-    Connection conn = null;
     PreparedStatement stmt = null;
     ResultSet records = null;
 
     try {
-      conn = dataSource.getConnection();
       stmt = conn.prepareStatement(GET_CALIBRATIONS_QUERY);
       stmt.setLong(1, instrument.getId());
       stmt.setString(2, getCalibrationType());
@@ -409,12 +442,90 @@ public abstract class CalibrationDB {
     } finally {
       DatabaseUtils.closeResultSets(records);
       DatabaseUtils.closeStatements(stmt);
-      DatabaseUtils.closeConnection(conn);
     }
 
     return calibrations;
   }
 
+  /**
+   * Load the complete {@link CalibrationTimeline} of this calibration type for
+   * an instrument.
+   *
+   * <p>
+   * Use this in preference to repeated calls to
+   * {@link #getMostRecentCalibrations(Connection, Instrument, LocalDateTime)}
+   * when calibrations are needed for many different times.
+   * </p>
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument
+   * @return The calibration timeline
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws RecordNotFoundException
+   *           If the calibration targets cannot be found
+   * @throws InstrumentException
+   *           If the instrument configuration is invalid
+   */
+  public CalibrationTimeline getCalibrationTimeline(Connection conn,
+    Instrument instrument) throws MissingParamException, DatabaseException,
+    RecordNotFoundException, InstrumentException {
+
+    List<Calibration> calibrations = new ArrayList<Calibration>();
+    getCalibrations(conn, instrument).values().forEach(calibrations::addAll);
+
+    return new CalibrationTimeline(instrument, getCalibrationType(),
+      getTargets(conn, instrument), calibrations);
+  }
+
+  /**
+   * Get the {@link CalibrationTimeline} of this calibration type for the
+   * specified {@link DataSet}.
+   *
+   * <p>
+   * The timeline is loaded from the database the first time it is requested,
+   * and then held by the {@link DataSet} object for the remainder of its
+   * lifetime. Processing jobs load their own {@link DataSet}, so each job sees
+   * the calibrations that were current when it started.
+   * </p>
+   *
+   * @param conn
+   *          A database connection
+   * @param instrument
+   *          The instrument to which the dataset belongs
+   * @param dataSet
+   *          The dataset
+   * @return The calibration timeline
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws RecordNotFoundException
+   *           If the calibration targets cannot be found
+   * @throws InstrumentException
+   *           If the instrument configuration is invalid
+   */
+  public CalibrationTimeline getCalibrationTimeline(Connection conn,
+    Instrument instrument, DataSet dataSet) throws MissingParamException,
+    DatabaseException, RecordNotFoundException, InstrumentException {
+
+    MissingParam.checkMissing(dataSet, "dataSet");
+
+    CalibrationTimeline timeline = dataSet
+      .getCalibrationTimeline(getCalibrationType());
+
+    if (null == timeline) {
+      timeline = getCalibrationTimeline(conn, instrument);
+      dataSet.setCalibrationTimeline(timeline);
+    }
+
+    return timeline;
+  }
+
   private Calibration calibrationFromResultSet(ResultSet record,
     Instrument instrument) throws SQLException {
     long id = record.getLong(1);
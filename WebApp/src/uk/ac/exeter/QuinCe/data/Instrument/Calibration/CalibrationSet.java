@@ -46,6 +46,13 @@ public class CalibrationSet extends TreeSet<Calibration> {
    */
   private Map<String, String> targets;
 
+  /**
+   * Indicates whether or not the set can be modified.
+   *
+   * @see #lock()
+   */
+  private boolean locked = false;
+
   /**
    * Initialise an empty calibration set
    *
@@ -76,6 +83,8 @@ public class CalibrationSet extends TreeSet<Calibration> {
 
   @Override
   public boolean add(Calibration calibration) {
+    checkLocked();
+
     if (!calibration.getInstrument().equals(instrument)) {
       throw new CalibrationException("Instrument ID does not match");
     }
@@ -102,6 +111,39 @@ public class CalibrationSet extends TreeSet<Calibration> {
     return true;
   }
 
+  @Override
+  public boolean remove(Object o) {
+    checkLocked();
+    return super.remove(o);
+  }
+
+  @Override
+  public void clear() {
+    checkLocked();
+    super.clear();
+  }
+
+  /**
+   * Prevent any further changes to the set. Used for sets that are shared
+   * between callers, such as those returned by {@link CalibrationTimeline}.
+   */
+  protected void lock() {
+    locked = true;
+  }
+
+  /**
+   * Check that the set can be modified.
+   *
+   * @throws UnsupportedOperationException
+   *           If the set has been locked.
+   */
+  private void checkLocked() {
+    if (locked) {
+      throw new UnsupportedOperationException(
+        "Calibration set is read-only");
+    }
+  }
+
   @Override
   public boolean addAll(Collection<? extends Calibration> c) {
     for (Calibration calibration : c) {
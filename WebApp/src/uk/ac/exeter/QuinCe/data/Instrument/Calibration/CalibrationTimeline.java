@@ -0,0 +1,206 @@
+package uk.ac.exeter.QuinCe.data.Instrument.Calibration;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.utils.MissingParam;
+import uk.ac.exeter.QuinCe.utils.MissingParamException;
+
+/**
+ * An immutable, time-indexed view of all the calibrations of a given type for
+ * an instrument.
+ *
+ * <p>
+ * The timeline is loaded from the database once (see
+ * {@link CalibrationDB#getCalibrationTimeline}) and then answers questions
+ * such as "which calibrations were in force at time T" with in-memory lookups.
+ * This means that processes that need calibrations for many different times
+ * (e.g. for each measurement in a dataset) do not need to query the database
+ * for each one.
+ * </p>
+ *
+ * <p>
+ * The {@link CalibrationSet}s returned by the timeline are shared between
+ * callers and are read-only.
+ * </p>
+ */
+public class CalibrationTimeline {
+
+  /**
+   * The instrument to which the calibrations belong.
+   */
+  private final Instrument instrument;
+
+  /**
+   * The calibration type.
+   */
+  private final String type;
+
+  /**
+   * The targets that can be calibrated.
+   */
+  private final Map<String, String> targets;
+
+  /**
+   * The calibrations for each target, ordered by deployment date.
+   */
+  private final Map<String, TreeMap<LocalDateTime, Calibration>> targetCalibrations;
+
+  /**
+   * The set of calibrations in force from each deployment date onwards.
+   */
+  private final TreeMap<LocalDateTime, CalibrationSet> calibrationSets;
+
+  /**
+   * The (empty) set of calibrations in force before the first deployment date.
+   */
+  private final CalibrationSet emptySet;
+
+  /**
+   * Build a timeline from a collection of calibrations.
+   *
+   * <p>
+   * Calibrations for targets that are not in the supplied list of targets are
+   * ignored, since they can never be part of a {@link CalibrationSet}.
+   * </p>
+   *
+   * @param instrument
+   *          The instrument to which the calibrations belong.
+   * @param type
+   *          The calibration type.
+   * @param targets
+   *          The targets that can be calibrated.
+   * @param calibrations
+   *          The calibrations.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   */
+  protected CalibrationTimeline(Instrument instrument, String type,
+    Map<String, String> targets, Collection<Calibration> calibrations)
+    throws MissingParamException {
+
+    MissingParam.checkMissing(instrument, "instrument");
+    MissingParam.checkMissing(type, "type");
+    MissingParam.checkMissing(targets, "targets", true);
+    MissingParam.checkMissing(calibrations, "calibrations", true);
+
+    this.instrument = instrument;
+    this.type = type;
+    this.targets = targets;
+    this.targetCalibrations = new HashMap<String, TreeMap<LocalDateTime, Calibration>>();
+
+    TreeSet<LocalDateTime> deploymentDates = new TreeSet<LocalDateTime>();
+
+    for (Calibration calibration : calibrations) {
+      if (targets.containsKey(calibration.getTarget())) {
+        if (!targetCalibrations.containsKey(calibration.getTarget())) {
+          targetCalibrations.put(calibration.getTarget(),
+            new TreeMap<LocalDateTime, Calibration>());
+        }
+
+        targetCalibrations.get(calibration.getTarget())
+          .put(calibration.getDeploymentDate(), calibration);
+        deploymentDates.add(calibration.getDeploymentDate());
+      }
+    }
+
+    emptySet = new CalibrationSet(instrument, type, targets);
+    emptySet.lock();
+
+    // Build the calibration set that comes into force at each deployment date
+    calibrationSets = new TreeMap<LocalDateTime, CalibrationSet>();
+    for (LocalDateTime date : deploymentDates) {
+      CalibrationSet set = new CalibrationSet(instrument, type, targets);
+
+      for (TreeMap<LocalDateTime, Calibration> calibrationDates : targetCalibrations
+        .values()) {
+
+        Entry<LocalDateTime, Calibration> entry = calibrationDates
+          .floorEntry(date);
+        if (null != entry) {
+          set.add(entry.getValue());
+        }
+      }
+
+      set.lock();
+      calibrationSets.put(date, set);
+    }
+  }
+
+  /**
+   * Get the calibrations in force at the specified time, i.e. the most recent
+   * calibration for each target deployed on or before that time.
+   *
+   * <p>
+   * This is equivalent to
+   * {@link CalibrationDB#getMostRecentCalibrations(java.sql.Connection, Instrument, LocalDateTime)}.
+   * </p>
+   *
+   * @param time
+   *          The time.
+   * @return The calibrations in force at the time.
+   */
+  public CalibrationSet getMostRecentCalibrations(LocalDateTime time) {
+    Entry<LocalDateTime, CalibrationSet> entry = calibrationSets
+      .floorEntry(time);
+    return null == entry ? emptySet : entry.getValue();
+  }
+
+  /**
+   * Get the first calibration for each target deployed on or after the
+   * specified time.
+   *
+   * @param time
+   *          The time.
+   * @return The calibrations.
+   */
+  public CalibrationSet getCalibrationsAfter(LocalDateTime time) {
+    CalibrationSet result = new CalibrationSet(instrument, type, targets);
+
+    for (TreeMap<LocalDateTime, Calibration> calibrationDates : targetCalibrations
+      .values()) {
+
+      Entry<LocalDateTime, Calibration> entry = calibrationDates
+        .ceilingEntry(time);
+      if (null != entry) {
+        result.add(entry.getValue());
+      }
+    }
+
+    result.lock();
+    return result;
+  }
+
+  /**
+   * Get the calibration type of this timeline.
+   *
+   * @return The calibration type.
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * Get the {@link Instrument} to which the timeline belongs.
+   *
+   * @return The instrument.
+   */
+  public Instrument getInstrument() {
+    return instrument;
+  }
+
+  /**
+   * Get the number of distinct deployment dates in the timeline.
+   *
+   * @return The number of deployment dates.
+   */
+  public int size() {
+    return calibrationSets.size();
+  }
+}
@@ -1,7 +1,6 @@
 package uk.ac.exeter.QuinCe.data.Instrument;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -534,14 +533,18 @@ public class FileDefinition implements Comparable<FileDefinition> {
    * @return The column values
    */
   public List<String> extractFields(String dataLine) {
-    List<String> values = new ArrayList<String>();
+    List<String> values;
 
+    // Space separated files can have any number of spaces between fields
     if (separator.equals(" ")) {
-      dataLine = dataLine.trim().replaceAll("  *", " ");
+      String trimmed = dataLine.trim();
+      values = StringUtils.splitLine(trimmed, ' ', trimmed.length(), true);
+    } else {
+      values = StringUtils.splitLine(dataLine, separator.charAt(0),
+        dataLine.length(), false);
     }
 
-    values = StringUtils.trimListAndQuotes(
-      Arrays.asList(dataLine.split(separator, dataLine.length())));
+    values = StringUtils.trimListAndQuotes(values);
 
     // If the column count is one less than the extracted number of columns,
     // and the last column is empty, assume we have a rogue trailing separator.
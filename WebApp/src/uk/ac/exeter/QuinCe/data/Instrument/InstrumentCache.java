@@ -0,0 +1,264 @@
+package uk.ac.exeter.QuinCe.data.Instrument;
+
+import java.sql.Connection;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorGroupsException;
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.utils.RecordNotFoundException;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Application-wide cache of {@link Instrument} objects.
+ *
+ * <p>
+ * Building an {@link Instrument} requires several database queries, and
+ * instruments are retrieved by every job and many API calls. Instruments
+ * rarely change, so the cache keeps one copy of each instrument and shares it
+ * between all callers of {@link InstrumentDB#getInstrument(Connection, long)}.
+ * Cached instruments must therefore be treated as read-only; code that edits
+ * an instrument must load its own copy using
+ * {@link InstrumentDB#loadInstrument(Connection, long)}.
+ * </p>
+ *
+ * <p>
+ * Each instrument has a version stamp, which is increased whenever the
+ * instrument is changed through {@link InstrumentDB}. A cached entry is only
+ * used if its stamp matches the instrument's current version, so an
+ * instrument loaded while it was being changed is never returned to later
+ * callers.
+ * </p>
+ *
+ * <p>
+ * The cache is enabled by the {@link #ENABLED_PROPERTY} application
+ * configuration property. If it is disabled, every request loads the
+ * instrument from the database.
+ * </p>
+ */
+public class InstrumentCache {
+
+  /**
+   * The application configuration property that enables the cache.
+   */
+  public static final String ENABLED_PROPERTY = "instrument.cache";
+
+  /**
+   * The singleton instance of the cache.
+   */
+  private static InstrumentCache instance = null;
+
+  /**
+   * Indicates whether or not the cache is enabled.
+   */
+  private final boolean enabled;
+
+  /**
+   * The cached instruments, keyed by instrument ID.
+   */
+  private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<Long, Entry>();
+
+  /**
+   * The version of each instrument that has been changed, keyed by instrument
+   * ID.
+   */
+  private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<Long, Long>();
+
+  /**
+   * Version added to every instrument's version, increased when all
+   * instruments are invalidated.
+   */
+  private final AtomicLong generation = new AtomicLong(0);
+
+  /**
+   * The number of requests that were served from the cache.
+   */
+  private final AtomicLong hits = new AtomicLong(0);
+
+  /**
+   * The number of requests that required the instrument to be loaded from the
+   * database.
+   */
+  private final AtomicLong misses = new AtomicLong(0);
+
+  /**
+   * Create the cache.
+   *
+   * @param enabled
+   *          Indicates whether or not the cache is enabled.
+   */
+  protected InstrumentCache(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Get the cache instance, creating it from the application configuration
+   * if required.
+   *
+   * @return The cache.
+   */
+  public static synchronized InstrumentCache getInstance() {
+    if (null == instance) {
+      ResourceManager resourceManager = ResourceManager.getInstance();
+      Properties config = null == resourceManager ? null
+        : resourceManager.getConfig();
+
+      instance = new InstrumentCache(null != config
+        && Boolean.parseBoolean(config.getProperty(ENABLED_PROPERTY)));
+    }
+
+    return instance;
+  }
+
+  /**
+   * Discard the cache instance and all its entries.
+   */
+  public static synchronized void destroy() {
+    instance = null;
+  }
+
+  /**
+   * Get an instrument, loading it from the database if it is not in the
+   * cache.
+   *
+   * @param conn
+   *          A database connection.
+   * @param instrumentId
+   *          The instrument's database ID.
+   * @return The instrument.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   * @throws RecordNotFoundException
+   *           If the instrument does not exist.
+   * @throws InstrumentException
+   *           If any instrument values are invalid.
+   * @throws SensorGroupsException
+   *           If the instrument's sensor groups are invalid.
+   */
+  public Instrument get(Connection conn, long instrumentId)
+    throws DatabaseException, RecordNotFoundException, InstrumentException,
+    SensorGroupsException {
+
+    if (!enabled) {
+      return InstrumentDB.loadInstrument(conn, instrumentId);
+    }
+
+    long version = getVersion(instrumentId);
+
+    Entry entry = entries.get(instrumentId);
+    if (null != entry && entry.version == version) {
+      hits.incrementAndGet();
+      return entry.instrument;
+    }
+
+    misses.incrementAndGet();
+    Instrument instrument = InstrumentDB.loadInstrument(conn, instrumentId);
+
+    // Only cache the instrument if it wasn't changed while we loaded it
+    entries.compute(instrumentId,
+      (id, existing) -> getVersion(id) == version
+        ? new Entry(version, instrument)
+        : existing);
+
+    return instrument;
+  }
+
+  /**
+   * Remove an instrument from the cache and increase its version. Must be
+   * called whenever an instrument is changed in the database.
+   *
+   * @param instrumentId
+   *          The instrument's database ID.
+   */
+  public void invalidate(long instrumentId) {
+    versions.merge(instrumentId, 1L, Long::sum);
+    entries.remove(instrumentId);
+  }
+
+  /**
+   * Remove all instruments from the cache. Used when the changed instruments
+   * are not known.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    entries.clear();
+  }
+
+  /**
+   * Get the current version of an instrument.
+   *
+   * @param instrumentId
+   *          The instrument's database ID.
+   * @return The version.
+   */
+  private long getVersion(long instrumentId) {
+    return generation.get() + versions.getOrDefault(instrumentId, 0L);
+  }
+
+  /**
+   * Determine whether or not the cache is enabled.
+   *
+   * @return {@code true} if the cache is enabled; {@code false} if it is not.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Get the number of cached instruments.
+   *
+   * @return The number of cached instruments.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Get the number of requests that were served from the cache.
+   *
+   * @return The hit count.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Get the number of requests that required the instrument to be loaded from
+   * the database.
+   *
+   * @return The miss count.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * A cached instrument with the version at which it was loaded.
+   */
+  private static class Entry {
+
+    /**
+     * The instrument's version when it was loaded.
+     */
+    private final long version;
+
+    /**
+     * The instrument.
+     */
+    private final Instrument instrument;
+
+    /**
+     * Create a cache entry.
+     *
+     * @param version
+     *          The instrument's version.
+     * @param instrument
+     *          The instrument.
+     */
+    private Entry(long version, Instrument instrument) {
+      this.version = version;
+      this.instrument = instrument;
+    }
+  }
+}
@@ -27,6 +27,7 @@ import uk.ac.exeter.QuinCe.User.UserDB;
 import uk.ac.exeter.QuinCe.api.nrt.NrtInstrument;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
+import uk.ac.exeter.QuinCe.data.Files.DataFileCatalogue;
 import uk.ac.exeter.QuinCe.data.Files.DataFileDB;
 import uk.ac.exeter.QuinCe.data.Files.FileStoreException;
 import uk.ac.exeter.QuinCe.data.Instrument.DataFormats.DateTimeSpecification;
@@ -745,16 +746,19 @@ public class InstrumentDB {
   }
 
   /**
-   * Returns a complete instrument object for the specified instrument ID
+   * Returns a complete instrument object for the specified instrument ID.
+   *
+   * <p>
+   * The instrument may be shared with other parts of the application via the
+   * {@link InstrumentCache}, so it must not be modified. Use
+   * {@link #loadInstrument(DataSource, long)} to get a copy that can be
+   * edited.
+   * </p>
    *
    * @param conn
    *          A database connection
    * @param instrumentId
    *          The instrument ID
-   * @param sensorConfiguration
-   *          The sensors configuration
-   * @param runTypeConfiguration
-   *          The run type category configuration
    * @return The complete Instrument object
    * @throws DatabaseException
    *           If an error occurs while retrieving the instrument details
@@ -771,6 +775,63 @@ public class InstrumentDB {
     MissingParam.checkMissing(conn, "conn");
     MissingParam.checkPositive(instrumentId, "instrumentId");
 
+    return InstrumentCache.getInstance().get(conn, instrumentId);
+  }
+
+  /**
+   * Load a new copy of an instrument from the database, bypassing the
+   * {@link InstrumentCache}. Use this method if the instrument is going to be
+   * modified.
+   *
+   * @param dataSource
+   *          A data source
+   * @param instrumentId
+   *          The instrument's database ID
+   * @return The instrument
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws RecordNotFoundException
+   *           If the instrument does not exist
+   * @throws InstrumentException
+   *           If any instrument values are invalid
+   * @throws SensorGroupsException
+   */
+  public static Instrument loadInstrument(DataSource dataSource,
+    long instrumentId) throws DatabaseException, MissingParamException,
+    RecordNotFoundException, InstrumentException, SensorGroupsException {
+    try (Connection conn = dataSource.getConnection()) {
+      return loadInstrument(conn, instrumentId);
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while getting instrument", e);
+    }
+  }
+
+  /**
+   * Load a new copy of an instrument from the database, bypassing the
+   * {@link InstrumentCache}.
+   *
+   * @param conn
+   *          A database connection
+   * @param instrumentId
+   *          The instrument ID
+   * @return The complete Instrument object
+   * @throws DatabaseException
+   *           If an error occurs while retrieving the instrument details
+   * @throws RecordNotFoundException
+   *           If the specified instrument cannot be found
+   * @throws InstrumentException
+   *           If any instrument values are invalid
+   * @throws SensorGroupsException
+   */
+  public static Instrument loadInstrument(Connection conn, long instrumentId)
+    throws DatabaseException, RecordNotFoundException, InstrumentException,
+    SensorGroupsException {
+
+    MissingParam.checkMissing(conn, "conn");
+    MissingParam.checkPositive(instrumentId, "instrumentId");
+
     SensorsConfiguration sensorConfig = ResourceManager.getInstance()
       .getSensorsConfiguration();
     RunTypeCategoryConfiguration runTypeConfig = ResourceManager.getInstance()
@@ -1353,6 +1414,10 @@ public class InstrumentDB {
       }
 
       conn.commit();
+
+      // We only know the file definitions, so we can't tell which
+      // instruments have changed
+      InstrumentCache.getInstance().invalidateAll();
     } catch (SQLException e) {
       DatabaseUtils.rollBack(conn);
       throw new DatabaseException("Error while storing run type assignments",
@@ -1736,6 +1801,8 @@ public class InstrumentDB {
       stmt.setString(1, instrument.getPropertiesJson());
       stmt.setLong(2, instrument.getId());
       stmt.execute();
+
+      InstrumentCache.getInstance().invalidate(instrument.getId());
     } catch (SQLException e) {
       throw new DatabaseException("Error saving instrument properties", e);
     }
@@ -1773,6 +1840,9 @@ public class InstrumentDB {
       runDeleteStatement(conn, DELETE_INSTRUMENT_VARIABLES_STATEMENT,
         instrumentId);
       runDeleteStatement(conn, DELETE_INSTRUMENT_STATEMENT, instrumentId);
+
+      InstrumentCache.getInstance().invalidate(instrumentId);
+      DataFileCatalogue.getInstance().invalidate(instrumentId);
     } catch (SQLException e) {
       throw new DatabaseException("Error deleting instrument", e);
     }
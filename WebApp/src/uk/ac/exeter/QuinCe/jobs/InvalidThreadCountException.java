@@ -18,4 +18,14 @@ public class InvalidThreadCountException extends Exception {
     super("The number of threads must be positive");
   }
 
+  /**
+   * Constructor for a specific problem with the thread counts.
+   *
+   * @param message
+   *          The error message
+   */
+  public InvalidThreadCountException(String message) {
+    super(message);
+  }
+
 }
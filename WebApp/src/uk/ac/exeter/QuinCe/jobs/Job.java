@@ -91,6 +91,21 @@ public abstract class Job {
    */
   private String finishState = FINISHED_STATUS;
 
+  /**
+   * The class of the job to be run on the same thread once this job has
+   * finished, if any.
+   *
+   * @see #chainJob(String, Properties)
+   */
+  private String chainedJobClass = null;
+
+  /**
+   * The parameters for the chained job.
+   *
+   * @see #chainJob(String, Properties)
+   */
+  private Properties chainedJobProperties = null;
+
   /**
    * Constructs a job object and validates the parameters passed to it.
    *
@@ -339,6 +354,61 @@ public abstract class Job {
 
   }
 
+  /**
+   * Request that a job is run on the same thread as this job once it has
+   * finished successfully.
+   *
+   * <p>
+   * The {@link JobThread} will create the job in the database and run it
+   * straight away, without passing it through the job queue. The chained job
+   * is given the chance to take over any state from this job through
+   * {@link #handOver(Job)}. If the chained job cannot be started, it is added
+   * to the job queue as normal.
+   * </p>
+   *
+   * @param jobClass
+   *          The class name of the job to be run.
+   * @param properties
+   *          The parameters for the job.
+   * @see JobManager#startChainedJob(Job, JobThread)
+   */
+  protected void chainJob(String jobClass, Properties properties) {
+    this.chainedJobClass = jobClass;
+    this.chainedJobProperties = properties;
+  }
+
+  /**
+   * Get the class name of the job to be run after this job.
+   *
+   * @return The chained job class, or {@code null} if there is no chained job.
+   * @see #chainJob(String, Properties)
+   */
+  protected String getChainedJobClass() {
+    return chainedJobClass;
+  }
+
+  /**
+   * Get the parameters for the job to be run after this job.
+   *
+   * @return The chained job parameters.
+   * @see #chainJob(String, Properties)
+   */
+  protected Properties getChainedJobProperties() {
+    return chainedJobProperties;
+  }
+
+  /**
+   * Pass any state that should be shared with the chained job to it before it
+   * is run. The default implementation does nothing.
+   *
+   * @param nextJob
+   *          The chained job.
+   * @see #chainJob(String, Properties)
+   */
+  protected void handOver(Job nextJob) {
+    // Nothing to hand over by default
+  }
+
   /**
    * Get the human-readable name of this job.
    *
@@ -0,0 +1,800 @@
+package uk.ac.exeter.QuinCe.jobs;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.utils.DatabaseUtils;
+import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
+import uk.ac.exeter.QuinCe.utils.MissingParam;
+import uk.ac.exeter.QuinCe.utils.MissingParamException;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Starts queued jobs as soon as they are added to the queue and a
+ * {@link JobThread} is available to run them.
+ *
+ * <p>
+ * The {@code job} table in the database remains the permanent record of the
+ * job queue. The dispatcher holds the IDs of the waiting jobs in memory, and is
+ * told about new jobs by {@link JobManager#addJob} and the methods that return
+ * jobs to the queue. The queue is loaded from the database when the
+ * dispatcher starts; after that the database is only read when a job is
+ * queued or claimed, and by the occasional check made by
+ * {@link JobRunScheduler}.
+ * </p>
+ *
+ * <p>
+ * Each queued job is placed in a {@link JobPriority} class (see
+ * {@link JobManager#getQueuedJob(DataSource, long)}). When a thread is free it
+ * is given to the highest priority class that has a waiting job and that the
+ * {@link JobThreadPool} will allow to start (see
+ * {@link JobThreadPool#canStart(JobPriority)}). Within a class, the job chosen
+ * is the one whose owner, and then instrument, has the fewest jobs running.
+ * Ties are broken in favour of the owner and instrument that were least
+ * recently given a thread, and then the oldest job.
+ * </p>
+ *
+ * <p>
+ * Jobs are claimed using {@link JobManager#claimJob}, which moves the job from
+ * the waiting to the running state in a single update. If another application
+ * instance has already claimed the job, the update changes nothing and the job
+ * is skipped. This means that several application instances can share the
+ * same job table.
+ * </p>
+ *
+ * <p>
+ * Jobs queued by a running job are not dispatched until the running job has
+ * finished (see {@link JobThread#deferDispatch(long)}), so the new job never
+ * starts before the transaction that queued it has been committed.
+ * </p>
+ */
+public class JobDispatcher implements Runnable {
+
+  /**
+   * The time to wait before retrying a job whose database record could not be
+   * found, in milliseconds. This happens if the job was added in a transaction
+   * that has not yet been committed.
+   */
+  private static final long RETRY_DELAY = 1000L;
+
+  /**
+   * The number of times to try to find a job whose database record cannot be
+   * found before giving up on it. If the job appears later it will be picked
+   * up by {@link #reload()}.
+   */
+  private static final int MAX_ATTEMPTS = 30;
+
+  /**
+   * The JMX domain under which the queue statistics are published.
+   */
+  private static final String JMX_DOMAIN = "QuinCe";
+
+  /**
+   * The singleton instance of the dispatcher.
+   */
+  private static JobDispatcher instance = null;
+
+  /**
+   * The application's resource manager.
+   */
+  private final ResourceManager resourceManager;
+
+  /**
+   * The application configuration.
+   */
+  private final Properties config;
+
+  /**
+   * Lock for all the queue structures.
+   */
+  private final Object lock = new Object();
+
+  /**
+   * Jobs that have been queued, but whose details have not yet been read from
+   * the database.
+   */
+  private final Map<Long, PendingJob> pending = new LinkedHashMap<Long, PendingJob>();
+
+  /**
+   * The waiting jobs in each priority class.
+   */
+  private final Map<JobPriority, List<QueuedJob>> queues = new EnumMap<JobPriority, List<QueuedJob>>(
+    JobPriority.class);
+
+  /**
+   * The IDs of all the jobs in {@link #pending} and {@link #queues}, used to
+   * make sure that a job is only queued once.
+   */
+  private final Set<Long> queuedIds = new HashSet<Long>();
+
+  /**
+   * The jobs started by the dispatcher that are still running, keyed by the
+   * thread running them.
+   */
+  private final Map<JobThread, QueuedJob> running = new HashMap<JobThread, QueuedJob>();
+
+  /**
+   * The dispatch number at which each owner last had a job started.
+   */
+  private final Map<Long, Long> ownerLastStarted = new HashMap<Long, Long>();
+
+  /**
+   * The dispatch number at which each instrument last had a job started.
+   */
+  private final Map<Long, Long> instrumentLastStarted = new HashMap<Long, Long>();
+
+  /**
+   * The number of jobs started by the dispatcher.
+   */
+  private long dispatchCount = 0;
+
+  /**
+   * The queue statistics for each priority class.
+   */
+  private final Map<JobPriority, JobQueueStatistics> statistics = new EnumMap<JobPriority, JobQueueStatistics>(
+    JobPriority.class);
+
+  /**
+   * The thread that dispatches the jobs.
+   */
+  private Thread dispatchThread = null;
+
+  /**
+   * Indicates whether or not the dispatcher is running.
+   */
+  private volatile boolean isRunning = false;
+
+  /**
+   * Create the dispatcher.
+   *
+   * @param resourceManager
+   *          The application's resource manager.
+   * @param config
+   *          The application configuration.
+   */
+  private JobDispatcher(ResourceManager resourceManager, Properties config) {
+    this.resourceManager = resourceManager;
+    this.config = config;
+
+    for (JobPriority priority : JobPriority.values()) {
+      queues.put(priority, new ArrayList<QueuedJob>());
+      statistics.put(priority, new JobQueueStatistics(this, priority));
+    }
+  }
+
+  /**
+   * Initialise and start the dispatcher. Interrupted jobs are returned to the
+   * queue, and the queue is loaded from the database.
+   *
+   * @param resourceManager
+   *          The application's resource manager.
+   * @param config
+   *          The application configuration.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   */
+  public static synchronized void initialise(ResourceManager resourceManager,
+    Properties config) throws MissingParamException {
+
+    MissingParam.checkMissing(resourceManager, "resourceManager");
+
+    if (null == instance) {
+      instance = new JobDispatcher(resourceManager, config);
+      instance.start();
+    }
+  }
+
+  /**
+   * Determine whether or not the dispatcher has been initialised.
+   *
+   * @return {@code true} if the dispatcher is running; {@code false} if it is
+   *         not.
+   */
+  public static boolean isInitialised() {
+    return null != instance;
+  }
+
+  /**
+   * Get the dispatcher instance.
+   *
+   * @return The dispatcher, or {@code null} if it has not been initialised.
+   */
+  public static JobDispatcher getInstance() {
+    return instance;
+  }
+
+  /**
+   * Stop the dispatcher. Running jobs are not affected.
+   */
+  public static synchronized void destroy() {
+    if (null != instance) {
+      instance.stop();
+      instance = null;
+    }
+  }
+
+  /**
+   * Inform the dispatcher that a job has been placed in the queue.
+   *
+   * <p>
+   * If this is called from a {@link JobThread}, the job is not dispatched
+   * until the thread's current job has finished. If the dispatcher has not
+   * been initialised, nothing happens; the job will be found when the
+   * dispatcher loads the queue.
+   * </p>
+   *
+   * @param jobId
+   *          The job's database ID.
+   */
+  public static void jobQueued(long jobId) {
+    if (Thread.currentThread() instanceof JobThread) {
+      ((JobThread) Thread.currentThread()).deferDispatch(jobId);
+    } else {
+      JobDispatcher dispatcher = instance;
+      if (null != dispatcher) {
+        dispatcher.add(jobId);
+      }
+    }
+  }
+
+  /**
+   * Inform the dispatcher that a {@link JobThread} has been returned to the
+   * {@link JobThreadPool}, so another job can be started.
+   *
+   * @param thread
+   *          The returned thread.
+   */
+  public static void threadReturned(JobThread thread) {
+    JobDispatcher dispatcher = instance;
+    if (null != dispatcher) {
+      synchronized (dispatcher.lock) {
+        dispatcher.running.remove(thread);
+        dispatcher.lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Add any waiting jobs in the database that are not in the queue. This
+   * picks up jobs added by other application instances, and any jobs that
+   * could not be claimed when they were first queued.
+   *
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   */
+  public void reload() throws MissingParamException, DatabaseException {
+
+    List<Long> waitingJobs = JobManager
+      .getWaitingJobs(resourceManager.getDBDataSource());
+
+    for (long jobId : waitingJobs) {
+      add(jobId);
+    }
+  }
+
+  /**
+   * Get the number of jobs in the queue.
+   *
+   * @return The number of queued jobs.
+   */
+  public int getQueueSize() {
+    synchronized (lock) {
+      return queuedIds.size();
+    }
+  }
+
+  /**
+   * Get the number of jobs in the queue for a priority class. Jobs whose
+   * details have not yet been read from the database are not included.
+   *
+   * @param priority
+   *          The priority class.
+   * @return The number of queued jobs.
+   */
+  public int getQueueSize(JobPriority priority) {
+    synchronized (lock) {
+      return queues.get(priority).size();
+    }
+  }
+
+  /**
+   * Get the time that the oldest job in a priority class has been waiting.
+   *
+   * @param priority
+   *          The priority class.
+   * @return The wait time in milliseconds.
+   */
+  public long getLongestWait(JobPriority priority) {
+    long now = System.currentTimeMillis();
+    long result = 0;
+
+    synchronized (lock) {
+      for (QueuedJob job : queues.get(priority)) {
+        result = Math.max(result, now - job.getQueuedTime());
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the queue statistics for all the priority classes, in priority order.
+   *
+   * @return The statistics.
+   */
+  public List<JobQueueStatistics> getStatistics() {
+    return new ArrayList<JobQueueStatistics>(statistics.values());
+  }
+
+  /**
+   * Start the dispatch thread, and publish the queue statistics.
+   */
+  private void start() {
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    for (JobPriority priority : JobPriority.values()) {
+      try {
+        ObjectName name = getStatisticsName(priority);
+        if (!mBeanServer.isRegistered(name)) {
+          mBeanServer.registerMBean(statistics.get(priority), name);
+        }
+      } catch (JMException e) {
+        ExceptionUtils.printStackTrace(e);
+      }
+    }
+
+    isRunning = true;
+    dispatchThread = new Thread(this, "Job dispatcher");
+    dispatchThread.setDaemon(true);
+    dispatchThread.start();
+  }
+
+  /**
+   * Stop the dispatch thread, and remove the queue statistics.
+   */
+  private void stop() {
+    isRunning = false;
+    if (null != dispatchThread) {
+      dispatchThread.interrupt();
+    }
+
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    for (JobPriority priority : JobPriority.values()) {
+      try {
+        ObjectName name = getStatisticsName(priority);
+        if (mBeanServer.isRegistered(name)) {
+          mBeanServer.unregisterMBean(name);
+        }
+      } catch (JMException e) {
+        ExceptionUtils.printStackTrace(e);
+      }
+    }
+  }
+
+  /**
+   * Get the JMX name of the queue statistics for a priority class.
+   *
+   * @param priority
+   *          The priority class.
+   * @return The statistics name.
+   * @throws JMException
+   *           If the name is invalid.
+   */
+  private static ObjectName getStatisticsName(JobPriority priority)
+    throws JMException {
+    return new ObjectName(
+      JMX_DOMAIN + ":name=" + priority.getDisplayName() + "JobQueue");
+  }
+
+  /**
+   * Add a job to the queue so it is started as soon as possible, unless it is
+   * already there.
+   *
+   * @param jobId
+   *          The job's database ID.
+   */
+  protected void add(long jobId) {
+    synchronized (lock) {
+      if (queuedIds.add(jobId)) {
+        pending.put(jobId, new PendingJob(jobId, 0L, 0));
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Return a job to the pending list to be retried after a delay. If the job
+   * has been tried too many times it is dropped.
+   *
+   * @param jobId
+   *          The job's database ID.
+   * @param attempts
+   *          The number of unsuccessful attempts that have been made to find
+   *          the job.
+   */
+  private void retry(long jobId, int attempts) {
+    synchronized (lock) {
+      if (attempts < MAX_ATTEMPTS) {
+        queuedIds.add(jobId);
+        pending.put(jobId, new PendingJob(jobId,
+          System.currentTimeMillis() + RETRY_DELAY, attempts));
+      } else {
+        pending.remove(jobId);
+        queuedIds.remove(jobId);
+      }
+
+      lock.notifyAll();
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      JobManager.resetInterruptedJobs(resourceManager);
+      reload();
+    } catch (Exception e) {
+      ExceptionUtils.printStackTrace(e);
+    }
+
+    while (isRunning) {
+      try {
+        resolvePending();
+
+        QueuedJob next = takeNext();
+        if (null != next) {
+          dispatch(next);
+        }
+      } catch (InterruptedException e) {
+        // The dispatcher is being stopped; the loop condition handles it
+      } catch (Exception e) {
+        ExceptionUtils.printStackTrace(e);
+      }
+    }
+  }
+
+  /**
+   * Read the details of any pending jobs that are ready to be retried from the
+   * database, and place them in their priority queues.
+   */
+  private void resolvePending() {
+
+    List<PendingJob> ready = new ArrayList<PendingJob>();
+    long now = System.currentTimeMillis();
+
+    synchronized (lock) {
+      for (PendingJob job : pending.values()) {
+        if (job.notBefore <= now) {
+          ready.add(job);
+        }
+      }
+    }
+
+    DataSource dataSource = resourceManager.getDBDataSource();
+
+    for (PendingJob job : ready) {
+      try {
+        QueuedJob queuedJob = JobManager.getQueuedJob(dataSource, job.jobId);
+
+        if (null != queuedJob) {
+          synchronized (lock) {
+            pending.remove(job.jobId);
+            queues.get(queuedJob.getPriority()).add(queuedJob);
+          }
+        } else if (!JobManager.jobExists(dataSource, job.jobId)) {
+          // The job may have been added in a transaction that isn't yet
+          // committed. Try again later.
+          retry(job.jobId, job.attempts + 1);
+        } else {
+          // The job has already been started or is no longer waiting
+          synchronized (lock) {
+            pending.remove(job.jobId);
+            queuedIds.remove(job.jobId);
+          }
+        }
+      } catch (Exception e) {
+        ExceptionUtils.printStackTrace(e);
+        retry(job.jobId, job.attempts + 1);
+      }
+    }
+  }
+
+  /**
+   * Wait until there is a job ready to run and a thread available to run it,
+   * and remove the job from the queue. If a pending job becomes ready to be
+   * retried, {@code null} is returned so its details can be read.
+   *
+   * @return The next job, or {@code null} if there are pending jobs to check.
+   * @throws InterruptedException
+   *           If the dispatcher is stopped while waiting.
+   * @throws JobThreadPoolNotInitialisedException
+   *           If the thread pool has not been initialised.
+   */
+  private QueuedJob takeNext()
+    throws InterruptedException, JobThreadPoolNotInitialisedException {
+
+    JobThreadPool pool = JobThreadPool.getInstance();
+    QueuedJob result = null;
+
+    synchronized (lock) {
+      boolean checkPending = false;
+
+      while (isRunning && null == result && !checkPending) {
+        long now = System.currentTimeMillis();
+        long nextRetry = Long.MAX_VALUE;
+
+        for (PendingJob job : pending.values()) {
+          nextRetry = Math.min(nextRetry, job.notBefore);
+        }
+
+        if (nextRetry <= now) {
+          checkPending = true;
+        } else {
+          for (JobPriority priority : JobPriority.values()) {
+            List<QueuedJob> queue = queues.get(priority);
+            if (!queue.isEmpty() && pool.canStart(priority)) {
+              result = selectJob(queue);
+              queue.remove(result);
+              queuedIds.remove(result.getJobId());
+              break;
+            }
+          }
+
+          if (null == result) {
+            if (nextRetry == Long.MAX_VALUE) {
+              lock.wait();
+            } else {
+              lock.wait(nextRetry - now);
+            }
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Choose the job from a priority class that should be run next, using the
+   * dispatcher's record of running jobs and previous starts (see
+   * {@link #selectJob(List, Collection, Map, Map)}).
+   *
+   * <p>
+   * This must be called while holding the {@link #lock}.
+   * </p>
+   *
+   * @param queue
+   *          The waiting jobs in the priority class.
+   * @return The chosen job.
+   */
+  private QueuedJob selectJob(List<QueuedJob> queue) {
+    return selectJob(queue, running.values(), ownerLastStarted,
+      instrumentLastStarted);
+  }
+
+  /**
+   * Choose the job from a priority class that should be run next. The job
+   * chosen is the one whose owner and instrument have the fewest running jobs
+   * in the same class, or if that is equal, the one whose owner and instrument
+   * have waited longest since their last job was started. Remaining ties go to
+   * the oldest job.
+   *
+   * @param queue
+   *          The waiting jobs in the priority class. Must not be empty.
+   * @param runningJobs
+   *          The jobs that are currently running, in all priority classes.
+   * @param ownerLastStarted
+   *          The dispatch number at which each owner last had a job started.
+   * @param instrumentLastStarted
+   *          The dispatch number at which each instrument last had a job
+   *          started.
+   * @return The chosen job.
+   */
+  public static QueuedJob selectJob(List<QueuedJob> queue,
+    Collection<QueuedJob> runningJobs, Map<Long, Long> ownerLastStarted,
+    Map<Long, Long> instrumentLastStarted) {
+
+    JobPriority priority = queue.get(0).getPriority();
+
+    Map<Long, Integer> ownerRunning = new HashMap<Long, Integer>();
+    Map<Long, Integer> instrumentRunning = new HashMap<Long, Integer>();
+
+    for (QueuedJob job : runningJobs) {
+      if (job.getPriority() == priority) {
+        ownerRunning.merge(job.getOwnerId(), 1, Integer::sum);
+        instrumentRunning.merge(job.getInstrumentId(), 1, Integer::sum);
+      }
+    }
+
+    QueuedJob result = null;
+    long[] resultScore = null;
+
+    for (QueuedJob job : queue) {
+      long[] score = new long[] {
+        ownerRunning.getOrDefault(job.getOwnerId(), 0),
+        job.getInstrumentId() == QueuedJob.NONE ? 0
+          : instrumentRunning.getOrDefault(job.getInstrumentId(), 0),
+        ownerLastStarted.getOrDefault(job.getOwnerId(), -1L),
+        instrumentLastStarted.getOrDefault(job.getInstrumentId(), -1L),
+        job.getJobId() };
+
+      if (null == result || compareScores(score, resultScore) < 0) {
+        result = job;
+        resultScore = score;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Compare two job scores calculated by
+   * {@link #selectJob(List, Collection, Map, Map)}. The values are compared in
+   * order until a difference is found.
+   *
+   * @param score1
+   *          The first score.
+   * @param score2
+   *          The second score.
+   * @return A negative number if the first score is lower; a positive number
+   *         if it is higher; zero if they are equal.
+   */
+  private static int compareScores(long[] score1, long[] score2) {
+    int result = 0;
+    for (int i = 0; result == 0 && i < score1.length; i++) {
+      result = Long.compare(score1[i], score2[i]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Claim a job and start it on a {@link JobThread}.
+   *
+   * @param queuedJob
+   *          The job.
+   * @throws Exception
+   *           If the job cannot be started.
+   */
+  private void dispatch(QueuedJob queuedJob) throws Exception {
+
+    DataSource dataSource = resourceManager.getDBDataSource();
+    Connection conn = null;
+    JobThread thread = null;
+
+    try {
+      conn = dataSource.getConnection();
+      conn.setAutoCommit(false);
+
+      Job job = JobManager.claimJob(conn, resourceManager, config,
+        queuedJob.getJobId());
+
+      if (null == job) {
+        // The job has already been claimed or is no longer waiting
+        conn.rollback();
+      } else {
+        thread = JobThreadPool.getInstance().getJobThread(job,
+          queuedJob.getPriority());
+        if (null == thread) {
+          // An instant job has taken the thread. Put the job back.
+          conn.rollback();
+          requeue(queuedJob);
+        } else {
+          thread.setJobName(job.getID());
+          JobManager.logJobStarted(conn, job.getID(), thread.getName());
+          conn.commit();
+
+          jobStarted(thread, queuedJob);
+          thread.start();
+          thread = null;
+        }
+      }
+    } catch (SQLException e) {
+      DatabaseUtils.rollBack(conn);
+      retry(queuedJob.getJobId(), 1);
+      throw e;
+    } finally {
+      // Return a thread that was allocated but not started
+      if (null != thread) {
+        JobThreadPool.getInstance().returnThread(thread);
+      }
+
+      if (null != conn) {
+        try {
+          conn.setAutoCommit(true);
+        } catch (SQLException e) {
+          ExceptionUtils.printStackTrace(e);
+        }
+      }
+      DatabaseUtils.closeConnection(conn);
+    }
+  }
+
+  /**
+   * Put a job that could not be started back in its priority queue.
+   *
+   * @param queuedJob
+   *          The job.
+   */
+  private void requeue(QueuedJob queuedJob) {
+    synchronized (lock) {
+      if (queuedIds.add(queuedJob.getJobId())) {
+        queues.get(queuedJob.getPriority()).add(queuedJob);
+      }
+    }
+  }
+
+  /**
+   * Record that a job has been started.
+   *
+   * @param thread
+   *          The thread running the job.
+   * @param queuedJob
+   *          The job.
+   */
+  private void jobStarted(JobThread thread, QueuedJob queuedJob) {
+    synchronized (lock) {
+      dispatchCount++;
+      running.put(thread, queuedJob);
+      ownerLastStarted.put(queuedJob.getOwnerId(), dispatchCount);
+      instrumentLastStarted.put(queuedJob.getInstrumentId(), dispatchCount);
+    }
+
+    statistics.get(queuedJob.getPriority())
+      .jobStarted(System.currentTimeMillis() - queuedJob.getQueuedTime());
+  }
+
+  /**
+   * A job whose details have not yet been read from the database.
+   */
+  private static class PendingJob {
+
+    /**
+     * The job's database ID.
+     */
+    private final long jobId;
+
+    /**
+     * The earliest time at which the job's details should be read.
+     */
+    private final long notBefore;
+
+    /**
+     * The number of unsuccessful attempts to read the job's details.
+     */
+    private final int attempts;
+
+    /**
+     * Create a pending job.
+     *
+     * @param jobId
+     *          The job's database ID.
+     * @param notBefore
+     *          The earliest time at which the job's details should be read.
+     * @param attempts
+     *          The number of unsuccessful attempts to read the job's details.
+     */
+    private PendingJob(long jobId, long notBefore, int attempts) {
+      this.jobId = jobId;
+      this.notBefore = notBefore;
+      this.attempts = attempts;
+    }
+  }
+}
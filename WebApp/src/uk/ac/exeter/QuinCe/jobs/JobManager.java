@@ -23,7 +23,10 @@ import uk.ac.exeter.QuinCe.User.NoSuchUserException;
 import uk.ac.exeter.QuinCe.User.User;
 import uk.ac.exeter.QuinCe.User.UserDB;
 import uk.ac.exeter.QuinCe.data.Files.DataFileDB;
+import uk.ac.exeter.QuinCe.jobs.files.CreateNrtDataset;
+import uk.ac.exeter.QuinCe.jobs.files.DataSetJob;
 import uk.ac.exeter.QuinCe.jobs.files.FileJob;
+import uk.ac.exeter.QuinCe.jobs.user.SendEmailVerificationMailJob;
 import uk.ac.exeter.QuinCe.utils.DatabaseException;
 import uk.ac.exeter.QuinCe.utils.DatabaseUtils;
 import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
@@ -121,9 +124,29 @@ public class JobManager {
   private static final String GET_JOB_QUERY = "SELECT id, class, properties FROM job WHERE id = ?";
 
   /**
-   * SQL statement to retrieve the next queued job
+   * SQL statement to claim a queued job so it can be started. The status check
+   * means that only one connection can claim a given job.
    */
-  private static final String GET_NEXT_JOB_QUERY = "SELECT id, class, properties FROM job WHERE status='WAITING' ORDER BY created ASC LIMIT 1";
+  private static final String CLAIM_JOB_STATEMENT = "UPDATE job SET status = '"
+    + Job.RUNNING_STATUS + "' WHERE id = ? AND status = '" + Job.WAITING_STATUS
+    + "'";
+
+  /**
+   * SQL statement to retrieve the IDs of all queued jobs
+   */
+  private static final String GET_WAITING_JOBS_QUERY = "SELECT id FROM job WHERE status = 'WAITING' ORDER BY created ASC, id ASC";
+
+  /**
+   * SQL statement to retrieve the details of a queued job needed to schedule
+   * it
+   */
+  private static final String GET_QUEUED_JOB_QUERY = "SELECT class, owner, properties FROM job WHERE id = ? AND status = 'WAITING'";
+
+  /**
+   * SQL statement to get the instrument and NRT status of a dataset, used to
+   * schedule jobs that process datasets
+   */
+  private static final String GET_DATASET_SCHEDULING_QUERY = "SELECT instrument_id, nrt FROM dataset WHERE id = ?";
 
   /**
    * Statement to get the number of jobs of each status
@@ -317,6 +340,7 @@ public class JobManager {
         generatedKeys = stmt.getGeneratedKeys();
         if (generatedKeys.next()) {
           addedID = generatedKeys.getLong(1);
+          JobDispatcher.jobQueued(addedID);
         }
       } catch (SQLException e) {
         throw new DatabaseException("An error occurred while storing the job",
@@ -404,6 +428,113 @@ public class JobManager {
     }
   }
 
+  /**
+   * Start the job that has been chained to a job that has just finished (see
+   * {@link Job#chainJob(String, Properties)}).
+   *
+   * <p>
+   * The chained job is created in the database and immediately marked as
+   * running on the specified thread, so it never enters the job queue. The
+   * finished job is then given the chance to hand over any shared state to the
+   * new job (see {@link Job#handOver(Job)}).
+   * </p>
+   *
+   * <p>
+   * If the chained job cannot be started on the thread, or the thread has been
+   * interrupted, it is added to the job queue so it will be run as normal.
+   * </p>
+   *
+   * @param job
+   *          The job that has just finished.
+   * @param thread
+   *          The thread that ran the job.
+   * @return The chained job, ready to be run, or {@code null} if there is no
+   *         chained job or it has been placed in the job queue.
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws NoSuchUserException
+   *           If the owner of the finished job no longer exists
+   * @throws JobClassNotFoundException
+   *           If the chained job class does not exist
+   * @throws InvalidJobClassTypeException
+   *           If the chained job class is not of the correct type
+   * @throws InvalidJobConstructorException
+   *           If the chained job class does not have the correct constructor
+   * @throws JobException
+   *           If an unknown problem is found with the chained job class
+   * @throws NoSuchJobException
+   *           If the finished job does not exist
+   * @throws UnrecognisedStatusException
+   *           If the chained job cannot be returned to the queue
+   */
+  public static Job startChainedJob(Job job, JobThread thread)
+    throws DatabaseException, MissingParamException, NoSuchUserException,
+    JobClassNotFoundException, InvalidJobClassTypeException,
+    InvalidJobConstructorException, JobException, NoSuchJobException,
+    UnrecognisedStatusException {
+
+    MissingParam.checkMissing(job, "job");
+    MissingParam.checkMissing(thread, "thread");
+
+    Job chainedJob = null;
+
+    if (null != job.getChainedJobClass()) {
+      DataSource dataSource = job.resourceManager.getDBDataSource();
+      User owner = getJobOwner(dataSource, job.getID());
+
+      Connection conn = null;
+      long chainedJobId = DatabaseUtils.NO_DATABASE_RECORD;
+      boolean jobCreated = false;
+
+      try {
+        if (thread.isInterrupted()) {
+          throw new JobException("Job thread has been interrupted");
+        }
+
+        conn = dataSource.getConnection();
+        conn.setAutoCommit(false);
+
+        chainedJobId = addJob(conn, owner, job.getChainedJobClass(),
+          job.getChainedJobProperties());
+
+        // The thread must have its new name before the job is committed,
+        // otherwise resetInterruptedJobs will think it has been interrupted
+        thread.setJobName(chainedJobId);
+        logJobStarted(conn, chainedJobId, thread.getName());
+        conn.commit();
+        jobCreated = true;
+
+        chainedJob = getJob(job.resourceManager, job.config, chainedJobId);
+        job.handOver(chainedJob);
+      } catch (Exception e) {
+        ExceptionUtils.printStackTrace(e);
+        DatabaseUtils.rollBack(conn);
+        chainedJob = null;
+
+        // Put the job in the queue so it is run anyway
+        if (jobCreated) {
+          setStatus(dataSource, chainedJobId, Job.WAITING_STATUS);
+        } else {
+          addJob(dataSource, owner, job.getChainedJobClass(),
+            job.getChainedJobProperties());
+        }
+      } finally {
+        if (null != conn) {
+          try {
+            conn.setAutoCommit(true);
+          } catch (SQLException e) {
+            ExceptionUtils.printStackTrace(e);
+          }
+        }
+        DatabaseUtils.closeConnection(conn);
+      }
+    }
+
+    return chainedJob;
+  }
+
   /**
    * Sets the status of a job
    *
@@ -477,6 +608,10 @@ public class JobManager {
       stmt.setString(1, status);
       stmt.setLong(2, jobID);
       stmt.execute();
+
+      if (status.equals(Job.WAITING_STATUS)) {
+        JobDispatcher.jobQueued(jobID);
+      }
     } catch (SQLException e) {
       throw new DatabaseException("An error occurred while setting the status",
         e);
@@ -842,67 +977,237 @@ public class JobManager {
   }
 
   /**
-   * Retrieve the next queued job (i.e. the job with the oldest submission date)
-   * from the database
+   * Determines whether or not a job with the given ID exists in the database
+   *
+   * @param dataSource
+   *          A data source
+   * @param jobID
+   *          The job ID
+   * @return {@code true} if the job exists; {@code false} otherwise
+   * @throws DatabaseException
+   *           If an error occurs while searching the database
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   */
+  public static boolean jobExists(DataSource dataSource, long jobID)
+    throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(dataSource, "dataSource");
+
+    try (Connection conn = dataSource.getConnection()) {
+      return jobExists(conn, jobID);
+    } catch (SQLException e) {
+      throw new DatabaseException(
+        "An error occurred while checking for a job's existence", e);
+    }
+  }
+
+  /**
+   * Claim a queued job so that it can be started.
+   *
+   * <p>
+   * The job's status is changed from {@link Job#WAITING_STATUS} to
+   * {@link Job#RUNNING_STATUS} in a single update using the supplied
+   * connection, which must not be in auto-commit mode. If no record is
+   * updated, the job is no longer waiting (for example because another
+   * application instance has already claimed it) and {@code null} is
+   * returned. The caller must record the job's start details (see
+   * {@link #logJobStarted(Connection, long, String)}) and commit the
+   * transaction to complete the claim, or roll it back to return the job to
+   * the queue.
+   * </p>
+   *
+   * <p>
+   * If the {@link Job} object cannot be created, the job is marked as failed
+   * and {@code null} is returned.
+   * </p>
    *
+   * @param conn
+   *          A database connection
    * @param resourceManager
    *          The application's resource manager
    * @param config
    *          The application configuration
-   * @return The next queued job, or {@code null} if there are no jobs.
-   * @throws JobFailedException
-   *           If the Job object cannot be created
+   * @param jobId
+   *          The job's database ID
+   * @return The job, or {@code null} if it cannot be claimed.
    * @throws MissingParamException
-   *           If the data source is not supplied
+   *           If any required parameters are missing
    * @throws DatabaseException
    *           If an error occurs while retrieving details from the database.
    */
-  public static Job getNextJob(ResourceManager resourceManager,
-    Properties config)
-    throws JobFailedException, DatabaseException, MissingParamException {
+  public static Job claimJob(Connection conn, ResourceManager resourceManager,
+    Properties config, long jobId)
+    throws MissingParamException, DatabaseException {
 
+    MissingParam.checkMissing(conn, "conn");
     MissingParam.checkMissing(resourceManager, "resourceManager");
 
     Job job = null;
-    Connection connection = null;
-    PreparedStatement stmt = null;
-    ResultSet result = null;
-    long nextJobId = -1;
-
-    try {
-      DataSource dataSource = resourceManager.getDBDataSource();
-      connection = dataSource.getConnection();
-      stmt = connection.prepareStatement(GET_NEXT_JOB_QUERY);
 
-      result = stmt.executeQuery();
-      if (result.next()) {
-        nextJobId = result.getLong(1);
-        job = getJobFromResultSet(result, resourceManager, config);
-      }
-    } catch (JobFailedException e) {
-      try {
-        if (null != result) {
-          logJobError(connection, nextJobId, e.getCause());
+    try (PreparedStatement claimStmt = conn
+      .prepareStatement(CLAIM_JOB_STATEMENT)) {
+      claimStmt.setLong(1, jobId);
+
+      if (claimStmt.executeUpdate() == 1) {
+        try (PreparedStatement stmt = conn.prepareStatement(GET_JOB_QUERY)) {
+          stmt.setLong(1, jobId);
+
+          try (ResultSet result = stmt.executeQuery()) {
+            if (result.next()) {
+              try {
+                job = getJobFromResultSet(result, resourceManager, config);
+              } catch (JobFailedException e) {
+                try {
+                  logJobError(conn, jobId, e.getCause());
+                  conn.commit();
+                } catch (Exception e2) {
+                  ExceptionUtils.printStackTrace(e2);
+                }
+              }
+            }
+          }
         }
-      } catch (Exception e2) {
-        ExceptionUtils.printStackTrace(e2);
-        // Do nothing. The job scheduler will try again.
       }
     } catch (SQLException e) {
       // We handle all exceptions as DatabaseExceptions.
       // The fact is that invalid jobs should never get into the database in the
       // first place.
-      throw new DatabaseException(
-        "Error while retrieving details for next queued job", e);
-    } finally {
-      DatabaseUtils.closeResultSets(result);
-      DatabaseUtils.closeStatements(stmt);
-      DatabaseUtils.closeConnection(connection);
+      throw new DatabaseException("Error while claiming job " + jobId, e);
     }
 
     return job;
   }
 
+  /**
+   * Get the IDs of all the jobs waiting to be run, in the order in which they
+   * were created.
+   *
+   * @param dataSource
+   *          A data source
+   * @return The job IDs
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
+  public static List<Long> getWaitingJobs(DataSource dataSource)
+    throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(dataSource, "dataSource");
+
+    List<Long> result = new ArrayList<Long>();
+
+    try (Connection conn = dataSource.getConnection();
+      PreparedStatement stmt = conn.prepareStatement(GET_WAITING_JOBS_QUERY);
+      ResultSet records = stmt.executeQuery()) {
+
+      while (records.next()) {
+        result.add(records.getLong(1));
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while retrieving queued jobs", e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the details of a waiting job that are needed to schedule it.
+   *
+   * <p>
+   * The job's {@link JobPriority} is determined from its class:
+   * </p>
+   * <ul>
+   * <li>Jobs for user accounts (such as sending password reset emails) are
+   * {@link JobPriority#INTERACTIVE}.</li>
+   * <li>{@link CreateNrtDataset} jobs, and {@link DataSetJob}s for NRT
+   * datasets, are {@link JobPriority#NRT}.</li>
+   * <li>All other jobs are {@link JobPriority#BULK}.</li>
+   * </ul>
+   *
+   * @param dataSource
+   *          A data source
+   * @param jobId
+   *          The job's database ID
+   * @return The job details, or {@code null} if the job does not exist or is
+   *         not waiting
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
+  public static QueuedJob getQueuedJob(DataSource dataSource, long jobId)
+    throws MissingParamException, DatabaseException {
+
+    MissingParam.checkMissing(dataSource, "dataSource");
+
+    QueuedJob result = null;
+
+    try (Connection conn = dataSource.getConnection();
+      PreparedStatement stmt = conn.prepareStatement(GET_QUEUED_JOB_QUERY)) {
+
+      stmt.setLong(1, jobId);
+
+      try (ResultSet record = stmt.executeQuery()) {
+        if (record.next()) {
+          String jobClass = record.getString(1);
+          long ownerId = record.getLong(2);
+          if (record.wasNull()) {
+            ownerId = QueuedJob.NONE;
+          }
+
+          Properties properties = new Gson().fromJson(record.getString(3),
+            Properties.class);
+          if (null == properties) {
+            properties = new Properties();
+          }
+
+          JobPriority priority = JobPriority.BULK;
+          long instrumentId = QueuedJob.NONE;
+
+          try {
+            Class<?> jobClazz = Class.forName(jobClass);
+
+            if (jobClazz.getPackage()
+              .equals(SendEmailVerificationMailJob.class.getPackage())) {
+              priority = JobPriority.INTERACTIVE;
+            } else if (CreateNrtDataset.class.equals(jobClazz)) {
+              priority = JobPriority.NRT;
+              instrumentId = Long
+                .parseLong(properties.getProperty(CreateNrtDataset.ID_PARAM));
+            } else if (DataSetJob.class.isAssignableFrom(jobClazz)) {
+              try (PreparedStatement datasetStmt = conn
+                .prepareStatement(GET_DATASET_SCHEDULING_QUERY)) {
+
+                datasetStmt.setLong(1,
+                  Long.parseLong(properties.getProperty(DataSetJob.ID_PARAM)));
+
+                try (ResultSet dataset = datasetStmt.executeQuery()) {
+                  if (dataset.next()) {
+                    instrumentId = dataset.getLong(1);
+                    if (dataset.getBoolean(2)) {
+                      priority = JobPriority.NRT;
+                    }
+                  }
+                }
+              }
+            }
+          } catch (ClassNotFoundException | NumberFormatException e) {
+            // The job will fail when it is claimed. Until then, treat it as a
+            // bulk job.
+          }
+
+          result = new QueuedJob(jobId, priority, ownerId, instrumentId);
+        }
+      }
+    } catch (SQLException e) {
+      throw new DatabaseException("Error while retrieving queued job", e);
+    }
+
+    return result;
+  }
+
   /**
    * Checks a class name to see if it a valid {@link Job} class
    *
@@ -1068,59 +1373,6 @@ public class JobManager {
     return result;
   }
 
-  /**
-   * Start the next queued job, if there is one
-   *
-   * @param resourceManager
-   *          The application's resource manager
-   * @param config
-   *          The application configuration
-   * @return {@code true} if a job was started; {@code false} if no job was
-   *         started (because the queue is empty)
-   * @throws MissingParamException
-   *           If any required parameters are missing
-   * @throws JobFailedException
-   *           If the job failed
-   * @throws DatabaseException
-   *           If a database error occurred
-   * @throws JobThreadPoolNotInitialisedException
-   *           If the {@link JobThreadPool} has not been initialised
-   * @throws NoSuchJobException
-   *           If the queued job disappears from the system before it could be
-   *           started
-   */
-  public static boolean startNextJob(ResourceManager resourceManager,
-    Properties config)
-    throws MissingParamException, JobFailedException, DatabaseException,
-    JobThreadPoolNotInitialisedException, NoSuchJobException {
-    boolean jobStarted = false;
-    Job nextJob = getNextJob(resourceManager, config);
-    if (null != nextJob) {
-      JobThread thread = JobThreadPool.getInstance().getJobThread(nextJob);
-      if (null != thread) {
-        thread.start();
-
-        // Wait until the job's status is updated in the database
-        boolean jobRunning = false;
-        while (!jobRunning) {
-          if (!getJobStatus(resourceManager.getDBDataSource(), nextJob.getID())
-            .equals(Job.WAITING_STATUS)) {
-            jobRunning = true;
-          } else {
-            try {
-              Thread.sleep(250);
-            } catch (InterruptedException e) {
-              // Do nothing
-            }
-          }
-        }
-
-        jobStarted = true;
-      }
-    }
-    return jobStarted;
-  }
-
   /**
    * This method restarts jobs that have been interrupted. They are identified
    * by jobs that are marked as running, but whose thread does not exist. (When
@@ -1387,13 +1639,7 @@ public class JobManager {
       throw new DatabaseException("An error occurred while requeuing jobs", e);
     }
 
-    // Start the next job in the queue
-    try {
-      startNextJob(ResourceManager.getInstance(),
-        ResourceManager.getInstance().getConfig());
-    } catch (Exception e) {
-      // Don't sweat it
-    }
+    jobIds.forEach(JobDispatcher::jobQueued);
   }
 
   /**
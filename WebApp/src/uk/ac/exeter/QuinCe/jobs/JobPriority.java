@@ -0,0 +1,76 @@
+package uk.ac.exeter.QuinCe.jobs;
+
+/**
+ * The priority classes for background jobs.
+ *
+ * <p>
+ * When a {@link JobThread} becomes free, it is given to the highest priority
+ * job that is waiting. Each class can also have a number of the
+ * {@link JobThreadPool}'s threads reserved for it, so that its jobs can be
+ * started even if the other classes have enough jobs queued to fill the pool.
+ * </p>
+ *
+ * <p>
+ * The classes are declared in priority order, highest first.
+ * </p>
+ *
+ * @see JobManager#getQueuedJob(javax.sql.DataSource, long)
+ */
+public enum JobPriority {
+
+  /**
+   * Jobs that a user is waiting for, such as sending emails for account
+   * management.
+   */
+  INTERACTIVE("Interactive"),
+
+  /**
+   * Jobs for near real time datasets.
+   */
+  NRT("NRT"),
+
+  /**
+   * All other jobs, including the processing of user-created datasets.
+   */
+  BULK("Bulk");
+
+  /**
+   * The prefix for the configuration properties that set the number of threads
+   * reserved for each priority class.
+   */
+  public static final String RESERVED_THREADS_PROPERTY_PREFIX = "jobs.threads.reserved.";
+
+  /**
+   * The human-readable name of the priority class.
+   */
+  private final String displayName;
+
+  /**
+   * Create a priority class.
+   *
+   * @param displayName
+   *          The human-readable name of the class.
+   */
+  JobPriority(String displayName) {
+    this.displayName = displayName;
+  }
+
+  /**
+   * Get the human-readable name of the priority class.
+   *
+   * @return The name.
+   */
+  public String getDisplayName() {
+    return displayName;
+  }
+
+  /**
+   * Get the name of the configuration property that sets the number of threads
+   * reserved for this priority class.
+   *
+   * @return The property name.
+   */
+  public String getReservedThreadsProperty() {
+    return RESERVED_THREADS_PROPERTY_PREFIX + name().toLowerCase();
+  }
+}
@@ -0,0 +1,113 @@
+package uk.ac.exeter.QuinCe.jobs;
+
+/**
+ * Statistics for one {@link JobPriority} class in the {@link JobDispatcher}'s
+ * queue.
+ *
+ * <p>
+ * The queue depth and waiting times are read from the dispatcher when they are
+ * requested, and the thread counts from the {@link JobThreadPool}. The mean
+ * wait time is accumulated as jobs are started.
+ * </p>
+ */
+public class JobQueueStatistics implements JobQueueStatisticsMXBean {
+
+  /**
+   * The dispatcher whose queue is being measured.
+   */
+  private final JobDispatcher dispatcher;
+
+  /**
+   * The priority class.
+   */
+  private final JobPriority priority;
+
+  /**
+   * The number of jobs that have been started.
+   */
+  private long startedJobs = 0;
+
+  /**
+   * The total time that the started jobs spent in the queue, in milliseconds.
+   */
+  private long totalWait = 0;
+
+  /**
+   * Create the statistics for a priority class.
+   *
+   * @param dispatcher
+   *          The dispatcher whose queue is being measured.
+   * @param priority
+   *          The priority class.
+   */
+  protected JobQueueStatistics(JobDispatcher dispatcher, JobPriority priority) {
+    this.dispatcher = dispatcher;
+    this.priority = priority;
+  }
+
+  /**
+   * Record that a job has been started.
+   *
+   * @param wait
+   *          The time the job spent in the queue, in milliseconds.
+   */
+  protected synchronized void jobStarted(long wait) {
+    startedJobs++;
+    totalWait += wait;
+  }
+
+  @Override
+  public String getPriority() {
+    return priority.getDisplayName();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return dispatcher.getQueueSize(priority);
+  }
+
+  @Override
+  public long getLongestWait() {
+    return dispatcher.getLongestWait(priority) / 1000;
+  }
+
+  @Override
+  public synchronized long getMeanWait() {
+    return startedJobs == 0 ? 0 : totalWait / startedJobs / 1000;
+  }
+
+  @Override
+  public synchronized long getStartedJobs() {
+    return startedJobs;
+  }
+
+  @Override
+  public int getRunningThreads() {
+    int result = 0;
+
+    if (JobThreadPool.isInitialised()) {
+      try {
+        result = JobThreadPool.getInstance().getRunningThreadsCount(priority);
+      } catch (JobThreadPoolNotInitialisedException e) {
+        // The pool has just been destroyed. Report nothing running.
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public int getReservedThreads() {
+    int result = 0;
+
+    if (JobThreadPool.isInitialised()) {
+      try {
+        result = JobThreadPool.getInstance().getReservedThreads(priority);
+      } catch (JobThreadPoolNotInitialisedException e) {
+        // The pool has just been destroyed. Report no reservations.
+      }
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,62 @@
+package uk.ac.exeter.QuinCe.jobs;
+
+/**
+ * Management interface for the statistics of one {@link JobPriority} class in
+ * the {@link JobDispatcher}'s queue. The statistics are published through JMX,
+ * so they can be viewed and graphed by the application's JavaMelody
+ * monitoring.
+ *
+ * @see JobQueueStatistics
+ */
+public interface JobQueueStatisticsMXBean {
+
+  /**
+   * Get the name of the priority class.
+   *
+   * @return The priority class name.
+   */
+  public String getPriority();
+
+  /**
+   * Get the number of jobs waiting to run.
+   *
+   * @return The number of waiting jobs.
+   */
+  public int getQueueDepth();
+
+  /**
+   * Get the time that the oldest waiting job has been in the queue.
+   *
+   * @return The wait time in seconds.
+   */
+  public long getLongestWait();
+
+  /**
+   * Get the mean time that started jobs spent in the queue.
+   *
+   * @return The mean wait time in seconds.
+   */
+  public long getMeanWait();
+
+  /**
+   * Get the number of jobs that have been started since the application
+   * started.
+   *
+   * @return The number of started jobs.
+   */
+  public long getStartedJobs();
+
+  /**
+   * Get the number of threads currently running jobs.
+   *
+   * @return The number of running threads.
+   */
+  public int getRunningThreads();
+
+  /**
+   * Get the number of threads reserved in the {@link JobThreadPool}.
+   *
+   * @return The number of reserved threads.
+   */
+  public int getReservedThreads();
+}
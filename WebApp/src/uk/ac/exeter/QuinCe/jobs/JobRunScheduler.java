@@ -1,5 +1,6 @@
 package uk.ac.exeter.QuinCe.jobs;
 
+import javax.servlet.ServletContextEvent;
 import javax.servlet.annotation.WebListener;
 
 import uk.ac.exeter.QuinCe.utils.BackgroundTask;
@@ -7,7 +8,14 @@ import uk.ac.exeter.QuinCe.utils.BackgroundTaskException;
 import uk.ac.exeter.QuinCe.web.system.ResourceManager;
 
 /**
- * Monitors the job queue and runs jobs if needed
+ * Starts the {@link JobDispatcher}, and periodically checks the job queue in
+ * the database for jobs that the dispatcher does not know about.
+ *
+ * <p>
+ * Jobs are normally started by the dispatcher as soon as they are queued. The
+ * periodic check picks up interrupted jobs, jobs queued by other application
+ * instances, and jobs whose dispatch failed.
+ * </p>
  */
 @WebListener
 public class JobRunScheduler extends BackgroundTask {
@@ -15,12 +23,12 @@ public class JobRunScheduler extends BackgroundTask {
   protected void doTask() throws BackgroundTaskException {
     ResourceManager resourceManager = ResourceManager.getInstance();
     try {
-      JobManager.resetInterruptedJobs(resourceManager);
-
-      boolean ranJob = true;
-      while (ranJob) {
-        ranJob = JobManager.startNextJob(resourceManager,
-          resourceManager.getConfig());
+      if (!JobDispatcher.isInitialised()) {
+        // The dispatcher resets interrupted jobs and loads the queue itself
+        JobDispatcher.initialise(resourceManager, resourceManager.getConfig());
+      } else {
+        JobManager.resetInterruptedJobs(resourceManager);
+        JobDispatcher.getInstance().reload();
       }
     } catch (Exception e) {
       throw new BackgroundTaskException(e);
@@ -29,6 +37,12 @@ public class JobRunScheduler extends BackgroundTask {
 
   @Override
   protected long getRunInterval() {
-    return 1;
+    return 60;
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent arg0) {
+    super.contextDestroyed(arg0);
+    JobDispatcher.destroy();
   }
 }
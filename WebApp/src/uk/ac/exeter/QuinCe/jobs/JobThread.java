@@ -1,5 +1,8 @@
 package uk.ac.exeter.QuinCe.jobs;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
 import uk.ac.exeter.QuinCe.utils.MissingParam;
 import uk.ac.exeter.QuinCe.utils.MissingParamException;
@@ -27,6 +30,13 @@ public class JobThread extends Thread implements Comparable<JobThread> {
    */
   private boolean overflowThread;
 
+  /**
+   * The IDs of jobs queued while the current job is running. These are passed
+   * to the {@link JobDispatcher} once the job has finished, so they cannot be
+   * started before the job's database transactions have been committed.
+   */
+  private final List<Long> deferredJobs = new ArrayList<Long>();
+
   /**
    * Creates a job thread
    *
@@ -72,13 +82,105 @@ public class JobThread extends Thread implements Comparable<JobThread> {
   }
 
   /**
-   * Start the thread and run the job. When finished the thread will return
-   * itself to the thread pool
+   * Set the name of this thread to indicate that it is running the specified
+   * job.
+   *
+   * @param jobId
+   *          The ID of the job being run.
+   */
+  protected void setJobName(long jobId) {
+    setName(String.valueOf(jobId) + '_' + System.currentTimeMillis());
+  }
+
+  /**
+   * Record that a job has been queued by the job running on this thread. The
+   * {@link JobDispatcher} is told about the job when the current job finishes.
+   *
+   * @param jobId
+   *          The ID of the queued job.
+   */
+  protected void deferDispatch(long jobId) {
+    synchronized (deferredJobs) {
+      deferredJobs.add(jobId);
+    }
+  }
+
+  /**
+   * Pass any jobs queued by the current job to the {@link JobDispatcher}.
+   */
+  private void dispatchDeferredJobs() {
+    List<Long> jobIds;
+    synchronized (deferredJobs) {
+      jobIds = new ArrayList<Long>(deferredJobs);
+      deferredJobs.clear();
+    }
+
+    // This is not called from the dispatch thread, so the jobs go straight to
+    // the dispatcher
+    JobDispatcher dispatcher = JobDispatcher.getInstance();
+    if (null != dispatcher) {
+      jobIds.forEach(dispatcher::add);
+    }
+  }
+
+  /**
+   * Start the thread and run the job. If the job has chained another job to
+   * it (see {@link Job#chainJob(String, java.util.Properties)}), that job is
+   * run next on the same thread. When finished the thread will return itself
+   * to the thread pool
    */
   public void run() {
     try {
-      setName(String.valueOf(job.getID()) + '_' + System.currentTimeMillis());
+      // The dispatcher names the thread when it claims the job
+      if (!getName().startsWith(String.valueOf(job.getID()) + '_')) {
+        setJobName(job.getID());
+      }
 
+      boolean runNext = runJob();
+      while (runNext) {
+        runNext = false;
+
+        Job chainedJob = null;
+        // Jobs queued by the finished job must be dispatched even if the
+        // chained job takes over this thread
+        dispatchDeferredJobs();
+
+        try {
+          chainedJob = JobManager.startChainedJob(job, this);
+        } catch (Exception e) {
+          ExceptionUtils.printStackTrace(e);
+        }
+
+        if (null != chainedJob) {
+          job.destroy();
+          job = chainedJob;
+          runNext = runJob();
+        }
+      }
+    } finally {
+      dispatchDeferredJobs();
+      job.destroy();
+      setName(WAITING_THREAD_NAME);
+      try {
+        // Return ourselves to the thread pool
+        JobThreadPool.getInstance().returnThread(this);
+      } catch (JobThreadPoolNotInitialisedException e) {
+        // If the thread pool is gone, what happens to this thread
+        // is irrelevant.
+      }
+    }
+  }
+
+  /**
+   * Run the current job and record its final state.
+   *
+   * @return {@code true} if the job ran to completion; {@code false} if it
+   *         failed.
+   */
+  private boolean runJob() {
+    boolean success = false;
+
+    try {
       // Run the job
       job.setFinishState(Job.FINISHED_STATUS);
       job.setProgress(0);
@@ -99,6 +201,8 @@ public class JobThread extends Thread implements Comparable<JobThread> {
           "Invalid finished state (" + job.getFinishState() + ") set on job");
       }
       }
+
+      success = true;
     } catch (Throwable e) {
       try {
         job.logError(e);
@@ -123,17 +227,9 @@ public class JobThread extends Thread implements Comparable<JobThread> {
         System.out.println("Storage error:");
         ExceptionUtils.printStackTrace(e2);
       }
-    } finally {
-      job.destroy();
-      setName(WAITING_THREAD_NAME);
-      try {
-        // Return ourselves to the thread pool
-        JobThreadPool.getInstance().returnThread(this);
-      } catch (JobThreadPoolNotInitialisedException e) {
-        // If the thread pool is gone, what happens to this thread
-        // is irrelevant.
-      }
     }
+
+    return success;
   }
 
   @Override
@@ -1,9 +1,13 @@
 package uk.ac.exeter.QuinCe.jobs;
 
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Stack;
 import java.util.TreeSet;
 
+import uk.ac.exeter.QuinCe.utils.MissingParam;
 import uk.ac.exeter.QuinCe.utils.MissingParamException;
 
 /**
@@ -11,6 +15,12 @@ import uk.ac.exeter.QuinCe.utils.MissingParamException;
  * However, high priority jobs will always be given a thread, so the true number
  * of threads may occasionally be larger. Any extra threads will be destroyed
  * when they are finished.
+ *
+ * <p>
+ * Some of the pool's threads can be reserved for each {@link JobPriority}
+ * class. A job can only be given a thread if doing so leaves enough free
+ * threads for the unused reservations of the other classes.
+ * </p>
  */
 public class JobThreadPool {
 
@@ -25,6 +35,12 @@ public class JobThreadPool {
    */
   public static final int THREAD_INTERRUPTED = 1;
 
+  /**
+   * The configuration property that sets the maximum number of threads in the
+   * pool
+   */
+  public static final String THREADS_PROPERTY = "jobs.threads";
+
   /**
    * The singleton instance of the thread pool
    */
@@ -45,14 +61,32 @@ public class JobThreadPool {
    */
   private Collection<JobThread> allocatedThreads = new TreeSet<JobThread>();
 
+  /**
+   * The number of threads reserved for each priority class
+   */
+  private Map<JobPriority, Integer> reservedThreads;
+
+  /**
+   * The priority class of the job running on each allocated thread
+   */
+  private Map<JobThread, JobPriority> threadPriorities = new HashMap<JobThread, JobPriority>();
+
   /**
    * Creates the thread pool and fills it with waiting job threads
    *
    * @param maxThreads
    *          The maximum number of threads in the pool
+   * @param reservedThreads
+   *          The number of threads reserved for each priority class
    */
-  private JobThreadPool(int maxThreads) {
+  private JobThreadPool(int maxThreads,
+    Map<JobPriority, Integer> reservedThreads) {
     this.maxThreads = maxThreads;
+    this.reservedThreads = new EnumMap<JobPriority, Integer>(JobPriority.class);
+    for (JobPriority priority : JobPriority.values()) {
+      this.reservedThreads.put(priority,
+        reservedThreads.getOrDefault(priority, 0));
+    }
 
     synchronized (threads) {
       for (int i = 0; i < maxThreads; i++) {
@@ -63,24 +97,29 @@ public class JobThreadPool {
 
   /**
    * Retrieves a job thread from the pool and configures it ready to execute a
-   * job. If there are no available threads in the stack, {@code null} is
-   * returned.
+   * job. If there are no threads available for the job's priority class (see
+   * {@link #canStart(JobPriority)}), {@code null} is returned.
    *
    * @param job
    *          The job to be executed
-   * @return A configured job thread, or {@code null} if the thread stack is
-   *         empty
+   * @param priority
+   *          The job's priority class
+   * @return A configured job thread, or {@code null} if no thread is available
    * @throws MissingParamException
    *           If any of the required parameters are null
    */
-  public JobThread getJobThread(Job job) throws MissingParamException {
+  public JobThread getJobThread(Job job, JobPriority priority)
+    throws MissingParamException {
+
+    MissingParam.checkMissing(priority, "priority");
 
     JobThread thread = null;
 
     synchronized (threads) {
-      if (!threads.isEmpty()) {
+      if (canStart(priority)) {
         thread = threads.pop();
         allocatedThreads.add(thread);
+        threadPriorities.put(thread, priority);
       }
     }
 
@@ -100,6 +139,31 @@ public class JobThreadPool {
     return threads.size();
   }
 
+  /**
+   * Determine whether a job of the specified priority class can be given a
+   * thread. This is the case if there is a free thread that is not needed for
+   * the unused reservations of the other priority classes.
+   *
+   * @param priority
+   *          The priority class
+   * @return {@code true} if a thread is available for the priority class;
+   *         {@code false} if it is not
+   */
+  public boolean canStart(JobPriority priority) {
+    synchronized (threads) {
+      int heldForOthers = 0;
+
+      for (JobPriority other : JobPriority.values()) {
+        if (other != priority) {
+          heldForOthers += Math.max(0,
+            reservedThreads.get(other) - getRunningThreadsCount(other));
+        }
+      }
+
+      return threads.size() > heldForOthers;
+    }
+  }
+
   /**
    * Retrieves a job thread from the pool and configures it ready to execute a
    * job. If there are no available threads in the stack, an overflow thread is
@@ -125,6 +189,7 @@ public class JobThreadPool {
       }
 
       allocatedThreads.add(thread);
+      threadPriorities.put(thread, JobPriority.INTERACTIVE);
     }
 
     thread.setupJob(job);
@@ -146,10 +211,13 @@ public class JobThreadPool {
 
     synchronized (threads) {
       allocatedThreads.remove(thread);
+      threadPriorities.remove(thread);
       if (!thread.isOverflowThread() && threads.size() < maxThreads) {
         threads.push(new JobThread(false));
       }
     }
+
+    JobDispatcher.threadReturned(thread);
   }
 
   /**
@@ -165,8 +233,9 @@ public class JobThreadPool {
 
   /**
    * Initialise the job thread pool with the specified maximum number of
-   * threads. Calling this method when the pool has already been initialised
-   * will replace the existing instance.
+   * threads, with no threads reserved for any priority class. Calling this
+   * method when the pool has already been initialised will replace the
+   * existing instance.
    *
    * @param maxThreads
    *          The maximum number of threads in the pool
@@ -175,13 +244,56 @@ public class JobThreadPool {
    */
   public static void initialise(int maxThreads)
     throws InvalidThreadCountException {
+    initialise(maxThreads,
+      new EnumMap<JobPriority, Integer>(JobPriority.class));
+  }
+
+  /**
+   * Initialise the job thread pool with the specified maximum number of
+   * threads and the number of threads reserved for each priority class.
+   * Calling this method when the pool has already been initialised will
+   * replace the existing instance.
+   *
+   * @param maxThreads
+   *          The maximum number of threads in the pool
+   * @param reservedThreads
+   *          The number of threads reserved for each priority class. Classes
+   *          that are not included have no reserved threads.
+   * @throws InvalidThreadCountException
+   *           If the number of threads is zero or negative, or the
+   *           reservations leave no threads for a class without a reservation
+   */
+  public static void initialise(int maxThreads,
+    Map<JobPriority, Integer> reservedThreads)
+    throws InvalidThreadCountException {
 
     if (maxThreads <= 0) {
       throw new InvalidThreadCountException();
     }
 
+    int totalReserved = 0;
+    boolean unreservedClass = false;
+
+    for (JobPriority priority : JobPriority.values()) {
+      int reserved = reservedThreads.getOrDefault(priority, 0);
+      if (reserved < 0) {
+        throw new InvalidThreadCountException(
+          "Reserved thread counts cannot be negative");
+      } else if (reserved == 0) {
+        unreservedClass = true;
+      }
+
+      totalReserved += reserved;
+    }
+
+    if (totalReserved > maxThreads
+      || (unreservedClass && totalReserved == maxThreads)) {
+      throw new InvalidThreadCountException(
+        "Reserved threads must leave at least one thread for every job class");
+    }
+
     if (null == instance) {
-      instance = new JobThreadPool(maxThreads);
+      instance = new JobThreadPool(maxThreads, reservedThreads);
     }
   }
 
@@ -235,6 +347,38 @@ public class JobThreadPool {
     return allocatedThreads.size();
   }
 
+  /**
+   * Get the number of threads running jobs of the specified priority class,
+   * including overflow threads
+   *
+   * @param priority
+   *          The priority class
+   * @return The number of running threads
+   */
+  public int getRunningThreadsCount(JobPriority priority) {
+    synchronized (threads) {
+      int count = 0;
+      for (JobPriority threadPriority : threadPriorities.values()) {
+        if (threadPriority == priority) {
+          count++;
+        }
+      }
+
+      return count;
+    }
+  }
+
+  /**
+   * Get the number of threads reserved for the specified priority class
+   *
+   * @param priority
+   *          The priority class
+   * @return The number of reserved threads
+   */
+  public int getReservedThreads(JobPriority priority) {
+    return reservedThreads.get(priority);
+  }
+
   /**
    * Get the number of overflow threads. These are threads that have been
    * created for high priority jobs in excess of the maximum thread count.
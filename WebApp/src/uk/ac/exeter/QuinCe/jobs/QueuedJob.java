@@ -0,0 +1,116 @@
+package uk.ac.exeter.QuinCe.jobs;
+
+/**
+ * The details of a waiting job that the {@link JobDispatcher} needs to decide
+ * when it should be run.
+ *
+ * <p>
+ * Jobs are grouped by {@link JobPriority}. Within each priority class, the
+ * dispatcher shares the threads fairly between the jobs' owners and the
+ * instruments that the jobs are working on.
+ * </p>
+ *
+ * @see JobManager#getQueuedJob(javax.sql.DataSource, long)
+ */
+public class QueuedJob {
+
+  /**
+   * Value used for the owner and instrument IDs when the job does not have
+   * one.
+   */
+  public static final long NONE = -1L;
+
+  /**
+   * The job's database ID.
+   */
+  private final long jobId;
+
+  /**
+   * The job's priority class.
+   */
+  private final JobPriority priority;
+
+  /**
+   * The database ID of the job's owner.
+   */
+  private final long ownerId;
+
+  /**
+   * The database ID of the instrument that the job works on.
+   */
+  private final long instrumentId;
+
+  /**
+   * The time at which the job was added to the dispatcher's queue, in
+   * milliseconds.
+   */
+  private final long queuedTime;
+
+  /**
+   * Create a queued job.
+   *
+   * @param jobId
+   *          The job's database ID.
+   * @param priority
+   *          The job's priority class.
+   * @param ownerId
+   *          The database ID of the job's owner, or {@link #NONE}.
+   * @param instrumentId
+   *          The database ID of the instrument that the job works on, or
+   *          {@link #NONE}.
+   */
+  public QueuedJob(long jobId, JobPriority priority, long ownerId,
+    long instrumentId) {
+    this.jobId = jobId;
+    this.priority = priority;
+    this.ownerId = ownerId;
+    this.instrumentId = instrumentId;
+    this.queuedTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Get the job's database ID.
+   *
+   * @return The job ID.
+   */
+  public long getJobId() {
+    return jobId;
+  }
+
+  /**
+   * Get the job's priority class.
+   *
+   * @return The priority.
+   */
+  public JobPriority getPriority() {
+    return priority;
+  }
+
+  /**
+   * Get the database ID of the job's owner.
+   *
+   * @return The owner ID, or {@link #NONE} if the job has no owner.
+   */
+  public long getOwnerId() {
+    return ownerId;
+  }
+
+  /**
+   * Get the database ID of the instrument that the job works on.
+   *
+   * @return The instrument ID, or {@link #NONE} if the job is not for a
+   *         specific instrument.
+   */
+  public long getInstrumentId() {
+    return instrumentId;
+  }
+
+  /**
+   * Get the time at which the job was added to the dispatcher's queue.
+   *
+   * @return The queue time in milliseconds.
+   */
+  public long getQueuedTime() {
+    return queuedTime;
+  }
+}
@@ -2,12 +2,13 @@ package uk.ac.exeter.QuinCe.jobs.files;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
 
 import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
@@ -22,7 +23,7 @@ import uk.ac.exeter.QuinCe.data.Dataset.QC.ExternalStandards.ExternalStandardsQC
 import uk.ac.exeter.QuinCe.data.Dataset.QC.ExternalStandards.ExternalStandardsRoutinesConfiguration;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AbstractAutoQCRoutine;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCResult;
-import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCRoutine;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.AutoQCTask;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.DiagnosticsQCRoutine;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.PositionQCCascadeRoutine;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.PositionQCRoutine;
@@ -75,6 +76,22 @@ import uk.ac.exeter.QuinCe.web.system.ResourceManager;
  */
 public class AutoQCJob extends DataSetJob {
 
+  /**
+   * The application configuration property containing the number of threads
+   * used to run the automatic QC routines. The threads are shared by all
+   * running {@code AutoQCJob}s. If the property is missing, one thread per
+   * available processor is used. If it is {@code 1} or less, the QC is run on
+   * the job's own thread.
+   */
+  public static final String QC_THREADS_PROPERTY = "jobs.auto_qc.threads";
+
+  /**
+   * The pool of threads used to run the automatic QC routines.
+   *
+   * @see #getQCPool(Properties)
+   */
+  private static ForkJoinPool qcPool = null;
+
   /**
    * Name of the job, used for reporting
    */
@@ -104,7 +121,7 @@ public class AutoQCJob extends DataSetJob {
    *           If a database error occurs
    * @throws RecordNotFoundException
    *           If any required database records are missing
-   * @see JobManager#getNextJob(ResourceManager, Properties)
+   * @see JobManager#getJob(ResourceManager, Properties, long)
    */
   public AutoQCJob(ResourceManager resourceManager, Properties config,
     long jobId, Properties properties) throws MissingParamException,
@@ -145,7 +162,7 @@ public class AutoQCJob extends DataSetJob {
       SensorAssignments sensorAssignments = instrument.getSensorAssignments();
 
       DatasetSensorValues sensorValues = DataSetDataDB.getSensorValues(conn,
-        instrument, dataSet.getId(), true, true);
+        instrument, dataSet, true, true);
 
       RunTypePeriods runTypePeriods = null;
       SensorValuesList runTypeValues = null;
@@ -171,7 +188,7 @@ public class AutoQCJob extends DataSetJob {
 
         // Get the Run Type Periods for the dataset
         runTypePeriods = DataSetDataDB.getRunTypePeriods(conn, instrument,
-          dataSet.getId());
+          dataSet);
       }
 
       QCRoutinesConfiguration qcRoutinesConfig = ResourceManager.getInstance()
@@ -187,7 +204,7 @@ public class AutoQCJob extends DataSetJob {
       if (!dataSet.fixedPosition()) {
 
         positionValues = DataSetDataDB.getPositionSensorValues(conn, instrument,
-          dataSet.getId());
+          dataSet);
 
         SensorValue.clearAutoQC(positionValues.getAllPositionSensorValues());
 
@@ -198,60 +215,59 @@ public class AutoQCJob extends DataSetJob {
         speedQC.qc(null, null);
       }
 
-      // Run the auto QC routines for each column
+      // Build the QC tasks for each column. Where sensors have internal
+      // calibrations, their values need to be QCed in separate groups for each
+      // run type. Each group is independent, so the tasks can be run in
+      // parallel.
+      List<AutoQCTask> qcTasks = new ArrayList<AutoQCTask>();
+
       for (long columnId : sensorValues.getColumnIds()) {
 
         SensorType sensorType = sensorAssignments
           .getSensorTypeForDBColumn(columnId);
 
-        // Where sensors have internal calibrations, their values need to be //
-        // QCed in separate groups.
-        Map<String, SensorValuesList> valuesForQC = new HashMap<String, SensorValuesList>();
+        List<AbstractAutoQCRoutine> routines = qcRoutinesConfig
+          .getRoutines(sensorType);
 
         if (!sensorType.hasInternalCalibration()) {
           // All the values can be QCed as a single group
-          valuesForQC.put("", sensorValues.getColumnValues(columnId));
+          qcTasks.add(new AutoQCTask(routines,
+            sensorValues.getColumnValues(columnId).getRawValues(),
+            runTypePeriods, true));
         } else {
+          Map<String, List<SensorValue>> valuesForQC = new LinkedHashMap<String, List<SensorValue>>();
+
           for (SensorValue value : sensorValues.getColumnValues(columnId)
             .getRawValues()) {
 
             SensorValuesListValue runType = runTypeValues
               .getValueOnOrBefore(value.getTime());
 
+            // This can happen for values at the start of the processing
+            // window if they are recorded before the first run type
+            if (null == runType) {
+              continue;
+            }
+
             if (!valuesForQC.containsKey(runType.getStringValue())) {
               valuesForQC.put(runType.getStringValue(),
-                new SensorValuesList(columnId, sensorValues));
+                new ArrayList<SensorValue>());
             }
 
             valuesForQC.get(runType.getStringValue()).add(value);
           }
-        }
-
-        // QC each group of sensor values in turn
-        for (Map.Entry<String, SensorValuesList> values : valuesForQC
-          .entrySet()) {
-
-          SensorValue.clearAutoQC(values.getValue());
-
-          List<SensorValue> filteredValues = values.getValue().getRawValues()
-            .stream()
-            .filter(x -> !(x.getUserQCFlag().equals(Flag.BAD)
-              | x.getUserQCFlag().equals(Flag.QUESTIONABLE)))
-            .collect(Collectors.toList());
 
-          if (values.getKey().equals("")
-            || measurementRunTypes.contains(values.getKey())) {
-            // Loop through all routines
-            for (AbstractAutoQCRoutine routine : qcRoutinesConfig
-              .getRoutines(sensorType)) {
-
-              routine.setSensorType(sensorType);
-              ((AutoQCRoutine) routine).qc(filteredValues, runTypePeriods);
-            }
+          for (Map.Entry<String, List<SensorValue>> values : valuesForQC
+            .entrySet()) {
+            qcTasks.add(new AutoQCTask(routines, values.getValue(),
+              runTypePeriods, values.getKey().equals("")
+                || measurementRunTypes.contains(values.getKey())));
           }
         }
       }
 
+      AutoQCTask.runAll(qcTasks, getQCPool(config));
+
       // External Standards routines
       if (instrument.hasInternalCalibrations()) {
         ExternalStandardsRoutinesConfiguration externalStandardsRoutinesConfig = ResourceManager
@@ -269,7 +285,6 @@ public class AutoQCJob extends DataSetJob {
             for (AbstractAutoQCRoutine routine : externalStandardsRoutinesConfig
               .getRoutines(sensorType)) {
 
-              routine.setSensorType(sensorType);
               ((ExternalStandardsQCRoutine) routine).qc(calibrationSet,
                 runTypeValues, sensorValues.getColumnValues(columnId));
             }
@@ -299,11 +314,7 @@ public class AutoQCJob extends DataSetJob {
       // Trigger the Build Measurements job
       dataSet.setStatus(DataSet.STATUS_DATA_REDUCTION);
       DataSetDB.updateDataSet(conn, dataSet);
-      Properties jobProperties = new Properties();
-      jobProperties.setProperty(LocateMeasurementsJob.ID_PARAM,
-        String.valueOf(Long.parseLong(properties.getProperty(ID_PARAM))));
-      JobManager.addJob(dataSource, JobManager.getJobOwner(dataSource, id),
-        LocateMeasurementsJob.class.getCanonicalName(), jobProperties);
+      queueNextJob(conn, LocateMeasurementsJob.class);
 
       conn.commit();
 
@@ -343,10 +354,57 @@ public class AutoQCJob extends DataSetJob {
     return jobName;
   }
 
+  /**
+   * Get the pool of threads used to run the automatic QC routines. The pool is
+   * created the first time it is requested, with the number of threads set in
+   * {@link #QC_THREADS_PROPERTY}.
+   *
+   * @param config
+   *          The application configuration.
+   * @return The thread pool, or {@code null} if the QC should be run on the
+   *         job's own thread.
+   */
+  private static synchronized ForkJoinPool getQCPool(Properties config) {
+
+    if (null == qcPool) {
+      int threads = Runtime.getRuntime().availableProcessors();
+
+      if (null != config) {
+        String threadsString = config.getProperty(QC_THREADS_PROPERTY);
+        if (null != threadsString && threadsString.trim().length() > 0) {
+          try {
+            threads = Integer.parseInt(threadsString.trim());
+          } catch (NumberFormatException e) {
+            // Use the default
+          }
+        }
+      }
+
+      if (threads > 1) {
+        qcPool = new ForkJoinPool(threads);
+      }
+    }
+
+    return qcPool;
+  }
+
+  /**
+   * Shut down the pool of threads used to run the automatic QC routines, if it
+   * has been created. QC tasks that are already running are allowed to finish.
+   * A new pool will be created if another job needs one.
+   */
+  public static synchronized void shutdownQCPool() {
+    if (null != qcPool) {
+      qcPool.shutdown();
+      qcPool = null;
+    }
+  }
+
   /**
    * Reset the data set processing.
    *
-   * Delete all related records and reset the status
+   * Delete all related records and reset the status. If the job is processing
+   * new data only, the records for the previously processed data are kept.
    *
    * @param conn
    *          A database connection.
@@ -355,8 +413,16 @@ public class AutoQCJob extends DataSetJob {
    */
   protected void reset(Connection conn) throws JobFailedException {
     try {
-      DataSetDataDB.deleteDataReduction(conn, getDataset(conn).getId());
-      DataSetDataDB.deleteMeasurements(conn, getDataset(conn).getId());
+      if (isIncremental()) {
+        DataSetDataDB.deleteMeasurements(conn, getDataset(conn).getId(),
+          getIncrementalStart());
+      } else {
+        DataSetDataDB.deleteDataReduction(conn, getDataset(conn).getId());
+        DataSetDataDB.deleteMeasurements(conn, getDataset(conn).getId());
+      }
+      if (null != getWorkingSet()) {
+        getWorkingSet().clearMeasurements();
+      }
       DataSetDB.setDatasetStatus(conn, getDataset(conn).getId(),
         DataSet.STATUS_WAITING);
     } catch (Exception e) {
@@ -0,0 +1,54 @@
+package uk.ac.exeter.QuinCe.jobs.files;
+
+import javax.servlet.annotation.WebListener;
+
+import uk.ac.exeter.QuinCe.data.Files.DataFileDB;
+import uk.ac.exeter.QuinCe.data.Files.FileStoreCodec;
+import uk.ac.exeter.QuinCe.utils.BackgroundTask;
+import uk.ac.exeter.QuinCe.utils.BackgroundTaskException;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Job to convert existing files in the file store to the configured
+ * {@link FileStoreCodec}, a batch at a time.
+ *
+ * <p>
+ * New files are always stored with the configured codec, so once a run finds
+ * no files to convert the job does nothing until the application is
+ * restarted.
+ * </p>
+ */
+@WebListener
+public class ConvertFileStoreJob extends BackgroundTask {
+
+  /**
+   * The maximum number of files converted in each run.
+   */
+  private static final int BATCH_SIZE = 500;
+
+  /**
+   * Indicates whether all files have been converted.
+   */
+  private boolean complete = false;
+
+  @Override
+  protected void doTask() throws BackgroundTaskException {
+    if (!complete) {
+      try {
+        int converted = DataFileDB.convertStoredFiles(
+          ResourceManager.getInstance().getConfig(), BATCH_SIZE);
+
+        if (converted < BATCH_SIZE) {
+          complete = true;
+        }
+      } catch (Exception e) {
+        throw new BackgroundTaskException(e);
+      }
+    }
+  }
+
+  @Override
+  protected long getRunInterval() {
+    return 60;
+  }
+}
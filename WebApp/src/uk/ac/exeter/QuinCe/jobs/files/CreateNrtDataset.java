@@ -18,6 +18,7 @@ import uk.ac.exeter.QuinCe.jobs.JobManager;
 import uk.ac.exeter.QuinCe.jobs.JobThread;
 import uk.ac.exeter.QuinCe.utils.DatabaseException;
 import uk.ac.exeter.QuinCe.utils.DatabaseUtils;
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
 import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
 import uk.ac.exeter.QuinCe.utils.MissingParamException;
 import uk.ac.exeter.QuinCe.utils.RecordNotFoundException;
@@ -30,6 +31,12 @@ public class CreateNrtDataset extends Job {
    */
   public static final String ID_PARAM = "id";
 
+  /**
+   * The application configuration property that enables extending an existing
+   * NRT dataset with new data instead of recreating it.
+   */
+  public static final String INCREMENTAL_PROPERTY = "nrt.incremental";
+
   /**
    * Constructor that allows the {@link JobManager} to create an instance of
    * this job.
@@ -50,7 +57,7 @@ public class CreateNrtDataset extends Job {
    *           If a database occurs
    * @throws RecordNotFoundException
    *           If any required database records are missing
-   * @see JobManager#getNextJob(ResourceManager, Properties)
+   * @see JobManager#getJob(ResourceManager, Properties, long)
    */
   public CreateNrtDataset(ResourceManager resourceManager, Properties config,
     long jobId, Properties properties) throws MissingParamException,
@@ -69,11 +76,6 @@ public class CreateNrtDataset extends Job {
 
       Instrument instrument = InstrumentDB.getInstrument(conn, instrumentId);
 
-      // Delete the existing NRT dataset
-      DataSetDB.deleteNrtDataSet(conn, instrumentId);
-
-      // Now create the new dataset
-
       // The NRT dataset will start immediately after the last 'real' dataset.
       // If there isn't one, it will start at the beginning of the first
       // available
@@ -93,12 +95,37 @@ public class CreateNrtDataset extends Job {
         }
       }
 
-      if (null != nrtStartDate) {
-        LocalDateTime endDate = DataFileDB.getLastFileDate(conn,
-          instrument.getId(), true);
+      LocalDateTime endDate = null == nrtStartDate ? null
+        : DataFileDB.getLastFileDate(conn, instrument.getId(), true);
+
+      DataSet existingDataset = DataSetDB.getNrtDataSet(conn, instrumentId);
+
+      if (canExtend(conn, existingDataset, nrtStartDate, endDate)) {
+
+        // Add the new data to the end of the existing dataset
+        LocalDateTime previousEnd = existingDataset.getEnd();
+        existingDataset.setEnd(endDate);
+        existingDataset.setStatus(DataSet.STATUS_WAITING);
+        DataSetDB.updateDataSet(conn, existingDataset);
+        DataSetDB.resetCreatedDate(conn, existingDataset.getId());
+
+        Properties jobProperties = new Properties();
+        jobProperties.setProperty(ExtractDataSetJob.ID_PARAM,
+          String.valueOf(existingDataset.getId()));
+        jobProperties.setProperty(DataSetJob.INCREMENTAL_START_PARAM,
+          String.valueOf(DateTimeUtils.dateToLong(previousEnd)));
+
+        JobManager.addJob(conn, instrument.getOwner(),
+          ExtractDataSetJob.class.getCanonicalName(), jobProperties);
+
+      } else {
 
+        // Delete the existing NRT dataset
+        DataSetDB.deleteNrtDataSet(conn, instrumentId);
+
+        // Now create the new dataset
         // Only create the NRT dataset if there are records available
-        if (endDate.isAfter(nrtStartDate)) {
+        if (null != nrtStartDate && endDate.isAfter(nrtStartDate)) {
           String nrtDatasetName = buildNrtDatasetName(instrument);
 
           DataSet newDataset = new DataSet(instrument, nrtDatasetName,
@@ -124,6 +151,54 @@ public class CreateNrtDataset extends Job {
 
   }
 
+  /**
+   * Determine whether the existing NRT dataset can be extended with new data
+   * instead of being deleted and recreated.
+   *
+   * <p>
+   * This is only possible if incremental processing is enabled in the
+   * application configuration, the existing dataset has been fully processed,
+   * it starts at the same time as the new dataset would, and none of the data
+   * files it was built from have changed since it was created.
+   * </p>
+   *
+   * @param conn
+   *          A database connection
+   * @param existingDataset
+   *          The existing NRT dataset
+   * @param nrtStartDate
+   *          The start date for the NRT dataset
+   * @param endDate
+   *          The end date for the NRT dataset
+   * @return {@code true} if the existing dataset can be extended;
+   *         {@code false} if it must be recreated
+   * @throws MissingParamException
+   *           If any required parameters are missing
+   * @throws DatabaseException
+   *           If a database error occurs
+   */
+  private boolean canExtend(Connection conn, DataSet existingDataset,
+    LocalDateTime nrtStartDate, LocalDateTime endDate)
+    throws MissingParamException, DatabaseException {
+
+    boolean result = false;
+
+    if (null != config
+      && Boolean.parseBoolean(config.getProperty(INCREMENTAL_PROPERTY))
+      && null != existingDataset && null != nrtStartDate
+      && (existingDataset.getStatus() == DataSet.STATUS_READY_FOR_EXPORT
+        || existingDataset.getStatus() == DataSet.STATUS_EXPORT_COMPLETE)
+      && endDate.isAfter(existingDataset.getEnd())
+      && !nrtStartDate.isAfter(existingDataset.getStart())) {
+
+      result = !DataFileDB.hasModifiedFiles(conn,
+        existingDataset.getInstrumentId(), existingDataset.getEnd(),
+        existingDataset.getCreatedDate());
+    }
+
+    return result;
+  }
+
   private String buildNrtDatasetName(Instrument instrument) {
     StringBuilder result = new StringBuilder("NRT");
     result.append(instrument.getPlatformCode());
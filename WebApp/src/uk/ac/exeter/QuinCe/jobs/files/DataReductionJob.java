@@ -4,10 +4,12 @@ import java.sql.Connection;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
@@ -18,15 +20,20 @@ import uk.ac.exeter.QuinCe.data.Dataset.InvalidDataSetStatusException;
 import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
 import uk.ac.exeter.QuinCe.data.Dataset.MeasurementValue;
 import uk.ac.exeter.QuinCe.data.Dataset.MeasurementValueCollector;
+import uk.ac.exeter.QuinCe.data.Dataset.MeasurementValueCollectorException;
 import uk.ac.exeter.QuinCe.data.Dataset.MeasurementValueCollectorFactory;
 import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReducer;
 import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReducerFactory;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionException;
 import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionRecord;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionTask;
 import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.RunTypes.RunTypeCategoryException;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorAssignment;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorsConfiguration;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.VariableNotFoundException;
 import uk.ac.exeter.QuinCe.jobs.InvalidJobParametersException;
 import uk.ac.exeter.QuinCe.jobs.JobFailedException;
 import uk.ac.exeter.QuinCe.jobs.JobManager;
@@ -43,6 +50,27 @@ import uk.ac.exeter.QuinCe.web.system.ResourceManager;
  */
 public class DataReductionJob extends DataSetJob {
 
+  /**
+   * The application configuration property containing the number of threads
+   * used to run the data reducers. The threads are shared by all running
+   * {@code DataReductionJob}s. If the property is missing, one thread per
+   * available processor is used. If it is {@code 1} or less, the data
+   * reduction is run on the job's own thread.
+   */
+  public static final String REDUCTION_THREADS_PROPERTY = "jobs.data_reduction.threads";
+
+  /**
+   * The number of measurements reduced by each {@link DataReductionTask}.
+   */
+  private static final int REDUCTION_CHUNK_SIZE = 500;
+
+  /**
+   * The pool of threads used to run the data reducers.
+   *
+   * @see #getReductionPool(Properties)
+   */
+  private static ForkJoinPool reductionPool = null;
+
   /**
    * Name of the job, used for reporting
    */
@@ -99,80 +127,40 @@ public class DataReductionJob extends DataSetJob {
 
       // Load all the sensor values for this dataset
       DatasetSensorValues allSensorValues = DataSetDataDB.getSensorValues(conn,
-        instrument, dataSet.getId(), false, false);
+        instrument, dataSet, false, false);
 
       // Get all the measurements grouped by run type
       DatasetMeasurements allMeasurements = DataSetDataDB
-        .getMeasurementsByRunType(conn, instrument, dataSet.getId());
+        .getMeasurementsByRunType(conn, instrument, dataSet);
 
-      ArrayList<DataReductionRecord> dataReductionRecords = new ArrayList<DataReductionRecord>();
+      // The measurements being processed, in time order. Measurement times
+      // are adjusted below, so we can't use them to identify new measurements
+      // later on.
+      List<Measurement> processedMeasurements = new ArrayList<Measurement>();
 
       // First we calculate measurement values for all measurements
       for (Measurement measurement : allMeasurements
         .getTimeOrderedMeasurements()) {
 
-        // Work out which variables this measurement is relevant for.
-        Set<Variable> variablesToProcess = new TreeSet<Variable>();
-
-        // Get the combinations of Variable/Run Type for the measurement
-        for (Map.Entry<Long, String> runTypeEntry : measurement.getRunTypes()
-          .entrySet()) {
-
-          // See if this run type is for the GENERIC variable - this is a value
-          // from the Run Type column which determines which variable(s) it
-          // belongs to
-          if (runTypeEntry.getKey() == Measurement.RUN_TYPE_DEFINES_VARIABLE) {
-
-            for (Variable variable : instrument.getVariables()) {
-              if (instrument.isRunTypeForVariable(variable,
-                runTypeEntry.getValue())) {
-
-                variablesToProcess.add(variable);
-              }
-            }
-          } else {
-            // The run type entry contains the variable ID so we can add it
-            // directly.
-            variablesToProcess
-              .add(sensorConfig.getInstrumentVariable(runTypeEntry.getKey()));
-          }
+        // Measurements from previously processed data are already complete,
+        // and their times have already been adjusted
+        if (!isNewData(measurement.getTime())) {
+          continue;
         }
 
-        dataReductionRecords.ensureCapacity(
-          dataReductionRecords.size() + variablesToProcess.size());
+        processedMeasurements.add(measurement);
+
+        // Work out which variables this measurement is relevant for.
+        Set<Variable> variablesToProcess = getVariablesToProcess(instrument,
+          sensorConfig, measurement);
 
         /*
          * A store of one of the values we will calculate. This is used later on
          * for final adjustments to the Measurement object.
          */
-        Variable usedVariable = null;
-
-        // Loop through each variable
-        for (Variable variable : variablesToProcess) {
-
-          MeasurementValueCollector measurementValueCollector = MeasurementValueCollectorFactory
-            .getCollector(variable);
-
-          Collection<MeasurementValue> measurementValues = measurementValueCollector
-            .collectMeasurementValues(instrument, dataSet, variable,
-              allMeasurements, allSensorValues, conn, measurement);
-
-          // Otherwise store the measurement values for processing.
-          measurementValues.forEach(mv -> {
-            if (null != mv) {
-              if (!measurement.hasMeasurementValue(mv.getSensorType())) {
-                measurement.setMeasurementValue(mv);
-              }
-            }
-          });
-
-          DataSetDataDB.storeMeasurementValues(conn, measurement);
-
-          // Store this variable for use below
-          if (null == usedVariable) {
-            usedVariable = variable;
-          }
-        }
+        Variable usedVariable = collectMeasurementValues(conn, instrument,
+          dataSet, variablesToProcess, allMeasurements, allSensorValues,
+          measurement);
 
         /*
          * Finally we adjust the measurement time. The original measurement time
@@ -193,29 +181,13 @@ public class DataReductionJob extends DataSetJob {
         }
       }
 
-      // Now run all the data reducers
-      for (Variable variable : instrument.getVariables()) {
-        DataReducer reducer = DataReducerFactory.getReducer(variable,
-          dataSet.getAllProperties());
-
-        reducer.preprocess(conn, instrument, dataSet,
-          allMeasurements.getTimeOrderedMeasurements());
-
-        for (Measurement measurement : allMeasurements
-          .getTimeOrderedMeasurements()) {
-
-          if (instrument.isRunTypeForVariable(variable,
-            measurement.getRunType(variable))
-            || instrument.isRunTypeForVariable(variable,
-              measurement.getRunType(Measurement.RUN_TYPE_DEFINES_VARIABLE))) {
-
-            DataReductionRecord dataReductionRecord = reducer
-              .performDataReduction(instrument, measurement, conn);
+      // Store all the measurement values in batches
+      DataSetDataDB.storeMeasurementValues(conn, processedMeasurements);
 
-            dataReductionRecords.add(dataReductionRecord);
-          }
-        }
-      }
+      // Now run all the data reducers
+      List<DataReductionRecord> dataReductionRecords = reduceMeasurements(
+        conn, instrument, dataSet, allMeasurements, processedMeasurements,
+        getReductionPool(config));
 
       DataSetDataDB.storeDataReduction(conn, dataReductionRecords);
 
@@ -228,11 +200,7 @@ public class DataReductionJob extends DataSetJob {
         // Requeue the data reduction job
         JobManager.requeueJob(conn, id);
       } else {
-        Properties jobParams = new Properties();
-        jobParams.put(LocateMeasurementsJob.ID_PARAM,
-          String.valueOf(Long.parseLong(properties.getProperty(ID_PARAM))));
-        JobManager.addJob(dataSource, JobManager.getJobOwner(dataSource, id),
-          DataReductionQCJob.class.getCanonicalName(), jobParams);
+        queueNextJob(conn, DataReductionQCJob.class);
 
         // Set the dataset status
         dataSet.setStatus(DataSet.STATUS_DATA_REDUCTION_QC);
@@ -273,10 +241,262 @@ public class DataReductionJob extends DataSetJob {
     return jobName;
   }
 
+  /**
+   * Work out which {@link Variable}s a {@link Measurement} is relevant for,
+   * based on its Run Types.
+   *
+   * @param instrument
+   *          The instrument.
+   * @param sensorConfig
+   *          The sensors configuration.
+   * @param measurement
+   *          The measurement.
+   * @return The variables.
+   * @throws RunTypeCategoryException
+   *           If the measurement's Run Types are not recognised.
+   * @throws VariableNotFoundException
+   *           If a Run Type refers to a variable that does not exist.
+   */
+  static Set<Variable> getVariablesToProcess(Instrument instrument,
+    SensorsConfiguration sensorConfig, Measurement measurement)
+    throws RunTypeCategoryException, VariableNotFoundException {
+
+    Set<Variable> variablesToProcess = new TreeSet<Variable>();
+
+    // Get the combinations of Variable/Run Type for the measurement
+    for (Map.Entry<Long, String> runTypeEntry : measurement.getRunTypes()
+      .entrySet()) {
+
+      // See if this run type is for the GENERIC variable - this is a value
+      // from the Run Type column which determines which variable(s) it
+      // belongs to
+      if (runTypeEntry.getKey() == Measurement.RUN_TYPE_DEFINES_VARIABLE) {
+
+        for (Variable variable : instrument.getVariables()) {
+          if (instrument.isRunTypeForVariable(variable,
+            runTypeEntry.getValue())) {
+
+            variablesToProcess.add(variable);
+          }
+        }
+      } else {
+        // The run type entry contains the variable ID so we can add it
+        // directly.
+        variablesToProcess
+          .add(sensorConfig.getInstrumentVariable(runTypeEntry.getKey()));
+      }
+    }
+
+    return variablesToProcess;
+  }
+
+  /**
+   * Collect the {@link MeasurementValue}s for a {@link Measurement} for each of
+   * the specified {@link Variable}s. The values are not stored in the
+   * database.
+   *
+   * @param conn
+   *          A database connection.
+   * @param instrument
+   *          The instrument.
+   * @param dataSet
+   *          The dataset.
+   * @param variables
+   *          The variables to process.
+   * @param allMeasurements
+   *          All the measurements in the dataset.
+   * @param allSensorValues
+   *          All the sensor values in the dataset.
+   * @param measurement
+   *          The measurement.
+   * @return The first variable processed, or {@code null} if there were no
+   *         variables.
+   * @throws MeasurementValueCollectorException
+   *           If the values cannot be collected.
+   */
+  static Variable collectMeasurementValues(Connection conn,
+    Instrument instrument, DataSet dataSet, Set<Variable> variables,
+    DatasetMeasurements allMeasurements, DatasetSensorValues allSensorValues,
+    Measurement measurement) throws MeasurementValueCollectorException {
+
+    Variable usedVariable = null;
+
+    // Loop through each variable
+    for (Variable variable : variables) {
+
+      MeasurementValueCollector measurementValueCollector = MeasurementValueCollectorFactory
+        .getCollector(variable);
+
+      Collection<MeasurementValue> measurementValues = measurementValueCollector
+        .collectMeasurementValues(instrument, dataSet, variable,
+          allMeasurements, allSensorValues, conn, measurement);
+
+      // Otherwise store the measurement values for processing.
+      measurementValues.forEach(mv -> {
+        if (null != mv) {
+          if (!measurement.hasMeasurementValue(mv.getSensorType())) {
+            measurement.setMeasurementValue(mv);
+          }
+        }
+      });
+
+      // Store this variable for use below
+      if (null == usedVariable) {
+        usedVariable = variable;
+      }
+    }
+
+    return usedVariable;
+  }
+
+  /**
+   * Determine whether or not a {@link Measurement} should be reduced for the
+   * specified {@link Variable}.
+   *
+   * @param instrument
+   *          The instrument.
+   * @param variable
+   *          The variable.
+   * @param measurement
+   *          The measurement.
+   * @return {@code true} if the measurement should be reduced; {@code false}
+   *         if it should not.
+   * @throws RunTypeCategoryException
+   *           If the measurement's Run Types are not recognised.
+   */
+  static boolean isReducedFor(Instrument instrument, Variable variable,
+    Measurement measurement) throws RunTypeCategoryException {
+    return instrument.isRunTypeForVariable(variable,
+      measurement.getRunType(variable))
+      || instrument.isRunTypeForVariable(variable,
+        measurement.getRunType(Measurement.RUN_TYPE_DEFINES_VARIABLE));
+  }
+
+  /**
+   * Run the data reducers for all the {@link Instrument}'s variables on a set
+   * of {@link Measurement}s.
+   *
+   * <p>
+   * Each reducer is preprocessed once using all the measurements in the
+   * dataset. The measurements to be reduced are then split into chunks, which
+   * are reduced in parallel if a thread pool is supplied. The records are
+   * returned in the same order as if each variable's measurements were reduced
+   * in turn.
+   * </p>
+   *
+   * <p>
+   * Only the preprocessing uses the supplied connection. The chunks are reduced
+   * without a connection (see {@link DataReductionTask}), and the records are
+   * returned to the caller to be stored on its own connection.
+   * </p>
+   *
+   * @param conn
+   *          A database connection.
+   * @param instrument
+   *          The instrument.
+   * @param dataSet
+   *          The dataset.
+   * @param allMeasurements
+   *          All the measurements in the dataset.
+   * @param measurements
+   *          The measurements to be reduced, in time order.
+   * @param pool
+   *          The pool on which to run the reducers, or {@code null} to run them
+   *          on the calling thread.
+   * @return The data reduction records.
+   * @throws DataReductionException
+   *           If the data reduction fails.
+   * @throws RunTypeCategoryException
+   *           If a measurement's Run Types are not recognised.
+   * @throws InterruptedException
+   *           If the thread is interrupted while waiting for the reducers.
+   */
+  static List<DataReductionRecord> reduceMeasurements(Connection conn,
+    Instrument instrument, DataSet dataSet, DatasetMeasurements allMeasurements,
+    List<Measurement> measurements, ForkJoinPool pool) throws DataReductionException,
+    RunTypeCategoryException, InterruptedException {
+
+    List<DataReductionTask> tasks = new ArrayList<DataReductionTask>();
+
+    for (Variable variable : instrument.getVariables()) {
+      DataReducer reducer = DataReducerFactory.getReducer(variable,
+        dataSet.getAllProperties());
+
+      reducer.preprocess(conn, instrument, dataSet,
+        allMeasurements.getTimeOrderedMeasurements());
+
+      List<Measurement> chunk = new ArrayList<Measurement>();
+
+      for (Measurement measurement : measurements) {
+        if (isReducedFor(instrument, variable, measurement)) {
+          chunk.add(measurement);
+
+          if (chunk.size() == REDUCTION_CHUNK_SIZE) {
+            tasks.add(new DataReductionTask(reducer, instrument, chunk));
+            chunk = new ArrayList<Measurement>();
+          }
+        }
+      }
+
+      if (chunk.size() > 0) {
+        tasks.add(new DataReductionTask(reducer, instrument, chunk));
+      }
+    }
+
+    return DataReductionTask.runAll(tasks, pool);
+  }
+
+  /**
+   * Get the pool of threads used to run the data reducers. The pool is created
+   * the first time it is requested, with the number of threads set in
+   * {@link #REDUCTION_THREADS_PROPERTY}.
+   *
+   * @param config
+   *          The application configuration.
+   * @return The thread pool, or {@code null} if the data reduction should be
+   *         run on the job's own thread.
+   */
+  static synchronized ForkJoinPool getReductionPool(Properties config) {
+
+    if (null == reductionPool) {
+      int threads = Runtime.getRuntime().availableProcessors();
+
+      if (null != config) {
+        String threadsString = config.getProperty(REDUCTION_THREADS_PROPERTY);
+        if (null != threadsString && threadsString.trim().length() > 0) {
+          try {
+            threads = Integer.parseInt(threadsString.trim());
+          } catch (NumberFormatException e) {
+            // Use the default
+          }
+        }
+      }
+
+      if (threads > 1) {
+        reductionPool = new ForkJoinPool(threads);
+      }
+    }
+
+    return reductionPool;
+  }
+
+  /**
+   * Shut down the pool of threads used to run the data reducers, if it has
+   * been created. Reduction tasks that are already running are allowed to
+   * finish. A new pool will be created if another job needs one.
+   */
+  public static synchronized void shutdownReductionPool() {
+    if (null != reductionPool) {
+      reductionPool.shutdown();
+      reductionPool = null;
+    }
+  }
+
   /**
    * Reset the data set processing.
    *
-   * Delete all related records and reset the status
+   * Delete all related records and reset the status. If the job is processing
+   * new data only, the records for the previously processed data are kept.
    *
    * @throws MissingParamException
    *           If any of the parameters are invalid
@@ -290,7 +510,12 @@ public class DataReductionJob extends DataSetJob {
   protected void reset(Connection conn) throws JobFailedException {
 
     try {
-      DataSetDataDB.deleteDataReduction(conn, getDataset(conn).getId());
+      if (isIncremental()) {
+        DataSetDataDB.deleteDataReduction(conn, getDataset(conn).getId(),
+          getIncrementalStart());
+      } else {
+        DataSetDataDB.deleteDataReduction(conn, getDataset(conn).getId());
+      }
       DataSetDB.setDatasetStatus(conn, getDataset(conn).getId(),
         DataSet.STATUS_DATA_REDUCTION);
     } catch (Exception e) {
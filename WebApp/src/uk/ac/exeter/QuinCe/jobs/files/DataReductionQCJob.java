@@ -2,19 +2,25 @@ package uk.ac.exeter.QuinCe.jobs.files;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TreeMap;
 
+import javax.sql.DataSource;
+
 import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
 import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.InvalidDataSetStatusException;
 import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
 import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReducer;
 import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReducerFactory;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionException;
 import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ReadOnlyDataReductionRecord;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.RoutineException;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.DataReduction.DataReductionQCRoutine;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.DataReduction.DataReductionQCRoutinesConfiguration;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.FlaggedItems;
@@ -84,40 +90,16 @@ public class DataReductionQCJob extends DataSetJob {
 
       // Load all the sensor values for this dataset
       DatasetSensorValues allSensorValues = DataSetDataDB.getSensorValues(conn,
-        instrument, dataSet.getId(), false, false);
+        instrument, dataSet, false, false);
 
       List<Measurement> measurements = DataSetDataDB.getMeasurements(conn,
-        dataSet.getId());
+        dataSet);
 
       Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> records = DataSetDataDB
         .getDataReductionData(conn, instrument, dataSet);
 
-      FlaggedItems flaggedItems = new FlaggedItems();
-
-      for (Variable var : instrument.getVariables()) {
-
-        TreeMap<Measurement, ReadOnlyDataReductionRecord> variableRecords = new TreeMap<Measurement, ReadOnlyDataReductionRecord>();
-        for (Measurement measurement : measurements) {
-          Map<Variable, ReadOnlyDataReductionRecord> measurementRecords = records
-            .get(measurement.getId());
-
-          if (null != measurementRecords
-            && measurementRecords.containsKey(var)) {
-            variableRecords.put(measurement, measurementRecords.get(var));
-          }
-        }
-
-        Class<? extends DataReducer> reducer = DataReducerFactory
-          .getReducerClass(var.getName());
-
-        List<DataReductionQCRoutine> routines = config.getRoutines(reducer);
-        if (null != routines) {
-          for (DataReductionQCRoutine routine : routines) {
-            routine.qc(conn, instrument, dataSet, var, variableRecords,
-              allSensorValues, flaggedItems);
-          }
-        }
-      }
+      FlaggedItems flaggedItems = runRoutines(conn, config, instrument,
+        dataSet, measurements, records, allSensorValues);
 
       DataSetDataDB.storeSensorValues(conn, flaggedItems.getSensorValues());
       DataSetDataDB.storeMeasurementValues(conn,
@@ -127,21 +109,13 @@ public class DataReductionQCJob extends DataSetJob {
 
       conn.commit();
 
-      if (dataSet.isNrt()) {
-        dataSet.setStatus(DataSet.STATUS_READY_FOR_EXPORT);
-      } else {
-        if (DataSetDataDB.getFlagsRequired(dataSource, dataSet.getId()) > 0) {
-          dataSet.setStatus(DataSet.STATUS_USER_QC);
-        } else if (DataSetDataDB.hasCalibrationRequiredFlags(dataSource,
-          dataSet.getId())) {
-          dataSet.setStatus(DataSet.STATUS_CALIBRATION_REQUIRED);
-        } else {
-          dataSet.setStatus(DataSet.STATUS_READY_FOR_SUBMISSION);
-        }
-      }
+      setCompletedStatus(dataSource, dataSet);
 
       // Set the dataset status
       DataSetDB.updateDataSet(conn, dataSet);
+      conn.commit();
+
+      writeSnapshot(conn);
     } catch (Exception e) {
       DatabaseUtils.rollBack(conn);
       ExceptionUtils.printStackTrace(e);
@@ -178,4 +152,98 @@ public class DataReductionQCJob extends DataSetJob {
   public String getJobName() {
     return jobName;
   }
+
+  /**
+   * Run the data reduction QC routines on a set of {@link Measurement}s.
+   *
+   * @param conn
+   *          A database connection.
+   * @param config
+   *          The data reduction QC routines configuration.
+   * @param instrument
+   *          The instrument.
+   * @param dataSet
+   *          The dataset.
+   * @param measurements
+   *          The measurements to be QCed.
+   * @param records
+   *          The data reduction records, keyed by measurement ID.
+   * @param allSensorValues
+   *          All the sensor values in the dataset.
+   * @return The items flagged by the routines.
+   * @throws RoutineException
+   *           If any of the routines fail.
+   * @throws DataReductionException
+   *           If the data reducer for a variable cannot be found.
+   */
+  static FlaggedItems runRoutines(Connection conn,
+    DataReductionQCRoutinesConfiguration config, Instrument instrument,
+    DataSet dataSet, Collection<Measurement> measurements,
+    Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> records,
+    DatasetSensorValues allSensorValues)
+    throws RoutineException, DataReductionException {
+
+    FlaggedItems flaggedItems = new FlaggedItems();
+
+    for (Variable var : instrument.getVariables()) {
+
+      TreeMap<Measurement, ReadOnlyDataReductionRecord> variableRecords = new TreeMap<Measurement, ReadOnlyDataReductionRecord>();
+      for (Measurement measurement : measurements) {
+        Map<Variable, ReadOnlyDataReductionRecord> measurementRecords = records
+          .get(measurement.getId());
+
+        if (null != measurementRecords && measurementRecords.containsKey(var)) {
+          variableRecords.put(measurement, measurementRecords.get(var));
+        }
+      }
+
+      if (!variableRecords.isEmpty()) {
+        Class<? extends DataReducer> reducer = DataReducerFactory
+          .getReducerClass(var.getName());
+
+        List<DataReductionQCRoutine> routines = config.getRoutines(reducer);
+        if (null != routines) {
+          for (DataReductionQCRoutine routine : routines) {
+            routine.qc(conn, instrument, dataSet, var, variableRecords,
+              allSensorValues, flaggedItems);
+          }
+        }
+      }
+    }
+
+    return flaggedItems;
+  }
+
+  /**
+   * Set the status of a {@link DataSet} once its processing is complete,
+   * depending on whether or not it needs further attention from the user.
+   *
+   * @param dataSource
+   *          A data source.
+   * @param dataSet
+   *          The dataset.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   * @throws InvalidDataSetStatusException
+   *           If the status is invalid.
+   */
+  static void setCompletedStatus(DataSource dataSource, DataSet dataSet)
+    throws MissingParamException, DatabaseException,
+    InvalidDataSetStatusException {
+
+    if (dataSet.isNrt()) {
+      dataSet.setStatus(DataSet.STATUS_READY_FOR_EXPORT);
+    } else {
+      if (DataSetDataDB.getFlagsRequired(dataSource, dataSet.getId()) > 0) {
+        dataSet.setStatus(DataSet.STATUS_USER_QC);
+      } else if (DataSetDataDB.hasCalibrationRequiredFlags(dataSource,
+        dataSet.getId())) {
+        dataSet.setStatus(DataSet.STATUS_CALIBRATION_REQUIRED);
+      } else {
+        dataSet.setStatus(DataSet.STATUS_READY_FOR_SUBMISSION);
+      }
+    }
+  }
 }
@@ -1,16 +1,32 @@
 package uk.ac.exeter.QuinCe.jobs.files;
 
 import java.sql.Connection;
+import java.time.LocalDateTime;
 import java.util.Properties;
 
+import uk.ac.exeter.QuinCe.User.NoSuchUserException;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetDataCache;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSnapshots;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetWorkingSet;
+import uk.ac.exeter.QuinCe.data.Dataset.RunTypePeriod;
+import uk.ac.exeter.QuinCe.data.Dataset.RunTypePeriods;
 import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
 import uk.ac.exeter.QuinCe.data.Instrument.InstrumentDB;
+import uk.ac.exeter.QuinCe.jobs.InvalidJobClassTypeException;
+import uk.ac.exeter.QuinCe.jobs.InvalidJobConstructorException;
 import uk.ac.exeter.QuinCe.jobs.InvalidJobParametersException;
 import uk.ac.exeter.QuinCe.jobs.Job;
+import uk.ac.exeter.QuinCe.jobs.JobClassNotFoundException;
+import uk.ac.exeter.QuinCe.jobs.JobException;
 import uk.ac.exeter.QuinCe.jobs.JobFailedException;
+import uk.ac.exeter.QuinCe.jobs.JobManager;
+import uk.ac.exeter.QuinCe.jobs.NoSuchJobException;
 import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
 import uk.ac.exeter.QuinCe.utils.MissingParamException;
 import uk.ac.exeter.QuinCe.utils.RecordNotFoundException;
 import uk.ac.exeter.QuinCe.web.system.ResourceManager;
@@ -23,6 +39,28 @@ import uk.ac.exeter.QuinCe.web.system.ResourceManager;
  * some convenience methods in addition to those from the base {@link Job}
  * class.
  * </p>
+ *
+ * <p>
+ * The jobs that process a {@link DataSet} from extraction through to data
+ * reduction QC form a pipeline, with each job queueing the next one when it
+ * finishes (see {@link #queueNextJob(Connection, Class)}). If a memory budget
+ * is set in the application configuration (see
+ * {@link #PIPELINE_MEMORY_BUDGET_PROPERTY}), the whole pipeline is run on a
+ * single thread and a {@link DatasetWorkingSet} is passed from job to job so
+ * the dataset's values are only loaded from the database once. Datasets whose
+ * working set would exceed the budget are processed with each job loading its
+ * own data as normal.
+ * </p>
+ *
+ * <p>
+ * When new data is appended to an existing {@link DataSet} (see
+ * {@link CreateNrtDataset}), the pipeline is run in incremental mode by
+ * setting the {@link #INCREMENTAL_START_PARAM} parameter. Only data after
+ * that time is extracted, located and reduced, and the automatic QC is re-run
+ * over a look-back period before it (see {@link #QC_LOOKBACK_PROPERTY}) so
+ * that routines that examine neighbouring values see the same context as they
+ * would when processing the complete dataset.
+ * </p>
  */
 public abstract class DataSetJob extends Job {
 
@@ -33,6 +71,39 @@ public abstract class DataSetJob extends Job {
    */
   public static final String ID_PARAM = "id";
 
+  /**
+   * The application configuration property containing the maximum memory (in
+   * megabytes) that the {@link DatasetWorkingSet} for a processing pipeline can
+   * use. If the property is missing or zero, the pipeline is not used.
+   */
+  public static final String PIPELINE_MEMORY_BUDGET_PROPERTY = "jobs.pipeline.memory_budget_mb";
+
+  /**
+   * The parameter name for the end time of the previously processed data, in
+   * milliseconds since the epoch. If this is set, only data after this time is
+   * processed.
+   */
+  public static final String INCREMENTAL_START_PARAM = "incrementalStart";
+
+  /**
+   * The parameter name for the start of the processing window for incremental
+   * processing, in milliseconds since the epoch. This is calculated by the
+   * first job in the pipeline and passed on to the others.
+   */
+  private static final String WINDOW_START_PARAM = "windowStart";
+
+  /**
+   * The application configuration property containing the number of hours
+   * before the {@link #INCREMENTAL_START_PARAM} time whose values are QCed
+   * again during incremental processing.
+   */
+  public static final String QC_LOOKBACK_PROPERTY = "nrt.incremental.qc_lookback_hours";
+
+  /**
+   * The QC look-back period used if {@link #QC_LOOKBACK_PROPERTY} is not set.
+   */
+  private static final long DEFAULT_QC_LOOKBACK_HOURS = 24L;
+
   /**
    * The {@link DataSet} being processed.
    */
@@ -43,6 +114,12 @@ public abstract class DataSetJob extends Job {
    */
   private Instrument instrument = null;
 
+  /**
+   * The in-memory working set for the {@link #dataSet}, if the job is part of a
+   * processing pipeline.
+   */
+  private DatasetWorkingSet workingSet = null;
+
   /**
    * Initialise the job object so it is ready to run.
    *
@@ -96,6 +173,14 @@ public abstract class DataSetJob extends Job {
     if (null == dataSet) {
       try {
         dataSet = DataSetDB.getDataSet(conn, getDatsetId());
+
+        // The job is about to change the dataset's data
+        DatasetSnapshots.getInstance().delete(getDatsetId());
+        if (null == workingSet && isIncremental()) {
+          workingSet = new DatasetWorkingSet(getDatsetId(),
+            getProcessingWindowStart(conn));
+        }
+        dataSet.setWorkingSet(workingSet);
       } catch (Exception e) {
         throw new JobFailedException(id, "Error getting job dataset", e);
       }
@@ -129,6 +214,268 @@ public abstract class DataSetJob extends Job {
     return instrument;
   }
 
+  /**
+   * Get the in-memory working set for the {@link DataSet} being processed.
+   *
+   * @return The working set, or {@code null} if the job is not part of a
+   *         processing pipeline.
+   */
+  protected DatasetWorkingSet getWorkingSet() {
+    return workingSet;
+  }
+
+  /**
+   * Determine whether this job is processing new data appended to a
+   * previously processed {@link DataSet}.
+   *
+   * @return {@code true} if only new data is being processed; {@code false}
+   *         if the whole dataset is being processed.
+   */
+  protected boolean isIncremental() {
+    return properties.containsKey(INCREMENTAL_START_PARAM);
+  }
+
+  /**
+   * Get the end time of the previously processed data for incremental
+   * processing. Only data after this time is new.
+   *
+   * @return The end of the previously processed data, or {@code null} if the
+   *         whole dataset is being processed.
+   */
+  protected LocalDateTime getIncrementalStart() {
+    return isIncremental()
+      ? DateTimeUtils.longToDate(
+        Long.parseLong(properties.getProperty(INCREMENTAL_START_PARAM)))
+      : null;
+  }
+
+  /**
+   * Determine whether a timestamp is part of the new data being processed by
+   * this job.
+   *
+   * @param time
+   *          The timestamp.
+   * @return {@code true} if the whole dataset is being processed or the time is
+   *         after the {@link #getIncrementalStart()} time; {@code false}
+   *         otherwise.
+   */
+  protected boolean isNewData(LocalDateTime time) {
+    return !isIncremental() || time.isAfter(getIncrementalStart());
+  }
+
+  /**
+   * Get the time of the earliest data to be loaded for incremental processing.
+   *
+   * <p>
+   * This is the {@link #getIncrementalStart()} time minus the configured QC
+   * look-back period, moved back to the start of the run type period that
+   * contains it. This ensures that flushing times and run type based QC are
+   * calculated from the real start of each run.
+   * </p>
+   *
+   * @param conn
+   *          A database connection.
+   * @return The start of the processing window.
+   * @throws JobFailedException
+   *           If the run types for the dataset cannot be retrieved.
+   */
+  protected LocalDateTime getProcessingWindowStart(Connection conn)
+    throws JobFailedException {
+
+    if (!properties.containsKey(WINDOW_START_PARAM)) {
+      LocalDateTime windowStart = getIncrementalStart()
+        .minusHours(getQCLookbackHours());
+
+      try {
+        RunTypePeriods runTypePeriods = DataSetDataDB.getRunTypePeriods(conn,
+          getInstrument(conn), getDatsetId());
+
+        for (RunTypePeriod period : runTypePeriods) {
+          if (period.encompasses(windowStart)) {
+            windowStart = period.getStart();
+            break;
+          }
+        }
+      } catch (Exception e) {
+        throw new JobFailedException(id, "Error getting run types", e);
+      }
+
+      properties.setProperty(WINDOW_START_PARAM,
+        String.valueOf(DateTimeUtils.dateToLong(windowStart)));
+    }
+
+    return DateTimeUtils
+      .longToDate(Long.parseLong(properties.getProperty(WINDOW_START_PARAM)));
+  }
+
+  /**
+   * Get the QC look-back period for incremental processing from the
+   * application configuration.
+   *
+   * @return The look-back period in hours.
+   */
+  private long getQCLookbackHours() {
+    long result = DEFAULT_QC_LOOKBACK_HOURS;
+
+    if (null != config) {
+      String lookbackString = config.getProperty(QC_LOOKBACK_PROPERTY);
+      if (null != lookbackString && lookbackString.trim().length() > 0) {
+        try {
+          result = Long.parseLong(lookbackString.trim());
+        } catch (NumberFormatException e) {
+          result = DEFAULT_QC_LOOKBACK_HOURS;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Queue the next job in the processing pipeline for the {@link DataSet}.
+   *
+   * <p>
+   * If a memory budget is configured and this job already has a
+   * {@link DatasetWorkingSet}, or the dataset is small enough for a new working
+   * set to fit in the budget, the next job is chained to this one so it runs on
+   * the same thread and receives the working set. Otherwise the next job is
+   * added to the job queue.
+   * </p>
+   *
+   * <p>
+   * If this job is processing data incrementally, the next job will do the
+   * same.
+   * </p>
+   *
+   * @param conn
+   *          A database connection.
+   * @param jobClass
+   *          The class of the next job.
+   * @throws DatabaseException
+   *           If a database error occurs.
+   * @throws MissingParamException
+   *           If any required parameters are missing.
+   * @throws NoSuchUserException
+   *           If the owner of this job no longer exists.
+   * @throws NoSuchJobException
+   *           If this job no longer exists.
+   * @throws JobClassNotFoundException
+   *           If the job class does not exist.
+   * @throws InvalidJobClassTypeException
+   *           If the job class is not of the correct type.
+   * @throws InvalidJobConstructorException
+   *           If the job class does not have the correct constructor.
+   * @throws JobException
+   *           If an unknown problem is found with the job class.
+   * @throws JobFailedException
+   *           If the incremental processing window cannot be calculated.
+   */
+  protected void queueNextJob(Connection conn,
+    Class<? extends DataSetJob> jobClass) throws DatabaseException,
+    MissingParamException, NoSuchUserException, NoSuchJobException,
+    JobClassNotFoundException, InvalidJobClassTypeException,
+    InvalidJobConstructorException, JobException, JobFailedException {
+
+    Properties jobProperties = new Properties();
+    jobProperties.setProperty(ID_PARAM, String.valueOf(getDatsetId()));
+
+    if (isIncremental()) {
+      jobProperties.setProperty(INCREMENTAL_START_PARAM,
+        properties.getProperty(INCREMENTAL_START_PARAM));
+      jobProperties.setProperty(WINDOW_START_PARAM, String.valueOf(
+        DateTimeUtils.dateToLong(getProcessingWindowStart(conn))));
+    }
+
+    long budget = getPipelineMemoryBudget();
+
+    if (null == workingSet) {
+      if (budget > 0) {
+        long valueCount = DataSetDataDB.getSensorValueCount(conn,
+          getDatsetId());
+
+        if (DatasetWorkingSet.estimateMemory(valueCount) <= budget) {
+          workingSet = new DatasetWorkingSet(getDatsetId());
+        }
+      }
+    }
+
+    if (null != workingSet && budget > 0) {
+      chainJob(jobClass.getCanonicalName(), jobProperties);
+    } else {
+      JobManager.addJob(dataSource, JobManager.getJobOwner(dataSource, id),
+        jobClass.getCanonicalName(), jobProperties);
+    }
+  }
+
+  /**
+   * Write a snapshot of the {@link DataSet}'s sensor values for the QC pages
+   * and exports (see {@link DatasetSnapshots}). Called by the final job in the
+   * processing pipeline once all its changes have been committed.
+   *
+   * <p>
+   * A failure is logged but does not fail the job, since the values can
+   * always be read from the database instead.
+   * </p>
+   *
+   * @param conn
+   *          A database connection.
+   */
+  protected void writeSnapshot(Connection conn) {
+    try {
+      DatasetSnapshots.getInstance().write(conn, getDatsetId());
+    } catch (Exception e) {
+      ExceptionUtils.printStackTrace(e);
+    }
+  }
+
+  /**
+   * Get the memory budget for processing pipelines from the application
+   * configuration.
+   *
+   * @return The memory budget in bytes, or zero if pipelines are disabled.
+   */
+  private long getPipelineMemoryBudget() {
+    long result = 0L;
+
+    if (null != config) {
+      String budgetString = config.getProperty(PIPELINE_MEMORY_BUDGET_PROPERTY);
+      if (null != budgetString && budgetString.trim().length() > 0) {
+        try {
+          result = Long.parseLong(budgetString.trim()) * 1024L * 1024L;
+        } catch (NumberFormatException e) {
+          result = 0L;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  protected void handOver(Job nextJob) {
+    if (null != workingSet && nextJob instanceof DataSetJob) {
+      DataSetJob nextDataSetJob = (DataSetJob) nextJob;
+      if (nextDataSetJob.getDatsetId() == workingSet.getDatasetId()) {
+        nextDataSetJob.workingSet = workingSet;
+      }
+    }
+  }
+
+  @Override
+  protected void destroy() {
+    // The job may have changed the dataset's data, so any cached copy is
+    // no longer valid
+    if (!isDestroyed()) {
+      DatasetDataCache.getInstance().invalidate(getDatsetId());
+    }
+
+    super.destroy();
+    workingSet = null;
+    if (null != dataSet) {
+      dataSet.setWorkingSet(null);
+    }
+  }
+
   @Override
   protected void validateParameters() throws InvalidJobParametersException {
 
@@ -26,6 +26,10 @@ public class DeleteDatasetsJob extends BackgroundTask {
 
         for (DataSet dataset : datasets.values()) {
           DataSetDB.deleteDataSet(conn, dataset);
+
+          if (!dataset.isNrt()) {
+            reprocessNrtDataset(conn, dataset);
+          }
         }
       }
     } catch (Exception e) {
@@ -33,6 +37,38 @@ public class DeleteDatasetsJob extends BackgroundTask {
     }
   }
 
+  /**
+   * If the deleted dataset was the last one before the NRT dataset, the NRT
+   * dataset must be rebuilt to cover the data that is no longer in a dataset.
+   * Mark it for reprocessing.
+   *
+   * @param conn
+   *          A database connection
+   * @param deletedDataset
+   *          The dataset that has been deleted
+   * @throws Exception
+   *           If the NRT dataset cannot be updated
+   */
+  private void reprocessNrtDataset(Connection conn, DataSet deletedDataset)
+    throws Exception {
+
+    DataSet nrtDataset = DataSetDB.getNrtDataSet(conn,
+      deletedDataset.getInstrumentId());
+
+    if (null != nrtDataset
+      && nrtDataset.getStart().isAfter(deletedDataset.getEnd())) {
+
+      DataSet lastDataset = DataSetDB.getLastDataSet(conn,
+        deletedDataset.getInstrumentId(), false);
+
+      if (null == lastDataset
+        || lastDataset.getEnd().isBefore(deletedDataset.getEnd())) {
+        DataSetDB.setDatasetStatus(conn, nrtDataset.getId(),
+          DataSet.STATUS_REPROCESS);
+      }
+    }
+  }
+
   @Override
   protected long getRunInterval() {
     return 5;
@@ -14,13 +14,16 @@ import java.util.TreeSet;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetException;
 import uk.ac.exeter.QuinCe.data.Dataset.InvalidDataSetStatusException;
 import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
 import uk.ac.exeter.QuinCe.data.Dataset.RunTypePeriod;
 import uk.ac.exeter.QuinCe.data.Dataset.RunTypePeriods;
 import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.InvalidFlagException;
 import uk.ac.exeter.QuinCe.data.Files.DataFile;
+import uk.ac.exeter.QuinCe.data.Files.DataFileException;
 import uk.ac.exeter.QuinCe.data.Files.DataFileDB;
 import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
 import uk.ac.exeter.QuinCe.data.Instrument.FileDefinitionException;
@@ -29,14 +32,16 @@ import uk.ac.exeter.QuinCe.data.Instrument.MissingRunTypeException;
 import uk.ac.exeter.QuinCe.data.Instrument.Calibration.Calibration;
 import uk.ac.exeter.QuinCe.data.Instrument.Calibration.CalibrationSet;
 import uk.ac.exeter.QuinCe.data.Instrument.Calibration.SensorCalibrationDB;
+import uk.ac.exeter.QuinCe.data.Instrument.DataFormats.DateTimeSpecificationException;
+import uk.ac.exeter.QuinCe.data.Instrument.DataFormats.MissingDateTimeException;
 import uk.ac.exeter.QuinCe.data.Instrument.DataFormats.PositionException;
 import uk.ac.exeter.QuinCe.data.Instrument.RunTypes.RunTypeAssignment;
 import uk.ac.exeter.QuinCe.data.Instrument.RunTypes.RunTypeCategory;
+import uk.ac.exeter.QuinCe.data.Instrument.RunTypes.RunTypeCategoryException;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorAssignment;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
 import uk.ac.exeter.QuinCe.jobs.InvalidJobParametersException;
 import uk.ac.exeter.QuinCe.jobs.JobFailedException;
-import uk.ac.exeter.QuinCe.jobs.JobManager;
 import uk.ac.exeter.QuinCe.jobs.JobThread;
 import uk.ac.exeter.QuinCe.utils.DatabaseException;
 import uk.ac.exeter.QuinCe.utils.DatabaseUtils;
@@ -120,10 +125,12 @@ public class ExtractDataSetJob extends DataSetJob {
         ResourceManager.getInstance().getConfig(),
         dataSet.getSourceFiles(conn));
 
-      TreeSet<SensorValue> sensorValues = new TreeSet<SensorValue>();
-
-      // We want to store when run types begin and end
-      RunTypePeriods runTypePeriods = new RunTypePeriods();
+      // We want to store when run types begin and end. When adding to
+      // previously extracted data, the run types leading up to the new data
+      // are needed to work out the flushing periods.
+      RunTypePeriods runTypePeriods = isIncremental()
+        ? DataSetDataDB.getRunTypePeriods(conn, instrument, dataSet)
+        : new RunTypePeriods();
 
       CalibrationSet sensorCalibrations = SensorCalibrationDB.getInstance()
         .getMostRecentCalibrations(conn, instrument, dataSet.getStart());
@@ -146,9 +153,53 @@ public class ExtractDataSetJob extends DataSetJob {
       double minLat = Double.MAX_VALUE;
       double maxLat = -Double.MAX_VALUE;
 
+      // Start from the bounds of the previously extracted data
+      if (isIncremental() && !dataSet.fixedPosition()) {
+        minLon = dataSet.getMinLon();
+        maxLon = dataSet.getMaxLon();
+        minLat = dataSet.getMinLat();
+        maxLat = dataSet.getMaxLat();
+      }
+
+      // The Run Type periods are collected from all the files first, so the
+      // values from each file can be flagged and stored as soon as that file
+      // has been read.
+      extractRunTypePeriods(dataSet, instrument, files, runTypePeriods);
+
+      // The last run type will cover the rest of time
+      runTypePeriods.finish();
+
+      // The latest line time read from the files of each file definition.
+      // The files are in time order, so lines at or before this time in a
+      // later file of the same definition have already been extracted.
+      Map<FileDefinition, LocalDateTime> lastExtractedTimes = new HashMap<FileDefinition, LocalDateTime>();
+
+      // The times of the position values extracted so far. Position can be
+      // supplied by more than one file definition, and the first value for
+      // each time is kept. Times that can no longer be repeated are removed
+      // after each file.
+      TreeSet<LocalDateTime> longitudeTimes = new TreeSet<LocalDateTime>();
+      TreeSet<LocalDateTime> latitudeTimes = new TreeSet<LocalDateTime>();
+
+      // The number of sensor values stored, and the time spent storing them
+      int storedCount = 0;
+      long storeTime = 0L;
+
       for (DataFile file : files) {
+
+        // Skip files whose data has already been extracted
+        if (!isNewData(file.getOffsetEndTime())) {
+          continue;
+        }
+
         FileDefinition fileDefinition = file.getFileDefinition();
 
+        TreeSet<SensorValue> sensorValues = new TreeSet<SensorValue>();
+
+        LocalDateTime previousFilesTime = lastExtractedTimes
+          .get(fileDefinition);
+        LocalDateTime fileTime = previousFilesTime;
+
         int currentLine = file.getFirstDataLine();
         while (currentLine < file.getContentLineCount()) {
 
@@ -156,6 +207,11 @@ public class ExtractDataSetJob extends DataSetJob {
 
             List<String> line = file.getLine(currentLine);
 
+            if (!isNewData(file.getOffsetTime(line))) {
+              currentLine++;
+              continue;
+            }
+
             // Check the number of columns on the line
             boolean checkColumnCount = true;
 
@@ -183,6 +239,17 @@ public class ExtractDataSetJob extends DataSetJob {
 
             LocalDateTime time = file.getOffsetTime(line);
 
+            // Lines covered by an earlier file have already been extracted
+            if (null != previousFilesTime
+              && !time.isAfter(previousFilesTime)) {
+              currentLine++;
+              continue;
+            }
+
+            if (null == fileTime || time.isAfter(fileTime)) {
+              fileTime = time;
+            }
+
             if ((time.equals(dataSet.getStart())
               || time.isAfter(dataSet.getStart()))
               && (time.isBefore(dataSet.getEnd())
@@ -197,7 +264,7 @@ public class ExtractDataSetJob extends DataSetJob {
                   dataSet.addProcessingMessage(jobName, file, currentLine, e);
                 }
 
-                if (null != longitude) {
+                if (null != longitude && longitudeTimes.add(time)) {
                   sensorValues.add(new SensorValue(dataSet.getId(),
                     FileDefinition.LONGITUDE_COLUMN_ID, time, longitude));
 
@@ -223,7 +290,7 @@ public class ExtractDataSetJob extends DataSetJob {
                   dataSet.addProcessingMessage(jobName, file, currentLine, e);
                 }
 
-                if (null != latitude) {
+                if (null != latitude && latitudeTimes.add(time)) {
                   sensorValues.add(new SensorValue(dataSet.getId(),
                     FileDefinition.LATITUDE_COLUMN_ID, time, latitude));
 
@@ -263,8 +330,6 @@ public class ExtractDataSetJob extends DataSetJob {
 
                         sensorValues.add(new SensorValue(dataSet.getId(),
                           assignment.getDatabaseId(), time, runType));
-
-                        runTypePeriods.add(runType, time);
                       }
                     } else {
 
@@ -303,66 +368,35 @@ public class ExtractDataSetJob extends DataSetJob {
 
           currentLine++;
         }
-      }
 
-      // The last run type will cover the rest of time
-      runTypePeriods.finish();
+        // Flag and store the values from this file, and release its contents
+        flagRunTypeValues(instrument, runTypePeriods, sensorValues);
 
-      // Now flag all the values that have internal calibrations and are within
-      // the instrument's pre- and post-flushing periods (if they're defined),
-      // or are in an INGORED run type
-      if (runTypePeriods.size() > 0) {
-        RunTypePeriod currentPeriod = runTypePeriods.get(0);
-        int currentPeriodIndex = 0;
-
-        Iterator<SensorValue> valuesIter = sensorValues.iterator();
-        while (valuesIter.hasNext()) {
-          SensorValue value = valuesIter.next();
-          SensorType sensorType = instrument.getSensorAssignments()
-            .getSensorTypeForDBColumn(value.getColumnId());
-
-          if (sensorType.hasInternalCalibration()) {
-            boolean periodFound = false;
-
-            // Make sure we have the correct run type period
-            while (!periodFound) {
-
-              // If we have multiple file definitions, it's possible that
-              // timestamps in the file where the run type *isn't* defined will
-              // fall between run types.
-              //
-              // In this case, simply use the next known run type. Otherwise we
-              // find the run type that the timestamp is in.
-              if (value.getTime().isBefore(currentPeriod.getStart())
-                || currentPeriod.encompasses(value.getTime())) {
-                periodFound = true;
-              } else {
-                currentPeriodIndex++;
-                currentPeriod = runTypePeriods.get(currentPeriodIndex);
-              }
-            }
+        if (sensorValues.size() > 0) {
+          long storeStart = System.currentTimeMillis();
+          storedCount += DataSetDataDB.bulkStoreSensorValues(conn, dataSet,
+            instrument, sensorValues);
+          storeTime += System.currentTimeMillis() - storeStart;
+        }
 
-            // If the current period is an IGNORE run type, remove the value.
-            // We can only tell this for "Generic" instruments, ie those with a
-            // Run Type column
-            if (instrument
-              .getRunTypeCategory(Measurement.RUN_TYPE_DEFINES_VARIABLE,
-                currentPeriod.getRunType())
-              .equals(RunTypeCategory.IGNORED)) {
-              valuesIter.remove();
-            } else if (inFlushingPeriod(value.getTime(), currentPeriod,
-              instrument)) {
-
-              // Flag flushing values
-              value.setUserQC(Flag.FLUSHING, "");
-            }
-          }
+        file.unloadContents();
+
+        if (null != fileTime) {
+          lastExtractedTimes.put(fileDefinition, fileTime);
+        }
+
+        LocalDateTime positionLimit = getPositionLimit(instrument,
+          lastExtractedTimes);
+        if (null != positionLimit) {
+          longitudeTimes.headSet(positionLimit, true).clear();
+          latitudeTimes.headSet(positionLimit, true).clear();
         }
       }
 
-      // Store the remaining values
-      if (sensorValues.size() > 0) {
-        DataSetDataDB.storeSensorValues(conn, sensorValues);
+      if (storedCount > 0) {
+        dataSet.addProcessingMessage(jobName,
+          "Stored " + storedCount + " sensor values in " + storeTime + " ms ("
+            + (storedCount * 1000L / Math.max(1L, storeTime)) + " rows/s)");
       }
 
       dataSet.setBounds(minLon, minLat, maxLon, maxLat);
@@ -370,11 +404,7 @@ public class ExtractDataSetJob extends DataSetJob {
       // Trigger the Auto QC job
       dataSet.setStatus(DataSet.STATUS_SENSOR_QC);
       DataSetDB.updateDataSet(conn, dataSet);
-      Properties jobProperties = new Properties();
-      jobProperties.setProperty(AutoQCJob.ID_PARAM,
-        String.valueOf(Long.parseLong(properties.getProperty(ID_PARAM))));
-      JobManager.addJob(dataSource, JobManager.getJobOwner(dataSource, id),
-        AutoQCJob.class.getCanonicalName(), jobProperties);
+      queueNextJob(conn, AutoQCJob.class);
 
       conn.commit();
     } catch (Exception e) {
@@ -408,6 +438,169 @@ public class ExtractDataSetJob extends DataSetJob {
     }
   }
 
+  /**
+   * Get the time up to which position values can no longer be extracted. This
+   * is the earliest of the last extracted times of the file definitions that
+   * contain position. Lines at or before a definition's last extracted time
+   * are skipped, so no later file can supply a position value at or before
+   * this time.
+   *
+   * @param instrument
+   *          The instrument
+   * @param lastExtractedTimes
+   *          The last line time extracted for each file definition
+   * @return The time limit, or {@code null} if a file definition with
+   *         position has not been extracted yet
+   */
+  private LocalDateTime getPositionLimit(Instrument instrument,
+    Map<FileDefinition, LocalDateTime> lastExtractedTimes) {
+
+    LocalDateTime result = null;
+
+    for (FileDefinition fileDefinition : instrument.getFileDefinitions()) {
+      if (fileDefinition.hasPosition()) {
+        LocalDateTime definitionTime = lastExtractedTimes.get(fileDefinition);
+        if (null == definitionTime) {
+          result = null;
+          break;
+        } else if (null == result || definitionTime.isBefore(result)) {
+          result = definitionTime;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Build the Run Type periods from the Run Type columns in the data files.
+   *
+   * <p>
+   * Only the Run Type and time are read from each line. Any other problems
+   * with the lines are reported when the values are extracted.
+   * </p>
+   *
+   * @param dataSet
+   *          The dataset being extracted
+   * @param instrument
+   *          The instrument
+   * @param files
+   *          The dataset's files, in time order
+   * @param runTypePeriods
+   *          The Run Type periods to be added to
+   * @throws DataFileException
+   *           If a file's contents cannot be loaded
+   */
+  private void extractRunTypePeriods(DataSet dataSet, Instrument instrument,
+    List<DataFile> files, RunTypePeriods runTypePeriods)
+    throws DataFileException {
+
+    TreeSet<SensorAssignment> runTypeAssignments = instrument
+      .getSensorAssignments().get(SensorType.RUN_TYPE_SENSOR_TYPE);
+
+    if (null != runTypeAssignments) {
+      for (DataFile file : files) {
+
+        FileDefinition fileDefinition = file.getFileDefinition();
+
+        boolean hasRunType = runTypeAssignments.stream().anyMatch(
+          a -> a.getDataFile().equals(fileDefinition.getFileDescription()));
+
+        if (hasRunType && isNewData(file.getOffsetEndTime())) {
+          int currentLine = file.getFirstDataLine();
+          while (currentLine < file.getContentLineCount()) {
+            try {
+              List<String> line = file.getLine(currentLine);
+              LocalDateTime time = file.getOffsetTime(line);
+
+              if (isNewData(time) && !time.isBefore(dataSet.getStart())
+                && !time.isAfter(dataSet.getEnd())) {
+
+                RunTypeAssignment runTypeValue = fileDefinition
+                  .getRunType(line, true);
+
+                if (null != runTypeValue) {
+                  runTypePeriods.add(runTypeValue.getRunName(), time);
+                }
+              }
+            } catch (DataSetException e) {
+              dataSet.addProcessingMessage(jobName, file, currentLine, e);
+            } catch (DateTimeSpecificationException | MissingDateTimeException
+              | FileDefinitionException e) {
+              // The line is skipped here. The same error is recorded against
+              // the line when its values are extracted.
+            }
+
+            currentLine++;
+          }
+
+          file.unloadContents();
+        }
+      }
+    }
+  }
+
+  /**
+   * Flag the values that have internal calibrations and are within the
+   * instrument's pre- and post-flushing periods (if they're defined), and
+   * remove those that are in an IGNORED run type.
+   *
+   * @param instrument
+   *          The instrument
+   * @param runTypePeriods
+   *          The finished Run Type periods
+   * @param sensorValues
+   *          The values, in time order
+   * @throws RecordNotFoundException
+   *           If a value's column is not assigned to a sensor type
+   * @throws RunTypeCategoryException
+   *           If a Run Type is not recognised
+   * @throws InvalidFlagException
+   *           If a flushing flag cannot be set
+   */
+  private void flagRunTypeValues(Instrument instrument,
+    RunTypePeriods runTypePeriods, TreeSet<SensorValue> sensorValues)
+    throws RecordNotFoundException, RunTypeCategoryException,
+    InvalidFlagException {
+
+    if (runTypePeriods.size() > 0) {
+      RunTypePeriods.Cursor cursor = runTypePeriods.cursor();
+
+      Iterator<SensorValue> valuesIter = sensorValues.iterator();
+      while (valuesIter.hasNext()) {
+        SensorValue value = valuesIter.next();
+        SensorType sensorType = instrument.getSensorAssignments()
+          .getSensorTypeForDBColumn(value.getColumnId());
+
+        if (sensorType.hasInternalCalibration()) {
+
+          // If we have multiple file definitions, it's possible that
+          // timestamps in the file where the run type *isn't* defined will
+          // fall between run types.
+          //
+          // In this case the cursor gives us the next known run type.
+          // Otherwise we get the run type that the timestamp is in.
+          RunTypePeriod currentPeriod = cursor.advance(value.getTime());
+
+          // If the current period is an IGNORE run type, remove the value.
+          // We can only tell this for "Generic" instruments, ie those with a
+          // Run Type column
+          if (instrument
+            .getRunTypeCategory(Measurement.RUN_TYPE_DEFINES_VARIABLE,
+              currentPeriod.getRunType())
+            .equals(RunTypeCategory.IGNORED)) {
+            valuesIter.remove();
+          } else if (inFlushingPeriod(value.getTime(), currentPeriod,
+            instrument)) {
+
+            // Flag flushing values
+            value.setUserQC(Flag.FLUSHING, "");
+          }
+        }
+      }
+    }
+  }
+
   private boolean inFlushingPeriod(LocalDateTime time,
     RunTypePeriod runTypePeriod, Instrument instrument) {
 
@@ -437,7 +630,8 @@ public class ExtractDataSetJob extends DataSetJob {
   /**
    * Reset the data set processing.
    *
-   * Delete all related records and reset the status
+   * Delete all related records and reset the status. If the job is processing
+   * new data only, the records for the previously processed data are kept.
    *
    * @throws MissingParamException
    *           If any of the parameters are invalid
@@ -451,9 +645,16 @@ public class ExtractDataSetJob extends DataSetJob {
   protected void reset(Connection conn) throws JobFailedException {
 
     try {
-      DataSetDataDB.deleteDataReduction(conn, getDataset(conn).getId());
-      DataSetDataDB.deleteMeasurements(conn, getDataset(conn).getId());
-      DataSetDataDB.deleteSensorValues(conn, getDataset(conn).getId());
+      if (isIncremental()) {
+        DataSetDataDB.deleteMeasurements(conn, getDataset(conn).getId(),
+          getIncrementalStart());
+        DataSetDataDB.deleteSensorValues(conn, getDataset(conn).getId(),
+          getIncrementalStart());
+      } else {
+        DataSetDataDB.deleteDataReduction(conn, getDataset(conn).getId());
+        DataSetDataDB.deleteMeasurements(conn, getDataset(conn).getId());
+        DataSetDataDB.deleteSensorValues(conn, getDataset(conn).getId());
+      }
       DataSetDB.setDatasetStatus(conn, getDataset(conn).getId(),
         DataSet.STATUS_WAITING);
     } catch (Exception e) {
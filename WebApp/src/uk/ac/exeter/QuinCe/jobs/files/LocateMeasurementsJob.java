@@ -61,7 +61,7 @@ public class LocateMeasurementsJob extends DataSetJob {
    *           If a database occurs
    * @throws RecordNotFoundException
    *           If any required database records are missing
-   * @see JobManager#getNextJob(ResourceManager, Properties)
+   * @see JobManager#getJob(ResourceManager, Properties, long)
    */
   public LocateMeasurementsJob(ResourceManager resourceManager,
     Properties config, long jobId, Properties properties)
@@ -103,16 +103,28 @@ public class LocateMeasurementsJob extends DataSetJob {
           locator.locateMeasurements(conn, instrument, dataSet));
       }
 
+      // Measurements from previously processed data are already stored
+      if (isIncremental()) {
+        measurements.keySet().removeIf(time -> !isNewData(time));
+      }
+
       DataSetDataDB.storeMeasurements(conn, measurements.values());
+      if (null != getWorkingSet()) {
+        if (getWorkingSet().isWindowed()) {
+          // The working set also needs the existing measurements in the
+          // processing window
+          getWorkingSet().setMeasurements(
+            DataSetDataDB.getMeasurements(conn, dataSet.getId(),
+              getWorkingSet().getStart()));
+        } else {
+          getWorkingSet().setMeasurements(measurements.values());
+        }
+      }
 
       // Trigger the Build Measurements job
       dataSet.setStatus(DataSet.STATUS_DATA_REDUCTION);
       DataSetDB.updateDataSet(conn, dataSet);
-      Properties jobProperties = new Properties();
-      jobProperties.setProperty(LocateMeasurementsJob.ID_PARAM,
-        String.valueOf(Long.parseLong(properties.getProperty(ID_PARAM))));
-      JobManager.addJob(dataSource, JobManager.getJobOwner(dataSource, id),
-        DataReductionJob.class.getCanonicalName(), jobProperties);
+      queueNextJob(conn, DataReductionJob.class);
 
       conn.commit();
     } catch (Exception e) {
@@ -167,7 +179,8 @@ public class LocateMeasurementsJob extends DataSetJob {
   /**
    * Reset the data set processing.
    *
-   * Delete all related records and reset the status
+   * Delete all related records and reset the status. If the job is processing
+   * new data only, the records for the previously processed data are kept.
    *
    * @throws MissingParamException
    *           If any of the parameters are invalid
@@ -181,8 +194,16 @@ public class LocateMeasurementsJob extends DataSetJob {
   protected void reset(Connection conn) throws JobFailedException {
 
     try {
-      DataSetDataDB.deleteDataReduction(conn, getDataset(conn).getId());
-      DataSetDataDB.deleteMeasurements(conn, getDataset(conn).getId());
+      if (isIncremental()) {
+        DataSetDataDB.deleteMeasurements(conn, getDataset(conn).getId(),
+          getIncrementalStart());
+      } else {
+        DataSetDataDB.deleteDataReduction(conn, getDataset(conn).getId());
+        DataSetDataDB.deleteMeasurements(conn, getDataset(conn).getId());
+      }
+      if (null != getWorkingSet()) {
+        getWorkingSet().clearMeasurements();
+      }
       DataSetDB.setDatasetStatus(conn, getDataset(conn).getId(),
         DataSet.STATUS_WAITING);
     } catch (Exception e) {
@@ -0,0 +1,327 @@
+package uk.ac.exeter.QuinCe.jobs.files;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetMeasurements;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Dataset.MeasurementDependencyIndex;
+import uk.ac.exeter.QuinCe.data.Dataset.MeasurementValue;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.DataReductionRecord;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ReadOnlyDataReductionRecord;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.FlaggedItems;
+import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorsConfiguration;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
+import uk.ac.exeter.QuinCe.jobs.InvalidJobParametersException;
+import uk.ac.exeter.QuinCe.jobs.JobFailedException;
+import uk.ac.exeter.QuinCe.jobs.JobManager;
+import uk.ac.exeter.QuinCe.jobs.JobThread;
+import uk.ac.exeter.QuinCe.utils.DatabaseException;
+import uk.ac.exeter.QuinCe.utils.DatabaseUtils;
+import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
+import uk.ac.exeter.QuinCe.utils.MissingParamException;
+import uk.ac.exeter.QuinCe.utils.RecordNotFoundException;
+import uk.ac.exeter.QuinCe.utils.StringUtils;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
+
+/**
+ * Recalculates the {@link Measurement}s affected by changes to the QC flags of
+ * a set of {@link SensorValue}s.
+ *
+ * <p>
+ * When a user changes QC flags on the manual QC page, only the measurements
+ * that use the changed values (or could use them now that their flags have
+ * changed) need to be recalculated. This job finds those measurements using a
+ * {@link MeasurementDependencyIndex}, collects their measurement values again,
+ * replaces their data reduction records and runs the data reduction QC on the
+ * new records. The rest of the dataset is left untouched.
+ * </p>
+ *
+ * <p>
+ * The automatic QC of the {@link SensorValue}s is not re-run, since the user's
+ * flags override it. Measurement times are not adjusted, so the job can only
+ * be used for datasets without sensor offsets (see
+ * {@link #canRecalculate(Properties, DataSet, Set)}); otherwise the full
+ * processing must be run from the {@link AutoQCJob}.
+ * </p>
+ */
+public class RecalculateMeasurementsJob extends DataSetJob {
+
+  /**
+   * The parameter name for the IDs of the changed {@link SensorValue}s, as a
+   * comma-separated list.
+   */
+  public static final String SENSOR_VALUES_PARAM = "sensorValues";
+
+  /**
+   * The application configuration property that enables targeted
+   * recalculation after manual QC instead of re-running the full processing.
+   */
+  public static final String ENABLED_PROPERTY = "jobs.manual_qc.targeted";
+
+  /**
+   * Name of the job, used for reporting
+   */
+  private final String jobName = "Recalculate Measurements";
+
+  /**
+   * Constructor that allows the {@link JobManager} to create an instance of
+   * this job.
+   *
+   * @param resourceManager
+   *          The QuinCe resource manager
+   * @param config
+   *          The application configuration
+   * @param jobId
+   *          The job's database ID
+   * @param properties
+   *          The job parameters
+   * @throws MissingParamException
+   *           If any constructor parameters are missing
+   * @throws InvalidJobParametersException
+   *           If any of the parameters are invalid
+   * @throws DatabaseException
+   *           If a database error occurs
+   * @throws RecordNotFoundException
+   *           If the job cannot be found in the database
+   */
+  public RecalculateMeasurementsJob(ResourceManager resourceManager,
+    Properties config, long jobId, Properties properties)
+    throws MissingParamException, InvalidJobParametersException,
+    DatabaseException, RecordNotFoundException {
+
+    super(resourceManager, config, jobId, properties);
+  }
+
+  /**
+   * Determine whether or not the changes to a {@link DataSet} can be processed
+   * by this job instead of re-running the full processing.
+   *
+   * <p>
+   * This is only possible if targeted recalculation is enabled in the
+   * application configuration, the changed {@link SensorValue}s are known,
+   * and the dataset has no sensor offsets.
+   * </p>
+   *
+   * @param config
+   *          The application configuration
+   * @param dataSet
+   *          The dataset
+   * @param changedSensorValueIds
+   *          The IDs of the changed {@link SensorValue}s
+   * @return {@code true} if this job can be used; {@code false} if the full
+   *         processing must be run
+   */
+  public static boolean canRecalculate(Properties config, DataSet dataSet,
+    Set<Long> changedSensorValueIds) {
+
+    return null != config
+      && Boolean.parseBoolean(config.getProperty(ENABLED_PROPERTY))
+      && null != changedSensorValueIds && changedSensorValueIds.size() > 0
+      && dataSet.getSensorOffsets().isEmpty();
+  }
+
+  @Override
+  protected void execute(JobThread thread) throws JobFailedException {
+
+    Connection conn = null;
+
+    try {
+      conn = dataSource.getConnection();
+      conn.setAutoCommit(false);
+      DataSet dataSet = getDataset(conn);
+      Instrument instrument = getInstrument(conn);
+      SensorsConfiguration sensorConfig = ResourceManager.getInstance()
+        .getSensorsConfiguration();
+
+      dataSet.setStatus(DataSet.STATUS_DATA_REDUCTION);
+      DataSetDB.updateDataSet(conn, dataSet);
+
+      DatasetSensorValues allSensorValues = DataSetDataDB.getSensorValues(conn,
+        instrument, dataSet, false, false);
+
+      DatasetMeasurements allMeasurements = DataSetDataDB
+        .getMeasurementsByRunType(conn, instrument, dataSet);
+
+      MeasurementDependencyIndex dependencies = new MeasurementDependencyIndex(
+        allMeasurements.getTimeOrderedMeasurements());
+
+      Set<Long> affectedIds = dependencies.getAffectedMeasurementIds(
+        allSensorValues, StringUtils
+          .delimitedToLongSet(properties.getProperty(SENSOR_VALUES_PARAM)));
+
+      List<Measurement> affectedMeasurements = new ArrayList<Measurement>(
+        affectedIds.size());
+      List<Measurement> unaffectedMeasurements = new ArrayList<Measurement>();
+      for (Measurement measurement : allMeasurements
+        .getTimeOrderedMeasurements()) {
+        if (affectedIds.contains(measurement.getId())) {
+          affectedMeasurements.add(measurement);
+        } else {
+          unaffectedMeasurements.add(measurement);
+        }
+      }
+
+      // The sensor values used by the affected measurements before they are
+      // recalculated
+      Set<Long> staleQCIds = getSensorValueIds(affectedMeasurements);
+
+      // Collect the measurement values again
+      for (Measurement measurement : affectedMeasurements) {
+        measurement.clearMeasurementValues();
+        DataReductionJob.collectMeasurementValues(conn, instrument, dataSet,
+          DataReductionJob.getVariablesToProcess(instrument, sensorConfig,
+            measurement),
+          allMeasurements, allSensorValues, measurement);
+      }
+
+      DataSetDataDB.storeMeasurementValues(conn, affectedMeasurements);
+
+      // Remove the data reduction QC flags from the values used by the
+      // affected measurements before and after recalculation, since the
+      // routines will be run again for those measurements. Values that are
+      // also used by other measurements keep their flags, because the QC for
+      // those measurements is not re-run.
+      staleQCIds.addAll(getSensorValueIds(affectedMeasurements));
+      staleQCIds.removeAll(getSensorValueIds(unaffectedMeasurements));
+
+      List<SensorValue> clearedValues = new ArrayList<SensorValue>(
+        staleQCIds.size());
+      for (long sensorValueId : staleQCIds) {
+        SensorValue value = allSensorValues.getById(sensorValueId);
+        if (null != value) {
+          value.clearDataReductionQC();
+          clearedValues.add(value);
+        }
+      }
+
+      DataSetDataDB.storeSensorValues(conn, clearedValues);
+
+      // Replace the data reduction records
+      DataSetDataDB.deleteDataReduction(conn, affectedIds);
+
+      List<DataReductionRecord> dataReductionRecords = DataReductionJob
+        .reduceMeasurements(conn, instrument, dataSet, allMeasurements,
+          affectedMeasurements, DataReductionJob.getReductionPool(config));
+
+      DataSetDataDB.storeDataReduction(conn, dataReductionRecords);
+
+      // QC the new data reduction records
+      dataSet.setStatus(DataSet.STATUS_DATA_REDUCTION_QC);
+
+      Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> records = DataSetDataDB
+        .getDataReductionData(conn, instrument, dataSet);
+
+      FlaggedItems flaggedItems = DataReductionQCJob.runRoutines(conn,
+        resourceManager.getDataReductionQCRoutinesConfiguration(), instrument,
+        dataSet, affectedMeasurements, records, allSensorValues);
+
+      DataSetDataDB.storeSensorValues(conn, flaggedItems.getSensorValues());
+      DataSetDataDB.storeMeasurementValues(conn,
+        flaggedItems.getMeasurements());
+      DataSetDataDB.storeDataReductionQC(conn,
+        flaggedItems.getDataReductionRecords());
+
+      if (thread.isInterrupted()) {
+        conn.rollback();
+        JobManager.requeueJob(conn, id);
+        conn.commit();
+      } else {
+        conn.commit();
+
+        DataReductionQCJob.setCompletedStatus(dataSource, dataSet);
+        DataSetDB.updateDataSet(conn, dataSet);
+        conn.commit();
+
+        writeSnapshot(conn);
+      }
+    } catch (Exception e) {
+      DatabaseUtils.rollBack(conn);
+      ExceptionUtils.printStackTrace(e);
+      try {
+        // Change dataset status to Error, and append an error message
+        StringBuffer message = new StringBuffer();
+        message.append(getJobName());
+        message.append(" - error: ");
+        message.append(e.getMessage());
+        getDataset(conn).addMessage(message.toString(),
+          ExceptionUtils.getStackTrace(e));
+        getDataset(conn).setStatus(DataSet.STATUS_ERROR);
+
+        DataSetDB.updateDataSet(conn, getDataset(conn));
+        conn.commit();
+      } catch (Exception e1) {
+        ExceptionUtils.printStackTrace(e1);
+      }
+
+      throw new JobFailedException(id, e);
+    } finally {
+      if (null != conn) {
+        try {
+          conn.setAutoCommit(true);
+        } catch (SQLException e) {
+          throw new JobFailedException(id, e);
+        }
+      }
+      DatabaseUtils.closeConnection(conn);
+    }
+  }
+
+  /**
+   * Get the IDs of all the {@link SensorValue}s used by a set of
+   * {@link Measurement}s.
+   *
+   * @param measurements
+   *          The measurements
+   * @return The sensor value IDs
+   */
+  private static Set<Long> getSensorValueIds(
+    Collection<Measurement> measurements) {
+
+    Set<Long> result = new HashSet<Long>();
+
+    for (Measurement measurement : measurements) {
+      for (MeasurementValue value : measurement.getMeasurementValues()) {
+        result.addAll(value.getSensorValueIds());
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public String getJobName() {
+    return jobName;
+  }
+
+  @Override
+  protected void validateParameters() throws InvalidJobParametersException {
+    super.validateParameters();
+
+    String sensorValues = properties.getProperty(SENSOR_VALUES_PARAM);
+    if (null == sensorValues) {
+      throw new InvalidJobParametersException(
+        SENSOR_VALUES_PARAM + " is missing");
+    }
+
+    try {
+      StringUtils.delimitedToLongSet(sensorValues);
+    } catch (NumberFormatException e) {
+      throw new InvalidJobParametersException(
+        SENSOR_VALUES_PARAM + " is not a list of IDs");
+    }
+  }
+}
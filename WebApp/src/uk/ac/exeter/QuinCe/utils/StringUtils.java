@@ -301,7 +301,7 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils {
 
     if (null != source) {
       result = source.stream().map(s -> {
-        return trimString(s, "\\s");
+        return trimString(s, false);
       }).collect(Collectors.toList());
     }
 
@@ -330,20 +330,19 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils {
 
     if (null != source) {
       result = source.stream().map(s -> {
-        return trimString(s, "\\s\"");
+        return trimString(s, true);
       }).collect(Collectors.toList());
     }
 
     return result;
   }
 
-  private static String trimString(String string, String regexChars) {
+  private static String trimString(String string, boolean quotes) {
 
     String trimmed = null;
 
     if (null != string) {
-      trimmed = string
-        .replaceAll("^[" + regexChars + "]*|[" + regexChars + "]*$", "");
+      trimmed = trimEnds(string, quotes, true);
 
       boolean done = false;
       while (!done) {
@@ -353,8 +352,7 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils {
           done = true;
         } else if (trimmed.startsWith("\\")) {
           // Trim off the single \ and trim the front again
-          trimmed = trimmed.substring(1).replaceAll("^[" + regexChars + "]*",
-            "");
+          trimmed = trimEnds(trimmed.substring(1), quotes, false);
         } else {
           done = true;
         }
@@ -364,6 +362,114 @@ public final class StringUtils extends org.apache.commons.lang3.StringUtils {
     return trimmed;
   }
 
+  /**
+   * Remove whitespace (and optionally double quotes) from the start and
+   * optionally the end of a string. Whitespace is the same set of characters
+   * matched by the {@code \s} regular expression class.
+   *
+   * <p>
+   * This is called for every field of every line read from a data file, so it
+   * avoids regular expressions.
+   * </p>
+   *
+   * @param string
+   *          The string
+   * @param quotes
+   *          Whether double quotes should also be removed
+   * @param end
+   *          Whether the end of the string should be trimmed as well as the
+   *          start
+   * @return The trimmed string
+   */
+  private static String trimEnds(String string, boolean quotes, boolean end) {
+    int start = 0;
+    int finish = string.length();
+
+    while (start < finish && isTrimChar(string.charAt(start), quotes)) {
+      start++;
+    }
+
+    if (end) {
+      while (finish > start && isTrimChar(string.charAt(finish - 1), quotes)) {
+        finish--;
+      }
+    }
+
+    return string.substring(start, finish);
+  }
+
+  /**
+   * Determine whether a character should be removed by
+   * {@link #trimEnds(String, boolean, boolean)}.
+   *
+   * @param c
+   *          The character
+   * @param quotes
+   *          Whether double quotes are to be removed
+   * @return {@code true} if the character should be removed; {@code false}
+   *         otherwise
+   */
+  private static boolean isTrimChar(char c, boolean quotes) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f'
+      || c == '\r' || (quotes && c == '"');
+  }
+
+  /**
+   * Split a line into fields using a single separator character.
+   *
+   * <p>
+   * The result is the same as calling {@link String#split(String, int)} with
+   * the separator and a positive {@code limit}, but no regular expression is
+   * compiled or matched. A {@code limit} of zero or less means that the number
+   * of fields is not limited, but trailing empty fields are kept.
+   * </p>
+   *
+   * <p>
+   * If {@code collapse} is set, runs of consecutive separators are treated as
+   * a single separator.
+   * </p>
+   *
+   * @param line
+   *          The line to split
+   * @param separator
+   *          The separator
+   * @param limit
+   *          The maximum number of fields
+   * @param collapse
+   *          Whether runs of separators should be treated as one
+   * @return The fields
+   */
+  public static List<String> splitLine(String line, char separator, int limit,
+    boolean collapse) {
+
+    List<String> result = new ArrayList<String>();
+
+    int fieldStart = 0;
+    int pos = 0;
+    int length = line.length();
+
+    while (pos < length && (limit <= 0 || result.size() < limit - 1)) {
+      if (line.charAt(pos) == separator) {
+        result.add(line.substring(fieldStart, pos));
+        pos++;
+
+        if (collapse) {
+          while (pos < length && line.charAt(pos) == separator) {
+            pos++;
+          }
+        }
+
+        fieldStart = pos;
+      } else {
+        pos++;
+      }
+    }
+
+    result.add(line.substring(fieldStart));
+
+    return result;
+  }
+
   /**
    * Convert a Properties object into a JSON string
    *
@@ -74,7 +74,7 @@ public class DiagnosticQCSetupBean extends BaseManagedBean {
   public void setInstrumentId(long instrumentId) throws Exception {
     if (instrumentId > 0) {
       try {
-        this.instrument = InstrumentDB.getInstrument(getDataSource(),
+        this.instrument = InstrumentDB.loadInstrument(getDataSource(),
           instrumentId);
       } catch (Exception e) {
         ExceptionUtils.printStackTrace(e);
@@ -1,5 +1,6 @@
 package uk.ac.exeter.QuinCe.web.datasets.SensorOffsets;
 
+import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -152,9 +153,9 @@ public class SensorOffsetsBean extends BaseManagedBean {
   }
 
   public void loadData() throws Exception {
-    try {
-      sensorValues = DataSetDataDB.getSensorValues(
-        getDataSource().getConnection(), instrument, datasetId, true, true);
+    try (Connection conn = getDataSource().getConnection()) {
+      sensorValues = DataSetDataDB.getSensorValues(conn, instrument, dataset,
+        true, true);
       preparePlotData();
     } catch (Exception e) {
       e.printStackTrace();
@@ -1,5 +1,10 @@
 package uk.ac.exeter.QuinCe.web.datasets.export;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.time.LocalDateTime;
 
 import com.google.gson.JsonObject;
@@ -9,14 +14,24 @@ import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
 import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotPageTableValue;
 
 /**
- * An exported dataset ready to be written to a file. Contains the file contents
- * and some metadata.
+ * An exported dataset being written to a file. The file contents are written
+ * directly to an output stream as they are generated, while the object keeps
+ * track of some metadata about the exported records.
+ *
+ * <p>
+ * The file contents are not held in memory, although the {@link ExportData}
+ * they are generated from is. The output is buffered, so {@link #finish()}
+ * must be called once all the contents have been written.
+ * </p>
  */
 public class DatasetExport {
 
-  private StringBuilder content;
+  /**
+   * The size of the output buffer, in characters.
+   */
+  private static final int BUFFER_SIZE = 65536;
 
-  private byte[] contentBytes;
+  private final Writer content;
 
   private int recordCount = 0;
 
@@ -32,35 +47,39 @@ public class DatasetExport {
 
   private LocalDateTime endDate = null;
 
-  protected void append(String text) {
-    content.append(text);
-    contentBytes = null;
-  }
-
-  protected DatasetExport() {
-    this.content = new StringBuilder();
+  /**
+   * Create an export that writes its contents to the specified stream. The
+   * stream is not closed when the export is finished.
+   *
+   * @param out
+   *          The output stream
+   */
+  protected DatasetExport(OutputStream out) {
+    this.content = new BufferedWriter(new OutputStreamWriter(out),
+      BUFFER_SIZE);
   }
 
-  protected void append(char character) {
-    content.append(character);
-    contentBytes = null;
+  protected void append(String text) throws IOException {
+    content.write(text);
   }
 
-  protected void append(int integer) {
-    content.append(integer);
-    contentBytes = null;
+  protected void append(char character) throws IOException {
+    content.write(character);
   }
 
-  protected byte[] getContent() {
-    if (null == contentBytes) {
-      contentBytes = content.toString().getBytes();
-    }
-
-    return contentBytes;
+  protected void append(int integer) throws IOException {
+    content.write(String.valueOf(integer));
   }
 
-  protected int getLength() {
-    return getContent().length;
+  /**
+   * Write any buffered contents to the underlying stream. The stream itself is
+   * left open.
+   *
+   * @throws IOException
+   *           If the contents cannot be written
+   */
+  protected void finish() throws IOException {
+    content.flush();
   }
 
   /**
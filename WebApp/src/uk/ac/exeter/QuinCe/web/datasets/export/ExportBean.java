@@ -1,9 +1,10 @@
 package uk.ac.exeter.QuinCe.web.datasets.export;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.sql.Connection;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -38,7 +39,6 @@ import uk.ac.exeter.QuinCe.data.Export.ExportException;
 import uk.ac.exeter.QuinCe.data.Export.ExportOption;
 import uk.ac.exeter.QuinCe.data.Files.DataFile;
 import uk.ac.exeter.QuinCe.data.Files.DataFileDB;
-import uk.ac.exeter.QuinCe.data.Files.DataFileException;
 import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
 import uk.ac.exeter.QuinCe.data.Instrument.Instrument;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorType;
@@ -173,19 +173,15 @@ public class ExportBean extends BaseManagedBean {
     try {
       conn = getDataSource().getConnection();
 
-      byte[] outBytes = buildExportZip(conn, getCurrentInstrument(), dataset,
-        ExportConfig.getInstance().getOptions(chosenExportOptions));
-
       FacesContext fc = FacesContext.getCurrentInstance();
       ExternalContext ec = fc.getExternalContext();
 
       ec.responseReset();
       ec.setResponseContentType("application/zip");
 
-      // Set it with the file size. This header is optional. It will work if
-      // it's omitted,
-      // but the download progress will be unknown.
-      ec.setResponseContentLength(outBytes.length);
+      // The ZIP is streamed straight to the response, so we can't set the
+      // content length. The download will work, but its progress will be
+      // unknown.
 
       // The Save As popup magic is done here. You can give it any file name you
       // want, this only won't work in MSIE,
@@ -194,7 +190,9 @@ public class ExportBean extends BaseManagedBean {
         "attachment; filename=\"" + dataset.getName() + ".zip\"");
 
       OutputStream outputStream = ec.getResponseOutputStream();
-      outputStream.write(outBytes);
+      writeExportZip(conn, getCurrentInstrument(), dataset,
+        ExportConfig.getInstance().getOptions(chosenExportOptions),
+        outputStream);
 
       fc.responseComplete();
 
@@ -208,20 +206,29 @@ public class ExportBean extends BaseManagedBean {
   }
 
   /**
-   * Obtain a dataset in the specified format as a byte array ready for export
-   * or storage
+   * Write a dataset in the specified format to an output stream.
+   *
+   * <p>
+   * Each row is written to the stream as soon as it has been generated, so the
+   * complete file is never held in memory. The dataset's values are loaded in
+   * full, and released when the file has been written. The stream is not
+   * closed.
+   * </p>
    *
-   * @param dataSource
-   *          A data source
+   * @param instrument
+   *          The instrument to which the dataset belongs
    * @param dataSet
    *          The dataset
    * @param exportOption
    *          The export format
-   * @return The exported dataset
+   * @param out
+   *          The stream to write to
+   * @return The details of the exported dataset
    * @throws Exception
    */
-  private static DatasetExport getDatasetExport(Instrument instrument,
-    DataSet dataset, ExportOption exportOption) throws Exception {
+  private static DatasetExport writeDatasetExport(Instrument instrument,
+    DataSet dataset, ExportOption exportOption, OutputStream out)
+    throws Exception {
 
     DataSource dataSource = ResourceManager.getInstance().getDBDataSource();
 
@@ -233,7 +240,7 @@ public class ExportBean extends BaseManagedBean {
     data.postProcess();
 
     // Initialise the output
-    DatasetExport result = new DatasetExport();
+    DatasetExport result = new DatasetExport(out);
 
     List<ColumnHeading> allowedExportColumns = getAllowedExportColumns(data,
       exportOption);
@@ -396,6 +403,8 @@ public class ExportBean extends BaseManagedBean {
       }
     }
 
+    result.finish();
+
     // Destroy the ExportData object so it cleans up its resources
     data.destroy();
 
@@ -518,7 +527,7 @@ public class ExportBean extends BaseManagedBean {
   private static void addValueToOutput(DatasetExport export,
     ExportOption exportOption, long columnId, PlotPageTableValue value,
     boolean includeQcColumns, boolean includeType,
-    DatasetSensorValues allSensorValues) {
+    DatasetSensorValues allSensorValues) throws IOException {
 
     if (null == value) {
 
@@ -706,10 +715,20 @@ public class ExportBean extends BaseManagedBean {
   }
 
   /**
-   * Build a ZIP file containing a full dataset export, including the raw files
+   * Write a ZIP file containing a full dataset export, including the raw files
    * used to build the dataset and a manifest containing metadata and details of
    * the files.
    *
+   * <p>
+   * The ZIP is written directly to the supplied stream as it is built. The
+   * exported dataset files are streamed row by row and the raw files are copied
+   * straight from the file store, so none of them are held in memory. The
+   * dataset's values are loaded into an {@link ExportData} object for each
+   * export format in turn, and each one is released before the next is loaded.
+   * Peak memory use is therefore that of one fully loaded dataset, and grows
+   * with the size of the dataset. The stream is not closed.
+   * </p>
+   *
    * The {@code exportOption} defines the export format to be used. If this is
    * {@code null}, all formats will be exported.
    *
@@ -719,12 +738,14 @@ public class ExportBean extends BaseManagedBean {
    *          The dataset to export
    * @param exportOption
    *          The export option to use
-   * @return The export ZIP file
+   * @param out
+   *          The stream to which the ZIP file will be written
    * @throws Exception
    *           All exceptions are propagated upwards
    */
-  public static byte[] buildExportZip(Connection conn, Instrument instrument,
-    DataSet dataset, Collection<ExportOption> exportOptions) throws Exception {
+  public static void writeExportZip(Connection conn, Instrument instrument,
+    DataSet dataset, Collection<ExportOption> exportOptions, OutputStream out)
+    throws Exception {
 
     // Get the list of raw files
     List<Long> rawIds = dataset.getSourceFiles(conn);
@@ -742,8 +763,8 @@ public class ExportBean extends BaseManagedBean {
 
     String dirRoot = dataset.getName();
 
-    ByteArrayOutputStream zipOut = new ByteArrayOutputStream();
-    ZipOutputStream zip = new ZipOutputStream(zipOut);
+    ZipOutputStream zip = new ZipOutputStream(out);
+    WritableByteChannel zipChannel = Channels.newChannel(zip);
 
     for (ExportOption option : null != exportOptions ? exportOptions
       : ExportConfig.getInstance().getOptions()) {
@@ -752,11 +773,10 @@ public class ExportBean extends BaseManagedBean {
       String datasetPath = dirRoot + "/dataset/" + option.getName() + "/"
         + dataset.getName() + option.getFileExtension();
 
-      DatasetExport export = getDatasetExport(instrument, dataset, option);
-
       ZipEntry datasetEntry = new ZipEntry(datasetPath);
       zip.putNextEntry(datasetEntry);
-      zip.write(export.getContent());
+      DatasetExport export = writeDatasetExport(instrument, dataset, option,
+        zip);
       zip.closeEntry();
 
       // Add the details to the manifest
@@ -806,11 +826,11 @@ public class ExportBean extends BaseManagedBean {
         && fileDefinition.getColumnHeaderRows() == 0 && meanFileLength < 3600D;
 
       if (!combineFiles) {
-        addRawFilesToZip(zip, rawManifest, dirRoot,
+        addRawFilesToZip(zip, zipChannel, rawManifest, dirRoot,
           groupedFiles.get(fileDefinition));
       } else {
-        combineAndAddRawFilesToZip(zip, rawManifest, dirRoot, fileDefinition,
-          groupedFiles.get(fileDefinition));
+        combineAndAddRawFilesToZip(zip, zipChannel, rawManifest, dirRoot,
+          fileDefinition, groupedFiles.get(fileDefinition));
       }
 
       manifest.getAsJsonObject("manifest").add("raw", rawManifest);
@@ -822,24 +842,21 @@ public class ExportBean extends BaseManagedBean {
     zip.write(manifest.toString().getBytes());
     zip.closeEntry();
 
-    // Write the response
-    zip.close();
-    byte[] outBytes = zipOut.toByteArray();
-    zipOut.close();
-
-    return outBytes;
+    // Complete the ZIP without closing the underlying stream
+    zip.finish();
+    out.flush();
   }
 
   private static void addRawFilesToZip(ZipOutputStream zip,
-    JsonArray rawManifest, String dirRoot, List<DataFile> files)
-    throws IOException {
+    WritableByteChannel zipChannel, JsonArray rawManifest, String dirRoot,
+    List<DataFile> files) throws IOException {
 
     for (DataFile file : files) {
       String filePath = dirRoot + "/raw/" + file.getFilename();
 
       ZipEntry rawEntry = new ZipEntry(filePath);
       zip.putNextEntry(rawEntry);
-      zip.write(file.getBytes());
+      file.transferBytes(zipChannel);
       zip.closeEntry();
 
       rawManifest.add(makeRawFileJson(file.getFilename(),
@@ -848,8 +865,8 @@ public class ExportBean extends BaseManagedBean {
   }
 
   private static void combineAndAddRawFilesToZip(ZipOutputStream zip,
-    JsonArray rawManifest, String dirRoot, FileDefinition fileDefinition,
-    List<DataFile> files) throws IOException, DataFileException {
+    WritableByteChannel zipChannel, JsonArray rawManifest, String dirRoot,
+    FileDefinition fileDefinition, List<DataFile> files) throws IOException {
 
     LocalDate currentDate = null;
     String filePath = null;
@@ -876,8 +893,8 @@ public class ExportBean extends BaseManagedBean {
         zip.putNextEntry(currentEntry);
       }
 
-      zip.write(file.getBytes());
-      if (!file.getContents().endsWith("\n")) {
+      file.transferBytes(zipChannel);
+      if (!file.endsWithNewline()) {
         zip.write("\n".getBytes());
       }
 
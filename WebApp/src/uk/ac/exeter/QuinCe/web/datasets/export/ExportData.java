@@ -80,6 +80,15 @@ public class ExportData extends ManualQCData {
     }
   }
 
+  /**
+   * Exports override the QC flags of the data reduction records, so they
+   * cannot use the shared copies.
+   */
+  @Override
+  protected boolean useSharedData() {
+    return false;
+  }
+
   /**
    * Different data can be loaded depending on the export options.
    */
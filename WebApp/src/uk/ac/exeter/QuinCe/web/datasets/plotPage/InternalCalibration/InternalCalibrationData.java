@@ -89,7 +89,7 @@ public class InternalCalibrationData extends PlotPageData {
     try (Connection conn = dataSource.getConnection()) {
 
       datasetSensorValues = DataSetDataDB.getSensorValues(conn, instrument,
-        dataset.getId(), false, true);
+        dataset, false, true);
 
       List<RunTypeSensorValue> sensorValues = DataSetDataDB
         .getInternalCalibrationSensorValues(conn, instrument, dataset.getId());
@@ -269,7 +269,7 @@ public class InternalCalibrationData extends PlotPageData {
 
     // Store the updated sensor values
     try (Connection conn = dataSource.getConnection()) {
-      DataSetDataDB.storeSensorValues(conn, sensorValues);
+      DataSetDataDB.storeSensorValues(conn, dataset, sensorValues);
     } catch (Exception e) {
       throw new DatabaseException("Error while applying QC flag", e);
     }
@@ -302,7 +302,7 @@ public class InternalCalibrationData extends PlotPageData {
       }
 
       try (Connection conn = dataSource.getConnection()) {
-        DataSetDataDB.storeSensorValues(conn, sensorValues);
+        DataSetDataDB.storeSensorValues(conn, dataset, sensorValues);
       }
       initPlots();
     } catch (Exception e) {
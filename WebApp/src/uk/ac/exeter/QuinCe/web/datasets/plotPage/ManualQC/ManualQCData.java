@@ -19,6 +19,7 @@ import javax.sql.DataSource;
 
 import uk.ac.exeter.QuinCe.data.Dataset.DataSet;
 import uk.ac.exeter.QuinCe.data.Dataset.DataSetDataDB;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetDataCache;
 import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
 import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
 import uk.ac.exeter.QuinCe.data.Dataset.MeasurementValue;
@@ -122,6 +123,19 @@ public class ManualQCData extends PlotPageData {
    */
   protected Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> dataReduction = null;
 
+  /**
+   * Index of the table rows, built when the table is first requested.
+   *
+   * @see #getTableRowIndex()
+   */
+  private TableRowIndex tableRowIndex = null;
+
+  /**
+   * The IDs of the {@link SensorValue}s whose QC flags have been changed since
+   * the data was loaded, including those changed by QC cascades.
+   */
+  private Set<Long> changedSensorValueIds = new HashSet<Long>();
+
   /**
    * The list of sensor column IDs in the same order as they are represented in
    * {@link #columnHeaders}.
@@ -178,26 +192,52 @@ public class ManualQCData extends PlotPageData {
   @Override
   public void loadDataAction() throws Exception {
 
+    tableRowIndex = null;
+
     try (Connection conn = dataSource.getConnection()) {
-      sensorValues = DataSetDataDB.getSensorValues(conn, instrument,
-        dataset.getId(), false, true);
+      // Each session loads its own sensor values, because it edits their flags
+      sensorValues = DataSetDataDB.getSensorValues(conn, instrument, dataset,
+        false, true);
+
+      List<Measurement> measurementsList;
 
-      List<Measurement> measurementsList = DataSetDataDB.getMeasurements(conn,
-        dataset.getId());
+      if (useSharedData()) {
+        // The measurements and data reduction are shared with other sessions
+        DatasetDataCache.Entry cached = DatasetDataCache.getInstance()
+          .get(conn, instrument, dataset);
+
+        measurementsList = cached.getMeasurements();
+        dataReduction = cached.getDataReduction();
+      } else {
+        measurementsList = DataSetDataDB.getMeasurements(conn,
+          dataset.getId());
+        dataReduction = DataSetDataDB.getDataReductionData(conn, instrument,
+          dataset);
+      }
 
       measurements = new TreeMap<LocalDateTime, Measurement>();
 
       measurementsList.forEach(m -> measurements.put(m.getTime(), m));
 
-      dataReduction = DataSetDataDB.getDataReductionData(conn, instrument,
-        dataset);
-
       // Build the row IDs
       rowIDs = sensorValues.getTimes().stream()
         .map(t -> DateTimeUtils.dateToLong(t)).collect(Collectors.toList());
     }
   }
 
+  /**
+   * Determine whether the {@link Measurement}s and data reduction records can
+   * be taken from the {@link DatasetDataCache}, where they are shared with
+   * other sessions. Subclasses that modify these objects must load their own
+   * copies.
+   *
+   * @return {@code true} if the shared data can be used; {@code false} if the
+   *         data must be loaded from the database.
+   */
+  protected boolean useSharedData() {
+    return true;
+  }
+
   @Override
   protected void buildColumnHeadings() {
 
@@ -353,30 +393,41 @@ public class ManualQCData extends PlotPageData {
 
     try {
 
-      List<LocalDateTime> times = sensorValues.getTimes();
+      TableRowIndex rowIndex = getTableRowIndex();
 
       // Make sure we don't fall off the end of the dataset
       int lastRecord = start + length;
-      if (lastRecord > times.size()) {
-        lastRecord = times.size();
+      if (lastRecord > rowIndex.size()) {
+        lastRecord = rowIndex.size();
+      }
+
+      // The sensor type details for each column are the same on every row
+      boolean[] coreColumns = new boolean[sensorColumnIds.size()];
+      boolean[] calibratedColumns = new boolean[sensorColumnIds.size()];
+      for (int c = 0; c < sensorColumnIds.size(); c++) {
+        SensorType sensorType = instrument.getSensorAssignments()
+          .getSensorTypeForDBColumn(sensorColumnIds.get(c));
+        coreColumns[c] = isCoreSensorType(sensorType);
+        calibratedColumns[c] = sensorType.hasInternalCalibration();
       }
 
       for (int i = start; i < lastRecord; i++) {
-        PlotPageTableRecord record = new PlotPageTableRecord(times.get(i));
+        LocalDateTime rowTime = rowIndex.getTime(i);
+        PlotPageTableRecord record = new PlotPageTableRecord(rowTime);
 
         // Get the closest measurement
-        Measurement concurrentMeasurement = getConcurrentMeasurement(
-          times.get(i));
+        Measurement concurrentMeasurement = rowIndex
+          .getConcurrentMeasurement(i);
 
-        // Timestamp
-        record.addColumn(times.get(i));
+        boolean measurementRow = null != concurrentMeasurement
+          && isMeasurementForAnyVariable(concurrentMeasurement);
 
-        Map<Long, SensorValue> recordSensorValues = sensorValues
-          .get(times.get(i));
+        // Timestamp
+        record.addColumn(rowTime);
 
         if (!dataset.fixedPosition()) {
 
-          DataLatLng position = getMapPosition(times.get(i));
+          DataLatLng position = getMapPosition(rowTime);
 
           if (null != position) {
             StringBuilder positionString = new StringBuilder();
@@ -396,29 +447,25 @@ public class ManualQCData extends PlotPageData {
           }
         }
 
-        for (long columnId : sensorColumnIds) {
+        for (int c = 0; c < sensorColumnIds.size(); c++) {
 
           // If the sensor type has internal calibrations, AND we're in a run
           // type for the internal calibrations, don't include it.
-          SensorType sensorType = instrument.getSensorAssignments()
-            .getSensorTypeForDBColumn(columnId);
-
           boolean useValue = true;
 
           if (null == concurrentMeasurement) {
-            if (isCoreSensorType(sensorType)) {
+            if (coreColumns[c]) {
               useValue = false;
             }
           } else {
-            if (!isMeasurementForAnyVariable(concurrentMeasurement)
-              && (isCoreSensorType(sensorType)
-                || sensorType.hasInternalCalibration())) {
+            if (!measurementRow && (coreColumns[c] || calibratedColumns[c])) {
               useValue = false;
             }
           }
 
           if (useValue) {
-            record.addColumn(recordSensorValues.get(columnId));
+            record
+              .addColumn(rowIndex.getSensorValue(i, sensorColumnIds.get(c)));
           } else {
             record.addBlankColumn(PlotPageTableValue.MEASURED_TYPE);
           }
@@ -427,15 +474,11 @@ public class ManualQCData extends PlotPageData {
         // Diagnostic values
         if (null != diagnosticColumnIds) {
           for (long columnId : diagnosticColumnIds) {
-            record.addColumn(recordSensorValues.get(columnId));
+            record.addColumn(rowIndex.getSensorValue(i, columnId));
           }
         }
 
-        Long measurementId = null;
-        Measurement measurement = measurements.get(times.get(i));
-        if (null != measurement) {
-          measurementId = measurement.getId();
-        }
+        Measurement measurement = rowIndex.getMeasurement(i);
 
         if (null == measurement) {
           record.addBlankColumns(measurementSensorTypes.size(),
@@ -453,12 +496,8 @@ public class ManualQCData extends PlotPageData {
           });
         }
 
-        Map<Variable, ReadOnlyDataReductionRecord> dataReductionData = null;
-
-        if (null != measurementId) {
-          // Retrieve the data reduction data
-          dataReductionData = dataReduction.get(measurementId);
-        }
+        Map<Variable, ReadOnlyDataReductionRecord> dataReductionData = rowIndex
+          .getDataReduction(i);
 
         // If there's no measurement, or no data reduction for that measurement
         // (which can happen if the instrument is in a flushing period or in
@@ -509,6 +548,25 @@ public class ManualQCData extends PlotPageData {
     return records;
   }
 
+  /**
+   * Get the index of the table rows, building it if necessary.
+   *
+   * @return The row index.
+   */
+  private TableRowIndex getTableRowIndex() {
+    if (null == tableRowIndex) {
+      List<Long> columnIds = new ArrayList<Long>(sensorColumnIds);
+      if (null != diagnosticColumnIds) {
+        columnIds.addAll(diagnosticColumnIds);
+      }
+
+      tableRowIndex = new TableRowIndex(sensorValues, columnIds, measurements,
+        dataReduction);
+    }
+
+    return tableRowIndex;
+  }
+
   private boolean isCoreSensorType(SensorType sensorType) {
     return instrument.getVariables().stream()
       .anyMatch(v -> v.getCoreSensorType().equals(sensorType));
@@ -583,8 +641,9 @@ public class ManualQCData extends PlotPageData {
       }
 
       try (Connection conn = dataSource.getConnection()) {
-        DataSetDataDB.storeSensorValues(conn, changedValues);
+        DataSetDataDB.storeSensorValues(conn, dataset, changedValues);
       }
+      changedValues.forEach(v -> changedSensorValueIds.add(v.getId()));
       clearSelection();
       initPlots();
     } catch (Exception e) {
@@ -592,6 +651,16 @@ public class ManualQCData extends PlotPageData {
     }
   }
 
+  /**
+   * Get the IDs of the {@link SensorValue}s whose QC flags have been changed
+   * since the data was loaded.
+   *
+   * @return The changed {@link SensorValue} IDs.
+   */
+  public Set<Long> getChangedSensorValueIds() {
+    return changedSensorValueIds;
+  }
+
   /**
    * Get the {@link SensorValue}s for the current selection.
    *
@@ -666,6 +735,9 @@ public class ManualQCData extends PlotPageData {
 
       List<SensorValue> selectedValues = getSelectedSensorValues();
 
+      // Set all the flags first, then apply the cascade in one go
+      List<SensorValue> cascadeSources = new ArrayList<SensorValue>();
+
       for (SensorValue value : selectedValues) {
 
         SensorValue otherPositionValue = null;
@@ -682,21 +754,23 @@ public class ManualQCData extends PlotPageData {
 
         value.setUserQC(userFlag, userComment);
         changedValues.add(value);
-        changedValues
-          .addAll(sensorValues.applyQCCascade(value, runTypePeriods));
+        cascadeSources.add(value);
 
         if (null != otherPositionValue) {
           otherPositionValue.setUserQC(userFlag, userComment);
           changedValues.add(otherPositionValue);
-          changedValues.addAll(
-            sensorValues.applyQCCascade(otherPositionValue, runTypePeriods));
+          cascadeSources.add(otherPositionValue);
         }
       }
 
+      changedValues
+        .addAll(sensorValues.applyQCCascade(cascadeSources, runTypePeriods));
+
       // Store the updated sensor values
       try (Connection conn = dataSource.getConnection()) {
-        DataSetDataDB.storeSensorValues(conn, changedValues);
+        DataSetDataDB.storeSensorValues(conn, dataset, changedValues);
       }
+      changedValues.forEach(v -> changedSensorValueIds.add(v.getId()));
 
       clearSelection();
       initPlots();
@@ -2,6 +2,7 @@ package uk.ac.exeter.QuinCe.web.datasets.plotPage.ManualQC;
 
 import java.sql.SQLException;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.faces.bean.ManagedBean;
 import javax.faces.bean.SessionScoped;
@@ -14,9 +15,12 @@ import uk.ac.exeter.QuinCe.data.Dataset.DataSetDB;
 import uk.ac.exeter.QuinCe.jobs.JobManager;
 import uk.ac.exeter.QuinCe.jobs.files.AutoQCJob;
 import uk.ac.exeter.QuinCe.jobs.files.DataReductionJob;
+import uk.ac.exeter.QuinCe.jobs.files.RecalculateMeasurementsJob;
 import uk.ac.exeter.QuinCe.utils.ExceptionUtils;
+import uk.ac.exeter.QuinCe.utils.StringUtils;
 import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotPageBean;
 import uk.ac.exeter.QuinCe.web.datasets.plotPage.PlotPageData;
+import uk.ac.exeter.QuinCe.web.system.ResourceManager;
 
 @ManagedBean
 @SessionScoped
@@ -50,12 +54,28 @@ public class ManualQualityControlBean extends PlotPageBean {
   @Override
   protected void processDirtyData() {
     try {
-      DataSetDB.setDatasetStatus(getDataSource(), datasetId,
-        DataSet.STATUS_SENSOR_QC);
       Properties jobProperties = new Properties();
       jobProperties.put(DataReductionJob.ID_PARAM, String.valueOf(datasetId));
-      JobManager.addJob(getDataSource(), getUser(),
-        AutoQCJob.class.getCanonicalName(), jobProperties);
+
+      Set<Long> changedIds = data.getChangedSensorValueIds();
+
+      // Only recalculate the affected measurements if we can; otherwise
+      // re-run the full processing
+      if (RecalculateMeasurementsJob.canRecalculate(
+        ResourceManager.getInstance().getConfig(), dataset, changedIds)) {
+
+        DataSetDB.setDatasetStatus(getDataSource(), datasetId,
+          DataSet.STATUS_DATA_REDUCTION);
+        jobProperties.put(RecalculateMeasurementsJob.SENSOR_VALUES_PARAM,
+          StringUtils.collectionToDelimited(changedIds, ","));
+        JobManager.addJob(getDataSource(), getUser(),
+          RecalculateMeasurementsJob.class.getCanonicalName(), jobProperties);
+      } else {
+        DataSetDB.setDatasetStatus(getDataSource(), datasetId,
+          DataSet.STATUS_SENSOR_QC);
+        JobManager.addJob(getDataSource(), getUser(),
+          AutoQCJob.class.getCanonicalName(), jobProperties);
+      }
     } catch (Exception e) {
       ExceptionUtils.printStackTrace(e);
     }
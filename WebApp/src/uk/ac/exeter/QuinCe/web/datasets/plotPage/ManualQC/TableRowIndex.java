@@ -0,0 +1,225 @@
+package uk.ac.exeter.QuinCe.web.datasets.plotPage.ManualQC;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSensorValues;
+import uk.ac.exeter.QuinCe.data.Dataset.Measurement;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValue;
+import uk.ac.exeter.QuinCe.data.Dataset.SensorValuesList;
+import uk.ac.exeter.QuinCe.data.Dataset.DataReduction.ReadOnlyDataReductionRecord;
+import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.Variable;
+
+/**
+ * Index of the rows in the Manual QC table.
+ *
+ * <p>
+ * The table has one row for each time at which there is a {@link SensorValue}
+ * in the dataset. Looking up the values for a row by time requires a search
+ * in every column, which makes each page of the table slower to build as the
+ * dataset grows. This index maps each row number directly to the
+ * {@link SensorValue} in each column, the {@link Measurement} at that time
+ * (and the most recent measurement at or before it), and the data reduction
+ * records for the measurement, so a page can be built by reading arrays.
+ * </p>
+ *
+ * <p>
+ * The index holds references to the {@link SensorValue} objects, so QC flags
+ * changed on those objects are reflected in the table without rebuilding it.
+ * It must be rebuilt if values are added to or removed from the dataset.
+ * </p>
+ */
+public class TableRowIndex {
+
+  /**
+   * The time of each row.
+   */
+  private final List<LocalDateTime> times;
+
+  /**
+   * The {@link SensorValue} in each row for each column, keyed by column ID.
+   * Rows with no value for a column contain {@code null}.
+   */
+  private final Map<Long, SensorValue[]> columnValues;
+
+  /**
+   * The {@link Measurement} at the time of each row, if there is one.
+   */
+  private final Measurement[] measurements;
+
+  /**
+   * The most recent {@link Measurement} at or before the time of each row.
+   */
+  private final Measurement[] concurrentMeasurements;
+
+  /**
+   * The data reduction records for the {@link Measurement} in each row.
+   */
+  private final List<Map<Variable, ReadOnlyDataReductionRecord>> dataReduction;
+
+  /**
+   * Build the index.
+   *
+   * @param sensorValues
+   *          The dataset's sensor values.
+   * @param columnIds
+   *          The IDs of the columns to be indexed.
+   * @param measurements
+   *          The dataset's measurements, keyed by time.
+   * @param dataReduction
+   *          The data reduction records, keyed by measurement ID.
+   */
+  public TableRowIndex(DatasetSensorValues sensorValues,
+    Collection<Long> columnIds,
+    NavigableMap<LocalDateTime, Measurement> measurements,
+    Map<Long, Map<Variable, ReadOnlyDataReductionRecord>> dataReduction) {
+
+    this.times = sensorValues.getTimes();
+    int rowCount = times.size();
+
+    columnValues = new HashMap<Long, SensorValue[]>();
+    for (long columnId : columnIds) {
+      SensorValuesList column = sensorValues.getColumnValues(columnId);
+      if (null != column && !columnValues.containsKey(columnId)) {
+        columnValues.put(columnId, indexColumn(column.getRawValues()));
+      }
+    }
+
+    this.measurements = new Measurement[rowCount];
+    this.concurrentMeasurements = new Measurement[rowCount];
+    this.dataReduction = new ArrayList<Map<Variable, ReadOnlyDataReductionRecord>>(
+      rowCount);
+
+    // Step through the measurements and rows together. Both are in time
+    // order.
+    Iterator<Measurement> measurementIterator = measurements.values()
+      .iterator();
+    Measurement nextMeasurement = measurementIterator.hasNext()
+      ? measurementIterator.next()
+      : null;
+    Measurement currentMeasurement = null;
+
+    for (int row = 0; row < rowCount; row++) {
+      LocalDateTime time = times.get(row);
+
+      while (null != nextMeasurement
+        && !nextMeasurement.getTime().isAfter(time)) {
+        currentMeasurement = nextMeasurement;
+        nextMeasurement = measurementIterator.hasNext()
+          ? measurementIterator.next()
+          : null;
+      }
+
+      concurrentMeasurements[row] = currentMeasurement;
+
+      if (null != currentMeasurement
+        && currentMeasurement.getTime().equals(time)) {
+        this.measurements[row] = currentMeasurement;
+        this.dataReduction.add(dataReduction.get(currentMeasurement.getId()));
+      } else {
+        this.dataReduction.add(null);
+      }
+    }
+  }
+
+  /**
+   * Map the values from a column to the rows of the table.
+   *
+   * @param values
+   *          The column values, in time order.
+   * @return The value for each row.
+   */
+  private SensorValue[] indexColumn(List<SensorValue> values) {
+    SensorValue[] result = new SensorValue[times.size()];
+
+    int row = 0;
+    for (SensorValue value : values) {
+      while (row < result.length && times.get(row).isBefore(value.getTime())) {
+        row++;
+      }
+
+      if (row < result.length && times.get(row).equals(value.getTime())) {
+        result[row] = value;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the number of rows in the table.
+   *
+   * @return The row count.
+   */
+  public int size() {
+    return times.size();
+  }
+
+  /**
+   * Get the time of a row.
+   *
+   * @param row
+   *          The row number.
+   * @return The row time.
+   */
+  public LocalDateTime getTime(int row) {
+    return times.get(row);
+  }
+
+  /**
+   * Get the {@link SensorValue} for a column in a row.
+   *
+   * @param row
+   *          The row number.
+   * @param columnId
+   *          The column ID.
+   * @return The value, or {@code null} if there is no value.
+   */
+  public SensorValue getSensorValue(int row, long columnId) {
+    SensorValue[] values = columnValues.get(columnId);
+    return null == values ? null : values[row];
+  }
+
+  /**
+   * Get the {@link Measurement} at the time of a row.
+   *
+   * @param row
+   *          The row number.
+   * @return The measurement, or {@code null} if there is no measurement at
+   *         the row's time.
+   */
+  public Measurement getMeasurement(int row) {
+    return measurements[row];
+  }
+
+  /**
+   * Get the most recent {@link Measurement} at or before the time of a row.
+   *
+   * @param row
+   *          The row number.
+   * @return The measurement, or {@code null} if there are no measurements
+   *         before the row.
+   */
+  public Measurement getConcurrentMeasurement(int row) {
+    return concurrentMeasurements[row];
+  }
+
+  /**
+   * Get the data reduction records for the {@link Measurement} at the time of
+   * a row.
+   *
+   * @param row
+   *          The row number.
+   * @return The records, or {@code null} if there are none.
+   */
+  public Map<Variable, ReadOnlyDataReductionRecord> getDataReduction(
+    int row) {
+    return dataReduction.get(row);
+  }
+}
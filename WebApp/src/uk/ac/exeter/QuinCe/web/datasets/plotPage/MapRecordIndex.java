@@ -0,0 +1,534 @@
+package uk.ac.exeter.QuinCe.web.datasets.plotPage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.javadocmd.simplelatlng.LatLng;
+
+import uk.ac.exeter.QuinCe.data.Dataset.GeoBounds;
+
+/**
+ * A spatial index of {@link MapRecord}s, used to draw maps of large datasets
+ * without examining every record for each redraw.
+ *
+ * <p>
+ * The area covered by the records is divided into a quadtree of tiles. At
+ * level {@code n} there are {@code 2^n} tiles along each axis. Each record is
+ * given the Z-order (Morton) code of the finest level tile that contains it,
+ * and the records are sorted by that code. The records in any tile at any
+ * level then form a contiguous range of the sorted records, so each tile only
+ * needs to store the start and end of its range.
+ * </p>
+ *
+ * <p>
+ * Summaries of the tiles at each level ({@link Tile}) are built the first time
+ * they are needed. They hold the number of records in the tile, the records
+ * with the minimum and maximum values, and the number of records with
+ * non-good QC flags. The summaries depend on the records' QC flags, so they
+ * must be discarded using {@link #flagsChanged()} whenever the flags are
+ * changed.
+ * </p>
+ */
+class MapRecordIndex {
+
+  /**
+   * The finest tile level.
+   */
+  private static final int MAX_LEVEL = 16;
+
+  /**
+   * The number of tiles along each axis at the finest level.
+   */
+  private static final int MAX_CELLS = 1 << MAX_LEVEL;
+
+  /**
+   * The smallest longitude/latitude span used to scale positions. Prevents
+   * division by zero if all the records are at the same longitude or
+   * latitude.
+   */
+  private static final double MIN_SPAN = 1e-9;
+
+  /**
+   * The records, sorted by their tile codes.
+   */
+  private final MapRecord[] records;
+
+  /**
+   * The tile codes of the records at the finest level, in the same order as
+   * {@link #records}.
+   */
+  private final long[] codes;
+
+  /**
+   * The records sorted by row ID, for looking up selected records.
+   */
+  private final MapRecord[] recordsById;
+
+  /**
+   * The minimum longitude of the records.
+   */
+  private final double minLon;
+
+  /**
+   * The minimum latitude of the records.
+   */
+  private final double minLat;
+
+  /**
+   * The longitude span of the records.
+   */
+  private final double lonSpan;
+
+  /**
+   * The latitude span of the records.
+   */
+  private final double latSpan;
+
+  /**
+   * The tile summaries, keyed by level and tile code. Separate summaries are
+   * kept for when non-good flags are hidden; see {@link #getCacheKey}.
+   */
+  private final Map<Integer, Map<Long, Tile>> tiles = new HashMap<Integer, Map<Long, Tile>>();
+
+  /**
+   * Build the index for a set of records. Records without a position are not
+   * included.
+   *
+   * @param source
+   *          The records.
+   */
+  protected MapRecordIndex(List<MapRecord> source) {
+
+    List<MapRecord> positioned = new ArrayList<MapRecord>(source.size());
+
+    double minLon = Double.MAX_VALUE;
+    double maxLon = -Double.MAX_VALUE;
+    double minLat = Double.MAX_VALUE;
+    double maxLat = -Double.MAX_VALUE;
+
+    for (MapRecord record : source) {
+      if (null != record.position) {
+        positioned.add(record);
+
+        double lon = record.position.getLongitude();
+        double lat = record.position.getLatitude();
+
+        minLon = Math.min(minLon, lon);
+        maxLon = Math.max(maxLon, lon);
+        minLat = Math.min(minLat, lat);
+        maxLat = Math.max(maxLat, lat);
+      }
+    }
+
+    this.minLon = minLon;
+    this.minLat = minLat;
+    this.lonSpan = Math.max(maxLon - minLon, MIN_SPAN);
+    this.latSpan = Math.max(maxLat - minLat, MIN_SPAN);
+
+    int count = positioned.size();
+    long[] unsortedCodes = new long[count];
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      LatLng position = positioned.get(i).position;
+      unsortedCodes[i] = interleave(getCellX(position.getLongitude()),
+        getCellY(position.getLatitude()));
+      order[i] = i;
+    }
+
+    Arrays.sort(order, Comparator.comparingLong((Integer i) -> unsortedCodes[i])
+      .thenComparingLong(i -> positioned.get(i).getRowId()));
+
+    records = new MapRecord[count];
+    codes = new long[count];
+    for (int i = 0; i < count; i++) {
+      records[i] = positioned.get(order[i]);
+      codes[i] = unsortedCodes[order[i]];
+    }
+
+    recordsById = Arrays.copyOf(records, count);
+    Arrays.sort(recordsById, Comparator.comparingLong(MapRecord::getRowId));
+  }
+
+  /**
+   * Get the number of records in the index.
+   *
+   * @return The number of records.
+   */
+  protected int size() {
+    return records.length;
+  }
+
+  /**
+   * Get the record with the specified row ID.
+   *
+   * @param rowId
+   *          The row ID.
+   * @return The record, or {@code null} if there is no record with the ID.
+   */
+  protected MapRecord getByRowId(long rowId) {
+    MapRecord result = null;
+
+    int low = 0;
+    int high = recordsById.length - 1;
+
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midId = recordsById[mid].getRowId();
+
+      if (midId < rowId) {
+        low = mid + 1;
+      } else if (midId > rowId) {
+        high = mid - 1;
+      } else {
+        result = recordsById[mid];
+        break;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the summaries of the tiles that overlap the specified bounds and
+   * contain at least one visible record, at the finest level where there are
+   * no more than {@code maxTiles} such tiles.
+   *
+   * @param bounds
+   *          The bounds.
+   * @param maxTiles
+   *          The maximum number of tiles.
+   * @param hideNonGoodFlags
+   *          Indicates whether records with non-good flags are hidden.
+   * @return The tiles.
+   */
+  protected List<Tile> getTiles(GeoBounds bounds, int maxTiles,
+    boolean hideNonGoodFlags) {
+
+    List<Tile> result = new ArrayList<Tile>();
+
+    if (records.length > 0 && bounds.getMaxLon() >= minLon
+      && bounds.getMinLon() <= minLon + lonSpan && bounds.getMaxLat() >= minLat
+      && bounds.getMinLat() <= minLat + latSpan) {
+
+      for (int level = 0; level <= MAX_LEVEL; level++) {
+        List<Tile> levelResult = getTiles(bounds, level, hideNonGoodFlags,
+          maxTiles);
+
+        if (null == levelResult) {
+          break;
+        }
+
+        result = levelResult;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the summaries of the tiles at the specified level that overlap the
+   * specified bounds and contain at least one visible record.
+   *
+   * <p>
+   * The tiles are found either by looking up each tile position within the
+   * bounds, or by checking each occupied tile at the level, whichever
+   * involves fewer tiles.
+   * </p>
+   *
+   * @param bounds
+   *          The bounds.
+   * @param level
+   *          The tile level.
+   * @param hideNonGoodFlags
+   *          Indicates whether records with non-good flags are hidden.
+   * @param maxTiles
+   *          The maximum number of tiles.
+   * @return The tiles, or {@code null} if there are more than
+   *         {@code maxTiles} tiles.
+   */
+  private List<Tile> getTiles(GeoBounds bounds, int level,
+    boolean hideNonGoodFlags, int maxTiles) {
+
+    List<Tile> result = new ArrayList<Tile>();
+
+    Map<Long, Tile> levelTiles = getLevelTiles(level, hideNonGoodFlags);
+
+    int shift = MAX_LEVEL - level;
+    int minX = getCellX(bounds.getMinLon()) >> shift;
+    int maxX = getCellX(bounds.getMaxLon()) >> shift;
+    int minY = getCellY(bounds.getMinLat()) >> shift;
+    int maxY = getCellY(bounds.getMaxLat()) >> shift;
+
+    long area = (long) (maxX - minX + 1) * (maxY - minY + 1);
+
+    if (area <= levelTiles.size()) {
+      for (int x = minX; x <= maxX && null != result; x++) {
+        for (int y = minY; y <= maxY; y++) {
+          Tile tile = levelTiles.get(interleave(x, y));
+          if (null != tile) {
+            result.add(tile);
+            if (result.size() > maxTiles) {
+              result = null;
+              break;
+            }
+          }
+        }
+      }
+    } else {
+      for (Tile tile : levelTiles.values()) {
+        if (tile.x >= minX && tile.x <= maxX && tile.y >= minY
+          && tile.y <= maxY) {
+          result.add(tile);
+          if (result.size() > maxTiles) {
+            result = null;
+            break;
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the records in a tile, including those that are not visible.
+   *
+   * @param tile
+   *          The tile.
+   * @return The records.
+   */
+  protected List<MapRecord> getRecords(Tile tile) {
+    return Arrays.asList(records).subList(tile.start, tile.end);
+  }
+
+  /**
+   * Discard the tile summaries. Must be called whenever the QC flags of the
+   * records are changed.
+   */
+  protected void flagsChanged() {
+    tiles.clear();
+  }
+
+  /**
+   * Get the summaries of all the tiles at the specified level, building them
+   * if required.
+   *
+   * @param level
+   *          The tile level.
+   * @param hideNonGoodFlags
+   *          Indicates whether records with non-good flags are hidden.
+   * @return The tiles, keyed by tile code.
+   */
+  private Map<Long, Tile> getLevelTiles(int level, boolean hideNonGoodFlags) {
+    return tiles.computeIfAbsent(getCacheKey(level, hideNonGoodFlags), k -> {
+      Map<Long, Tile> levelTiles = new HashMap<Long, Tile>();
+
+      int shift = 2 * (MAX_LEVEL - level);
+      int start = 0;
+      while (start < records.length) {
+        long code = codes[start] >>> shift;
+        int end = start + 1;
+        while (end < records.length && codes[end] >>> shift == code) {
+          end++;
+        }
+
+        Tile tile = new Tile(deinterleave(code), deinterleave(code >>> 1),
+          start, end);
+        for (int i = start; i < end; i++) {
+          tile.add(records[i], hideNonGoodFlags);
+        }
+
+        if (tile.count > 0) {
+          levelTiles.put(code, tile);
+        }
+
+        start = end;
+      }
+
+      return levelTiles;
+    });
+  }
+
+  /**
+   * Get the key for the tile summaries at a given level.
+   *
+   * @param level
+   *          The tile level.
+   * @param hideNonGoodFlags
+   *          Indicates whether records with non-good flags are hidden.
+   * @return The key.
+   */
+  private int getCacheKey(int level, boolean hideNonGoodFlags) {
+    return level * 2 + (hideNonGoodFlags ? 1 : 0);
+  }
+
+  /**
+   * Get the finest level tile column for a longitude. Longitudes outside the
+   * range of the records are clamped to the first or last column.
+   *
+   * @param lon
+   *          The longitude.
+   * @return The tile column.
+   */
+  private int getCellX(double lon) {
+    return getCell((lon - minLon) / lonSpan);
+  }
+
+  /**
+   * Get the finest level tile row for a latitude. Latitudes outside the range
+   * of the records are clamped to the first or last row.
+   *
+   * @param lat
+   *          The latitude.
+   * @return The tile row.
+   */
+  private int getCellY(double lat) {
+    return getCell((lat - minLat) / latSpan);
+  }
+
+  /**
+   * Convert a position scaled to the range 0-1 to a finest level tile
+   * column/row.
+   *
+   * @param scaled
+   *          The scaled position.
+   * @return The tile column/row.
+   */
+  private int getCell(double scaled) {
+    int cell = (int) Math.floor(scaled * MAX_CELLS);
+    return Math.max(0, Math.min(MAX_CELLS - 1, cell));
+  }
+
+  /**
+   * Interleave the bits of a tile column and row to make its Z-order code.
+   *
+   * @param x
+   *          The tile column.
+   * @param y
+   *          The tile row.
+   * @return The Z-order code.
+   */
+  private static long interleave(int x, int y) {
+    long result = 0;
+    for (int bit = 0; bit < MAX_LEVEL; bit++) {
+      result |= ((long) (x >> bit) & 1L) << (2 * bit);
+      result |= ((long) (y >> bit) & 1L) << (2 * bit + 1);
+    }
+    return result;
+  }
+
+  /**
+   * Extract the tile column from a Z-order code. Shift the code right by one
+   * bit to extract the tile row.
+   *
+   * @param code
+   *          The Z-order code.
+   * @return The tile column.
+   */
+  private static int deinterleave(long code) {
+    int result = 0;
+    for (int bit = 0; bit < MAX_LEVEL; bit++) {
+      result |= (int) ((code >> (2 * bit)) & 1L) << bit;
+    }
+    return result;
+  }
+
+  /**
+   * A summary of the visible records in a tile.
+   */
+  protected static class Tile {
+
+    /**
+     * The tile's column at its level.
+     */
+    private final int x;
+
+    /**
+     * The tile's row at its level.
+     */
+    private final int y;
+
+    /**
+     * The position of the tile's first record in the sorted records.
+     */
+    private final int start;
+
+    /**
+     * The position after the tile's last record in the sorted records.
+     */
+    private final int end;
+
+    /**
+     * The number of visible records in the tile.
+     */
+    private int count = 0;
+
+    /**
+     * The number of visible records with non-good flags.
+     */
+    private int flaggedCount = 0;
+
+    /**
+     * The visible record with the lowest value.
+     */
+    private MapRecord min = null;
+
+    /**
+     * The visible record with the highest value.
+     */
+    private MapRecord max = null;
+
+    private Tile(int x, int y, int start, int end) {
+      this.x = x;
+      this.y = y;
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * Add a record to the summary, if it is visible.
+     *
+     * @param record
+     *          The record.
+     * @param hideNonGoodFlags
+     *          Indicates whether records with non-good flags are hidden.
+     */
+    private void add(MapRecord record, boolean hideNonGoodFlags) {
+      if (MapRecords.isVisible(record, hideNonGoodFlags)) {
+        count++;
+
+        if (!record.isGood()) {
+          flaggedCount++;
+        }
+
+        if (null == min || record.getValue() < min.getValue()) {
+          min = record;
+        }
+
+        if (null == max || record.getValue() > max.getValue()) {
+          max = record;
+        }
+      }
+    }
+
+    protected int getCount() {
+      return count;
+    }
+
+    protected int getFlaggedCount() {
+      return flaggedCount;
+    }
+
+    protected MapRecord getMin() {
+      return min;
+    }
+
+    protected MapRecord getMax() {
+      return max;
+    }
+  }
+}
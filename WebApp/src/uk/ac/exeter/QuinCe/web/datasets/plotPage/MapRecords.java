@@ -2,7 +2,7 @@ package uk.ac.exeter.QuinCe.web.datasets.plotPage;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -55,89 +55,89 @@ public class MapRecords extends ArrayList<MapRecord> {
 
   private Double maxNoFlags = Double.NaN;
 
+  /**
+   * The spatial index of the records. Built when first needed.
+   */
+  private MapRecordIndex index = null;
+
+  /**
+   * The bounds of all the records. Calculated when first needed.
+   */
+  private GeoBounds bounds = null;
+
+  /**
+   * The bounds of the records that are visible when non-good flags are
+   * hidden. Calculated when first needed.
+   */
+  private GeoBounds boundsNoFlags = null;
+
   public MapRecords(int size) {
     super(size);
   }
 
+  /**
+   * Get the GeoJSON for the records within the specified bounds.
+   *
+   * <p>
+   * If there are more than {@link #DECIMATION_LIMIT} visible records in the
+   * bounds, the records are thinned using the tiles of the spatial index
+   * ({@link MapRecordIndex}). The records with the minimum and maximum values
+   * in each tile are kept, along with all records with non-good flags.
+   * Selected records are always included in the selection layer.
+   * </p>
+   *
+   * @param bounds
+   *          The bounds being displayed.
+   * @param selectedRows
+   *          The IDs of the selected rows.
+   * @param useNeededFlags
+   *          Indicates whether NEEDED flags should be displayed.
+   * @param hideNonGoodFlags
+   *          Indicates whether records with non-good flags are hidden.
+   * @return The GeoJSON for the value, flag and selection layers.
+   */
   public String getDisplayJson(GeoBounds bounds, List<Long> selectedRows,
     boolean useNeededFlags, boolean hideNonGoodFlags) {
 
-    Set<MapRecord> boundedRecords = new TreeSet<MapRecord>();
-    List<MapRecord> data = new ArrayList<MapRecord>();
+    Set<MapRecord> data = new LinkedHashSet<MapRecord>();
     Set<MapRecord> flags = new TreeSet<MapRecord>();
     List<MapRecord> selection = new ArrayList<MapRecord>();
 
     if (size() > 0) {
-      MapRecord minLon = get(0);
-      MapRecord maxLon = get(0);
-      MapRecord minLat = get(0);
-      MapRecord maxLat = get(0);
-
-      // Find the records within the specified bounds, and also record the
-      // records
-      // closest to the bound limits.
-      for (MapRecord record : this) {
-
-        if (!hideNonGoodFlags || record.isGood() || record.flagNeeded()) {
-          if (bounds.inBounds(record.position)) {
-            if (record.position.getLongitude() < minLon.position
-              .getLongitude()) {
-              minLon = record;
-            } else if (record.position.getLongitude() > maxLon.position
-              .getLongitude()) {
-              maxLon = record;
-            }
-
-            if (record.position.getLatitude() < minLat.position.getLatitude()) {
-              minLat = record;
-            } else if (record.position.getLatitude() > maxLat.position
-              .getLatitude()) {
-              maxLat = record;
-            }
-
-            boundedRecords.add(record);
-          }
-        }
-      }
+      MapRecordIndex index = getIndex();
 
-      // Decimate the chosen records
-      Set<MapRecord> decimated = new HashSet<MapRecord>();
-      List<MapRecord> selected = new ArrayList<MapRecord>();
+      List<MapRecordIndex.Tile> tiles = index.getTiles(bounds,
+        DECIMATION_LIMIT / 2, hideNonGoodFlags);
 
-      if (boundedRecords.size() <= DECIMATION_LIMIT) {
-        decimated.addAll(boundedRecords);
-      } else {
-        int nth = (int) Math.floor(boundedRecords.size() / DECIMATION_LIMIT);
-        int count = 0;
-        for (MapRecord record : boundedRecords) {
-          count++;
+      int count = tiles.stream().mapToInt(t -> t.getCount()).sum();
 
-          if (count % nth == 0 || !record.isGood()) {
-            decimated.add(record);
-          }
+      for (MapRecordIndex.Tile tile : tiles) {
+        if (count <= DECIMATION_LIMIT) {
+          addRecords(index, tile, bounds, hideNonGoodFlags, false, data);
+        } else {
+          addIfInBounds(tile.getMin(), bounds, data);
+          addIfInBounds(tile.getMax(), bounds, data);
 
-          if (selectedRows.contains(record.getRowId())) {
-            selected.add(record);
+          if (tile.getFlaggedCount() > 0) {
+            addRecords(index, tile, bounds, hideNonGoodFlags, true, data);
           }
         }
       }
 
-      decimated.add(minLon);
-      decimated.add(maxLon);
-      decimated.add(minLat);
-      decimated.add(maxLat);
-
-      for (MapRecord record : decimated) {
-        data.add(record);
+      for (MapRecord record : data) {
         if (showAsFlag(record, useNeededFlags)) {
           flags.add(record);
         }
       }
 
-      for (MapRecord record : selected) {
-        selection.add(record);
-        if (showAsFlag(record, useNeededFlags)) {
-          flags.add(record);
+      for (long rowId : selectedRows) {
+        MapRecord record = index.getByRowId(rowId);
+        if (null != record && isVisible(record, hideNonGoodFlags)
+          && bounds.inBounds(record.position)) {
+          selection.add(record);
+          if (showAsFlag(record, useNeededFlags)) {
+            flags.add(record);
+          }
         }
       }
     }
@@ -159,6 +159,97 @@ public class MapRecords extends ArrayList<MapRecord> {
     return json.toString();
   }
 
+  /**
+   * Add a record to a collection if it is within the specified bounds. Tiles
+   * can extend beyond the bounds, so their summary records must be checked
+   * in the same way as {@link #addRecords}.
+   *
+   * @param record
+   *          The record. May be {@code null}.
+   * @param bounds
+   *          The bounds.
+   * @param destination
+   *          The collection to which the record is added.
+   */
+  private void addIfInBounds(MapRecord record, GeoBounds bounds,
+    Collection<MapRecord> destination) {
+    if (null != record && bounds.inBounds(record.position)) {
+      destination.add(record);
+    }
+  }
+
+  /**
+   * Add the visible records from a tile that are within the specified bounds
+   * to a collection.
+   *
+   * @param index
+   *          The spatial index.
+   * @param tile
+   *          The tile.
+   * @param bounds
+   *          The bounds.
+   * @param hideNonGoodFlags
+   *          Indicates whether records with non-good flags are hidden.
+   * @param flaggedOnly
+   *          Indicates whether only records with non-good flags are to be
+   *          added.
+   * @param destination
+   *          The collection to which the records are added.
+   */
+  private void addRecords(MapRecordIndex index, MapRecordIndex.Tile tile,
+    GeoBounds bounds, boolean hideNonGoodFlags, boolean flaggedOnly,
+    Collection<MapRecord> destination) {
+
+    for (MapRecord record : index.getRecords(tile)) {
+      if (isVisible(record, hideNonGoodFlags)
+        && (!flaggedOnly || !record.isGood())
+        && bounds.inBounds(record.position)) {
+        destination.add(record);
+      }
+    }
+  }
+
+  /**
+   * Determine whether or not a record is displayed on the map.
+   *
+   * @param record
+   *          The record.
+   * @param hideNonGoodFlags
+   *          Indicates whether records with non-good flags are hidden.
+   * @return {@code true} if the record is displayed; {@code false} if it is
+   *         hidden.
+   */
+  protected static boolean isVisible(MapRecord record,
+    boolean hideNonGoodFlags) {
+    return !hideNonGoodFlags || record.isGood() || record.flagNeeded();
+  }
+
+  /**
+   * Get the spatial index of the records, building it if required.
+   *
+   * @return The spatial index.
+   */
+  private MapRecordIndex getIndex() {
+    if (null == index) {
+      index = new MapRecordIndex(this);
+    }
+
+    return index;
+  }
+
+  /**
+   * Discard any information derived from the records' QC flags. Must be called
+   * whenever the flags are changed.
+   */
+  public void flagsChanged() {
+    resetRange();
+    bounds = null;
+    boundsNoFlags = null;
+    if (null != index) {
+      index.flagsChanged();
+    }
+  }
+
   private boolean showAsFlag(MapRecord record, boolean useNeededFlag) {
     return (useNeededFlag && record.flagNeeded()) || !record.isGood();
   }
@@ -267,13 +358,27 @@ public class MapRecords extends ArrayList<MapRecord> {
   }
 
   public GeoBounds getBounds(boolean hideNonGoodFlags) {
+    if (hideNonGoodFlags) {
+      if (null == boundsNoFlags) {
+        boundsNoFlags = calculateBounds(true);
+      }
+      return boundsNoFlags;
+    } else {
+      if (null == bounds) {
+        bounds = calculateBounds(false);
+      }
+      return bounds;
+    }
+  }
+
+  private GeoBounds calculateBounds(boolean hideNonGoodFlags) {
     double minLon = Double.MAX_VALUE;
     double maxLon = Double.MIN_VALUE;
     double minLat = Double.MAX_VALUE;
     double maxLat = Double.MIN_VALUE;
 
     for (MapRecord record : this) {
-      if (!hideNonGoodFlags || record.isGood() || record.flagNeeded()) {
+      if (null != record.position && isVisible(record, hideNonGoodFlags)) {
         double lat = record.position.getLatitude();
         double lon = record.position.getLongitude();
 
@@ -306,6 +411,9 @@ public class MapRecords extends ArrayList<MapRecord> {
   @Override
   public boolean add(MapRecord record) {
     resetRange();
+    index = null;
+    bounds = null;
+    boundsNoFlags = null;
     boolean result;
 
     // Don't add NaN values
@@ -2,9 +2,13 @@ package uk.ac.exeter.QuinCe.web.datasets.plotPage;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import com.google.gson.Gson;
@@ -14,11 +18,29 @@ import uk.ac.exeter.QuinCe.data.Dataset.QC.Flag;
 import uk.ac.exeter.QuinCe.data.Instrument.FileDefinition;
 import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
 import uk.ac.exeter.QuinCe.utils.MathUtils;
+import uk.ac.exeter.QuinCe.utils.StringUtils;
 
 public class Plot {
 
+  /**
+   * The application configuration property containing the maximum number of
+   * values sent to the browser for each plot series. If this is missing or
+   * less than {@code 3}, all values are sent.
+   *
+   * @see PlotDownsampler
+   */
+  public static final String MAX_POINTS_PROPERTY = "plot.max_points";
+
   private static Gson Y2_GSON;
 
+  private static Gson MAIN_GSON;
+
+  private static Gson MAIN_Y2_GSON;
+
+  private static Gson FLAG_GSON;
+
+  private static Gson FLAG_Y2_GSON;
+
   /**
    * The source data for the plot
    */
@@ -53,10 +75,57 @@ public class Plot {
 
   private boolean hideFlags = false;
 
+  /**
+   * The maximum number of values to send for each plot series.
+   *
+   * @see #MAX_POINTS_PROPERTY
+   */
+  private final int maxPoints;
+
+  /**
+   * The lower bound of the X axis range being viewed. {@code null} if the
+   * whole plot is being viewed.
+   */
+  private Double viewMin = null;
+
+  /**
+   * The upper bound of the X axis range being viewed. {@code null} if the
+   * whole plot is being viewed.
+   */
+  private Double viewMax = null;
+
+  /**
+   * The rectangle in which values are to be selected, as
+   * {@code [minX, maxX, minY, maxY]}, followed by {@code [minY2, maxY2]} if
+   * the plot has a second Y axis.
+   */
+  private double[] selectRect = null;
+
+  /**
+   * The IDs of the values found by {@link #selectPointsInRect()}.
+   */
+  private List<Long> rectPoints = new ArrayList<Long>();
+
   static {
     Y2_GSON = new GsonBuilder()
       .registerTypeAdapter(PlotValue.class, new Y2AxisPlotValueSerializer())
       .create();
+
+    MAIN_GSON = new GsonBuilder()
+      .registerTypeAdapter(PlotValue.class, new MainPlotValueSerializer(false))
+      .create();
+
+    MAIN_Y2_GSON = new GsonBuilder()
+      .registerTypeAdapter(PlotValue.class, new MainPlotValueSerializer(true))
+      .create();
+
+    FLAG_GSON = new GsonBuilder()
+      .registerTypeAdapter(PlotValue.class, new FlagPlotValueSerializer(false))
+      .create();
+
+    FLAG_Y2_GSON = new GsonBuilder()
+      .registerTypeAdapter(PlotValue.class, new FlagPlotValueSerializer(true))
+      .create();
   }
 
   /**
@@ -68,14 +137,47 @@ public class Plot {
    *          The initial X axis ID
    * @param yAxis
    *          The initial Y axis ID
+   * @param useNeededFlags
+   *          Indicates whether or not NEEDED flags should be displayed.
+   * @param maxPoints
+   *          The maximum number of values to send for each plot series.
    * @throws Exception
+   * @see #getMaxPoints(Properties)
    */
   protected Plot(PlotPageData data, PlotPageColumnHeading xAxis,
-    PlotPageColumnHeading yAxis, boolean useNeededFlags) throws Exception {
+    PlotPageColumnHeading yAxis, boolean useNeededFlags, int maxPoints)
+    throws Exception {
     this.data = data;
     this.xAxis = xAxis;
     this.yAxis = yAxis;
     this.useNeededFlags = useNeededFlags;
+    this.maxPoints = maxPoints;
+  }
+
+  /**
+   * Get the maximum number of values to send for each plot series from the
+   * application configuration.
+   *
+   * @param config
+   *          The application configuration.
+   * @return The maximum number of values, or {@code 0} if all values should be
+   *         sent.
+   */
+  protected static int getMaxPoints(Properties config) {
+    int result = 0;
+
+    if (null != config) {
+      String maxPointsString = config.getProperty(MAX_POINTS_PROPERTY);
+      if (null != maxPointsString && maxPointsString.trim().length() > 0) {
+        try {
+          result = Integer.parseInt(maxPointsString.trim());
+        } catch (NumberFormatException e) {
+          // Send all values
+        }
+      }
+    }
+
+    return result;
   }
 
   /**
@@ -126,43 +228,249 @@ public class Plot {
   }
 
   /**
-   * Get the JSON data for the main plot
+   * Get the JSON data for the main plot.
+   *
+   * <p>
+   * Only values within the current view range are included, and they are
+   * downsampled if there are more than the configured maximum. Flagged and
+   * selected values are always included.
+   * </p>
    *
    * @return The main plot data.
-   * @throws Exception
+   * @see PlotDownsampler
    */
   public String getMainData() {
     String result = "[]";
 
     if (null != plotValues) {
-      Gson gson = new GsonBuilder().registerTypeAdapter(PlotValue.class,
-        new MainPlotValueSerializer(null != y2Axis)).create();
-
-      result = gson
-        .toJson(plotValues.stream()
-          .filter(f -> !f.xNull() && !hideFlags ? true
-            : (null == f.getFlag() || f.getFlag().isGood()
-              || f.getFlag().equals(Flag.NEEDED)))
-          .collect(Collectors.toList()));
+      Gson gson = null != y2Axis ? MAIN_Y2_GSON : MAIN_GSON;
+
+      List<PlotValue> values = plotValues.stream().filter(this::inMainData)
+        .filter(this::inViewRange).collect(Collectors.toList());
+
+      result = gson.toJson(PlotDownsampler.downsample(values, maxPoints,
+        PlotDownsampler::getX, PlotValue::getY, getKeepPredicate()));
     }
 
     return result;
   }
 
+  /**
+   * Get the JSON data for the second Y axis.
+   *
+   * <p>
+   * Values are filtered and downsampled in the same way as the main plot data.
+   * </p>
+   *
+   * @return The Y2 plot data.
+   * @see #getMainData()
+   */
   public String getY2Data() {
     String result = "[]";
 
     if (null != y2Axis) {
-      result = Y2_GSON.toJson(plotValues.stream()
-        .filter(f -> !f.xNull() && !hideFlags ? true
-          : (null != f && (null == f.getFlag2() || f.getFlag2().isGood()
-            || f.getFlag2().equals(Flag.NEEDED))))
-        .collect(Collectors.toList()));
+      List<PlotValue> values = plotValues.stream().filter(this::inY2Data)
+        .filter(this::inViewRange).collect(Collectors.toList());
+
+      result = Y2_GSON.toJson(PlotDownsampler.downsample(values, maxPoints,
+        PlotDownsampler::getX, PlotValue::getY2, getKeepPredicate()));
     }
 
     return result;
   }
 
+  /**
+   * Determine whether or not a value is shown in the main plot, taking into
+   * account whether or not flagged values are hidden.
+   *
+   * @param value
+   *          The value.
+   * @return {@code true} if the value is shown; {@code false} if it is not.
+   */
+  private boolean inMainData(PlotValue value) {
+    return !value.xNull() && !hideFlags ? true
+      : (null == value.getFlag() || value.getFlag().isGood()
+        || value.getFlag().equals(Flag.NEEDED));
+  }
+
+  /**
+   * Determine whether or not a value is shown in the second Y axis data,
+   * taking into account whether or not flagged values are hidden.
+   *
+   * @param value
+   *          The value.
+   * @return {@code true} if the value is shown; {@code false} if it is not.
+   */
+  private boolean inY2Data(PlotValue value) {
+    return !value.xNull() && !hideFlags ? true
+      : (null == value.getFlag2() || value.getFlag2().isGood()
+        || value.getFlag2().equals(Flag.NEEDED));
+  }
+
+  /**
+   * Get the test for values that must never be removed by downsampling. These
+   * are values that appear in the flags plot and values selected by the user.
+   *
+   * @return The test.
+   */
+  private Predicate<PlotValue> getKeepPredicate() {
+    Set<Long> selectedRows = new HashSet<Long>(data.selectedRows);
+    return v -> v.inFlagPlot() || selectedRows.contains(v.getId());
+  }
+
+  /**
+   * Determine whether or not a value is within the X axis range being viewed.
+   *
+   * @param value
+   *          The value.
+   * @return {@code true} if the value is in the view range; {@code false} if
+   *         it is not.
+   */
+  private boolean inViewRange(PlotValue value) {
+    boolean result = true;
+
+    if (null != viewMin) {
+      Double x = PlotDownsampler.getX(value);
+      result = null != x && x >= viewMin && x <= viewMax;
+    }
+
+    return result;
+  }
+
+  /**
+   * Determine whether or not the data for the current view range will be
+   * downsampled. If it is, zooming in will fetch more detailed data, and
+   * selections must be made using {@link #selectPointsInRect()} because the
+   * browser does not have all the values.
+   *
+   * @return {@code true} if the plot data is downsampled; {@code false} if all
+   *         values are sent.
+   */
+  public boolean getDownsampled() {
+    boolean result = false;
+
+    if (null != plotValues && maxPoints >= 3) {
+      long mainCount = plotValues.stream().filter(this::inMainData)
+        .filter(this::inViewRange).filter(v -> hasX(v) && v.hasY()).count();
+
+      long y2Count = null == y2Axis ? 0
+        : plotValues.stream().filter(this::inY2Data).filter(this::inViewRange)
+          .filter(v -> hasX(v) && v.hasY2()).count();
+
+      result = mainCount > maxPoints || y2Count > maxPoints;
+    }
+
+    return result;
+  }
+
+  /**
+   * Determine whether or not a value has an X value that can be plotted.
+   *
+   * @param value
+   *          The value.
+   * @return {@code true} if the value has an X value; {@code false} if it
+   *         does not.
+   */
+  private boolean hasX(PlotValue value) {
+    return !MathUtils.isEmpty(PlotDownsampler.getX(value));
+  }
+
+  /**
+   * Get the X axis range being viewed, as a JSON array of
+   * {@code [min, max]}. Returns an empty string if the whole plot is being
+   * viewed.
+   *
+   * @return The view range.
+   */
+  public String getViewRange() {
+    return null == viewMin ? ""
+      : new Gson().toJson(new double[] { viewMin, viewMax });
+  }
+
+  /**
+   * Set the X axis range being viewed, as a JSON array of {@code [min, max]}.
+   * Times are specified in milliseconds since the epoch. An empty string
+   * selects the whole plot.
+   *
+   * @param viewRange
+   *          The view range.
+   */
+  public void setViewRange(String viewRange) {
+    if (StringUtils.isEmpty(viewRange)) {
+      viewMin = null;
+      viewMax = null;
+    } else {
+      double[] range = new Gson().fromJson(viewRange, double[].class);
+      viewMin = Math.min(range[0], range[1]);
+      viewMax = Math.max(range[0], range[1]);
+    }
+  }
+
+  /**
+   * Get the rectangle in which values are to be selected.
+   *
+   * @return The selection rectangle.
+   * @see #setSelectRect(String)
+   */
+  public String getSelectRect() {
+    return null == selectRect ? "" : new Gson().toJson(selectRect);
+  }
+
+  /**
+   * Set the rectangle in which values are to be selected, as a JSON array of
+   * {@code [minX, maxX, minY, maxY]}, optionally followed by
+   * {@code [minY2, maxY2]} for the second Y axis. Times are specified in
+   * milliseconds since the epoch.
+   *
+   * @param selectRect
+   *          The selection rectangle.
+   */
+  public void setSelectRect(String selectRect) {
+    this.selectRect = StringUtils.isEmpty(selectRect) ? null
+      : new Gson().fromJson(selectRect, double[].class);
+  }
+
+  /**
+   * Find the IDs of all the plot values within the selection rectangle,
+   * including any that were removed from the browser's data by downsampling.
+   * A value is selected if its Y value is within the rectangle's Y range, or
+   * its Y2 value is within the rectangle's Y2 range. The result is available
+   * from {@link #getRectPoints()}.
+   */
+  public void selectPointsInRect() {
+    rectPoints = new ArrayList<Long>();
+
+    if (null != plotValues && null != selectRect) {
+      boolean checkY2 = null != y2Axis && selectRect.length >= 6;
+
+      for (PlotValue value : plotValues) {
+        Double x = PlotDownsampler.getX(value);
+        if (null != x && x >= selectRect[0] && x <= selectRect[1]) {
+
+          boolean selectY = inMainData(value) && value.hasY()
+            && value.getY() >= selectRect[2] && value.getY() <= selectRect[3];
+
+          boolean selectY2 = checkY2 && inY2Data(value) && value.hasY2()
+            && value.getY2() >= selectRect[4] && value.getY2() <= selectRect[5];
+
+          if (selectY || selectY2) {
+            rectPoints.add(value.getId());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the IDs of the values found by {@link #selectPointsInRect()} as a JSON
+   * array.
+   *
+   * @return The value IDs.
+   */
+  public String getRectPoints() {
+    return new Gson().toJson(rectPoints);
+  }
+
   /**
    * Get the JSON data for the flags plot
    *
@@ -179,8 +487,7 @@ public class Plot {
           : null != x.getFlag() && x.getFlag().equals(Flag.NEEDED))
         .collect(Collectors.toList());
 
-      Gson gson = new GsonBuilder().registerTypeAdapter(PlotValue.class,
-        new FlagPlotValueSerializer(null != y2Axis)).create();
+      Gson gson = null != y2Axis ? FLAG_Y2_GSON : FLAG_GSON;
 
       result = gson.toJson(flagValues);
     }
@@ -264,6 +571,8 @@ public class Plot {
    */
   public void init() {
     try {
+      viewMin = null;
+      viewMax = null;
       makePlotValues();
     } catch (Exception e) {
       data.error(e);
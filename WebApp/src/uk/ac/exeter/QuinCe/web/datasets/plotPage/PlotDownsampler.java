@@ -0,0 +1,157 @@
+package uk.ac.exeter.QuinCe.web.datasets.plotPage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import uk.ac.exeter.QuinCe.utils.DateTimeUtils;
+import uk.ac.exeter.QuinCe.utils.MathUtils;
+
+/**
+ * Reduces the number of plot values sent to the browser using the
+ * Largest-Triangle-Three-Buckets (LTTB) algorithm.
+ *
+ * <p>
+ * The values are split into buckets along the X axis, and the value from each
+ * bucket that forms the largest triangle with the previously chosen value and
+ * the average of the next bucket is kept. This preserves the visual shape of
+ * the plot (including spikes) far better than simply taking every
+ * <i>n</i>th value.
+ * </p>
+ *
+ * <p>
+ * Values that must always be visible (e.g. flagged or selected values) can be
+ * specified, and are kept in addition to the values chosen by the algorithm.
+ * </p>
+ *
+ * <p>
+ * The X and Y values are extracted by functions, so any type of value can be
+ * downsampled.
+ * </p>
+ */
+public class PlotDownsampler {
+
+  /**
+   * Downsample a list of values.
+   *
+   * <p>
+   * Only values with a non-empty X value and Y value (as returned by
+   * {@code xValue} and {@code yValue}) are considered by the algorithm; other
+   * values would not be drawn and are dropped. If there are no more than
+   * {@code threshold} such values, the original list is returned unchanged.
+   * </p>
+   *
+   * @param <T>
+   *          The type of the values.
+   * @param values
+   *          The values, ordered by X value.
+   * @param threshold
+   *          The number of values to be chosen by the algorithm. Values less
+   *          than 3 disable downsampling.
+   * @param xValue
+   *          Function to extract the X value to be plotted.
+   * @param yValue
+   *          Function to extract the Y value to be plotted.
+   * @param keep
+   *          Identifies values that must always be kept.
+   * @return The downsampled values, in their original order.
+   */
+  public static <T> List<T> downsample(List<T> values, int threshold,
+    Function<T, Double> xValue, Function<T, Double> yValue,
+    Predicate<T> keep) {
+
+    List<Integer> candidates = new ArrayList<Integer>(values.size());
+    for (int i = 0; i < values.size(); i++) {
+      T value = values.get(i);
+      if (!MathUtils.isEmpty(xValue.apply(value))
+        && !MathUtils.isEmpty(yValue.apply(value))) {
+        candidates.add(i);
+      }
+    }
+
+    if (threshold < 3 || candidates.size() <= threshold) {
+      return values;
+    }
+
+    int count = candidates.size();
+    double[] x = new double[count];
+    double[] y = new double[count];
+    for (int i = 0; i < count; i++) {
+      T value = values.get(candidates.get(i));
+      x[i] = xValue.apply(value);
+      y[i] = yValue.apply(value);
+    }
+
+    boolean[] chosen = new boolean[values.size()];
+
+    // Always keep the first and last values
+    chosen[candidates.get(0)] = true;
+    chosen[candidates.get(count - 1)] = true;
+
+    // The first and last buckets contain only the first and last values
+    double bucketSize = (double) (count - 2) / (threshold - 2);
+    int previous = 0;
+
+    for (int bucket = 0; bucket < threshold - 2; bucket++) {
+
+      // The average point in the next bucket
+      int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+      int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1,
+        count);
+
+      double averageX = 0;
+      double averageY = 0;
+      for (int i = nextStart; i < nextEnd; i++) {
+        averageX += x[i];
+        averageY += y[i];
+      }
+      int nextCount = nextEnd - nextStart;
+      averageX /= nextCount;
+      averageY /= nextCount;
+
+      // Find the point in this bucket with the largest triangle
+      int start = (int) Math.floor(bucket * bucketSize) + 1;
+      int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+
+      double maxArea = -1;
+      int selected = start;
+
+      for (int i = start; i < end; i++) {
+        double area = Math.abs((x[previous] - averageX) * (y[i] - y[previous])
+          - (x[previous] - x[i]) * (averageY - y[previous]));
+
+        if (area > maxArea) {
+          maxArea = area;
+          selected = i;
+        }
+      }
+
+      chosen[candidates.get(selected)] = true;
+      previous = selected;
+    }
+
+    List<T> result = new ArrayList<T>(threshold);
+    for (int i = 0; i < values.size(); i++) {
+      if (chosen[i] || keep.test(values.get(i))) {
+        result.add(values.get(i));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the X value of a {@link PlotValue} as a number. Times are converted to
+   * milliseconds since the epoch, matching the values used by the plots in
+   * the browser.
+   *
+   * @param value
+   *          The value.
+   * @return The X value.
+   */
+  protected static Double getX(PlotValue value) {
+    return value.xIsTime() ? (double) DateTimeUtils.dateToLong(value.getXTime())
+      : value.getXDouble();
+  }
+}
@@ -206,10 +206,12 @@ public abstract class PlotPageData {
         .create();
 
       // Initialise the plots
+      int maxPlotPoints = Plot
+        .getMaxPoints(ResourceManager.getInstance().getConfig());
       plot1 = new Plot(this, getDefaultXAxis1(), getDefaultYAxis1(),
-        !dataset.isNrt());
+        !dataset.isNrt(), maxPlotPoints);
       plot2 = new Plot(this, getDefaultXAxis2(), getDefaultYAxis2(),
-        !dataset.isNrt());
+        !dataset.isNrt(), maxPlotPoints);
       map1 = new QCMap(this, getDefaultMap1Column(), !dataset.isNrt());
       map2 = new QCMap(this, getDefaultMap2Column(), !dataset.isNrt());
 
@@ -850,6 +852,10 @@ public abstract class PlotPageData {
   protected void initPlots() {
     plot1.init();
     plot2.init();
+
+    // The plots are reinitialised when QC flags change, so the map data
+    // derived from the flags must also be refreshed
+    mapCache.values().forEach(MapRecords::flagsChanged);
   }
 
   /**
@@ -47,7 +47,7 @@ public class PositionQCData extends ManualQCData {
   public void loadDataAction() throws Exception {
     try (Connection conn = dataSource.getConnection()) {
       sensorValues = DataSetDataDB.getPositionSensorValues(conn, instrument,
-        dataset.getId());
+        dataset);
     }
 
     // Build the row IDs
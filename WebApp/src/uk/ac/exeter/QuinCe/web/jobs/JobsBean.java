@@ -1,11 +1,15 @@
 package uk.ac.exeter.QuinCe.web.jobs;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentCache;
 import uk.ac.exeter.QuinCe.jobs.Job;
+import uk.ac.exeter.QuinCe.jobs.JobDispatcher;
 import uk.ac.exeter.QuinCe.jobs.JobManager;
+import uk.ac.exeter.QuinCe.jobs.JobQueueStatistics;
 import uk.ac.exeter.QuinCe.jobs.JobSummary;
 import uk.ac.exeter.QuinCe.jobs.JobThreadPool;
 import uk.ac.exeter.QuinCe.jobs.test.TenSecondJob;
@@ -48,6 +52,11 @@ public class JobsBean extends BaseManagedBean {
    */
   private List<JobSummary> jobList = null;
 
+  /**
+   * The queue statistics for each job priority class
+   */
+  private List<JobQueueStatistics> queueStatistics = new ArrayList<JobQueueStatistics>();
+
   /**
    * The number of chunks in the test job
    */
@@ -106,6 +115,12 @@ public class JobsBean extends BaseManagedBean {
       ExceptionUtils.printStackTrace(e);
       jobList = null;
     }
+
+    if (JobDispatcher.isInitialised()) {
+      queueStatistics = JobDispatcher.getInstance().getStatistics();
+    } else {
+      queueStatistics = new ArrayList<JobQueueStatistics>();
+    }
   }
 
   /**
@@ -157,15 +172,16 @@ public class JobsBean extends BaseManagedBean {
   }
 
   /**
-   * Manually start the next job in the queue
+   * Make the job dispatcher check the database for queued jobs, so any it has
+   * missed are started
    *
-   * @see JobManager#startNextJob(uk.ac.exeter.QuinCe.web.system.ResourceManager,
-   *      java.util.Properties)
+   * @see JobDispatcher#reload()
    */
   public void runNext() {
     try {
-      JobManager.startNextJob(ServletUtils.getResourceManager(),
-        ServletUtils.getAppConfig());
+      if (JobDispatcher.isInitialised()) {
+        JobDispatcher.getInstance().reload();
+      }
     } catch (Exception e) {
       ExceptionUtils.printStackTrace(e);
     }
@@ -302,6 +318,44 @@ public class JobsBean extends BaseManagedBean {
     return getJobCount(Job.FINISHED_STATUS);
   }
 
+  /**
+   * Get the number of instrument requests served from the
+   * {@link InstrumentCache}
+   *
+   * @return The number of cache hits
+   */
+  public long getInstrumentCacheHits() {
+    return InstrumentCache.getInstance().getHits();
+  }
+
+  /**
+   * Get the number of instrument requests that were loaded from the database
+   * because they were not in the {@link InstrumentCache}
+   *
+   * @return The number of cache misses
+   */
+  public long getInstrumentCacheMisses() {
+    return InstrumentCache.getInstance().getMisses();
+  }
+
+  /**
+   * Get the number of instruments in the {@link InstrumentCache}
+   *
+   * @return The number of cached instruments
+   */
+  public int getCachedInstruments() {
+    return InstrumentCache.getInstance().size();
+  }
+
+  /**
+   * Get the queue statistics for each job priority class
+   *
+   * @return The queue statistics
+   */
+  public List<JobQueueStatistics> getQueueStatistics() {
+    return queueStatistics;
+  }
+
   /**
    * Get the list of all jobs in the system
    *
@@ -6,6 +6,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.naming.InitialContext;
@@ -15,14 +17,22 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.sql.DataSource;
 
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetDataCache;
+import uk.ac.exeter.QuinCe.data.Dataset.DatasetSnapshots;
+import uk.ac.exeter.QuinCe.data.Dataset.QC.QCRoutineDictionary;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.DataReduction.DataReductionQCRoutinesConfiguration;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.ExternalStandards.ExternalStandardsRoutinesConfiguration;
 import uk.ac.exeter.QuinCe.data.Dataset.QC.SensorValues.QCRoutinesConfiguration;
 import uk.ac.exeter.QuinCe.data.Export.ExportConfig;
+import uk.ac.exeter.QuinCe.data.Files.DataFileCatalogue;
+import uk.ac.exeter.QuinCe.data.Instrument.InstrumentCache;
 import uk.ac.exeter.QuinCe.data.Instrument.RunTypes.RunTypeCategoryConfiguration;
 import uk.ac.exeter.QuinCe.data.Instrument.SensorDefinition.SensorsConfiguration;
 import uk.ac.exeter.QuinCe.jobs.InvalidThreadCountException;
+import uk.ac.exeter.QuinCe.jobs.JobPriority;
 import uk.ac.exeter.QuinCe.jobs.JobThreadPool;
+import uk.ac.exeter.QuinCe.jobs.files.AutoQCJob;
+import uk.ac.exeter.QuinCe.jobs.files.DataReductionJob;
 import uk.ac.exeter.QuinCe.utils.DatabaseUtils;
 
 /**
@@ -92,9 +102,20 @@ public class ResourceManager implements ServletContextListener {
 
     // Initialise the job thread pool
     try {
-      JobThreadPool.initialise(1);
-    } catch (InvalidThreadCountException e) {
-      // Do nothing for now
+      Map<JobPriority, Integer> reservedThreads = new EnumMap<JobPriority, Integer>(
+        JobPriority.class);
+      for (JobPriority priority : JobPriority.values()) {
+        reservedThreads.put(priority, Integer.parseInt(
+          configuration.getProperty(priority.getReservedThreadsProperty(), "0")));
+      }
+
+      JobThreadPool.initialise(
+        Integer.parseInt(
+          configuration.getProperty(JobThreadPool.THREADS_PROPERTY, "1")),
+        reservedThreads);
+    } catch (InvalidThreadCountException | NumberFormatException e) {
+      throw new RuntimeException("Config failed: invalid job thread counts",
+        e);
     }
 
     // Initialise the sensors configuration
@@ -160,7 +181,8 @@ public class ResourceManager implements ServletContextListener {
 
   @Override
   public void contextDestroyed(ServletContextEvent event) {
-    // NOOP.
+    AutoQCJob.shutdownQCPool();
+    DataReductionJob.shutdownReductionPool();
   }
 
   /**
@@ -233,5 +255,10 @@ public class ResourceManager implements ServletContextListener {
    */
   public static void destroy() {
     instance = null;
+    DatasetDataCache.destroy();
+    DatasetSnapshots.destroy();
+    InstrumentCache.destroy();
+    DataFileCatalogue.destroy();
+    QCRoutineDictionary.destroy();
   }
 }
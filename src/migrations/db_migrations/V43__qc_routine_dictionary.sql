@@ -0,0 +1,6 @@
+-- Dictionary of automatic QC routines, used to store compact auto_qc values
+CREATE TABLE qc_routines (
+  id INT NOT NULL AUTO_INCREMENT,
+  name VARCHAR(255) NOT NULL,
+  PRIMARY KEY (id),
+  UNIQUE INDEX qcroutines_name_idx (name ASC));
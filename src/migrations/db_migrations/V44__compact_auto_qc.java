@@ -0,0 +1,156 @@
+package db_migrations;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Convert the JSON automatic QC results in {@code sensor_values} to the
+ * compact encoding, adding the routines to the {@code qc_routines}
+ * dictionary.
+ *
+ * <p>
+ * Values are processed in pages of {@link #PAGE_SIZE} rows so the whole table
+ * is never held in memory.
+ * </p>
+ *
+ * <p>
+ * The JSON is parsed and the compact form is written here rather than with
+ * {@code AutoQCResult}, so the migration is not affected by later changes to
+ * that class. The compact form is a flag per routine, separated by
+ * semicolons. Each flag is the routine ID, flag value, required value and
+ * actual value separated by colons, with separators and backslashes escaped
+ * by a backslash and {@code null} values stored as {@code \N}.
+ * </p>
+ */
+public class V44__compact_auto_qc extends BaseJavaMigration {
+
+  private static final int PAGE_SIZE = 10000;
+
+  @Override
+  public void migrate(Context context) throws Exception {
+
+    Connection conn = context.getConnection();
+    Map<String, Integer> routineIds = new HashMap<String, Integer>();
+
+    try (
+      PreparedStatement getAutoQC = conn
+        .prepareStatement("SELECT id, auto_qc FROM sensor_values "
+          + "WHERE id > ? AND auto_qc IS NOT NULL ORDER BY id LIMIT "
+          + PAGE_SIZE);
+      PreparedStatement setAutoQC = conn
+        .prepareStatement("UPDATE sensor_values SET auto_qc = ? WHERE id = ?");
+      PreparedStatement addRoutine = conn.prepareStatement(
+        "INSERT INTO qc_routines (name) VALUES (?)",
+        Statement.RETURN_GENERATED_KEYS)) {
+
+      long lastId = 0;
+      boolean finished = false;
+
+      while (!finished) {
+        getAutoQC.setLong(1, lastId);
+
+        int rowCount = 0;
+
+        try (ResultSet records = getAutoQC.executeQuery()) {
+          while (records.next()) {
+            rowCount++;
+            lastId = records.getLong(1);
+            String json = records.getString(2);
+
+            // Skip anything that isn't JSON
+            if (json.startsWith("[")) {
+              JsonArray flags = JsonParser.parseString(json).getAsJsonArray();
+
+              // The same flag can only be stored once
+              Set<String> encodedFlags = new LinkedHashSet<String>();
+
+              for (JsonElement element : flags) {
+                JsonObject flag = element.getAsJsonObject();
+                String routineName = getString(flag, "routineName");
+
+                if (!routineIds.containsKey(routineName)) {
+                  routineIds.put(routineName,
+                    addRoutine(addRoutine, routineName));
+                }
+
+                encodedFlags.add(encodeFlag(routineIds.get(routineName), flag));
+              }
+
+              if (encodedFlags.isEmpty()) {
+                setAutoQC.setNull(1, Types.VARCHAR);
+              } else {
+                setAutoQC.setString(1, String.join(";", encodedFlags));
+              }
+
+              setAutoQC.setLong(2, lastId);
+              setAutoQC.addBatch();
+            }
+          }
+        }
+
+        setAutoQC.executeBatch();
+        finished = rowCount < PAGE_SIZE;
+      }
+    }
+  }
+
+  private String encodeFlag(int routineId, JsonObject flag) {
+    StringBuilder encoded = new StringBuilder();
+
+    encoded.append(routineId).append(':')
+      .append(flag.get("flagValue").getAsInt()).append(':');
+    appendValue(encoded, getString(flag, "requiredValue"));
+    encoded.append(':');
+    appendValue(encoded, getString(flag, "actualValue"));
+
+    return encoded.toString();
+  }
+
+  private void appendValue(StringBuilder encoded, String value) {
+    if (null == value) {
+      encoded.append("\\N");
+    } else {
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '\\' || c == ':' || c == ';') {
+          encoded.append('\\');
+        }
+        encoded.append(c);
+      }
+    }
+  }
+
+  private String getString(JsonObject object, String member) {
+    JsonElement element = object.get(member);
+    return null == element || element.isJsonNull() ? null
+      : element.getAsString();
+  }
+
+  private int addRoutine(PreparedStatement stmt, String name)
+    throws SQLException {
+
+    stmt.setString(1, name);
+    stmt.execute();
+
+    try (ResultSet keys = stmt.getGeneratedKeys()) {
+      keys.next();
+      return keys.getInt(1);
+    }
+  }
+}